@@ -0,0 +1,60 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.benchmark;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.javaml.classification.KNearestNeighbors;
+import net.sf.javaml.classification.evaluation.CrossValidation;
+import net.sf.javaml.classification.evaluation.PerformanceMeasure;
+import net.sf.javaml.core.Dataset;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a ten fold {@link CrossValidation} of a k-nearest neighbors
+ * classifier.
+ *
+ * @author Thomas Abeel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class CrossValidationBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean sparse;
+
+    @Param({ "1000", "5000" })
+    public int n;
+
+    @Param({ "10", "100" })
+    public int d;
+
+    @Param({ "2", "10" })
+    public int classes;
+
+    private Dataset data;
+
+    @Setup
+    public void setup() {
+        data = Datasets.generate(sparse, n, d, classes, 1);
+    }
+
+    @Benchmark
+    public Map<Object, PerformanceMeasure> crossValidation() {
+        return new CrossValidation(new KNearestNeighbors(5)).crossValidation(data, 10, new Random(1));
+    }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.benchmark;
+
+import java.util.Random;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+
+/**
+ * Generates the data sets of the benchmarks: one Gaussian cluster per class,
+ * with the cluster centers drawn uniformly. The data only depends on its
+ * parameters and the seed, so results can be compared between releases.
+ *
+ * Sparse data sets have a fraction of the attributes set in each instance,
+ * the other attributes are zero.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public final class Datasets {
+
+    /* Fraction of the attributes that are set in a sparse instance */
+    public static final double DENSITY = 0.05;
+
+    private Datasets() {
+        // utility class
+    }
+
+    /**
+     * Generates a data set.
+     *
+     * @param sparse
+     *            whether the instances are sparse
+     * @param n
+     *            the number of instances
+     * @param d
+     *            the number of attributes
+     * @param classes
+     *            the number of classes, 0 for data without class values
+     * @param seed
+     *            the seed of the random generator
+     * @return the data set
+     */
+    public static Dataset generate(boolean sparse, int n, int d, int classes, long seed) {
+        Random rg = new Random(seed);
+        int clusters = Math.max(1, classes);
+        double[][] centers = new double[clusters][d];
+        for (int c = 0; c < clusters; c++)
+            for (int j = 0; j < d; j++)
+                centers[c][j] = 10 * rg.nextDouble();
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < n; i++) {
+            int c = rg.nextInt(clusters);
+            Object label = classes > 0 ? "class" + c : null;
+            Instance inst;
+            if (sparse) {
+                inst = new SparseInstance(d, label);
+                int set = Math.max(1, (int) (DENSITY * d));
+                for (int k = 0; k < set; k++) {
+                    int j = rg.nextInt(d);
+                    inst.put(j, centers[c][j] + rg.nextGaussian());
+                }
+            } else {
+                double[] values = new double[d];
+                for (int j = 0; j < d; j++)
+                    values[j] = centers[c][j] + rg.nextGaussian();
+                inst = new DenseInstance(values, label);
+            }
+            data.add(inst);
+        }
+        return data;
+    }
+
+}
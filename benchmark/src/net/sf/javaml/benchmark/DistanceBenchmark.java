@@ -0,0 +1,69 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.distance.CosineDistance;
+import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.distance.ManhattanDistance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link DistanceMeasure#measure} between pairs of instances.
+ *
+ * @author Thomas Abeel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DistanceBenchmark {
+
+    /* Number of instances the pairs are taken from */
+    private static final int N = 256;
+
+    @Param({ "euclidean", "manhattan", "cosine" })
+    public String measure;
+
+    @Param({ "false", "true" })
+    public boolean sparse;
+
+    @Param({ "10", "1000" })
+    public int d;
+
+    private DistanceMeasure dm;
+
+    private Dataset data;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        data = Datasets.generate(sparse, N, d, 0, 1);
+        if (measure.equals("manhattan"))
+            dm = new ManhattanDistance();
+        else if (measure.equals("cosine"))
+            dm = new CosineDistance();
+        else
+            dm = new EuclideanDistance();
+    }
+
+    @Benchmark
+    public double measure() {
+        next = (next + 1) % (N - 1);
+        return dm.measure(data.instance(next), data.instance(next + 1));
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.javaml.clustering.KMeans;
+import net.sf.javaml.core.Dataset;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link KMeans#cluster} with a fixed number of iterations.
+ *
+ * @author Thomas Abeel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class KMeansBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean sparse;
+
+    @Param({ "1000", "10000" })
+    public int n;
+
+    @Param({ "10", "100" })
+    public int d;
+
+    @Param({ "4", "16" })
+    public int k;
+
+    private Dataset data;
+
+    @Setup
+    public void setup() {
+        data = Datasets.generate(sparse, n, d, k, 1);
+    }
+
+    @Benchmark
+    public Dataset[] cluster() {
+        return new KMeans(k, 20).cluster(data);
+    }
+
+}
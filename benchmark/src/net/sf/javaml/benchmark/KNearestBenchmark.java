@@ -0,0 +1,65 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.distance.EuclideanDistance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link Dataset#kNearest} queries.
+ *
+ * @author Thomas Abeel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class KNearestBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean sparse;
+
+    @Param({ "1000", "10000" })
+    public int n;
+
+    @Param({ "10", "100" })
+    public int d;
+
+    @Param({ "1", "10" })
+    public int k;
+
+    private Dataset data;
+
+    private Dataset queries;
+
+    private EuclideanDistance dm = new EuclideanDistance();
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        data = Datasets.generate(sparse, n, d, 0, 1);
+        queries = Datasets.generate(sparse, 100, d, 0, 2);
+    }
+
+    @Benchmark
+    public Set<Instance> kNearest() {
+        next = (next + 1) % queries.size();
+        return data.kNearest(k, queries.instance(next), dm);
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import libsvm.LibSVM;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures training a {@link LibSVM} classifier and predicting with it.
+ *
+ * @author Thomas Abeel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class LibSVMBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean sparse;
+
+    @Param({ "1000", "5000" })
+    public int n;
+
+    @Param({ "10", "100" })
+    public int d;
+
+    @Param({ "2", "10" })
+    public int classes;
+
+    private Dataset data;
+
+    private LibSVM trained;
+
+    @Setup
+    public void setup() {
+        data = Datasets.generate(sparse, n, d, classes, 1);
+        trained = new LibSVM();
+        trained.buildClassifier(data);
+    }
+
+    @Benchmark
+    public LibSVM train() {
+        LibSVM svm = new LibSVM();
+        svm.buildClassifier(data);
+        return svm;
+    }
+
+    /* Classifies all instances, the throughput is in data sets */
+    @Benchmark
+    public void predict(Blackhole bh) {
+        for (Instance inst : data)
+            bh.consume(trained.classify(inst));
+    }
+
+}
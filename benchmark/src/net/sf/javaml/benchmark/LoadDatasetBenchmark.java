@@ -0,0 +1,71 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.tools.data.FileHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link FileHandler#loadDataset} and
+ * {@link FileHandler#loadSparseDataset} on a file that is written once per
+ * trial.
+ *
+ * @author Thomas Abeel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class LoadDatasetBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean sparse;
+
+    @Param({ "false", "true" })
+    public boolean compress;
+
+    @Param({ "10000", "100000" })
+    public int n;
+
+    @Param({ "10", "100" })
+    public int d;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        File out = File.createTempFile("javaml-benchmark", ".tsv");
+        FileHandler.exportDataset(Datasets.generate(sparse, n, d, 2, 1), out, compress);
+        file = compress ? new File(out.getPath() + ".gz") : out;
+        if (compress)
+            out.delete();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Dataset load() throws IOException {
+        if (sparse)
+            return FileHandler.loadSparseDataset(file, 0, "\t", ":");
+        return FileHandler.loadDataset(file, 0, "\t");
+    }
+
+}
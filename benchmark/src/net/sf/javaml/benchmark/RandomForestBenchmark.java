@@ -0,0 +1,61 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.javaml.classification.tree.RandomForest;
+import net.sf.javaml.core.Dataset;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the training of a {@link RandomForest}.
+ *
+ * @author Thomas Abeel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class RandomForestBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean sparse;
+
+    @Param({ "1000", "10000" })
+    public int n;
+
+    @Param({ "10", "100" })
+    public int d;
+
+    @Param({ "2", "10" })
+    public int classes;
+
+    @Param({ "50" })
+    public int trees;
+
+    private Dataset data;
+
+    @Setup
+    public void setup() {
+        data = Datasets.generate(sparse, n, d, classes, 1);
+    }
+
+    @Benchmark
+    public RandomForest train() {
+        RandomForest rf = new RandomForest(trees, false, (int) Math.sqrt(d), new Random(1));
+        rf.buildClassifier(data);
+        return rf;
+    }
+
+}
@@ -15,6 +15,7 @@ import net.sf.javaml.core.Dataset;
 import net.sf.javaml.sampling.Sampling;
 import net.sf.javaml.tools.data.FileHandler;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 public class TestBagging {
@@ -31,4 +32,21 @@ public class TestBagging {
 		Map<Object, PerformanceMeasure> pm = EvaluateDataset.testDataset(
 				bagger, data);
 	}
+
+	@Test
+	public void testOutOfBag() throws IOException {
+		ZeroR[] zeros = new ZeroR[10];
+		for (int i = 0; i < zeros.length; i++) {
+			zeros[i] = new ZeroR();
+		}
+		Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+		Bagging bagger = new Bagging(zeros, Sampling.NormalBootstrapping, 0);
+		bagger.setCalculateOutOfBagErrorEstimate(true);
+		bagger.buildClassifier(data);
+		/*
+		 * ZeroR predicts the most frequent class of its sample, so it is wrong
+		 * for about two thirds of the out-of-bag instances of the iris data
+		 */
+		Assert.assertEquals(2.0 / 3, bagger.getOutOfBagErrorEstimate(), 0.1);
+	}
 }
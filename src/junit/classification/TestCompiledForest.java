@@ -0,0 +1,64 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.classification;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import net.sf.javaml.classification.tree.CompiledForest;
+import net.sf.javaml.classification.tree.RandomForest;
+import net.sf.javaml.classification.tree.RandomTree;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.tools.data.FileHandler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCompiledForest {
+
+	@Test
+	public void testBatchVotes() throws IOException {
+		Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+		RandomForest rf = new RandomForest(25, false, 2, new Random(3));
+		rf.buildClassifier(data);
+		CompiledForest forest = rf.getCompiledForest();
+		Assert.assertEquals(25, forest.noTrees());
+		int[][] votes = forest.votes(data);
+		Object[] classes = forest.classify(data);
+		int correct = 0;
+		for (int i = 0; i < data.size(); i++) {
+			Instance inst = data.instance(i);
+			Assert.assertTrue(Arrays.equals(forest.votes(inst), votes[i]));
+			Assert.assertEquals(rf.classify(inst), classes[i]);
+			Map<Object, Double> dist = rf.classDistribution(inst);
+			double total = 0;
+			for (double p : dist.values())
+				total += p;
+			Assert.assertEquals(1, total, 1e-12);
+			if (classes[i].equals(inst.classValue()))
+				correct++;
+		}
+		Assert.assertTrue(correct > 0.9 * data.size());
+	}
+
+	@Test
+	public void testSameSeed() throws IOException {
+		Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+		RandomTree a = new RandomTree(1, new Random(5));
+		a.buildClassifier(new DefaultDataset(data));
+		RandomTree b = new RandomTree(1, new Random(5));
+		b.buildClassifier(new DefaultDataset(data));
+		for (Instance inst : data) {
+			/* the training data is separated completely */
+			Assert.assertEquals(inst.classValue(), a.classify(inst));
+			Assert.assertEquals(a.classify(inst), b.classify(inst));
+		}
+	}
+
+}
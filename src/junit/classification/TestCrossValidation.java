@@ -5,14 +5,22 @@ package junit.classification;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
+import net.sf.javaml.classification.AbstractClassifier;
 import net.sf.javaml.classification.Classifier;
 import net.sf.javaml.classification.evaluation.CrossValidation;
 import net.sf.javaml.classification.evaluation.PerformanceMeasure;
 import net.sf.javaml.classification.tree.RandomForest;
 import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
 import net.sf.javaml.tools.data.FileHandler;
+import net.sf.javaml.utils.ParallelContext;
+import net.sf.javaml.utils.Seedable;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -42,4 +50,55 @@ public class TestCrossValidation {
 		System.out.println(p);
 
 	}
+
+	/* Draws a random number when it is trained */
+	private static class Draw extends AbstractClassifier implements Seedable {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final Set<Integer> drawn = Collections.synchronizedSet(new HashSet<Integer>());
+
+		private Random rg = new Random(1);
+
+		private Object first;
+
+		@Override
+		public void buildClassifier(Dataset data) {
+			drawn.add(rg.nextInt());
+			first = data.classValue(0);
+		}
+
+		@Override
+		public Object classify(Instance instance) {
+			return first;
+		}
+
+		@Override
+		public void setSeed(long seed) {
+			rg = new Random(seed);
+		}
+	}
+
+	/**
+	 * Tests that by default the folds train the classifier itself, and that
+	 * the copies of the classifier for parallel folds get their own seeds.
+	 */
+	@Test
+	public void testParallelCopies() throws IOException {
+		Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+		Draw draw = new Draw();
+		CrossValidation cv = new CrossValidation(draw);
+		cv.setParallelContext(new ParallelContext(4));
+		cv.crossValidation(data, 5, new Random(3));
+		Assert.assertNotNull(draw.first);
+
+		draw = new Draw();
+		Draw.drawn.clear();
+		cv = new CrossValidation(draw);
+		cv.setParallelContext(new ParallelContext(4));
+		cv.setParallelFolds(true);
+		cv.crossValidation(data, 5, new Random(3));
+		Assert.assertEquals(5, Draw.drawn.size());
+		Assert.assertNull(draw.first);
+	}
 }
@@ -0,0 +1,129 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.classification;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+import net.sf.javaml.classification.evaluation.CrossValidation;
+import net.sf.javaml.classification.evaluation.PerformanceMeasure;
+import net.sf.javaml.classification.tree.DecisionTree;
+import net.sf.javaml.classification.tree.RandomForest;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.tools.data.FileHandler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDecisionTree {
+
+	@Test
+	public void testThreshold() {
+		Dataset data = new DefaultDataset();
+		double[] x = { 3, 1, 12, 2, 10, 11 };
+		for (double v : x)
+			data.add(new DenseInstance(new double[] { 0, v }, v < 5 ? "a" : "b"));
+		DecisionTree tree = new DecisionTree();
+		tree.buildClassifier(data);
+		/* the split is halfway between 3 and 10 */
+		Assert.assertEquals("a", tree.classify(new DenseInstance(new double[] { 0, 6.5 })));
+		Assert.assertEquals("b", tree.classify(new DenseInstance(new double[] { 0, 6.6 })));
+		/* missing values go right */
+		Assert.assertEquals("b", tree.classify(new DenseInstance(new double[] { 0, Double.NaN })));
+	}
+
+	@Test
+	public void testMissingAfterInfinity() {
+		/* the missing values are sorted after infinity and go right with it */
+		Dataset data = new DefaultDataset();
+		double[] x = { 0, 0, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NaN, Double.NaN };
+		for (int i = 0; i < x.length; i++)
+			data.add(new DenseInstance(new double[] { x[i] }, i < 2 ? "a" : "b"));
+		DecisionTree tree = new DecisionTree();
+		tree.buildClassifier(data);
+		for (Instance inst : data)
+			Assert.assertEquals(inst.classValue(), tree.classify(inst));
+	}
+
+	@Test
+	public void testDeep() throws InterruptedException {
+		/* alternating classes give a chain of splits as deep as the data */
+		final Dataset data = new DefaultDataset();
+		for (int i = 0; i < 5000; i++)
+			data.add(new DenseInstance(new double[] { i }, i % 2));
+		final DecisionTree tree = new DecisionTree();
+		final Throwable[] error = new Throwable[1];
+		Thread t = new Thread(null, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					tree.buildClassifier(data);
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		}, "small stack", 256 * 1024);
+		t.start();
+		t.join();
+		Assert.assertNull(error[0]);
+		for (Instance inst : data)
+			Assert.assertEquals(inst.classValue(), tree.classify(inst));
+	}
+
+	@Test
+	public void testXor() {
+		/* no single split lowers the impurity, the tree still separates it */
+		for (DecisionTree.Impurity impurity : DecisionTree.Impurity.values()) {
+			Dataset data = new DefaultDataset();
+			for (int i = 0; i < 4; i++)
+				data.add(new DenseInstance(new double[] { i / 2, i % 2 }, (i / 2 + i % 2) % 2 == 0 ? "even" : "odd"));
+			DecisionTree tree = new DecisionTree(impurity, 0, null);
+			tree.buildClassifier(data);
+			for (Instance inst : data)
+				Assert.assertEquals(inst.classValue(), tree.classify(inst));
+		}
+	}
+
+	@Test
+	public void testIris() throws IOException {
+		Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+		DecisionTree tree = new DecisionTree(DecisionTree.Impurity.ENTROPY, 0, null);
+		tree.buildClassifier(data);
+		int correct = 0;
+		for (Instance inst : data) {
+			if (tree.classify(inst).equals(inst.classValue()))
+				correct++;
+			Map<Object, Double> dist = tree.classDistribution(inst);
+			Assert.assertEquals(3, dist.size());
+		}
+		Assert.assertTrue(correct >= data.size() - 1);
+
+		tree.setMaxDepth(1);
+		tree.buildClassifier(data);
+		/* a single split separates one of the three classes */
+		correct = 0;
+		for (Instance inst : data)
+			if (tree.classify(inst).equals(inst.classValue()))
+				correct++;
+		Assert.assertEquals(100, correct);
+	}
+
+	@Test
+	public void testForest() throws IOException {
+		Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+		RandomForest rf = new RandomForest(50, false, 2, new Random(4));
+		rf.setImpurity(DecisionTree.Impurity.GINI);
+		CrossValidation cv = new CrossValidation(rf);
+		Map<Object, PerformanceMeasure> p = cv.crossValidation(data, 5, new Random(10));
+		for (PerformanceMeasure pm : p.values())
+			Assert.assertTrue(pm.getAccuracy() > 0.9);
+		Assert.assertNull(rf.getCompiledForest());
+	}
+
+}
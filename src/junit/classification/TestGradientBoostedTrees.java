@@ -0,0 +1,96 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.classification;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+import net.sf.javaml.classification.Classifier;
+import net.sf.javaml.classification.evaluation.CrossValidation;
+import net.sf.javaml.classification.evaluation.PerformanceMeasure;
+import net.sf.javaml.classification.meta.Bagging;
+import net.sf.javaml.classification.tree.GradientBoostedTrees;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.sampling.Sampling;
+import net.sf.javaml.tools.data.FileHandler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestGradientBoostedTrees {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmpty() {
+		new GradientBoostedTrees(10).buildClassifier(new DefaultDataset());
+	}
+
+	@Test
+	public void testSoftmax() throws IOException {
+		Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+		GradientBoostedTrees gbt = new GradientBoostedTrees(50);
+		gbt.buildClassifier(data);
+		int correct = 0;
+		for (Instance inst : data) {
+			Map<Object, Double> dist = gbt.classDistribution(inst);
+			Assert.assertEquals(3, dist.size());
+			double total = 0;
+			for (double p : dist.values())
+				total += p;
+			Assert.assertEquals(1, total, 1e-12);
+			if (gbt.classify(inst).equals(inst.classValue()))
+				correct++;
+		}
+		Assert.assertTrue(correct > 0.97 * data.size());
+	}
+
+	@Test
+	public void testWideBins() throws IOException {
+		/* iris has less than 256 values per attribute, so the bins are equal */
+		Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+		GradientBoostedTrees narrow = new GradientBoostedTrees(20);
+		narrow.buildClassifier(data);
+		GradientBoostedTrees wide = new GradientBoostedTrees(20);
+		wide.setMaxBins(1000);
+		wide.buildClassifier(data);
+		for (Instance inst : data)
+			Assert.assertEquals(narrow.classDistribution(inst), wide.classDistribution(inst));
+	}
+
+	@Test
+	public void testCrossValidation() throws IOException {
+		Dataset data = FileHandler.loadDataset(new File("devtools/data/colon.csv.gz"), 0, ",");
+		GradientBoostedTrees gbt = new GradientBoostedTrees(30);
+		gbt.setMaxDepth(3);
+		CrossValidation cv = new CrossValidation(gbt);
+		Map<Object, PerformanceMeasure> p = cv.crossValidation(data, 5, new Random(10));
+		Assert.assertTrue(p.get("0").getAccuracy() > 0.6);
+	}
+
+	@Test
+	public void testBaggingAndMissingValues() {
+		Random rg = new Random(1);
+		Dataset data = new DefaultDataset();
+		for (int i = 0; i < 400; i++) {
+			double x = rg.nextDouble(), z = rg.nextDouble();
+			double[] values = { x, z, rg.nextInt(5) == 0 ? Double.NaN : rg.nextGaussian() };
+			data.add(new DenseInstance(values, x + z > 1 ? "a" : "b"));
+		}
+		Classifier[] members = new Classifier[5];
+		for (int i = 0; i < members.length; i++)
+			members[i] = new GradientBoostedTrees(40);
+		Bagging bagging = new Bagging(members, Sampling.NormalBootstrapping, 3);
+		bagging.buildClassifier(data);
+		int correct = 0;
+		for (Instance inst : data)
+			if (bagging.classify(inst).equals(inst.classValue()))
+				correct++;
+		Assert.assertTrue(correct > 0.9 * data.size());
+	}
+
+}
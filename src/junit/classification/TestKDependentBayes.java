@@ -0,0 +1,110 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.classification;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.Vector;
+
+import net.sf.javaml.classification.bayes.KDependentBayesClassifier;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class TestKDependentBayes {
+
+	/*
+	 * Feature 1 is a noisy copy of feature 0, the other features only depend
+	 * on the class.
+	 */
+	private static Dataset data(int n, int d, long seed, boolean sparse) {
+		Random rg = new Random(seed);
+		Dataset data = new DefaultDataset();
+		for (int i = 0; i < n; i++) {
+			Instance inst = sparse ? new SparseInstance(d) : new DenseInstance(d);
+			int cls = rg.nextInt(2);
+			double first = (cls + rg.nextInt(2)) % 3;
+			for (int j = 0; j < d; j++) {
+				double v = j == 1 ? (rg.nextInt(10) == 0 ? 2 - first : first) : (cls * j + rg.nextInt(3)) % 3;
+				if (j == 0)
+					v = first;
+				if (!sparse || v != 0)
+					inst.put(j, v);
+			}
+			inst.setClassValue("c" + cls);
+			data.add(inst);
+		}
+		return data;
+	}
+
+	@Test
+	public void testCopiedFeature() {
+		Dataset data = data(300, 6, 1, false);
+		KDependentBayesClassifier kdb = new KDependentBayesClassifier(false, 0.0, new int[] { 1 });
+		kdb.buildClassifier(data);
+		HashMap<Integer, Vector<Integer>> bn = kdb.getBNs()[0];
+		Assert.assertTrue(bn.get(1).contains(0) || bn.get(0).contains(1));
+		kdb.setcurrentWorkingK(1);
+		for (Instance inst : data(50, 6, 2, false))
+			Assert.assertNotNull(kdb.classify(inst));
+	}
+
+	@Test
+	public void testSparse() {
+		int d = 8;
+		Dataset sparse = data(300, d, 3, true);
+		Dataset dense = new DefaultDataset();
+		for (Instance inst : sparse) {
+			Instance copy = new DenseInstance(d);
+			for (int j = 0; j < d; j++)
+				copy.put(j, inst.value(j));
+			copy.setClassValue(inst.classValue());
+			dense.add(copy);
+		}
+		/* absent values are zeros, so both networks are the same */
+		KDependentBayesClassifier a = new KDependentBayesClassifier(true, 0.0, new int[] { 0, 1, 2 });
+		a.buildClassifier(sparse);
+		KDependentBayesClassifier b = new KDependentBayesClassifier(false, 0.0, new int[] { 0, 1, 2 });
+		b.buildClassifier(dense);
+		for (int r = 0; r < 3; r++)
+			Assert.assertEquals(b.getBNs()[r], a.getBNs()[r]);
+	}
+
+	@Test
+	public void testCandidates() {
+		Dataset data = data(200, 10, 4, false);
+		KDependentBayesClassifier all = new KDependentBayesClassifier(false, 0.0, new int[] { 2 });
+		all.buildClassifier(data);
+		KDependentBayesClassifier pruned = new KDependentBayesClassifier(false, 0.0, new int[] { 2 });
+		pruned.setCandidates(3);
+		pruned.setMemoryBudget(1);
+		pruned.buildClassifier(data);
+		HashMap<Integer, Vector<Integer>> bn = pruned.getBNs()[0];
+		/* every parent is one of the three most informative features */
+		Set<Integer> parents = new HashSet<Integer>();
+		for (Vector<Integer> p : bn.values())
+			parents.addAll(p);
+		Assert.assertTrue(parents.size() <= 3);
+		/* the full search is at least as connected */
+		int edges = 0, prunedEdges = 0;
+		for (Vector<Integer> p : all.getBNs()[0].values())
+			edges += p.size();
+		for (Vector<Integer> p : bn.values())
+			prunedEdges += p.size();
+		Assert.assertTrue(prunedEdges <= edges);
+	}
+
+}
@@ -0,0 +1,144 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.classification;
+
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Random;
+
+import net.sf.javaml.classification.bayes.ClassCounter;
+import net.sf.javaml.classification.bayes.NaiveBayesClassifier;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class TestNaiveBayes {
+
+	private static Dataset sparseData(int n, int d, long seed) {
+		Random rg = new Random(seed);
+		Dataset data = new DefaultDataset();
+		for (int i = 0; i < n; i++) {
+			Instance inst = new SparseInstance(d);
+			int cls = rg.nextInt(3);
+			for (int j = 0; j < d; j++) {
+				if (rg.nextInt(3) == 0)
+					inst.put(j, (double) ((cls + j + rg.nextInt(2)) % 3));
+			}
+			inst.setClassValue("c" + cls);
+			data.add(inst);
+		}
+		return data;
+	}
+
+	/* Fills in the absent values of a sparse instance with -1 */
+	private static Instance dense(Instance inst, int d) {
+		Instance out = new DenseInstance(d);
+		for (int j = 0; j < d; j++)
+			out.put(j, inst.containsKey(j) ? inst.value(j) : -1);
+		out.setClassValue(inst.classValue());
+		return out;
+	}
+
+	@Test
+	public void testLaplace() {
+		Dataset data = new DefaultDataset();
+		double[][] x = { { 0, 1 }, { 0, 0 }, { 1, 1 }, { 1, 1 }, { 1, 0 } };
+		String[] y = { "a", "a", "b", "b", "b" };
+		for (int i = 0; i < x.length; i++)
+			data.add(new DenseInstance(x[i], y[i]));
+		NaiveBayesClassifier nb = new NaiveBayesClassifier(true, false, false);
+		nb.buildClassifier(data);
+		Map<Object, Double> dist = nb.classDistribution(new DenseInstance(
+				new double[] { 0, 1 }));
+		/* each feature has two values */
+		double a = 2.0 / 5 * (2 + 1) / (2 + 2) * (1 + 1) / (2 + 2);
+		double b = 3.0 / 5 * (0 + 1) / (3 + 2) * (2 + 1) / (3 + 2);
+		Assert.assertEquals(a / (a + b), dist.get("a"), 1e-12);
+		Assert.assertEquals(b / (a + b), dist.get("b"), 1e-12);
+	}
+
+	@Test
+	public void testSparseAbsentValue() {
+		int d = 12;
+		Dataset data = sparseData(200, d, 3);
+		Dataset filled = new DefaultDataset();
+		for (Instance inst : data)
+			filled.add(dense(inst, d));
+		NaiveBayesClassifier sparse = new NaiveBayesClassifier(true, true, true);
+		sparse.buildClassifier(data);
+		NaiveBayesClassifier dense = new NaiveBayesClassifier(true, true, false);
+		dense.buildClassifier(filled);
+		/* an absent feature counts as a value of its own */
+		for (Instance inst : sparseData(50, d, 4)) {
+			Map<Object, Double> a = sparse.classDistribution(inst);
+			Map<Object, Double> b = dense.classDistribution(dense(inst, d));
+			for (Object o : data.classes())
+				Assert.assertEquals(b.get(o), a.get(o), 1e-9);
+		}
+	}
+
+	@Test
+	public void testUnseenValue() {
+		Dataset data = sparseData(100, 5, 5);
+		NaiveBayesClassifier nb = new NaiveBayesClassifier(true, true, true);
+		nb.buildClassifier(data);
+		Instance known = data.instance(0);
+		Map<Object, Double> before = nb.classDistribution(known);
+		Instance unseen = new SparseInstance(5);
+		unseen.put(0, 42.0);
+		Map<Object, Double> first = nb.classDistribution(unseen);
+		/* classifying does not change the model */
+		Assert.assertEquals(first, nb.classDistribution(unseen));
+		Assert.assertEquals(before, nb.classDistribution(known));
+		double total = 0;
+		for (double p : first.values())
+			total += p;
+		Assert.assertEquals(1, total, 1e-12);
+	}
+
+	@Test
+	public void testManyFeatures() {
+		/* log-likelihoods of many features should not underflow */
+		Dataset data = sparseData(300, 2000, 6);
+		NaiveBayesClassifier nb = new NaiveBayesClassifier(true, true, true);
+		nb.buildClassifier(data);
+		int correct = 0;
+		for (Instance inst : data) {
+			Object o = nb.classify(inst);
+			Assert.assertNotNull(o);
+			if (o.equals(inst.classValue()))
+				correct++;
+		}
+		Assert.assertTrue(correct > 0.9 * data.size());
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testFeatureTable() {
+		Dataset data = sparseData(60, 4, 7);
+		NaiveBayesClassifier nb = new NaiveBayesClassifier(true, true, true);
+		nb.buildClassifier(data);
+		Hashtable<Integer, Hashtable<Double, ClassCounter>> table = nb
+				.getFeatureTable();
+		Assert.assertEquals(4, table.size());
+		for (Integer feature : table.keySet()) {
+			int total = 0;
+			for (ClassCounter cc : table.get(feature).values())
+				total += cc.getClassInstanceIDLists().size();
+			/* every instance has exactly one value, absent included */
+			Assert.assertEquals(data.size(), total);
+		}
+	}
+
+}
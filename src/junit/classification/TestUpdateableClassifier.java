@@ -0,0 +1,184 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.classification;
+
+import java.util.Map;
+import java.util.Random;
+
+import net.sf.javaml.classification.KDtreeKNN;
+import net.sf.javaml.classification.KNearestNeighbors;
+import net.sf.javaml.classification.NearestMeanClassifier;
+import net.sf.javaml.classification.UpdateableClassifier;
+import net.sf.javaml.classification.bayes.NaiveBayesClassifier;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Updating a classifier should give the same classifier as training it again.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class TestUpdateableClassifier {
+
+	private static Dataset discrete(int n, int d, long seed, boolean sparse) {
+		Random rg = new Random(seed);
+		Dataset data = new DefaultDataset();
+		for (int i = 0; i < n; i++) {
+			Instance inst = sparse ? new SparseInstance(d) : new DenseInstance(d);
+			int cls = rg.nextInt(3);
+			for (int j = 0; j < d; j++) {
+				double v = (cls + j + rg.nextInt(3)) % 4;
+				if (!sparse || rg.nextInt(3) == 0)
+					inst.put(j, v);
+			}
+			inst.setClassValue("c" + cls);
+			data.add(inst);
+		}
+		return data;
+	}
+
+	private static Dataset continuous(int n, int d, long seed) {
+		Random rg = new Random(seed);
+		Dataset data = new DefaultDataset();
+		for (int i = 0; i < n; i++) {
+			int cls = rg.nextInt(3);
+			double[] x = new double[d];
+			for (int j = 0; j < d; j++)
+				x[j] = cls + rg.nextGaussian();
+			data.add(new DenseInstance(x, "c" + cls));
+		}
+		return data;
+	}
+
+	private static Dataset join(Dataset a, Dataset b) {
+		Dataset out = new DefaultDataset(a);
+		out.addAll(b);
+		return out;
+	}
+
+	private static void assertSame(UpdateableClassifier expected, UpdateableClassifier actual, Dataset test) {
+		for (Instance inst : test) {
+			Map<Object, Double> e = expected.classDistribution(inst);
+			Map<Object, Double> a = actual.classDistribution(inst);
+			for (Object o : e.keySet())
+				Assert.assertEquals(e.get(o), a.get(o) == null ? 0 : a.get(o), 1e-9);
+			for (Object o : a.keySet())
+				Assert.assertEquals(a.get(o), e.get(o) == null ? 0 : e.get(o), 1e-9);
+		}
+	}
+
+	/*
+	 * Builds one classifier on a, updates it with b and forgets the first
+	 * instance of a, and builds the other on the remaining data.
+	 */
+	private static void check(UpdateableClassifier updated, UpdateableClassifier built, Dataset a, Dataset b,
+			Dataset test) {
+		updated.buildClassifier(a);
+		updated.update(b);
+		built.buildClassifier(join(a, b));
+		assertSame(built, updated, test);
+
+		Instance first = a.instance(0);
+		updated.forget(first);
+		Dataset rest = join(a, b);
+		rest.remove(first);
+		built.buildClassifier(rest);
+		assertSame(built, updated, test);
+	}
+
+	@Test
+	public void testNaiveBayes() {
+		for (boolean sparse : new boolean[] { false, true }) {
+			Dataset a = discrete(80, 10, 1, sparse);
+			Dataset b = discrete(40, 14, 2, sparse);
+			Dataset test = discrete(30, 16, 3, sparse);
+			check(new NaiveBayesClassifier(true, true, sparse), new NaiveBayesClassifier(true, true, sparse), a,
+					b, test);
+		}
+	}
+
+	@Test
+	public void testNaiveBayesFromEmpty() {
+		Dataset data = discrete(60, 8, 4, true);
+		NaiveBayesClassifier updated = new NaiveBayesClassifier(true, true, true);
+		for (Instance inst : data)
+			updated.update(inst);
+		NaiveBayesClassifier built = new NaiveBayesClassifier(true, true, true);
+		built.buildClassifier(data);
+		assertSame(built, updated, discrete(30, 8, 5, true));
+	}
+
+	@Test
+	public void testNearestNeighbors() {
+		Dataset a = continuous(60, 4, 6);
+		Dataset b = continuous(30, 4, 7);
+		Dataset test = continuous(30, 4, 8);
+		check(new KNearestNeighbors(5), new KNearestNeighbors(5), a, b, test);
+		check(new KDtreeKNN(5), new KDtreeKNN(5), a, b, test);
+	}
+
+	@Test
+	public void testNearestMean() {
+		Dataset a = continuous(60, 4, 9);
+		Dataset b = continuous(30, 4, 10);
+		check(new NearestMeanClassifier(), new NearestMeanClassifier(), a, b, continuous(30, 4, 11));
+	}
+
+	@Test
+	public void testKDTreeDuplicates() {
+		Dataset data = continuous(20, 3, 14);
+		Instance copy = data.instance(0).copy();
+		KDtreeKNN knn = new KDtreeKNN(3);
+		knn.buildClassifier(data);
+		/* the same point again is kept after forgetting the first instance */
+		knn.update(copy);
+		knn.forget(data.instance(0));
+		Dataset rest = data.copy();
+		rest.remove(0);
+		rest.add(copy);
+		KDtreeKNN built = new KDtreeKNN(3);
+		built.buildClassifier(rest);
+		Dataset test = continuous(30, 3, 15);
+		test.add(copy);
+		assertSame(built, knn, test);
+		/* until the duplicate is forgotten as well */
+		knn.forget(copy);
+		try {
+			knn.forget(copy);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		rest.remove(rest.size() - 1);
+		built.buildClassifier(rest);
+		assertSame(built, knn, test);
+	}
+
+	@Test
+	public void testForgetUnknown() {
+		Dataset data = continuous(20, 3, 12);
+		Instance other = continuous(1, 3, 13).instance(0);
+		UpdateableClassifier[] all = { new NaiveBayesClassifier(true, true, false), new KNearestNeighbors(3),
+				new KDtreeKNN(3) };
+		for (UpdateableClassifier c : all) {
+			c.buildClassifier(data);
+			try {
+				c.forget(other);
+				Assert.fail();
+			} catch (IllegalArgumentException e) {
+				/* expected */
+			}
+			/* the classifier is unchanged */
+			Assert.assertNotNull(c.classify(data.instance(0)));
+		}
+	}
+
+}
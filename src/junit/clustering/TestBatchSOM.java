@@ -0,0 +1,45 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.clustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import net.sf.javaml.clustering.BatchSOM;
+import net.sf.javaml.clustering.SOM.GridType;
+import net.sf.javaml.clustering.SOM.NeighbourhoodFunction;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.tools.data.FileHandler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBatchSOM {
+
+    /**
+     * Tests that every instance ends up in exactly one cluster.
+     */
+    @Test
+    public void testBatchSOM() {
+        try {
+            Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+            for (NeighbourhoodFunction nbf : NeighbourhoodFunction.values()) {
+                BatchSOM som = new BatchSOM(4, 3, GridType.HEXAGONAL, 50, 3, nbf, new Random(7));
+                Dataset[] clusters = som.cluster(data);
+                Assert.assertTrue(clusters.length > 1);
+                Assert.assertTrue(clusters.length <= 12);
+                int total = 0;
+                for (Dataset c : clusters) {
+                    Assert.assertTrue(c.size() > 0);
+                    total += c.size();
+                }
+                Assert.assertEquals(data.size(), total);
+                Assert.assertEquals(12, som.weights().length);
+            }
+        } catch (IOException e) {
+            Assert.assertTrue(false);
+        }
+    }
+}
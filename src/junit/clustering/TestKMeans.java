@@ -5,20 +5,75 @@ package junit.clustering;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sf.javaml.clustering.Clusterer;
 import net.sf.javaml.clustering.KMeans;
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
 import net.sf.javaml.core.SparseInstance;
 import net.sf.javaml.distance.EuclideanDistance;
 import net.sf.javaml.tools.data.FileHandler;
+import net.sf.javaml.utils.ParallelContext;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 public class TestKMeans {
 
+	/**
+	 * Tests that the distance measure is only called from several threads
+	 * when it is declared thread safe.
+	 */
+	@Test
+	public void testThreadSafeDistance() {
+		Random rg = new Random(4);
+		Dataset data = new DefaultDataset();
+		for (int i = 0; i < 4000; i++)
+			data.add(new DenseInstance(new double[] { rg.nextDouble(), rg.nextDouble() }));
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		EuclideanDistance dm = new EuclideanDistance() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double measure(Instance x, Instance y) {
+				threads.add(Thread.currentThread());
+				return super.measure(x, y);
+			}
+		};
+		/* counts the helpers, the calling thread may do all chunks itself */
+		final AtomicInteger helpers = new AtomicInteger();
+		ThreadPoolExecutor exec = new ThreadPoolExecutor(3, 3, 0, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>()) {
+			@Override
+			public void execute(Runnable command) {
+				helpers.incrementAndGet();
+				super.execute(command);
+			}
+		};
+		try {
+			KMeans km = new KMeans(3, 5, dm);
+			km.setParallelContext(new ParallelContext(exec, 4));
+			km.cluster(data);
+			Assert.assertEquals(Collections.singleton(Thread.currentThread()), threads);
+			Assert.assertEquals(0, helpers.get());
+			km.setThreadSafeDistance(true);
+			km.cluster(data);
+			Assert.assertTrue(helpers.get() > 0);
+		} finally {
+			exec.shutdown();
+		}
+	}
+
 	/**
 	 * Test endless loop
 	 */
@@ -0,0 +1,115 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.distance.CachedDistance;
+import net.sf.javaml.distance.EuclideanDistance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCachedDistance {
+
+    /* Counts the number of calculated distances */
+    private static class CountingDistance extends EuclideanDistance {
+
+        private static final long serialVersionUID = 1L;
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public double measure(Instance x, Instance y) {
+            count.incrementAndGet();
+            return super.measure(x, y);
+        }
+    }
+
+    private static List<Instance> random(int n) {
+        Random rg = new Random(3);
+        List<Instance> out = new ArrayList<Instance>();
+        for (int i = 0; i < n; i++)
+            out.add(new DenseInstance(new double[] { rg.nextDouble(), rg.nextDouble() }));
+        return out;
+    }
+
+    @Test
+    public void testSymmetricHits() {
+        CountingDistance dm = new CountingDistance();
+        CachedDistance cd = new CachedDistance(dm);
+        List<Instance> data = random(50);
+        for (Instance x : data)
+            for (Instance y : data)
+                Assert.assertEquals(dm.measure(x, y), cd.measure(x, y), 0);
+        /* Half of the matrix and the diagonal should have been calculated */
+        Assert.assertEquals(50 * 51 / 2, cd.misses());
+        Assert.assertEquals(50 * 50 - 50 * 51 / 2, cd.hits());
+        Assert.assertEquals(50 * 51 / 2, cd.size());
+        Assert.assertEquals(0, cd.evictions());
+    }
+
+    @Test
+    public void testGrow() {
+        /* the segments grow from a small table, nothing may get lost */
+        CachedDistance cd = new CachedDistance(new EuclideanDistance());
+        List<Instance> data = random(300);
+        for (int r = 0; r < 2; r++)
+            for (Instance x : data)
+                for (Instance y : data)
+                    cd.measure(x, y);
+        Assert.assertEquals(300 * 301 / 2, cd.size());
+        Assert.assertEquals(300 * 301 / 2, cd.misses());
+        Assert.assertEquals(0, cd.evictions());
+    }
+
+    @Test
+    public void testBounded() {
+        CachedDistance cd = new CachedDistance(new EuclideanDistance(), 100);
+        List<Instance> data = random(100);
+        for (int r = 0; r < 3; r++)
+            for (Instance x : data)
+                for (Instance y : data)
+                    Assert.assertEquals(x.value(0) == y.value(0) ? 0 : new EuclideanDistance().measure(x, y), cd
+                            .measure(x, y), 0);
+        Assert.assertTrue(cd.size() <= 112);
+        Assert.assertEquals(cd.misses() - cd.size(), cd.evictions());
+        cd.clear();
+        Assert.assertEquals(0, cd.size());
+        Assert.assertEquals(0, cd.hits());
+    }
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        final CachedDistance cd = new CachedDistance(new EuclideanDistance(), 500);
+        final List<Instance> data = random(80);
+        final EuclideanDistance ed = new EuclideanDistance();
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final Random rg = new Random(t);
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int k = 0; k < 20000; k++) {
+                        Instance x = data.get(rg.nextInt(data.size()));
+                        Instance y = data.get(rg.nextInt(data.size()));
+                        if (cd.measure(x, y) != ed.measure(x, y))
+                            errors.incrementAndGet();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(4 * 20000, cd.hits() + cd.misses());
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.distance;
+
+import java.util.Random;
+import java.util.Set;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.distance.AbstractDistance;
+import net.sf.javaml.distance.dtw.DTWDistance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDTWDistance {
+
+    /* Straightforward full matrix DTW as reference */
+    private static double naive(double[] a, double[] b, int w) {
+        double[][] d = new double[a.length][b.length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < b.length; j++) {
+                double cost = (a[i] - b[j]) * (a[i] - b[j]);
+                if (w >= 0 && Math.abs(i - j) > w)
+                    d[i][j] = Double.POSITIVE_INFINITY;
+                else if (i == 0 && j == 0)
+                    d[i][j] = cost;
+                else {
+                    double best = Double.POSITIVE_INFINITY;
+                    if (i > 0)
+                        best = Math.min(best, d[i - 1][j]);
+                    if (j > 0)
+                        best = Math.min(best, d[i][j - 1]);
+                    if (i > 0 && j > 0)
+                        best = Math.min(best, d[i - 1][j - 1]);
+                    d[i][j] = cost + best;
+                }
+            }
+        }
+        return Math.sqrt(d[a.length - 1][b.length - 1]);
+    }
+
+    private static double[] randomWalk(Random rg, int length) {
+        double[] out = new double[length];
+        for (int i = 1; i < length; i++)
+            out[i] = out[i - 1] + rg.nextGaussian();
+        return out;
+    }
+
+    @Test
+    public void testExact() {
+        Random rg = new Random(3);
+        for (int w : new int[] { -1, 0, 2, 5 }) {
+            DTWDistance dtw = new DTWDistance(w);
+            for (int t = 0; t < 50; t++) {
+                double[] a = randomWalk(rg, 30);
+                double[] b = randomWalk(rg, 30);
+                Instance x = new DenseInstance(a);
+                Instance y = new DenseInstance(b);
+                double exact = naive(a, b, w);
+                Assert.assertEquals(exact, dtw.measure(x, y), 1e-9);
+                Assert.assertTrue(dtw.lowerBoundKim(x, y) <= exact + 1e-9);
+                Assert.assertTrue(dtw.lowerBoundKeogh(x, y) <= exact + 1e-9);
+                /* A bound below the distance abandons, a bound above does not */
+                Assert.assertTrue(dtw.measure(x, y, exact * 0.9) >= exact * 0.9);
+                Assert.assertEquals(exact, dtw.measure(x, y, exact * 1.1), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testDifferentLength() {
+        Random rg = new Random(5);
+        DTWDistance dtw = new DTWDistance(2);
+        double[] a = randomWalk(rg, 20);
+        double[] b = randomWalk(rg, 26);
+        Assert.assertEquals(naive(a, b, 6), dtw.measure(new DenseInstance(a), new DenseInstance(b)), 1e-9);
+    }
+
+    @Test
+    public void testKNearest() {
+        Random rg = new Random(11);
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < 200; i++)
+            data.add(new DenseInstance(randomWalk(rg, 40)));
+        final DTWDistance dtw = new DTWDistance(4);
+        /* Same measure, but without pruning */
+        AbstractDistance plain = new AbstractDistance() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public double measure(Instance x, Instance y) {
+                return dtw.measure(x, y);
+            }
+        };
+        for (int q = 0; q < 10; q++) {
+            Instance query = new DenseInstance(randomWalk(rg, 40));
+            Set<Instance> pruned = data.kNearest(5, query, dtw);
+            Set<Instance> full = data.kNearest(5, query, plain);
+            Assert.assertEquals(full, pruned);
+        }
+    }
+}
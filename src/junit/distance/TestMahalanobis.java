@@ -0,0 +1,85 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.distance;
+
+import java.util.Random;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.distance.MahalanobisDistance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Jama.Matrix;
+
+public class TestMahalanobis {
+
+    private static Dataset correlated(Random rg, int n, int d) {
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < n; i++) {
+            double[] v = new double[d];
+            double base = rg.nextGaussian();
+            for (int j = 0; j < d; j++)
+                v[j] = base * (j + 1) + rg.nextGaussian();
+            data.add(new DenseInstance(v));
+        }
+        return data;
+    }
+
+    @Test
+    public void testSameAsInverse() {
+        Random rg = new Random(11);
+        int d = 40;
+        Dataset data = correlated(rg, 300, d);
+        Matrix x = new Matrix(data.size(), d);
+        for (int i = 0; i < data.size(); i++)
+            for (int j = 0; j < d; j++)
+                x.set(i, j, data.instance(i).value(j));
+        Matrix mean = new Matrix(1, data.size(), 1.0 / data.size()).times(x);
+        Matrix centered = x.minus(new Matrix(data.size(), 1, 1).times(mean));
+        Matrix inverse = centered.transpose().times(centered).times(1.0 / (data.size() - 1)).inverse();
+
+        MahalanobisDistance md = new MahalanobisDistance(data);
+        Dataset whitened = md.whiten(data);
+        EuclideanDistance ed = new EuclideanDistance();
+        for (int t = 0; t < 20; t++) {
+            int a = rg.nextInt(data.size()), b = rg.nextInt(data.size());
+            Matrix diff = new Matrix(d, 1);
+            for (int j = 0; j < d; j++)
+                diff.set(j, 0, data.instance(a).value(j) - data.instance(b).value(j));
+            double expected = Math.sqrt(diff.transpose().times(inverse).times(diff).get(0, 0));
+            Assert.assertEquals(expected, md.measure(data.instance(a), data.instance(b)), 1e-8);
+            Assert.assertEquals(expected, ed.measure(whitened.instance(a), whitened.instance(b)), 1e-8);
+        }
+    }
+
+    @Test
+    public void testShrinkage() {
+        Random rg = new Random(13);
+        /* More attributes than instances, the covariance is singular */
+        Dataset data = correlated(rg, 20, 50);
+        try {
+            new MahalanobisDistance(data);
+            Assert.fail("The covariance should not be positive definite");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        MahalanobisDistance md = new MahalanobisDistance(data, 0.1);
+        Instance x = data.instance(0), y = data.instance(1);
+        Assert.assertEquals(0, md.measure(x, x), 0);
+        Assert.assertTrue(md.measure(x, y) > 0);
+        Assert.assertEquals(md.measure(x, y), md.measure(y, x), 1e-9);
+    }
+
+    @Test
+    public void testIdentity() {
+        Instance x = new DenseInstance(new double[] { 1, 2, 3 });
+        Instance y = new DenseInstance(new double[] { 4, 6, 3 });
+        Assert.assertEquals(5, new MahalanobisDistance().measure(x, y), 1e-12);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.distance;
+
+import java.util.Random;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+import net.sf.javaml.distance.NormalizedEuclideanDistance;
+import net.sf.javaml.tools.AttributeStatistics;
+import net.sf.javaml.tools.DatasetTools;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestNormalizedEuclidean {
+
+    /* Distance after normalizing both instances with the full data set */
+    private static double expected(Dataset data, Instance x, Instance y) {
+        Instance min = DatasetTools.minAttributes(data);
+        Instance max = DatasetTools.maxAttributes(data);
+        double sum = 0;
+        for (int i = 0; i < x.noAttributes(); i++) {
+            double range = max.value(i) - min.value(i);
+            double d = (x.value(i) - y.value(i)) / range;
+            sum += d * d;
+        }
+        return Math.sqrt(sum / x.noAttributes());
+    }
+
+    @Test
+    public void testIncremental() {
+        Random rg = new Random(7);
+        Dataset data = new DefaultDataset();
+        NormalizedEuclideanDistance dm = new NormalizedEuclideanDistance(data);
+        for (int k = 0; k < 50; k++) {
+            data.add(new DenseInstance(new double[] { rg.nextDouble(), 10 * rg.nextGaussian(), k }));
+            if (k < 2)
+                continue;
+            Instance x = data.instance(rg.nextInt(data.size()));
+            Instance y = data.instance(rg.nextInt(data.size()));
+            Assert.assertEquals(expected(data, x, y), dm.measure(x, y), 1e-12);
+            Assert.assertTrue(dm.measure(x, y) <= 1);
+        }
+        /* Values changed in place are only seen after a refresh */
+        data.instance(0).put(0, 100.0);
+        dm.refresh();
+        Assert.assertEquals(expected(data, data.instance(0), data.instance(1)), dm.measure(data.instance(0), data
+                .instance(1)), 1e-12);
+    }
+
+    @Test
+    public void testStatistics() {
+        Dataset data = new DefaultDataset();
+        data.add(new DenseInstance(new double[] { 1, 4 }));
+        data.add(new DenseInstance(new double[] { 3, Double.NaN }));
+        data.add(new DenseInstance(new double[] { 5, 8 }));
+        AttributeStatistics stats = new AttributeStatistics(data);
+        Assert.assertEquals(1, stats.min(0), 0);
+        Assert.assertEquals(5, stats.max(0), 0);
+        Assert.assertEquals(3, stats.midrange(0), 0);
+        Assert.assertEquals(3, stats.mean(0), 1e-12);
+        Assert.assertEquals(Math.sqrt(8.0 / 3), stats.standardDeviation(0), 1e-12);
+        Assert.assertEquals(2, stats.count(1));
+        Assert.assertEquals(6, stats.mean(1), 1e-12);
+        Assert.assertEquals(4, stats.range(1), 0);
+    }
+
+    @Test
+    public void testSparseStatistics() {
+        /* sparse instances should give the same statistics as dense ones */
+        Random rg = new Random(3);
+        AttributeStatistics dense = new AttributeStatistics(), sparse = new AttributeStatistics();
+        for (int k = 0; k < 200; k++) {
+            double[] values = new double[20];
+            for (int i = 0; i < 5; i++)
+                values[rg.nextInt(20)] = rg.nextGaussian();
+            if (k == 100)
+                values[4] = Double.NaN;
+            /* a different default value starts a new batch */
+            double def = k % 50 == 49 ? 2 : 0;
+            SparseInstance si = new SparseInstance(20, def);
+            for (int i = 0; i < 20; i++)
+                if (values[i] != 0)
+                    si.put(i, values[i]);
+                else
+                    values[i] = def;
+            dense.add(new DenseInstance(values));
+            sparse.add(si);
+            if (k == 120) {
+                Assert.assertEquals(dense.mean(3), sparse.mean(3), 1e-12);
+                Assert.assertEquals(dense.count(4), sparse.count(4));
+            }
+        }
+        Assert.assertEquals(dense.size(), sparse.size());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(dense.count(i), sparse.count(i));
+            Assert.assertEquals(dense.min(i), sparse.min(i), 0);
+            Assert.assertEquals(dense.max(i), sparse.max(i), 0);
+            Assert.assertEquals(dense.mean(i), sparse.mean(i), 1e-12);
+            Assert.assertEquals(dense.standardDeviation(i), sparse.standardDeviation(i), 1e-12);
+        }
+    }
+}
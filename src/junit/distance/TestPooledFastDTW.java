@@ -0,0 +1,57 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.distance;
+
+import java.util.Random;
+
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.distance.fastdtw.FastDTW;
+import net.sf.javaml.distance.fastdtw.dtw.PooledFastDTW;
+import net.sf.javaml.distance.fastdtw.timeseries.ArrayTimeSeries;
+import net.sf.javaml.distance.fastdtw.timeseries.TimeSeries;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPooledFastDTW {
+
+    private static double[] randomWalk(Random rg, int length) {
+        double[] out = new double[length];
+        for (int i = 1; i < length; i++)
+            out[i] = out[i - 1] + rg.nextGaussian();
+        return out;
+    }
+
+    /**
+     * The pooled implementation should give the same distance as the object
+     * based one, also when the pool is reused for series of other lengths.
+     */
+    @Test
+    public void testSameAsTimeSeries() {
+        Random rg = new Random(17);
+        for (int radius : new int[] { 0, 1, 2, 5 }) {
+            PooledFastDTW pooled = new PooledFastDTW(radius);
+            for (int t = 0; t < 30; t++) {
+                Instance a = new DenseInstance(randomWalk(rg, 5 + rg.nextInt(200)));
+                Instance b = new DenseInstance(randomWalk(rg, 5 + rg.nextInt(200)));
+                double expected = net.sf.javaml.distance.fastdtw.dtw.FastDTW.getWarpDistBetween(new TimeSeries(a),
+                        new TimeSeries(b), radius);
+                double actual = pooled.distance(new ArrayTimeSeries(a), new ArrayTimeSeries(b));
+                Assert.assertEquals(expected, actual, 1e-9 * Math.max(1, expected));
+            }
+        }
+    }
+
+    @Test
+    public void testMeasure() {
+        Random rg = new Random(19);
+        FastDTW fdtw = new FastDTW(2);
+        Instance a = new DenseInstance(randomWalk(rg, 100));
+        Instance b = new DenseInstance(randomWalk(rg, 80));
+        Assert.assertEquals(0, fdtw.measure(a, a), 1e-12);
+        Assert.assertEquals(fdtw.measure(a, b), fdtw.measure(a, b), 0);
+        Assert.assertTrue(fdtw.measure(a, b) > 0);
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.filter;
+
+import java.util.Random;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.filter.DatasetFilter;
+import net.sf.javaml.filter.FilterPipeline;
+import net.sf.javaml.filter.discretize.EqualWidthBinning;
+import net.sf.javaml.filter.missingvalue.ReplaceWithValue;
+import net.sf.javaml.filter.normalize.NormalizeMean;
+import net.sf.javaml.filter.normalize.NormalizeMeanIQR135;
+import net.sf.javaml.filter.normalize.NormalizeMidrange;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFilterPipeline {
+
+    private static Dataset random(int n, int d) {
+        Random rg = new Random(21);
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < n; i++) {
+            double[] v = new double[d];
+            for (int j = 0; j < d; j++)
+                v[j] = rg.nextInt(20) == 0 ? Double.NaN : 100 * j + rg.nextGaussian() * (j + 1);
+            /* One constant attribute */
+            v[0] = 3;
+            data.add(new DenseInstance(v, i % 2));
+        }
+        return data;
+    }
+
+    private static void assertSame(Dataset expected, Dataset actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            for (int j = 0; j < expected.noAttributes(); j++)
+                Assert.assertEquals(expected.instance(i).value(j), actual.instance(i).value(j), 1e-9);
+    }
+
+    /**
+     * The pipeline should give the same result as applying the filters one by
+     * one.
+     */
+    @Test
+    public void testSameAsSequential() {
+        Dataset expected = random(500, 8);
+        Dataset actual = expected.copy();
+        DatasetFilter[] sequential = { new ReplaceWithValue(0), new NormalizeMean(), new NormalizeMidrange(0.5, 1),
+                new NormalizeMidrange(), new EqualWidthBinning(5), new NormalizeMidrange(0, 2) };
+        for (DatasetFilter f : sequential)
+            f.filter(expected);
+        new FilterPipeline(new ReplaceWithValue(0), new NormalizeMean(), new NormalizeMidrange(0.5, 1),
+                new NormalizeMidrange(), new EqualWidthBinning(5), new NormalizeMidrange(0, 2)).filter(actual);
+        assertSame(expected, actual);
+    }
+
+    @Test
+    public void testBuildThenFilter() {
+        Dataset expected = random(300, 5);
+        Dataset actual = expected.copy();
+        Dataset other = random(300, 5);
+        new ReplaceWithValue(0).filter(expected);
+        new NormalizeMeanIQR135().filter(expected);
+        new NormalizeMidrange().filter(expected);
+
+        FilterPipeline pipeline = new FilterPipeline(new ReplaceWithValue(0), new NormalizeMeanIQR135(),
+                new NormalizeMidrange());
+        pipeline.build(other);
+        /* Building does not modify the data */
+        assertSame(random(300, 5), other);
+        pipeline.filter(actual);
+        assertSame(expected, actual);
+
+        DenseInstance single = (DenseInstance) random(1, 5).instance(0);
+        pipeline.filter(single);
+        for (int j = 0; j < 5; j++)
+            Assert.assertEquals(actual.instance(0).value(j), single.value(j), 1e-9);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.filter;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.filter.AbstractFilter;
+import net.sf.javaml.filter.discretize.FourBinMinimalEntropyPartitioning;
+import net.sf.javaml.filter.discretize.RecursiveMinimalEntropyPartitioning;
+import net.sf.javaml.filter.discretize.ThreeBinMinimalEntropyPartitioning;
+import net.sf.javaml.filter.discretize.TwoBinMinimalEntropyPartitioning;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestMinimalEntropyPartitioning {
+
+    /* The class changes at values 20 and 50 */
+    private static Dataset data() {
+        Dataset data = new DefaultDataset();
+        for (int r = 0; r < 3; r++)
+            for (int v = 0; v < 100; v++)
+                data.add(new DenseInstance(new double[] { v, (v * 37) % 100 }, v < 20 ? "a" : v < 50 ? "b" : "c"));
+        return data;
+    }
+
+    private static void check(AbstractFilter f, int[] expected) {
+        Dataset data = data();
+        f.build(data);
+        f.filter(data);
+        for (int v = 0; v < 100; v++)
+            Assert.assertEquals(expected[v], data.instance(v).value(0), 0);
+        Instance single = new DenseInstance(new double[] { 55, 0 });
+        f.filter(single);
+        Assert.assertEquals(expected[55], single.value(0), 0);
+    }
+
+    private static int[] bins(int... borders) {
+        int[] out = new int[100];
+        for (int v = 0; v < 100; v++)
+            for (int b : borders)
+                if (v >= b)
+                    out[v]++;
+        return out;
+    }
+
+    @Test
+    public void testThreeBins() {
+        check(new ThreeBinMinimalEntropyPartitioning(false), bins(20, 50));
+        check(new RecursiveMinimalEntropyPartitioning(false), bins(20, 50));
+    }
+
+    @Test
+    public void testTwoBins() {
+        int[] expected = bins(50);
+        check(new TwoBinMinimalEntropyPartitioning(false), expected);
+    }
+
+    @Test
+    public void testFourBins() {
+        Dataset data = data();
+        FourBinMinimalEntropyPartitioning f = new FourBinMinimalEntropyPartitioning(false);
+        f.build(data);
+        f.filter(data);
+        /* Both class borders are kept, the third border splits a pure bin */
+        for (int v = 1; v < 100; v++) {
+            if (v == 20 || v == 50)
+                Assert.assertTrue(data.instance(v).value(0) > data.instance(v - 1).value(0));
+        }
+        Assert.assertEquals(3, data.instance(99).value(0), 0);
+    }
+}
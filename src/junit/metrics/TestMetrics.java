@@ -0,0 +1,114 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.javaml.classification.Classifier;
+import net.sf.javaml.classification.KNearestNeighbors;
+import net.sf.javaml.clustering.KMeans;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.metrics.InMemoryRegistry;
+import net.sf.javaml.metrics.Instrumented;
+import net.sf.javaml.metrics.Metrics;
+import net.sf.javaml.metrics.MetricsExporter;
+import net.sf.javaml.tools.data.FileHandler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestMetrics {
+
+    /**
+     * Tests that nothing is measured without a registry.
+     */
+    @Test
+    public void testDisabled() {
+        Metrics.setRegistry(null);
+        Assert.assertFalse(Metrics.enabled());
+        Assert.assertEquals(0, Metrics.start());
+        Metrics.count("a", 1);
+        Metrics.stop("b", 0);
+        Metrics.record("c", 1);
+    }
+
+    /**
+     * Tests the metrics of the instrumented clustering and search.
+     */
+    @Test
+    public void testInstrumentation() throws IOException {
+        Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+        InMemoryRegistry registry = new InMemoryRegistry();
+        Metrics.setRegistry(registry);
+        try {
+            new KMeans(3, 20).cluster(data);
+            Assert.assertEquals(1, registry.calls("kmeans.cluster"));
+            long iterations = registry.count("kmeans.iterations");
+            Assert.assertTrue(iterations > 0 && iterations <= 20);
+
+            data.kNearest(5, data.instance(0), new EuclideanDistance());
+            Assert.assertEquals(1, registry.calls("dataset.kNearest"));
+            Assert.assertEquals(data.size(), registry.count("dataset.kNearest.distances"));
+        } finally {
+            Metrics.setRegistry(null);
+        }
+    }
+
+    /**
+     * Tests the wrappers and the export of the values.
+     */
+    @Test
+    public void testInstrumented() throws IOException {
+        Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+        InMemoryRegistry registry = new InMemoryRegistry();
+        Metrics.setRegistry(registry);
+        try {
+            DistanceMeasure dm = Instrumented.distance(new EuclideanDistance(), "euclid");
+            Classifier knn = Instrumented.classifier(new KNearestNeighbors(3, dm), "knn");
+            knn.buildClassifier(data);
+            for (int i = 0; i < 10; i++)
+                Assert.assertEquals(data.instance(i).classValue(), knn.classify(data.instance(i)));
+            Assert.assertEquals(1, registry.calls("knn.build"));
+            Assert.assertEquals(10, registry.calls("knn.classify"));
+            Assert.assertTrue(registry.count("euclid.evaluations") >= 10 * data.size());
+            Metrics.record("values", 2);
+            Metrics.record("values", 4);
+
+            final List<String> names = new ArrayList<String>();
+            registry.export(new MetricsExporter() {
+                @Override
+                public void counter(String name, long count) {
+                    names.add(name);
+                }
+
+                @Override
+                public void timer(String name, long count, long totalNanos, long maxNanos) {
+                    names.add(name);
+                    Assert.assertTrue(maxNanos <= totalNanos);
+                }
+
+                @Override
+                public void histogram(String name, long count, double sum, double min, double max) {
+                    names.add(name);
+                    Assert.assertEquals(2, count);
+                    Assert.assertEquals(6, sum, 0);
+                    Assert.assertEquals(2, min, 0);
+                    Assert.assertEquals(4, max, 0);
+                }
+            });
+            Assert.assertTrue(names.contains("euclid.evaluations"));
+            Assert.assertTrue(names.contains("knn.classify"));
+            Assert.assertTrue(names.contains("values"));
+            registry.clear();
+            Assert.assertEquals(0, registry.count("euclid.evaluations"));
+        } finally {
+            Metrics.setRegistry(null);
+        }
+    }
+}
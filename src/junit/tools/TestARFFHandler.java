@@ -5,13 +5,26 @@ package junit.tools;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
 
 import junit.framework.Assert;
 import libsvm.LibSVM;
 
 import net.sf.javaml.classification.evaluation.CrossValidation;
 import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
 import net.sf.javaml.tools.data.ARFFHandler;
+import net.sf.javaml.tools.data.ARFFHeader;
+import net.sf.javaml.tools.data.ARFFReader;
+import net.sf.javaml.tools.data.ARFFWriter;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
 
 import org.junit.Test;
 
@@ -34,4 +47,125 @@ public class TestARFFHandler {
             Assert.assertTrue(false);
         }
     }
+
+    private static File write(String content) throws IOException {
+        File file = File.createTempFile("javaml", ".arff");
+        file.deleteOnExit();
+        PrintWriter out = new PrintWriter(new FileOutputStream(file));
+        out.print(content);
+        out.close();
+        return file;
+    }
+
+    @Test
+    public void testNominalAndSparse() throws IOException {
+        File file = write("% comment\n@relation test\n@attribute x numeric\n"
+                + "@attribute color {red, 'dark green', blue}\n@attribute note string\n"
+                + "@attribute class {yes,no}\n\n@DATA\n1.5, blue, 'a b', no\n"
+                + "?, 'dark green', a, ?\r\n% another comment\n{0 -2e3, 2 c}\n{1 red,3 no}");
+        ARFFReader in = new ARFFReader(file, 3);
+        Dataset data = in.readAll();
+        in.close();
+        Assert.assertEquals(4, data.size());
+        Assert.assertEquals(3, data.noAttributes());
+
+        Instance first = data.get(0);
+        Assert.assertTrue(first instanceof DenseInstance);
+        Assert.assertEquals(1.5, first.value(0));
+        Assert.assertEquals(2.0, first.value(1));
+        Assert.assertEquals(0.0, first.value(2));
+        Assert.assertEquals("no", first.classValue());
+
+        Instance second = data.get(1);
+        Assert.assertTrue(Double.isNaN(second.value(0)));
+        Assert.assertEquals(1.0, second.value(1));
+        Assert.assertEquals(1.0, second.value(2));
+        Assert.assertNull(second.classValue());
+
+        /* omitted values of sparse rows are zero, the first nominal value */
+        Instance third = data.get(2);
+        Assert.assertTrue(third instanceof SparseInstance);
+        Assert.assertEquals(-2000.0, third.value(0));
+        Assert.assertEquals(0.0, third.value(1));
+        Assert.assertEquals(2.0, third.value(2));
+        Assert.assertEquals("yes", third.classValue());
+        Assert.assertEquals("no", data.get(3).classValue());
+        Assert.assertEquals(3, in.header().noValues(2));
+        Assert.assertEquals("c", in.header().value(2, 2));
+    }
+
+    @Test
+    public void testOmittedStringClass() throws IOException {
+        /* an omitted string class is its first value */
+        File file = write("@relation test\n@attribute x numeric\n@attribute class string\n@data\n"
+                + "{0 1}\n1,a\n{0 2,1 b}\n");
+        ARFFReader in = new ARFFReader(file, 1);
+        Dataset data = in.readAll();
+        in.close();
+        Assert.assertEquals("a", data.get(0).classValue());
+        Assert.assertEquals("b", data.get(2).classValue());
+
+        /* but there is none when no row has a class value */
+        file = write("@relation test\n@attribute x numeric\n@attribute class string\n@data\n{0 1}\n");
+        in = new ARFFReader(file, 1);
+        try {
+            in.readAll();
+            Assert.fail("the omitted class has no value");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("no values"));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testStringOrder() throws IOException {
+        /* string codes follow the rows, also when they are parsed in parallel */
+        StringBuilder sb = new StringBuilder("@relation strings\n@attribute s string\n@attribute i numeric\n"
+                + "@attribute class string\n@data\n");
+        for (int i = 0; i < 20000; i++)
+            sb.append("'v" + i + "'," + i + ",c" + (i / 1000) + "\n");
+        File file = write(sb.toString());
+        ParallelContext old = Parallel.context();
+        try {
+            Parallel.setContext(new ParallelContext(8));
+            ARFFReader in = new ARFFReader(file, 2);
+            Dataset data = in.readAll();
+            in.close();
+            Assert.assertEquals(20000, data.size());
+            for (Instance inst : data)
+                Assert.assertEquals(inst.value(1), inst.value(0));
+            Assert.assertEquals(20000, in.header().noValues(0));
+            for (int i = 0; i < 20; i++)
+                Assert.assertEquals("c" + i, in.header().value(2, i));
+        } finally {
+            Parallel.setContext(old);
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Random rg = new Random(5);
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < 1000; i++) {
+            double[] values = { rg.nextGaussian() * Math.pow(10, rg.nextInt(40) - 20), rg.nextInt(100),
+                    i % 7 == 0 ? Double.NaN : rg.nextDouble(), 0 };
+            data.add(new DenseInstance(values, i % 3 == 0 ? "a" : "b c"));
+        }
+        for (boolean sparse : new boolean[] { false, true }) {
+            File file = File.createTempFile("javaml", ".arff.gz");
+            file.deleteOnExit();
+            ARFFWriter out = new ARFFWriter(file, ARFFHeader.of("random", data));
+            out.setSparse(sparse);
+            out.write(data);
+            out.close();
+            Dataset loaded = ARFFHandler.loadARFF(file, 4);
+            Assert.assertEquals(data.size(), loaded.size());
+            for (int i = 0; i < data.size(); i++) {
+                Assert.assertEquals(data.get(i).classValue(), loaded.get(i).classValue());
+                for (int j = 0; j < 4; j++)
+                    Assert.assertEquals(data.get(i).value(j), loaded.get(i).value(j));
+            }
+        }
+    }
 }
@@ -4,14 +4,23 @@
 package junit.tools;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
 
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
 import net.sf.javaml.tools.InstanceTools;
 import net.sf.javaml.tools.data.FileHandler;
+import net.sf.javaml.tools.data.ParallelGZIPOutputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -32,4 +41,86 @@ public class TestDataExport {
            Assert.assertTrue(false);
         }
     }
+
+    private static void assertSame(Dataset expected, Dataset actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Instance a = expected.get(i), b = actual.get(i);
+            Assert.assertEquals(a.classValue(), b.classValue());
+            Assert.assertEquals(a.noAttributes(), b.noAttributes());
+            for (int j = 0; j < a.noAttributes(); j++)
+                Assert.assertEquals(a.value(j), b.value(j), 0);
+        }
+    }
+
+    /* Enough random rows for several compressed blocks */
+    private static Dataset random(boolean sparse) {
+        Random rg = new Random(7);
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < 30000; i++) {
+            Instance inst = sparse ? new SparseInstance(50) : new DenseInstance(20);
+            for (int j = 0; j < 20; j++) {
+                double v = j % 3 == 0 ? rg.nextDouble() : Math.round(rg.nextGaussian() * 1000) / 100.0;
+                inst.put(sparse ? rg.nextInt(50) : j, v);
+            }
+            inst.setClassValue("c" + rg.nextInt(3));
+            data.add(inst);
+        }
+        return data;
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws IOException {
+        for (boolean sparse : new boolean[] { false, true }) {
+            Dataset data = random(sparse);
+            File file = File.createTempFile("javaml", ".tsv");
+            file.deleteOnExit();
+            FileHandler.exportDataset(data, file, true);
+            File gz = new File(file.getPath() + ".gz");
+            gz.deleteOnExit();
+            Dataset loaded = sparse ? FileHandler.loadSparseDataset(gz, 0, "\t", ":") : FileHandler.loadDataset(gz,
+                    0, "\t");
+            if (sparse)
+                for (Instance inst : loaded)
+                    ((SparseInstance) inst).setNoAttributes(50);
+            assertSame(data, loaded);
+        }
+    }
+
+    @Test
+    public void testParallelGZIP() throws IOException {
+        byte[] bytes = new byte[3 << 20];
+        new Random(1).nextBytes(bytes);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(compressed, 2);
+        out.write(bytes, 0, 100);
+        out.write(bytes[100]);
+        out.write(bytes, 101, bytes.length - 101);
+        out.close();
+        /* the concatenated members are read as one stream */
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed
+                .toByteArray())));
+        byte[] read = new byte[bytes.length];
+        in.readFully(read);
+        Assert.assertEquals(-1, in.read());
+        Assert.assertTrue(Arrays.equals(bytes, read));
+
+        /* an empty stream is still valid gzip data */
+        compressed.reset();
+        new ParallelGZIPOutputStream(compressed).close();
+        Assert.assertEquals(-1, new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())).read());
+    }
+
+    @Test
+    public void testBinary() throws IOException {
+        for (boolean sparse : new boolean[] { false, true }) {
+            Dataset data = random(sparse);
+            File file = File.createTempFile("javaml", ".bin");
+            file.deleteOnExit();
+            FileHandler.exportBinaryDataset(data, file);
+            Dataset loaded = FileHandler.loadBinaryDataset(file);
+            assertSame(data, loaded);
+            Assert.assertEquals(data.get(0).getClass(), loaded.get(0).getClass());
+        }
+    }
 }
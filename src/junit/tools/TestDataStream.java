@@ -0,0 +1,171 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.javaml.classification.KNearestNeighbors;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.filter.InstanceFilter;
+import net.sf.javaml.tools.data.ARFFHandler;
+import net.sf.javaml.tools.data.ARFFHeader;
+import net.sf.javaml.tools.data.ARFFReader;
+import net.sf.javaml.tools.data.ARFFWriter;
+import net.sf.javaml.tools.data.DataStream;
+import net.sf.javaml.tools.data.DelimitedReader;
+import net.sf.javaml.tools.data.FileHandler;
+import net.sf.javaml.tools.data.InstanceSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDataStream {
+
+	private static void assertSame(Dataset expected, Dataset actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Instance a = expected.get(i), b = actual.get(i);
+			Assert.assertEquals(a.classValue(), b.classValue());
+			Assert.assertEquals(a.keySet(), b.keySet());
+			for (Integer key : a.keySet())
+				Assert.assertEquals(a.value(key), b.value(key), 0);
+		}
+	}
+
+	@Test
+	public void testDense() throws IOException {
+		File file = new File("devtools/data/iris.data");
+		Dataset loaded = FileHandler.loadDataset(file, 4, ",");
+		assertSame(loaded, FileHandler.streamDataset(file, 4, ",").toDataset());
+		/* without read-ahead */
+		assertSame(loaded, new DataStream(new DelimitedReader(file, 4, ","), 0).toDataset());
+
+		File gz = new File("devtools/data/colon.csv.gz");
+		assertSame(FileHandler.loadDataset(gz, 0, ","), FileHandler.streamDataset(gz, 0, ",").toDataset());
+	}
+
+	@Test
+	public void testSparse() throws IOException {
+		File file = new File("devtools/data/smallsparse.tsv");
+		Dataset loaded = FileHandler.loadSparseDataset(file, 0, "\t", ":");
+		assertSame(loaded, FileHandler.streamSparseDataset(file, 0, "\t", ":").toDataset());
+	}
+
+	@Test
+	public void testARFF() throws IOException {
+		File file = new File("devtools/data/iris.arff");
+		Dataset loaded = ARFFHandler.loadARFF(file, 4);
+		int n = 0;
+		for (Instance inst : ARFFHandler.streamARFF(file, 4)) {
+			Assert.assertEquals(loaded.get(n).classValue(), inst.classValue());
+			n++;
+		}
+		Assert.assertEquals(loaded.size(), n);
+	}
+
+	@Test
+	public void testChain() throws IOException {
+		File file = new File("devtools/data/iris.data");
+		Dataset data = FileHandler.loadDataset(file, 4, ",");
+		KNearestNeighbors knn = new KNearestNeighbors(5);
+		knn.buildClassifier(data);
+
+		ARFFHeader header = ARFFHeader.of("iris", data);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ARFFWriter out = new ARFFWriter(bytes, header);
+		long count = FileHandler.streamDataset(file, 4, ",").filter(new InstanceFilter() {
+			@Override
+			public void filter(Instance inst) {
+				inst.put(0, 2 * inst.value(0));
+			}
+		}).classify(knn).writeTo(out);
+		out.close();
+		Assert.assertEquals(data.size(), count);
+
+		Dataset written = new ARFFReader(new ByteArrayInputStream(bytes.toByteArray()), 4).readAll();
+		Assert.assertEquals(data.size(), written.size());
+		for (int i = 0; i < data.size(); i++) {
+			Instance inst = data.get(i).copy();
+			inst.put(0, 2 * inst.value(0));
+			Assert.assertEquals(knn.classify(inst), written.get(i).classValue());
+			Assert.assertEquals(inst.value(0), written.get(i).value(0), 0);
+		}
+	}
+
+	@Test
+	public void testReadAheadAndClose() throws Exception {
+		/* a source of 1000 blocks of 10 instances that counts the blocks read */
+		final AtomicInteger read = new AtomicInteger();
+		InstanceSource source = new InstanceSource() {
+			@Override
+			public List<Instance> readBlock() {
+				int b = read.getAndIncrement();
+				if (b == 1000)
+					return null;
+				List<Instance> block = new ArrayList<Instance>();
+				for (int i = 0; i < 10; i++)
+					block.add(new DenseInstance(new double[] { 10 * b + i }));
+				return block;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		DataStream stream = new DataStream(source, 2);
+		Iterator<Instance> it = stream.iterator();
+		for (int i = 0; i < 25; i++)
+			Assert.assertEquals(i, it.next().value(0), 0);
+		Thread.sleep(100);
+		/* three blocks are consumed, two wait and one more is being put */
+		Assert.assertTrue(read.get() <= 6);
+		stream.close();
+		/* the rest of the current block is still available */
+		int rest = 0;
+		while (it.hasNext()) {
+			it.next();
+			rest++;
+		}
+		Assert.assertEquals(5, rest);
+		Assert.assertTrue(read.get() <= 6);
+
+		read.set(0);
+		Assert.assertEquals(10000, new DataStream(source, 2).count());
+		read.set(0);
+		Assert.assertEquals(10000, new DataStream(source, 0).count());
+	}
+
+	@Test(expected = OutOfMemoryError.class)
+	public void testReadAheadError() throws IOException {
+		/* an error of the read ahead thread reaches the reader */
+		InstanceSource source = new InstanceSource() {
+			@Override
+			public List<Instance> readBlock() {
+				throw new OutOfMemoryError("block");
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		new DataStream(source, 2).count();
+	}
+
+	@Test(expected = IOException.class)
+	public void testError() throws IOException {
+		DataStream stream = new DataStream(new DelimitedReader(new ByteArrayInputStream("1\t2:3\n1\tx\n".getBytes()),
+				0, "\t", ":"));
+		stream.count();
+	}
+
+}
@@ -0,0 +1,147 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Random;
+
+import libsvm.LibSVM;
+import net.sf.javaml.classification.Classifier;
+import net.sf.javaml.classification.KDtreeKNN;
+import net.sf.javaml.classification.NearestMeanClassifier;
+import net.sf.javaml.classification.bayes.NaiveBayesClassifier;
+import net.sf.javaml.classification.tree.DecisionTree;
+import net.sf.javaml.classification.tree.RandomForest;
+import net.sf.javaml.classification.tree.RandomTree;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.Serial;
+import net.sf.javaml.tools.data.FileHandler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSerial {
+
+	private static Dataset iris() throws IOException {
+		return FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+	}
+
+	/* Stores and loads a classifier and checks that it gives the same results */
+	private static Classifier roundTrip(Classifier c, Dataset data) throws IOException {
+		File file = File.createTempFile("javaml", ".model");
+		file.deleteOnExit();
+		Serial.storeModel(c, file);
+		Assert.assertTrue(ModelInput.isModel(file));
+		Classifier loaded = (Classifier) Serial.loadModel(file);
+		Assert.assertEquals(c.getClass(), loaded.getClass());
+		for (Instance inst : data) {
+			Assert.assertEquals(c.classify(inst), loaded.classify(inst));
+			Assert.assertEquals(c.classDistribution(inst), loaded.classDistribution(inst));
+		}
+		return loaded;
+	}
+
+	@Test
+	public void testTrees() throws IOException {
+		Dataset data = iris();
+		RandomForest rf = new RandomForest(20, false, 2, new Random(3));
+		rf.buildClassifier(data);
+		roundTrip(rf, data);
+
+		RandomForest cart = new RandomForest(20, false, 2, new Random(3));
+		cart.setImpurity(DecisionTree.Impurity.ENTROPY);
+		cart.buildClassifier(data);
+		roundTrip(cart, data);
+
+		RandomTree rt = new RandomTree(2, new Random(5));
+		rt.buildClassifier(iris());
+		roundTrip(rt, data);
+	}
+
+	@Test
+	public void testNaiveBayes() throws IOException {
+		Dataset data = iris();
+		for (boolean sparse : new boolean[] { false, true }) {
+			NaiveBayesClassifier nb = new NaiveBayesClassifier(true, true, sparse);
+			nb.buildClassifier(data);
+			NaiveBayesClassifier loaded = (NaiveBayesClassifier) roundTrip(nb, data);
+			Assert.assertArrayEquals(nb.getClassFreqs(), loaded.getClassFreqs(), 0);
+			/* the loaded classifier can still be updated */
+			Instance inst = new DenseInstance(new double[] { 5, 3, 1.5, 0.2 }, "Iris-setosa");
+			nb.update(inst);
+			loaded.update(inst);
+			for (Instance i : data)
+				Assert.assertEquals(nb.classDistribution(i), loaded.classDistribution(i));
+		}
+	}
+
+	@Test
+	public void testKNearestNeighbors() throws IOException {
+		Dataset data = iris();
+		KDtreeKNN knn = new KDtreeKNN(5);
+		knn.buildClassifier(data);
+		knn.forget(data.get(0));
+		roundTrip(knn, data);
+	}
+
+	@Test
+	public void testNearestMean() throws IOException {
+		Dataset data = iris();
+		NearestMeanClassifier nm = new NearestMeanClassifier();
+		nm.buildClassifier(data);
+		roundTrip(nm, data);
+	}
+
+	@Test
+	public void testLibSVM() throws IOException {
+		Dataset data = iris();
+		LibSVM svm = new LibSVM();
+		svm.buildClassifier(data);
+		LibSVM loaded = (LibSVM) roundTrip(svm, data);
+		Assert.assertArrayEquals(svm.getWeights(), loaded.getWeights(), 0);
+		for (Instance inst : data)
+			Assert.assertArrayEquals(svm.rawDecisionValues(inst), loaded.rawDecisionValues(inst), 0);
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		Dataset data = iris();
+		KDtreeKNN knn = new KDtreeKNN(5);
+		knn.buildClassifier(data);
+		File file = File.createTempFile("javaml", ".model");
+		file.deleteOnExit();
+		Serial.storeModel(knn, file);
+		/* every cut after the magic fails with an IOException */
+		for (long size = file.length() - 1; size >= 8; size -= 7) {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.setLength(size);
+			raf.close();
+			try {
+				Serial.loadModel(file);
+				Assert.fail("a model of " + size + " bytes was read");
+			} catch (IOException e) {
+				/* expected */
+			}
+		}
+	}
+
+	@Test
+	public void testJavaSerialization() throws IOException {
+		/* objects without a binary format still use Java serialization */
+		ArrayList<String> list = new ArrayList<String>();
+		list.add("a");
+		File file = File.createTempFile("javaml", ".ser");
+		file.deleteOnExit();
+		Assert.assertTrue(Serial.store(list, file.getPath()));
+		Assert.assertFalse(ModelInput.isModel(file));
+		Assert.assertEquals(list, Serial.load(file));
+	}
+
+}
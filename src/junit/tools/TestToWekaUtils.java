@@ -9,12 +9,16 @@ import java.io.IOException;
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.tools.data.FileHandler;
+import net.sf.javaml.tools.weka.FromWekaUtils;
 import net.sf.javaml.tools.weka.ToWekaUtils;
+import net.sf.javaml.tools.weka.WekaConversions;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import weka.classifiers.functions.SMO;
 import weka.core.Instances;
+import weka.core.SparseInstance;
 
 public class TestToWekaUtils {
 
@@ -42,4 +46,35 @@ public class TestToWekaUtils {
         }
 
     }
+
+    @Test
+    public void testSparseAndCache() throws IOException {
+        Dataset data = FileHandler.loadSparseDataset(new File("devtools/data/smallsparse.tsv"), 0, "\t", ":");
+        WekaConversions conversions = new WekaConversions();
+        ToWekaUtils twu = conversions.convert(data, true);
+        Assert.assertSame(twu, conversions.convert(data, true));
+        Assert.assertNotSame(twu, conversions.convert(data, false));
+        Assert.assertNotSame(twu, new WekaConversions().convert(data, true));
+        /* a copy for training does not share the instances */
+        Instances copy = WekaConversions.copy(twu.getDataset());
+        Assert.assertNotSame(twu.getDataset().instance(0), copy.instance(0));
+        conversions.invalidate(data);
+        Assert.assertNotSame(twu, conversions.convert(data, true));
+
+        Instances insts = twu.getDataset();
+        Assert.assertEquals(data.size(), insts.numInstances());
+        for (int i = 0; i < data.size(); i++) {
+            weka.core.Instance w = insts.instance(i);
+            Assert.assertTrue(w instanceof SparseInstance);
+            Assert.assertEquals(data.get(i).classValue(), twu.convertClass(w.classValue()));
+            for (Integer key : data.get(i).keySet())
+                Assert.assertEquals(data.get(i).value(key), w.value(key), 0);
+        }
+        /* and back */
+        Dataset back = new FromWekaUtils(insts).getDataset();
+        for (int i = 0; i < data.size(); i++) {
+            Assert.assertEquals(data.get(i).classValue(), back.get(i).classValue());
+            Assert.assertEquals(data.get(i).keySet(), back.get(i).keySet());
+        }
+    }
 }
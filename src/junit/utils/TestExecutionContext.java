@@ -0,0 +1,188 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import libsvm.GridSearch;
+import libsvm.LibSVM;
+import libsvm.svm_parameter;
+import net.sf.javaml.classification.KNearestNeighbors;
+import net.sf.javaml.classification.evaluation.CrossValidation;
+import net.sf.javaml.classification.evaluation.PerformanceMeasure;
+import net.sf.javaml.clustering.Cobweb;
+import net.sf.javaml.clustering.KMeans;
+import net.sf.javaml.clustering.mcl.MCL;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.distance.CosineSimilarity;
+import net.sf.javaml.featureselection.ranking.RecursiveFeatureEliminationSVM;
+import net.sf.javaml.tools.data.FileHandler;
+import net.sf.javaml.utils.ExecutionContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestExecutionContext {
+
+    private static int total(Dataset[] clusters) {
+        int total = 0;
+        for (Dataset c : clusters)
+            total += c.size();
+        return total;
+    }
+
+    /**
+     * Tests that the progress is reported and that an unlimited context lets
+     * the algorithm finish.
+     */
+    @Test
+    public void testProgress() throws IOException {
+        Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+        ExecutionContext context = new ExecutionContext();
+        final List<Long> done = new ArrayList<Long>();
+        context.setProgressListener(new ExecutionContext.ProgressListener() {
+            @Override
+            public void progress(String task, long iteration, long total) {
+                Assert.assertEquals("kmeans", task);
+                Assert.assertEquals(50, total);
+                done.add(iteration);
+            }
+        });
+        KMeans km = new KMeans(3, 50);
+        km.setExecutionContext(context);
+        Assert.assertEquals(data.size(), total(km.cluster(data)));
+        Assert.assertFalse(context.isStopped());
+        Assert.assertTrue(done.size() > 1);
+        for (int i = 0; i < done.size(); i++)
+            Assert.assertEquals(i, done.get(i).longValue());
+    }
+
+    /**
+     * Tests that a cancelled or expired context stops the algorithms with a
+     * usable result.
+     */
+    @Test
+    public void testStop() throws IOException {
+        Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+        ExecutionContext cancelled = new ExecutionContext();
+        cancelled.cancel();
+        KMeans km = new KMeans(3, 50);
+        km.setExecutionContext(cancelled);
+        Assert.assertEquals(data.size(), total(km.cluster(data)));
+        Assert.assertTrue(cancelled.isStopped());
+
+        ExecutionContext expired = new ExecutionContext(0, TimeUnit.SECONDS);
+        Assert.assertTrue(expired.isExpired());
+        CrossValidation cv = new CrossValidation(new KNearestNeighbors(5));
+        cv.setExecutionContext(expired);
+        Map<Object, PerformanceMeasure> p = cv.crossValidation(data, 5, new Random(1));
+        for (PerformanceMeasure pm : p.values())
+            Assert.assertEquals(0, pm.tp + pm.tn + pm.fp + pm.fn, 0);
+        Assert.assertTrue(expired.isStopped());
+
+        ExecutionContext budget = new ExecutionContext();
+        budget.setMaxIterations(10);
+        Cobweb cw = new Cobweb();
+        cw.setExecutionContext(budget);
+        Assert.assertEquals(data.size(), total(cw.cluster(data.copy())));
+        Assert.assertTrue(budget.isStopped());
+        ExecutionContext none = new ExecutionContext();
+        none.setMaxIterations(0);
+        cw.setExecutionContext(none);
+        Dataset[] one = cw.cluster(data.copy());
+        Assert.assertEquals(1, one.length);
+        Assert.assertEquals(data.size(), one[0].size());
+    }
+
+    /**
+     * Tests that the iterations of MCL are bounded by the context.
+     */
+    @Test
+    public void testMCL() {
+        Random rg = new Random(3);
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < 40; i++)
+            data.add(new DenseInstance(new double[] { rg.nextDouble(), rg.nextDouble(), rg.nextDouble() }));
+        final long[] max = new long[1];
+        ExecutionContext context = new ExecutionContext();
+        context.setMaxIterations(2);
+        context.setProgressListener(new ExecutionContext.ProgressListener() {
+            @Override
+            public void progress(String task, long done, long total) {
+                max[0] = Math.max(max[0], done);
+            }
+        });
+        MCL mcl = new MCL(new CosineSimilarity());
+        mcl.setExecutionContext(context);
+        mcl.cluster(data);
+        Assert.assertTrue(context.isStopped());
+        Assert.assertEquals(2, max[0]);
+    }
+
+    /**
+     * Tests that the iteration limit of a grid search does not apply to the
+     * folds of its cross validations and that each search starts over.
+     */
+    @Test
+    public void testGridSearch() throws IOException {
+        Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+        double[] c = { 0.01, 1, 100, 1000 };
+        ExecutionContext context = new ExecutionContext();
+        context.setMaxIterations(2);
+        LibSVM svm = new LibSVM();
+        GridSearch gs = new GridSearch(svm, data, 5);
+        gs.setExecutionContext(context);
+        svm_parameter param = svm.getParameters();
+        param.kernel_type = svm_parameter.LINEAR;
+        double best = gs.search(param, c, null).C;
+        Assert.assertTrue(context.isStopped());
+        /* one of the two combinations that were evaluated */
+        Assert.assertTrue(best == c[0] || best == c[1]);
+
+        context.setMaxIterations(10);
+        best = gs.search(param, c, null).C;
+        Assert.assertFalse(context.isStopped());
+        Assert.assertTrue(best > 0.01);
+
+        /* a cancelled context stops the cross validations as well */
+        ExecutionContext child = context.child();
+        context.cancel();
+        Assert.assertFalse(child.proceed("child", 0, 1));
+        Assert.assertTrue(child.isStopped());
+    }
+
+    /**
+     * Tests that a stopped feature elimination still ranks all attributes.
+     */
+    @Test
+    public void testRFE() {
+        Random rg = new Random(5);
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < 60; i++) {
+            double[] values = new double[8];
+            for (int j = 0; j < values.length; j++)
+                values[j] = rg.nextGaussian() + (j == 2 ? i % 2 : 0);
+            data.add(new DenseInstance(values, "" + i % 2));
+        }
+        ExecutionContext context = new ExecutionContext();
+        context.setMaxIterations(1);
+        RecursiveFeatureEliminationSVM rfe = new RecursiveFeatureEliminationSVM(0.25);
+        rfe.setExecutionContext(context);
+        rfe.build(data);
+        Assert.assertTrue(context.isStopped());
+        boolean[] ranks = new boolean[8];
+        for (int i = 0; i < 8; i++)
+            ranks[rfe.rank(i)] = true;
+        for (boolean b : ranks)
+            Assert.assertTrue(b);
+    }
+}
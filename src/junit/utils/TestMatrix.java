@@ -0,0 +1,215 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import net.sf.javaml.clustering.evaluation.Gamma;
+import net.sf.javaml.clustering.evaluation.Tau;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.SparseInstance;
+import net.sf.javaml.distance.CosineDistance;
+import net.sf.javaml.distance.CosineSimilarity;
+import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.distance.ManhattanDistance;
+import net.sf.javaml.distance.PrecomputedDistance;
+import net.sf.javaml.matrix.Matrix;
+import net.sf.javaml.utils.ParallelContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestMatrix {
+
+    private static void checkCells(Matrix m, double precision) {
+        for (int i = 0; i < m.columns(); i++)
+            for (int j = 0; j < m.rows(); j++)
+                if (!m.isSymmetric() || i >= j)
+                    m.put(i, j, i * 1000 + j);
+        for (int i = 0; i < m.columns(); i++)
+            for (int j = 0; j < m.rows(); j++) {
+                double expected = m.isSymmetric() ? Math.max(i, j) * 1000 + Math.min(i, j) : i * 1000 + j;
+                Assert.assertEquals(expected, m.get(i, j), precision);
+            }
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        /* Sizes that do not fit a whole number of tiles */
+        Matrix m = Matrix.createMapped(300, 170, false, false);
+        checkCells(m, 0);
+        m.close();
+        m = Matrix.createMapped(300, 300, true, false);
+        checkCells(m, 0);
+        m.close();
+        m = Matrix.createMapped(200, 130, false, true);
+        checkCells(m, 0.1);
+        m.close();
+    }
+
+    @Test
+    public void testMemory() {
+        checkCells(Matrix.create(50, 30), 0);
+        checkCells(Matrix.createSymmetric(50), 0);
+    }
+
+    @Test
+    public void testDirect() {
+        Matrix m = Matrix.createDirect(300, 170, false, false);
+        checkCells(m, 0);
+        m.close();
+        m = Matrix.createDirect(300, 300, true, true);
+        checkCells(m, 0.1);
+        m.close();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() throws IOException {
+        Matrix m = Matrix.createMapped(10, 10, false, false);
+        try {
+            m.get(10, 0);
+        } finally {
+            m.close();
+        }
+    }
+
+    private static Dataset random(Random rg, int size, int dimensions) {
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < size; i++) {
+            double[] values = new double[dimensions];
+            for (int j = 0; j < dimensions; j++)
+                values[j] = rg.nextGaussian() * 10;
+            data.add(new DenseInstance(values));
+        }
+        return data;
+    }
+
+    @Test
+    public void testPairwise() {
+        Random rg = new Random(7);
+        /* sizes that do not fit a whole number of blocks */
+        Dataset a = random(rg, 150, 5), b = random(rg, 70, 5);
+        /* duplicates where the norms cancel out */
+        a.add(b.instance(3));
+        b.add(a.instance(10));
+        DistanceMeasure[] measures = { new EuclideanDistance(), new CosineSimilarity(), new CosineDistance(),
+                new ManhattanDistance() };
+        for (DistanceMeasure dm : measures) {
+            Matrix ab = Matrix.pairwise(a, b, dm);
+            Matrix aa = Matrix.pairwise(a, a, dm);
+            Matrix serial = Matrix.createDirect(a.size(), a.size(), false, false);
+            serial.fill(a, a, dm, new ParallelContext(1));
+            Assert.assertEquals(a.size(), ab.columns());
+            Assert.assertEquals(b.size(), ab.rows());
+            Assert.assertTrue(aa.isSymmetric());
+            for (int i = 0; i < a.size(); i++) {
+                for (int j = 0; j < b.size(); j++)
+                    Assert.assertEquals(dm.measure(a.instance(i), b.instance(j)), ab.get(i, j), 1e-12);
+                for (int j = 0; j < a.size(); j++) {
+                    Assert.assertEquals(dm.measure(a.instance(i), a.instance(j)), aa.get(i, j), 1e-12);
+                    Assert.assertEquals(aa.get(i, j), serial.get(i, j), 0);
+                }
+            }
+            Assert.assertEquals(dm.measure(b.instance(3), b.instance(3)), ab.get(a.size() - 1, 3), 0);
+            serial.close();
+        }
+    }
+
+    @Test
+    public void testPairwiseFallback() {
+        /* missing values and sparse instances are measured one pair at a time */
+        DistanceMeasure dm = new EuclideanDistance();
+        Dataset data = random(new Random(9), 20, 4);
+        data.instance(4).put(2, Double.NaN);
+        SparseInstance sparse = new SparseInstance(4);
+        sparse.put(1, 3.0);
+        data.add(sparse);
+        Matrix m = Matrix.distances(data, dm);
+        for (int i = 0; i < data.size(); i++)
+            for (int j = 0; j < data.size(); j++)
+                Assert.assertEquals(dm.measure(data.instance(i), data.instance(j)), m.get(i, j), 0);
+    }
+
+    @Test
+    public void testPairwiseEmpty() {
+        DistanceMeasure dm = new EuclideanDistance();
+        Dataset data = random(new Random(2), 12, 3);
+        Dataset empty = new DefaultDataset();
+        Matrix m = Matrix.pairwise(empty, data, dm);
+        Assert.assertEquals(0, m.columns());
+        Assert.assertEquals(data.size(), m.rows());
+        m = Matrix.pairwise(data, empty, dm);
+        Assert.assertEquals(data.size(), m.columns());
+        Assert.assertEquals(0, m.rows());
+        Assert.assertEquals(0, Matrix.distances(empty, dm).rows());
+        Matrix direct = Matrix.createDirect(0, 5, false, false);
+        Assert.assertEquals(5, direct.rows());
+        direct.close();
+
+        /* an empty cluster does not change the scores */
+        Dataset a = random(new Random(3), 8, 3), b = random(new Random(4), 6, 3);
+        Dataset[] clusters = { a, b };
+        Dataset[] withEmpty = { a, empty, b };
+        Assert.assertEquals(new Gamma(dm).score(clusters), new Gamma(dm).score(withEmpty), 0);
+        Assert.assertEquals(new Tau(dm).score(clusters), new Tau(dm).score(withEmpty), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPairwiseSize() {
+        Dataset data = random(new Random(1), 10, 2);
+        Matrix.create(10, 9).fill(data, data, new EuclideanDistance());
+    }
+
+    @Test
+    public void testDistances() throws IOException {
+        Random rg = new Random(5);
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < 150; i++)
+            data.add(new DenseInstance(new double[] { rg.nextDouble(), rg.nextDouble(), rg.nextDouble() }));
+        DistanceMeasure dm = new EuclideanDistance();
+        Matrix symmetric = Matrix.distances(data, dm);
+        Matrix mapped = Matrix.createMapped(150, 150, false, false);
+        mapped.fill(data, dm);
+        PrecomputedDistance pd = new PrecomputedDistance(data, dm, symmetric);
+        for (int i = 0; i < data.size(); i++)
+            for (int j = 0; j < data.size(); j++) {
+                double d = dm.measure(data.instance(i), data.instance(j));
+                /* the matrix uses the norms of the instances, see testPairwise */
+                Assert.assertEquals(d, symmetric.get(i, j), 1e-12);
+                Assert.assertEquals(symmetric.get(i, j), mapped.get(i, j), 0);
+                Assert.assertEquals(symmetric.get(i, j), pd.measure(data.instance(i), data.instance(j)), 0);
+            }
+        DenseInstance other = new DenseInstance(new double[] { 2, 2, 2 });
+        Assert.assertEquals(dm.measure(other, data.instance(0)), pd.measure(other, data.instance(0)), 0);
+        mapped.close();
+    }
+
+    @Test
+    public void testSerializePrecomputed() throws Exception {
+        Dataset data = random(new Random(11), 40, 3);
+        DistanceMeasure dm = new EuclideanDistance();
+        Matrix mapped = Matrix.createMapped(40, 40, false, true);
+        mapped.fill(data, dm);
+        PrecomputedDistance pd = new PrecomputedDistance(data, dm, mapped);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(pd);
+        out.close();
+        PrecomputedDistance copy = (PrecomputedDistance) new ObjectInputStream(new ByteArrayInputStream(bytes
+                .toByteArray())).readObject();
+        for (int i = 0; i < data.size(); i++)
+            for (int j = 0; j < data.size(); j++)
+                Assert.assertEquals(pd.measure(data.instance(i), data.instance(j)), copy.measure(data.instance(i),
+                        data.instance(j)), 0);
+        mapped.close();
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * %SVN.HEADER%
+ */
+package junit.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.javaml.classification.KNearestNeighbors;
+import net.sf.javaml.classification.evaluation.CrossValidation;
+import net.sf.javaml.classification.evaluation.PerformanceMeasure;
+import net.sf.javaml.classification.tree.DecisionTree;
+import net.sf.javaml.classification.tree.RandomForest;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.featureselection.scoring.RELIEF;
+import net.sf.javaml.featureselection.scoring.RandomForestAttributeEvaluation;
+import net.sf.javaml.tools.data.FileHandler;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestParallelContext {
+
+    /**
+     * Tests that the work runs on the given executor and within the
+     * parallelism.
+     */
+    @Test
+    public void testExecutor() {
+        final AtomicInteger created = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "test-" + created.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        Parallel.RangeTask task = new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                threads.add(Thread.currentThread().getName());
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        ParallelContext context = new ParallelContext(executor, 3);
+        context.forEach(30, task);
+        Assert.assertTrue(threads.size() <= 3);
+        for (String name : threads)
+            Assert.assertTrue(name.startsWith("test-") || name.equals(Thread.currentThread().getName()));
+
+        threads.clear();
+        context.withParallelism(1).forEach(30, task);
+        Assert.assertEquals(Collections.singleton(Thread.currentThread().getName()), threads);
+        Assert.assertEquals(2, context.withParallelism(2).parallelism());
+        Assert.assertEquals(3, context.withParallelism(8).parallelism());
+
+        ParallelContext old = Parallel.context();
+        try {
+            Parallel.setContext(new ParallelContext(1));
+            Assert.assertEquals(1, Parallel.threads());
+        } finally {
+            Parallel.setContext(old);
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Tests that the seeds of the tasks are reproducible and different.
+     */
+    @Test
+    public void testSeeds() {
+        Set<Long> seeds = new HashSet<Long>();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(ParallelContext.seed(42, i), ParallelContext.seed(42, i));
+            seeds.add(ParallelContext.seed(42, i));
+            seeds.add(ParallelContext.seed(43, i));
+        }
+        Assert.assertEquals(200, seeds.size());
+        Assert.assertEquals(ParallelContext.random(7, 3).nextLong(), ParallelContext.random(7, 3).nextLong());
+    }
+
+    /**
+     * Tests that the results of the algorithms do not depend on the number of
+     * threads.
+     */
+    @Test
+    public void testDeterministic() throws IOException {
+        Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+        double[][] scores = new double[2][];
+        double[][] relief = new double[2][];
+        Map<?, ?>[] cv = new Map<?, ?>[2];
+        int[] parallelism = { 1, 4 };
+        for (int r = 0; r < 2; r++) {
+            ParallelContext context = new ParallelContext(parallelism[r]);
+            RandomForestAttributeEvaluation rf = new RandomForestAttributeEvaluation(20, "Iris-setosa", new Random(3));
+            rf.setParallelContext(context);
+            rf.build(data.copy());
+            RELIEF rel = new RELIEF(2, new Random(3));
+            rel.setParallelContext(context);
+            rel.build(data.copy());
+            scores[r] = new double[data.noAttributes()];
+            relief[r] = new double[data.noAttributes()];
+            for (int i = 0; i < data.noAttributes(); i++) {
+                scores[r][i] = rf.score(i);
+                relief[r][i] = rel.score(i);
+            }
+            CrossValidation validation = new CrossValidation(new KNearestNeighbors(5));
+            validation.setParallelContext(context);
+            validation.setParallelFolds(true);
+            cv[r] = validation.crossValidation(data, 5, new Random(3));
+        }
+        for (int i = 0; i < data.noAttributes(); i++) {
+            Assert.assertEquals(scores[0][i], scores[1][i], 0);
+            Assert.assertEquals(relief[0][i], relief[1][i], 0);
+        }
+        for (Object o : data.classes()) {
+            PerformanceMeasure a = (PerformanceMeasure) cv[0].get(o), b = (PerformanceMeasure) cv[1].get(o);
+            Assert.assertEquals(a.tp, b.tp, 0);
+            Assert.assertEquals(a.fp, b.fp, 0);
+            Assert.assertEquals(a.tn, b.tn, 0);
+            Assert.assertEquals(a.fn, b.fn, 0);
+            Assert.assertEquals(50, a.tp + a.fn, 0);
+        }
+    }
+
+    /**
+     * Tests that a random forest does not depend on the number of threads
+     * that build its trees.
+     */
+    @Test
+    public void testRandomForest() throws IOException {
+        Dataset data = FileHandler.loadDataset(new File("devtools/data/iris.data"), 4, ",");
+        for (DecisionTree.Impurity impurity : new DecisionTree.Impurity[] { null, DecisionTree.Impurity.GINI }) {
+            RandomForest[] forests = new RandomForest[2];
+            int[] parallelism = { 1, 8 };
+            for (int r = 0; r < 2; r++) {
+                forests[r] = new RandomForest(50, true, 2, new Random(7));
+                forests[r].setImpurity(impurity);
+                forests[r].setParallelContext(new ParallelContext(parallelism[r]));
+                forests[r].buildClassifier(data);
+            }
+            Assert.assertEquals(forests[0].getOutOfBagErrorEstimate(), forests[1].getOutOfBagErrorEstimate(), 0);
+            Assert.assertTrue(forests[0].getOutOfBagErrorEstimate() < 0.2);
+            for (Instance inst : data)
+                Assert.assertEquals(forests[0].classDistribution(inst), forests[1].classDistribution(inst));
+        }
+        /* and so do parallel folds with copies of a forest */
+        Map<?, ?>[] cv = new Map<?, ?>[2];
+        for (int r = 0; r < 2; r++) {
+            CrossValidation validation = new CrossValidation(new RandomForest(10, false, 2, new Random(7)));
+            validation.setParallelContext(new ParallelContext(r == 0 ? 1 : 8));
+            validation.setParallelFolds(true);
+            cv[r] = validation.crossValidation(data, 5, new Random(3));
+        }
+        Assert.assertEquals(cv[0].toString(), cv[1].toString());
+    }
+}
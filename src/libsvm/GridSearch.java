@@ -11,6 +11,8 @@ import libsvm.svm_parameter;
 import net.sf.javaml.classification.evaluation.CrossValidation;
 import net.sf.javaml.classification.evaluation.PerformanceMeasure;
 import net.sf.javaml.core.Dataset;
+import net.sf.javaml.utils.ExecutionContext;
+import net.sf.javaml.utils.ParallelContext;
 
 /**
  * 
@@ -36,6 +38,11 @@ public class GridSearch {
 	private double gamma[];
 	private svm_parameter svmParameters;
 
+	private ExecutionContext context = new ExecutionContext();
+
+	/* the context of the cross validations, without the iteration limit */
+	private ExecutionContext inner = context.child();
+
 	/**
 	 * The GridSearch Class is constructed with the
 	 * <code>LibSVM<code> that is later used for 
@@ -55,12 +62,57 @@ public class GridSearch {
 		this.dataset = dataset;
 		this.folds = folds;
 		this.cv = new CrossValidation(this.classifier);
+		this.cv.setExecutionContext(inner);
 
 		this.bestAccuracy = Double.MIN_VALUE;
 		this.bestC = Double.MIN_VALUE;
 		this.bestGamma = Double.MIN_VALUE;
 	}
 
+	/**
+	 * Sets the context that reports the progress and can stop the search.
+	 * Each combination of parameters is an iteration, the iteration limit of
+	 * the context applies to these only. The cross validations run with a
+	 * child of the context, so cancelling the context or running out of time
+	 * also stops them. When the context stops the search, the best parameters
+	 * among the combinations that were fully evaluated are returned.
+	 * 
+	 * @param context
+	 *            the execution context
+	 */
+	public void setExecutionContext(ExecutionContext context) {
+		this.context = context;
+		this.inner = context.child();
+		cv.setExecutionContext(inner);
+	}
+
+	/**
+	 * Sets the context that evaluates the folds of each cross validation in
+	 * parallel, when they are.
+	 * 
+	 * @see #setParallelFolds(boolean)
+	 * 
+	 * @param context
+	 *            the parallel context, null for the library wide context
+	 */
+	public void setParallelContext(ParallelContext context) {
+		cv.setParallelContext(context);
+	}
+
+	/**
+	 * Sets whether the folds of each cross validation are evaluated in
+	 * parallel, each with a copy of the classifier. By default they are
+	 * evaluated one after the other.
+	 * 
+	 * @see CrossValidation#setParallelFolds(boolean)
+	 * 
+	 * @param parallelFolds
+	 *            true to evaluate the folds in parallel
+	 */
+	public void setParallelFolds(boolean parallelFolds) {
+		cv.setParallelFolds(parallelFolds);
+	}
+
 	/**
 	 * This method performs cross validation for each of the given C and gamma
 	 * combination. It uses the given <code>svm_parameter</code> Object to
@@ -70,6 +122,9 @@ public class GridSearch {
 	 * The C and gammy parameters that produce the highest accuracy during cross validation are considered to
 	 * be the optimal parameters. These values are set in the returned parameter object.
 	 * 
+	 * Each search starts over: the stopped state of the execution context is
+	 * cleared and the best parameters of an earlier search are forgotten.
+	 * 
 	 * @param param
 	 *            This settings are used to configure the classifier.
 	 * @param C
@@ -83,6 +138,10 @@ public class GridSearch {
 		this.C = C;
 		this.gamma = gamma;
 		this.svmParameters = param;
+		this.bestAccuracy = Double.MIN_VALUE;
+		this.bestC = Double.MIN_VALUE;
+		this.bestGamma = Double.MIN_VALUE;
+		context.reset();
 
 		if (param.kernel_type == svm_parameter.LINEAR && gamma != null) {
 			this.gamma = null;
@@ -90,14 +149,17 @@ public class GridSearch {
 
 		if (this.gamma != null) {
 			// search for C and gamma
-			for (int i = 0; i < C.length; i++) {
+			int total = C.length * gamma.length;
+			search: for (int i = 0; i < C.length; i++) {
 				for (int j = 0; j < gamma.length; j++) {
+					if (!context.proceed("gridsearch", i * gamma.length + j, total))
+						break search;
 					crossValidation(i, j);
 				}// gamma
 			}// C
 		} else {
 			// search for C
-			for (int i = 0; i < C.length; i++) {
+			for (int i = 0; i < C.length && context.proceed("gridsearch", i, C.length); i++) {
 				crossValidation(i, null);
 			}// C
 		}
@@ -135,7 +197,11 @@ public class GridSearch {
 
 		// do cross validation
 
+		inner.reset();
 		perfMap = cv.crossValidation(this.dataset, this.folds);
+		/* an interrupted cross validation is not comparable to the others */
+		if (inner.isStopped())
+			return;
 
 		for (Object o : perfMap.keySet()) {
 
@@ -3,12 +3,18 @@
  */
 package libsvm;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.SortedSet;
 
 import net.sf.javaml.classification.AbstractClassifier;
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.core.exception.TrainingRequiredException;
+import net.sf.javaml.tools.BinaryModel;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
 
 /**
  * Wrapper for the libSVM library by Chih-Chung Chang and Chih-Jen Lin. This
@@ -23,7 +29,7 @@ import net.sf.javaml.core.exception.TrainingRequiredException;
  * @author Thomas Abeel
  * 
  */
-public class LibSVM extends AbstractClassifier {
+public class LibSVM extends AbstractClassifier implements BinaryModel {
 
 	public static svm_print_interface svm_print_console = null;
 	public static svm_print_interface svm_print_null = new svm_print_interface() {
@@ -96,7 +102,8 @@ public class LibSVM extends AbstractClassifier {
 	}
 
 	private svm_parameter param;
-	private Dataset data;
+	/* the classes of the training data, in the order of their index */
+	private Object[] classes;
 	private svm_model model;
 
 	/**
@@ -126,7 +133,7 @@ public class LibSVM extends AbstractClassifier {
 	@Override
 	public void buildClassifier(Dataset data) {
 		super.buildClassifier(data);
-		this.data = data;
+		this.classes = data.classes().toArray();
 
 		svm_problem p = null;
 		if (param.svm_type == svm_parameter.EPSILON_SVR) {
@@ -237,8 +244,8 @@ public class LibSVM extends AbstractClassifier {
 	public Object classify(Instance instance) {
 		svm_node[] x = convert(instance);
 		double d = svm.svm_predict(model, x);
-		Object out = data.classValue((int) d);
-		return out;
+		int index = (int) d;
+		return index >= 0 && index < classes.length ? classes[index] : null;
 	}
 	
 	
@@ -261,6 +268,107 @@ public class LibSVM extends AbstractClassifier {
 					"You need to set svm.param.probability = 1 during training");
 	}
 
+	@Override
+	public void write(ModelOutput out) throws IOException {
+		if (model == null)
+			throw new TrainingRequiredException();
+		svm_parameter p = model.param;
+		out.writeInt(p.svm_type);
+		out.writeInt(p.kernel_type);
+		out.writeInt(p.degree);
+		out.writeDouble(p.gamma);
+		out.writeDouble(p.coef0);
+		out.writeDouble(p.cache_size);
+		out.writeDouble(p.eps);
+		out.writeDouble(p.C);
+		out.writeInts(p.weight_label);
+		out.writeDoubles(p.weight);
+		out.writeDouble(p.nu);
+		out.writeDouble(p.p);
+		out.writeInt(p.shrinking);
+		out.writeInt(p.probability);
+
+		out.writeObjects(classes);
+		out.writeDoubles(weights);
+		out.writeInt(model.nr_class);
+		/* the support vectors as one sparse matrix */
+		int[] offset = new int[model.l + 1];
+		for (int i = 0; i < model.l; i++)
+			offset[i + 1] = offset[i] + model.SV[i].length;
+		int[] index = new int[offset[model.l]];
+		double[] value = new double[index.length];
+		for (int i = 0; i < model.l; i++) {
+			for (int j = 0; j < model.SV[i].length; j++) {
+				index[offset[i] + j] = model.SV[i][j].index;
+				value[offset[i] + j] = model.SV[i][j].value;
+			}
+		}
+		out.writeInts(offset);
+		out.writeInts(index);
+		out.writeDoubles(value);
+		for (int j = 0; j < model.nr_class - 1; j++)
+			out.writeDoubles(model.sv_coef[j]);
+		out.writeDoubles(model.rho);
+		out.writeDoubles(model.probA);
+		out.writeDoubles(model.probB);
+		out.writeInts(model.label);
+		out.writeInts(model.nSV);
+	}
+
+	/**
+	 * Reads a classifier that was written with {@link #write(ModelOutput)}.
+	 */
+	public static LibSVM read(ModelInput in) throws IOException {
+		LibSVM svm = new LibSVM();
+		svm_parameter p = svm.param;
+		p.svm_type = in.readInt();
+		p.kernel_type = in.readInt();
+		p.degree = in.readInt();
+		p.gamma = in.readDouble();
+		p.coef0 = in.readDouble();
+		p.cache_size = in.readDouble();
+		p.eps = in.readDouble();
+		p.C = in.readDouble();
+		p.weight_label = in.readInts();
+		p.weight = in.readDoubles();
+		p.nr_weight = p.weight == null ? 0 : p.weight.length;
+		p.nu = in.readDouble();
+		p.p = in.readDouble();
+		p.shrinking = in.readInt();
+		p.probability = in.readInt();
+
+		svm.classes = in.readObjects();
+		svm.parentClasses = new HashSet<Object>(Arrays.asList(svm.classes));
+		svm.weights = in.readDoubles();
+		svm_model model = new svm_model();
+		model.param = p;
+		model.nr_class = in.readInt();
+		int[] offset = in.readInts();
+		int[] index = in.readInts();
+		double[] value = in.readDoubles();
+		model.l = offset.length - 1;
+		model.SV = new svm_node[model.l][];
+		for (int i = 0; i < model.l; i++) {
+			model.SV[i] = new svm_node[offset[i + 1] - offset[i]];
+			for (int j = 0; j < model.SV[i].length; j++) {
+				svm_node node = new svm_node();
+				node.index = index[offset[i] + j];
+				node.value = value[offset[i] + j];
+				model.SV[i][j] = node;
+			}
+		}
+		model.sv_coef = new double[model.nr_class - 1][];
+		for (int j = 0; j < model.nr_class - 1; j++)
+			model.sv_coef[j] = in.readDoubles();
+		model.rho = in.readDoubles();
+		model.probA = in.readDoubles();
+		model.probB = in.readDoubles();
+		model.label = in.readInts();
+		model.nSV = in.readInts();
+		svm.model = model;
+		return svm;
+	}
+
 	public int[] getLabels() {
 		int res[] = new int[model.nr_class];
 		svm.svm_get_labels(model, res);
@@ -3,24 +3,43 @@
  */
 package net.sf.javaml.classification;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.exception.TrainingRequiredException;
+import net.sf.javaml.tools.BinaryModel;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
 
 /**
  * Abstract classifier class that is the parent of all classifiers that require
  * the mean of each class as training.
  * 
+ * The sum of the instances of each class is kept, so the means can be updated
+ * with new instances. Every update replaces the map of means by a new map,
+ * so subclasses can classify instances from the current map while the
+ * classifier is updated.
+ * 
  * @author Thomas Abeel
  * 
  */
-public class AbstractMeanClassifier extends AbstractClassifier {
+public class AbstractMeanClassifier extends AbstractClassifier implements UpdateableClassifier, BinaryModel {
 
     private static final long serialVersionUID = 8596181454461400908L;
 
-    protected Map<Object, Instance> mean;
+    protected volatile Map<Object, Instance> mean;
+
+    /* Sum and number of the instances of each class */
+    private Map<Object, double[]> sum;
+
+    private Map<Object, Integer> count;
 
     public Instance getMean(Object clazz) {
         return mean.get(clazz);
@@ -28,22 +47,121 @@ public class AbstractMeanClassifier extends AbstractClassifier {
     }
 
     @Override
-    public void buildClassifier(Dataset data) {
-        super.buildClassifier(data);
-        mean = new HashMap<Object, Instance>();
-        HashMap<Object, Integer> count = new HashMap<Object, Integer>();
-        for (Instance i : data) {
-            if (!mean.containsKey(i.classValue())) {
-                mean.put(i.classValue(), i);
-                count.put(i.classValue(), 1);
-            } else {
-                mean.put(i.classValue(), mean.get(i.classValue()).add(i));
-                count.put(i.classValue(), count.get(i.classValue()) + 1);
-            }
+    public synchronized void buildClassifier(Dataset data) {
+        sum = new HashMap<Object, double[]>();
+        count = new HashMap<Object, Integer>();
+        for (Instance i : data)
+            add(i, 1);
+        publish();
+    }
+
+    @Override
+    public synchronized void update(Instance instance) {
+        init();
+        add(instance, 1);
+        publish();
+    }
+
+    @Override
+    public synchronized void update(Dataset data) {
+        init();
+        for (Instance i : data)
+            add(i, 1);
+        publish();
+    }
+
+    @Override
+    public synchronized void forget(Instance instance) {
+        if (sum == null || !count.containsKey(instance.classValue()))
+            throw new IllegalArgumentException("The instance is not part of the training data");
+        add(instance, -1);
+        publish();
+    }
+
+    private void init() {
+        if (sum == null) {
+            sum = new HashMap<Object, double[]>();
+            count = new HashMap<Object, Integer>();
+        }
+    }
+
+    private void add(Instance inst, int sign) {
+        Object c = inst.classValue();
+        double[] s = sum.get(c);
+        if (s == null)
+            s = new double[inst.noAttributes()];
+        else if (s.length < inst.noAttributes())
+            s = Arrays.copyOf(s, inst.noAttributes());
+        for (int i = 0; i < inst.noAttributes(); i++)
+            s[i] += sign * inst.value(i);
+        Integer n = count.get(c);
+        int total = (n == null ? 0 : n) + sign;
+        if (total == 0) {
+            sum.remove(c);
+            count.remove(c);
+        } else {
+            sum.put(c, s);
+            count.put(c, total);
+        }
+    }
+
+    /**
+     * Writes the sum and the number of instances of each class, so a loaded
+     * classifier can still be updated.
+     */
+    @Override
+    public synchronized void write(ModelOutput out) throws IOException {
+        if (sum == null)
+            throw new TrainingRequiredException();
+        Object[] classes = sum.keySet().toArray();
+        int[] n = new int[classes.length];
+        int[] offset = new int[classes.length + 1];
+        for (int k = 0; k < classes.length; k++) {
+            n[k] = count.get(classes[k]);
+            offset[k + 1] = offset[k] + sum.get(classes[k]).length;
+        }
+        double[] flat = new double[offset[classes.length]];
+        for (int k = 0; k < classes.length; k++) {
+            double[] s = sum.get(classes[k]);
+            System.arraycopy(s, 0, flat, offset[k], s.length);
         }
-        for (Object o : mean.keySet()) {
-            mean.put(o, mean.get(o).divide(count.get(o)));
+        out.writeObjects(classes);
+        out.writeInts(n);
+        out.writeInts(offset);
+        out.writeDoubles(flat);
+    }
+
+    /**
+     * Replaces the state of this classifier by the state written with
+     * {@link #write(ModelOutput)}.
+     */
+    protected synchronized void readMeans(ModelInput in) throws IOException {
+        Object[] classes = in.readObjects();
+        int[] n = in.readInts();
+        int[] offset = in.readInts();
+        double[] flat = in.readDoubles();
+        sum = new HashMap<Object, double[]>();
+        count = new HashMap<Object, Integer>();
+        for (int k = 0; k < classes.length; k++) {
+            sum.put(classes[k], Arrays.copyOfRange(flat, offset[k], offset[k + 1]));
+            count.put(classes[k], n[k]);
         }
+        publish();
+    }
 
+    /* Replaces the means of all classes */
+    private void publish() {
+        Map<Object, Instance> means = new HashMap<Object, Instance>();
+        for (Object o : sum.keySet()) {
+            double[] s = sum.get(o);
+            double[] m = new double[s.length];
+            int n = count.get(o);
+            for (int i = 0; i < s.length; i++)
+                m[i] = s[i] / n;
+            means.put(o, new DenseInstance(m));
+        }
+        Set<Object> classes = new HashSet<Object>(means.keySet());
+        parentClasses = classes;
+        mean = means;
     }
 }
@@ -3,24 +3,49 @@
  */
 package net.sf.javaml.classification;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.core.exception.TrainingRequiredException;
 import net.sf.javaml.core.kdtree.KDTree;
+import net.sf.javaml.tools.BinaryModel;
 import net.sf.javaml.tools.InstanceTools;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
 
 /**
  * Implementation of the K nearest neighbor (KNN) classification algorithm with
  * KDtree support. This should make the algorithm faster, at the cost of memory
  * and more time spend during building the classifier.
  * 
+ * Instances can be added to and removed from the tree with
+ * {@link #update(Instance)} and {@link #forget(Instance)} while other threads
+ * classify instances. Removed instances are only marked as deleted in the
+ * tree, so the classifier should be built again after forgetting a large part
+ * of the training data.
+ * 
+ * The tree holds each point once, with the instances that have its values.
+ * Such a point counts as one neighbor, with the class of the first of its
+ * instances. {@link #forget(Instance)} removes the instance with the same ID
+ * from its point, and the point itself only when it has no instances left.
+ * 
+ * In the binary model format only the values and class of the training
+ * instances are stored, a loaded classifier returns new instances as
+ * neighbors.
+ * 
  * @author Thomas Abeel
  * 
  */
-public class KDtreeKNN extends AbstractClassifier {
+public class KDtreeKNN extends AbstractClassifier implements UpdateableClassifier, BinaryModel {
 
 	private static final long serialVersionUID = 1560149339188819924L;
 
@@ -39,35 +64,189 @@ public class KDtreeKNN extends AbstractClassifier {
 
 	private KDTree tree;
 
-	private Dataset training;
+	/* Number of training instances of each class */
+	private Map<Object, Integer> classes;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
 	@Override
 	public void buildClassifier(Dataset data) {
-		this.training = data;
+		lock.writeLock().lock();
+		try {
+			tree = new KDTree(data.noAttributes());
+			classes = new TreeMap<Object, Integer>();
+			for (Instance inst : data)
+				insert(inst);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void insert(Instance inst) {
+		if (tree == null) {
+			tree = new KDTree(inst.noAttributes());
+			classes = new TreeMap<Object, Integer>();
+		}
+		store(InstanceTools.array(inst), inst);
+		Integer count = classes.get(inst.classValue());
+		classes.put(inst.classValue(), count == null ? 1 : count + 1);
+	}
+
+	/* Adds an instance to the point with its values */
+	private void store(double[] key, Instance inst) {
+		List<Instance> point = point(key);
+		if (point == null) {
+			point = new ArrayList<Instance>(1);
+			tree.insert(key, point);
+		}
+		point.add(inst);
+	}
+
+	/* The instances of the point with the given values, null if there are none */
+	@SuppressWarnings("unchecked")
+	private List<Instance> point(double[] key) {
+		return tree == null ? null : (List<Instance>) tree.search(key);
+	}
+
+	@Override
+	public void update(Instance instance) {
+		lock.writeLock().lock();
+		try {
+			insert(instance);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
 
-		tree = new KDTree(data.noAttributes());
-		for (Instance inst : data) {
-			tree.insert(InstanceTools.array(inst), inst);
+	@Override
+	public void update(Dataset data) {
+		lock.writeLock().lock();
+		try {
+			for (Instance inst : data)
+				insert(inst);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void forget(Instance instance) {
+		lock.writeLock().lock();
+		try {
+			double[] key = InstanceTools.array(instance);
+			List<Instance> point = point(key);
+			/* equal values are not enough, it should be an instance in the tree */
+			int i = point == null ? -1 : point.size() - 1;
+			while (i >= 0 && point.get(i).getID() != instance.getID())
+				i--;
+			if (i < 0)
+				throw new IllegalArgumentException("The instance is not part of the training data");
+			point.remove(i);
+			if (point.isEmpty())
+				tree.delete(key);
+			int count = classes.get(instance.classValue()) - 1;
+			if (count == 0)
+				classes.remove(instance.classValue());
+			else
+				classes.put(instance.classValue(), count);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void write(ModelOutput out) throws IOException {
+		lock.readLock().lock();
+		try {
+			if (tree == null)
+				throw new TrainingRequiredException();
+			List<double[]> keys = new ArrayList<double[]>();
+			List<Object> values = new ArrayList<Object>();
+			tree.preorder(keys, values);
+			Object[] labels = classes.keySet().toArray();
+			int[] counts = new int[labels.length];
+			HashMap<Object, Integer> index = new HashMap<Object, Integer>();
+			for (int i = 0; i < labels.length; i++) {
+				index.put(labels[i], i);
+				counts[i] = classes.get(labels[i]);
+			}
+			/* a node with several instances is written once for each of them */
+			int n = 0;
+			for (Object v : values)
+				n += v == null ? 1 : ((List<?>) v).size();
+			int d = tree.dimensions();
+			double[] flat = new double[n * d];
+			/* the class of each instance, -1 for deleted nodes */
+			int[] classOf = new int[n];
+			int j = 0;
+			for (int i = 0; i < keys.size(); i++) {
+				List<?> point = (List<?>) values.get(i);
+				int m = point == null ? 1 : point.size();
+				for (int r = 0; r < m; r++, j++) {
+					System.arraycopy(keys.get(i), 0, flat, j * d, d);
+					classOf[j] = point == null ? -1 : index.get(((Instance) point.get(r)).classValue());
+				}
+			}
+			out.writeInt(k);
+			out.writeInt(d);
+			out.writeObjects(labels);
+			out.writeInts(counts);
+			out.writeDoubles(flat);
+			out.writeInts(classOf);
+		} finally {
+			lock.readLock().unlock();
 		}
+	}
 
+	/**
+	 * Reads a classifier that was written with {@link #write(ModelOutput)}.
+	 * The instances are inserted in the pre-order of the written tree, so the
+	 * tree gets the same structure. The instances of a point follow each other
+	 * and are added to the point in their original order.
+	 */
+	public static KDtreeKNN read(ModelInput in) throws IOException {
+		KDtreeKNN knn = new KDtreeKNN(in.readInt());
+		int d = in.readInt();
+		Object[] labels = in.readObjects();
+		int[] counts = in.readInts();
+		double[] flat = in.readDoubles();
+		int[] classOf = in.readInts();
+		knn.tree = new KDTree(d);
+		knn.classes = new TreeMap<Object, Integer>();
+		for (int i = 0; i < labels.length; i++)
+			knn.classes.put(labels[i], counts[i]);
+		for (int i = 0; i < classOf.length; i++) {
+			double[] values = new double[d];
+			System.arraycopy(flat, i * d, values, 0, d);
+			if (classOf[i] < 0) {
+				knn.tree.insert(values, null);
+				knn.tree.delete(values);
+			} else {
+				knn.store(values, new DenseInstance(values, labels[classOf[i]]));
+			}
+		}
+		return knn;
 	}
 
 	@Override
 	public Map<Object, Double> classDistribution(Instance instance) {
-		if (training == null)
-			throw new TrainingRequiredException();
-
-		/* Get nearest neighbors */
-		Object[] neighbors = tree.nearest(InstanceTools.array(instance), k);// //training.kNearest(k,
-		// euc,
-		// instance);
-		/* Build distribution map */
 		HashMap<Object, Double> out = new HashMap<Object, Double>();
-		for (Object o : training.classes())
-			out.put(o, 0.0);
-		for (Object o : neighbors) {
-			Instance i = (Instance) o;
-			out.put(i.classValue(), out.get(i.classValue()) + 1);
+		lock.readLock().lock();
+		try {
+			if (tree == null)
+				throw new TrainingRequiredException();
+
+			/* Get nearest neighbors */
+			Object[] neighbors = tree.nearest(InstanceTools.array(instance), k);
+			/* Build distribution map */
+			for (Object o : classes.keySet())
+				out.put(o, 0.0);
+			for (Object o : neighbors) {
+				Instance i = (Instance) ((List<?>) o).get(0);
+				out.put(i.classValue(), out.get(i.classValue()) + 1);
+			}
+		} finally {
+			lock.readLock().unlock();
 		}
 
 		double min = k;
@@ -6,8 +6,11 @@ package net.sf.javaml.classification;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.core.exception.TrainingRequiredException;
 import net.sf.javaml.distance.DistanceMeasure;
@@ -16,10 +19,14 @@ import net.sf.javaml.distance.EuclideanDistance;
 /**
  * Implementation of the K nearest neighbor (KNN) classification algorithm.
  * 
+ * The classifier keeps its own list of the training instances, so instances
+ * can be added and removed with {@link #update(Instance)} and
+ * {@link #forget(Instance)} while other threads classify instances.
+ * 
  * @author Thomas Abeel
  * 
  */
-public class KNearestNeighbors extends AbstractClassifier {
+public class KNearestNeighbors extends AbstractClassifier implements UpdateableClassifier {
 
 	private static final long serialVersionUID = 1560149339188819924L;
 
@@ -29,6 +36,8 @@ public class KNearestNeighbors extends AbstractClassifier {
 
 	private DistanceMeasure dm;
 
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
 	/**
 	 * Instantiate the k-nearest neighbors algorithm with a specified number of
 	 * neighbors.
@@ -54,21 +63,66 @@ public class KNearestNeighbors extends AbstractClassifier {
 
 	@Override
 	public void buildClassifier(Dataset data) {
-		this.training = data;
+		lock.writeLock().lock();
+		try {
+			this.training = new DefaultDataset(data);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void update(Instance instance) {
+		lock.writeLock().lock();
+		try {
+			if (training == null)
+				training = new DefaultDataset();
+			training.add(instance);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void update(Dataset data) {
+		lock.writeLock().lock();
+		try {
+			if (training == null)
+				training = new DefaultDataset();
+			training.addAll(data);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void forget(Instance instance) {
+		lock.writeLock().lock();
+		try {
+			if (training == null || !training.remove(instance))
+				throw new IllegalArgumentException("The instance is not part of the training data");
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	@Override
 	public Map<Object, Double> classDistribution(Instance instance) {
-		if (training == null)
-			throw new TrainingRequiredException();
-		/* Get nearest neighbors */
-		Set<Instance> neighbors = training.kNearest(k, instance, dm);
-		/* Build distribution map */
 		HashMap<Object, Double> out = new HashMap<Object, Double>();
-		for (Object o : training.classes())
-			out.put(o, 0.0);
-		for (Instance i : neighbors) {
-			out.put(i.classValue(), out.get(i.classValue()) + 1);
+		lock.readLock().lock();
+		try {
+			if (training == null)
+				throw new TrainingRequiredException();
+			/* Get nearest neighbors */
+			Set<Instance> neighbors = training.kNearest(k, instance, dm);
+			/* Build distribution map */
+			for (Object o : training.classes())
+				out.put(o, 0.0);
+			for (Instance i : neighbors) {
+				out.put(i.classValue(), out.get(i.classValue()) + 1);
+			}
+		} finally {
+			lock.readLock().unlock();
 		}
 
 		double min = k;
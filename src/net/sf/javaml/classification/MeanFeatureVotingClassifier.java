@@ -3,10 +3,13 @@
  */
 package net.sf.javaml.classification;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 import net.sf.javaml.core.Instance;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
 
 /**
  * This classifier calculates the mean for each class. Subsequently each feature
@@ -50,6 +53,13 @@ public class MeanFeatureVotingClassifier extends AbstractMeanClassifier {
 
     private static final long serialVersionUID = 2393351569825555546L;
 
-  
+    /**
+     * Reads a classifier that was written with {@link #write(ModelOutput)}.
+     */
+    public static MeanFeatureVotingClassifier read(ModelInput in) throws IOException {
+        MeanFeatureVotingClassifier c = new MeanFeatureVotingClassifier();
+        c.readMeans(in);
+        return c;
+    }
 
 }
@@ -3,8 +3,12 @@
  */
 package net.sf.javaml.classification;
 
+import java.io.IOException;
+
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
 
 /**
  * Nearest mean classifier. This classifier calculates the mean for each class
@@ -34,6 +38,13 @@ public class NearestMeanClassifier extends AbstractMeanClassifier {
         return pred;
     }
 
-    
+    /**
+     * Reads a classifier that was written with {@link #write(ModelOutput)}.
+     */
+    public static NearestMeanClassifier read(ModelInput in) throws IOException {
+        NearestMeanClassifier c = new NearestMeanClassifier();
+        c.readMeans(in);
+        return c;
+    }
 
 }
@@ -0,0 +1,55 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.classification;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+
+/**
+ * Interface for classifiers that can learn from new instances without being
+ * trained again on all data.
+ *
+ * Updating the classifier with a data set after it was built with another
+ * data set gives the same classifier as building it with both data sets.
+ * Forgetting an instance that was used for training gives the same classifier
+ * as building it without that instance.
+ *
+ * Instances can be classified from other threads while the classifier is
+ * updated, they will see the classifier either before or after each update.
+ * An update on a classifier that has not been built yet starts from an empty
+ * training set.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public interface UpdateableClassifier extends Classifier {
+
+    /**
+     * Adds an instance to the training data of the classifier.
+     *
+     * @param instance
+     *            the instance to learn from
+     */
+    public void update(Instance instance);
+
+    /**
+     * Adds all instances of a data set to the training data of the classifier.
+     *
+     * @param data
+     *            the instances to learn from
+     */
+    public void update(Dataset data);
+
+    /**
+     * Removes an instance from the training data of the classifier.
+     *
+     * @param instance
+     *            an instance that was used to train the classifier
+     * @throws IllegalArgumentException
+     *             if the classifier can tell that the instance was not used
+     *             to train it
+     */
+    public void forget(Instance instance);
+
+}
@@ -18,18 +18,14 @@ class BayesResult {
 	/** Stores the prior probabilities of each class */
 	protected double[] classFreq;
 	protected double[] classProb;
-	protected Vector<Integer>[] classInstanceIDList;
 	private String[][] topList;
 	private HashMap<String, Integer> help;
 	private HashMap<String, Integer> s2;
 	protected HashMap<Integer, BayesKSolution> BN = new HashMap<Integer, BayesKSolution>();
 
 	double treshold;
-	/**
-	 * Stores the counts for each feature: an entry in the hashTable stores the
-	 * array of class counts for a feature
-	 */
-	protected Hashtable<Integer, Hashtable<Double, ClassCounter>> featureTable;
+	/** Stores the counts for each feature value and class */
+	protected CountTable counts;
 	protected Hashtable<Integer, Hashtable<Double, ClassCounter_compact>> featureTable_compact;
 	protected HashMap<Integer, HashMap<Integer, Double>> CMI_map;
 	protected LinkedList<Integer> MI_map;
@@ -74,21 +70,6 @@ class BayesResult {
 		classFreq = cfreq;
 	}
 
-	void initInstanceIDtoClassListArray(int amountOfClasses) {
-		classInstanceIDList = new Vector[amountOfClasses];
-		for (int i = 0; i < amountOfClasses; i++) {
-			classInstanceIDList[i] = new Vector<Integer>();
-		}
-	}
-
-	void addInstanceIDtoClassList(int index, int instanceid_count) {
-		classInstanceIDList[index].add(instanceid_count);
-	}
-
-	Vector<Integer> getClassInstanceList(int index) {
-		return classInstanceIDList[index];
-	}
-
 	/***/
 	String[] getTopologyList(int k) {
 		return (topList[k]);
@@ -144,16 +125,14 @@ class BayesResult {
 		return MI_map;
 	}
 
-	/** Returns the class priors */
-	/** Sets the feature hash */
-	 void setFeatureTable(
-			Hashtable<Integer, Hashtable<Double, ClassCounter>> table) {
-		featureTable = table;
+	/** Sets the feature counts */
+	 void setCounts(CountTable counts) {
+		this.counts = counts;
 	}
 
-	/** Returns the feature hash */
-	 Hashtable<Integer, Hashtable<Double, ClassCounter>> getFeatureTable() {
-		return (featureTable);
+	/** Returns the feature counts */
+	 CountTable getCounts() {
+		return counts;
 	}
 
 	 void setFeatureTable_compact(
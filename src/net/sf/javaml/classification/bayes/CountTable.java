@@ -0,0 +1,372 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.classification.bayes;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Frequency tables of a Bayesian classifier, stored in arrays.
+ *
+ * Every feature that occurs in the training data gets a slot. The distinct
+ * values of a feature are numbered in ascending order, and the counts of
+ * each (value, class) pair are kept in one array per feature. For every value
+ * the training instances that have this value are kept as a sorted array of
+ * instance indices, from which bit sets can be made for intersections.
+ *
+ * When the data set is sparse, the absence of a feature is modeled as an
+ * extra value with id {@link #absent(int)}. Its counts are the class counts
+ * minus the counts of all values that are present, and its instances are the
+ * instances that do not have the feature. These instances are not stored, so
+ * the size of the tables only depends on the number of values that are
+ * present.
+ *
+ * The tables are built in parallel, one feature at a time, and are not
+ * modified afterwards, so they can be read from several threads.
+ *
+ * @author Thomas Abeel
+ */
+class CountTable implements Serializable {
+
+	private static final long serialVersionUID = -3170466727468563102L;
+
+	/* Minimum number of items before a loop is split over threads */
+	private static final int MIN_CHUNK = 64;
+
+	private final boolean sparse;
+
+	private final int noClasses;
+
+	private final int size;
+
+	/* class index of each training instance */
+	private final int[] classOf;
+
+	private final int[] classCounts;
+
+	/* attribute index of each slot */
+	private final int[] features;
+
+	/* slot of each attribute index, -1 for attributes that never occur */
+	private final int[] slots;
+
+	/* sorted distinct values of each slot */
+	private final double[][] values;
+
+	/* counts of each slot, indexed by valueId * noClasses + class */
+	private final int[][] counts;
+
+	/*
+	 * instance indices of each slot grouped by value id, value id v owns
+	 * postings[slot][start[slot][v]] up to postings[slot][start[slot][v+1]].
+	 * The absent value has no postings.
+	 */
+	private final int[][] start;
+
+	private final int[][] postings;
+
+	/**
+	 * Counts the values of all features in a data set.
+	 *
+	 * @param data
+	 *            the training data
+	 * @param classIndex
+	 *            the index of each class value
+	 * @param sparse
+	 *            whether absent features should be counted as an extra value
+	 */
+	CountTable(final Dataset data, Map<Object, Integer> classIndex, boolean sparse) {
+		this.sparse = sparse;
+		this.noClasses = classIndex.size();
+		this.size = data.size();
+		classOf = new int[size];
+		classCounts = new int[noClasses];
+		for (int i = 0; i < size; i++) {
+			classOf[i] = classIndex.get(data.instance(i).classValue());
+			classCounts[classOf[i]]++;
+		}
+
+		/* extract the keys and values of each instance */
+		final int[][] keys = new int[size][];
+		final double[][] vals = new double[size][];
+		Parallel.forRange(size, MIN_CHUNK, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int i = from; i < to; i++) {
+					Instance inst = data.instance(i);
+					int[] k = keys(inst);
+					double[] v = new double[k.length];
+					for (int j = 0; j < k.length; j++)
+						v[j] = inst.value(k[j]);
+					keys[i] = k;
+					vals[i] = v;
+				}
+			}
+		});
+
+		/* transpose the instances to one column per feature */
+		int maxKey = -1;
+		for (int[] k : keys)
+			if (k.length > 0)
+				maxKey = Math.max(maxKey, k[k.length - 1]);
+		int[] colSize = new int[maxKey + 1];
+		for (int[] k : keys)
+			for (int key : k)
+				colSize[key]++;
+		slots = new int[maxKey + 1];
+		int noFeatures = 0;
+		for (int a = 0; a <= maxKey; a++)
+			slots[a] = colSize[a] > 0 ? noFeatures++ : -1;
+		features = new int[noFeatures];
+		final int[][] colRows = new int[noFeatures][];
+		final double[][] colVals = new double[noFeatures][];
+		for (int a = 0; a <= maxKey; a++) {
+			if (slots[a] >= 0) {
+				features[slots[a]] = a;
+				colRows[slots[a]] = new int[colSize[a]];
+				colVals[slots[a]] = new double[colSize[a]];
+			}
+		}
+		int[] fill = new int[noFeatures];
+		for (int i = 0; i < size; i++) {
+			int[] k = keys[i];
+			double[] v = vals[i];
+			keys[i] = null;
+			vals[i] = null;
+			for (int j = 0; j < k.length; j++) {
+				int s = slots[k[j]];
+				colRows[s][fill[s]] = i;
+				colVals[s][fill[s]++] = v[j];
+			}
+		}
+
+		values = new double[noFeatures][];
+		counts = new int[noFeatures][];
+		start = new int[noFeatures][];
+		postings = new int[noFeatures][];
+		Parallel.forRange(noFeatures, MIN_CHUNK, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int s = from; s < to; s++) {
+					count(s, colRows[s], colVals[s]);
+					colRows[s] = null;
+					colVals[s] = null;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns the attributes an instance has, in ascending order.
+	 */
+	static int[] keys(Instance inst) {
+		int[] k;
+		if (inst instanceof DenseInstance) {
+			k = new int[inst.noAttributes()];
+			for (int j = 0; j < k.length; j++)
+				k[j] = j;
+		} else {
+			Set<Integer> set = inst.keySet();
+			k = new int[set.size()];
+			int j = 0;
+			for (Integer key : set)
+				k[j++] = key;
+		}
+		return k;
+	}
+
+	/**
+	 * Fills the tables of one slot from the rows that have the feature, in
+	 * ascending order, and their values.
+	 */
+	private void count(int s, int[] rows, double[] vals) {
+		double[] sorted = vals.clone();
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++)
+			if (i == 0 || Double.compare(sorted[i], sorted[distinct - 1]) != 0)
+				sorted[distinct++] = sorted[i];
+		double[] v = Arrays.copyOf(sorted, distinct);
+		int noValues = sparse ? distinct + 1 : distinct;
+		int[] c = new int[noValues * noClasses];
+		int[] offsets = new int[distinct + 1];
+		int[] ids = new int[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			int id = Arrays.binarySearch(v, vals[i]);
+			ids[i] = id;
+			c[id * noClasses + classOf[rows[i]]]++;
+			offsets[id + 1]++;
+		}
+		if (sparse) {
+			/* the absent value holds the remaining instances of each class */
+			for (int k = 0; k < noClasses; k++) {
+				int present = 0;
+				for (int id = 0; id < distinct; id++)
+					present += c[id * noClasses + k];
+				c[distinct * noClasses + k] = classCounts[k] - present;
+			}
+		}
+		for (int id = 0; id < distinct; id++)
+			offsets[id + 1] += offsets[id];
+		int[] p = new int[rows.length];
+		int[] next = Arrays.copyOf(offsets, distinct);
+		for (int i = 0; i < rows.length; i++)
+			p[next[ids[i]]++] = rows[i];
+		values[s] = v;
+		counts[s] = c;
+		start[s] = offsets;
+		postings[s] = p;
+	}
+
+	boolean isSparse() {
+		return sparse;
+	}
+
+	/** Returns the number of training instances */
+	int size() {
+		return size;
+	}
+
+	int noClasses() {
+		return noClasses;
+	}
+
+	/** Returns the number of features that occur in the training data */
+	int noFeatures() {
+		return features.length;
+	}
+
+	/** Returns the attribute index of a slot */
+	int feature(int slot) {
+		return features[slot];
+	}
+
+	/** Returns the slot of an attribute index, or -1 if it never occurs */
+	int slot(int attribute) {
+		return attribute >= 0 && attribute < slots.length ? slots[attribute] : -1;
+	}
+
+	/**
+	 * Returns the number of values of the feature in a slot, including the
+	 * absent value for sparse data.
+	 */
+	int noValues(int slot) {
+		return sparse ? values[slot].length + 1 : values[slot].length;
+	}
+
+	/**
+	 * Returns the id of the absent value of a slot, or -1 when the data is not
+	 * sparse.
+	 */
+	int absent(int slot) {
+		return sparse ? values[slot].length : -1;
+	}
+
+	/** Returns the value with the given id, NaN for the absent value */
+	double value(int slot, int valueId) {
+		return valueId < values[slot].length ? values[slot][valueId] : Double.NaN;
+	}
+
+	/**
+	 * Returns the id of the value an instance has for the feature of a slot.
+	 * When the instance does not have the feature, this is the absent value.
+	 * Values that did not occur in the training data have id -1.
+	 */
+	int valueId(int slot, Instance inst) {
+		int attribute = features[slot];
+		if (!inst.containsKey(attribute))
+			return absent(slot);
+		return valueId(slot, inst.value(attribute));
+	}
+
+	/**
+	 * Returns the id of a value of the feature in a slot, or -1 if this value
+	 * did not occur in the training data.
+	 */
+	int valueId(int slot, double value) {
+		int id = Arrays.binarySearch(values[slot], value);
+		return id < 0 ? -1 : id;
+	}
+
+	/** Returns the number of training instances of a class */
+	int classCount(int cls) {
+		return classCounts[cls];
+	}
+
+	/**
+	 * Returns the number of training instances of a class that have a value,
+	 * 0 for value id -1.
+	 */
+	int count(int slot, int valueId, int cls) {
+		return valueId < 0 ? 0 : counts[slot][valueId * noClasses + cls];
+	}
+
+	/** Returns the class index of a training instance */
+	int classOf(int instance) {
+		return classOf[instance];
+	}
+
+	/**
+	 * Returns the indices of the training instances that have the feature,
+	 * grouped by value and in ascending order for each value. The returned
+	 * array must not be modified.
+	 */
+	int[] postings(int slot) {
+		return postings[slot];
+	}
+
+	/**
+	 * Returns where the instances of a value start in {@link #postings(int)},
+	 * not defined for the absent value
+	 */
+	int from(int slot, int valueId) {
+		return start[slot][valueId];
+	}
+
+	/**
+	 * Returns where the instances of a value end in {@link #postings(int)},
+	 * not defined for the absent value
+	 */
+	int to(int slot, int valueId) {
+		return start[slot][valueId + 1];
+	}
+
+	/**
+	 * Returns the set of training instances that have a value, an empty set
+	 * for value id -1.
+	 */
+	BitSet instances(int slot, int valueId) {
+		BitSet out = new BitSet(size);
+		if (valueId < 0)
+			return out;
+		int[] p = postings[slot];
+		if (valueId == absent(slot)) {
+			out.set(0, size);
+			for (int i : p)
+				out.clear(i);
+		} else {
+			for (int i = start[slot][valueId]; i < start[slot][valueId + 1]; i++)
+				out.set(p[i]);
+		}
+		return out;
+	}
+
+	/** Returns the set of training instances of a class */
+	BitSet instances(int cls) {
+		BitSet out = new BitSet(size);
+		for (int i = 0; i < size; i++)
+			if (classOf[i] == cls)
+				out.set(i);
+		return out;
+	}
+
+}
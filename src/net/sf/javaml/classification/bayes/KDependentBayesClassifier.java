@@ -1,13 +1,10 @@
 package net.sf.javaml.classification.bayes;
 
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.Vector;
 
 import net.sf.javaml.core.Dataset;
@@ -16,6 +13,13 @@ import net.sf.javaml.core.Instance;
 /**
  * Implementation of the K Dependent Bayes classification algorithm.
  * 
+ * The features are added to the network in order of decreasing mutual
+ * information with the class. Each feature gets as parents the k features
+ * before it with the highest conditional mutual information given the class.
+ * These values are calculated in parallel for all pairs of features, see
+ * {@link #setCandidates(int)} to limit the number of pairs for data sets with
+ * many features.
+ * 
  * @author Lieven Baeyens
  * 
  */
@@ -25,6 +29,12 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 	private int[] kparents;
 	private int currentWorkingK = 0;
 	private int maxkparents;
+	/* the training instances of each class */
+	private BitSet[] classSets;
+	/* number of most informative features considered as parents, 0 for all */
+	private int candidates = 0;
+	/* bytes used to keep bit sets in memory, 0 for the default */
+	private long memoryBudget = 0;
 
 	/**
 	 * Instantiate the KD Bayesian classifier
@@ -33,7 +43,7 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 	 * @param sparse
 	 *            sparseness of dataset
 	 * @param treshold
-	 *            KDB CMI treshold
+	 *            KDB CMI treshold, in bits
 	 * @param kparents
 	 *            a list of ASC SORTED k values
 	 */
@@ -63,6 +73,10 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 	public void buildClassifier(Dataset data) {
 		// same for NB, calculate and store frequencies
 		super.buildClassifier(data);
+		CountTable counts = trainResult.getCounts();
+		classSets = new BitSet[numClasses];
+		for (int k = 0; k < numClasses; k++)
+			classSets[k] = counts.instances(k);
 		// calculate (Conditional) Mutual Information and build Bayesian network
 		// for every k
 		buildBayesianNetworks();
@@ -133,35 +147,33 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 	 */
 
 	private void calculateNeededCMIbyMIorder() {
-
-		// calculate Mutual Information values and store it
-		LinkedList<Integer> MI = calculateMutualInformation_Elvira();
+		CountTable counts = trainResult.getCounts();
+		MutualInformation engine = new MutualInformation(counts);
+		if (memoryBudget > 0)
+			engine.setMemoryBudget(memoryBudget);
+		// features sorted by Mutual Information with the class
+		Integer[] order = engine.order();
 		// if we calculate cmi values for highest k we can build all BN with
 		// other k values out of it
 		// this is the KDB building Bayesian network algorithm: cfr theory
+		int[][] parents = engine.parents(order, maxkparents, treshold,
+				candidates);
 
 		// filling in vertexes + KDB0
 		BayesNet BN = new BayesNet();
 		Vector<Integer> usedFeatures = new Vector<Integer>(numFeatures);
-		Iterator MIIt = MI.iterator();
 		HashMap<Integer, Object[]> ImaxLL = new HashMap<Integer, Object[]>(
 				initialCap);
-		while ((usedFeatures.size() < MI.size()) && (MIIt.hasNext())) {
-			int Imax = (Integer) MIIt.next();
-			if (!BN.getNodes().contains(Imax)) {
-				BN.addNode(Imax);
-			}
-			int m = Math.min(usedFeatures.size(), maxkparents);
-			// only calculate m highest CMI values out of list N
-			// output: sorted features Xj belonging to those highest cmi values
-			LinkedList<Integer> usedFeatures_SortedCMIvalueListLL = calculateCMI_Memory(
-					Imax, (Vector<Integer>) usedFeatures.clone(), m);
-			Object[] usedFeatures_SortedCMIvalueA = usedFeatures_SortedCMIvalueListLL
-					.toArray();
+		for (int slot : order) {
+			int Imax = counts.feature(slot);
+			BN.addNode(Imax);
+			// features Xj belonging to the highest cmi values, sorted
+			Object[] usedFeatures_SortedCMIvalueA = new Object[parents[slot].length];
+			for (int j = 0; j < parents[slot].length; j++)
+				usedFeatures_SortedCMIvalueA[j] = counts.feature(parents[slot][j]);
 			ImaxLL.put(Imax, usedFeatures_SortedCMIvalueA);
 			// store list as features not MI values
 			usedFeatures.add(Imax);
-
 		}
 		trainResult.setBNBB_XiXjinS_SortedCMI(ImaxLL);
 		trainResult.setUsedFeatures_SortedMI(usedFeatures);
@@ -172,198 +184,6 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 
 	}
 
-	// **********************************************************************************************//
-	// rx ry
-	// Ip(X;Y) = SUM SUM P(X=xi, Y=yj) * log P(X=xi, Y=yj)
-	// i=1 j=1
-	//
-	// rx ry
-	// - SUM P(X=xi) * log P(X=xi) - SUM P(Y=yj) * log P(Y=yj)
-	// i=1 j=1
-	//
-	//
-	// **********************************************************************************************//
-	/**
-	 * Calculates the Mutual Information distance of a variable, based on a
-	 * multiclass problem
-	 * 
-	 */
-	private LinkedList<Integer> calculateMutualInformation_Elvira() {
-		Hashtable<Integer, Hashtable<Double, ClassCounter>> featureName_HT = trainResult
-				.getFeatureTable();
-		// set initial probabilities to the prior probs
-
-		double[] freq = trainResult.getClassFreqs().clone();
-		// Red black tree structure to have constant sorted structure
-		// so we can remove lowest cmi values, good for memory
-		SortedMap<Double, LinkedList> sMap = new TreeMap<Double, LinkedList>()
-				.descendingMap();
-
-		int fncount = 0;
-		double probCj;
-		double clsum = 0.0;
-		// only once
-		for (int j = 0; j < numClasses; j++) {
-			// avoid probs k because its rounded
-			probCj = freq[j] / numInstances;
-			if (probCj != 0)
-				clsum += (probCj * (Math.log(probCj) / Math.log(10)));
-		}
-		for (Object key : featureName_HT.keySet()) {
-			fncount++;
-			int FN = (Integer) key;
-
-			double info = 0;
-			int nClasses = numClasses;
-
-			double probXiCj, probXi, numXi;
-
-			for (Object key2 : featureName_HT.get(FN).keySet()) {
-				Double FV = (Double) key2;
-				probXi = 0.0;
-
-				// probXiCj
-				for (int j = 0; j < nClasses; j++) {
-
-					double probXi_temp = featureName_HT.get(FN).get(FV)
-							.getCountClass(j);
-					probXi += probXi_temp;
-					probXiCj = (probXi_temp) / numInstances;
-					if (probXiCj != 0)
-						info += probXiCj * (Math.log(probXiCj) / Math.log(10));
-				}
-				// probXi
-				probXi /= numInstances;
-				if (probXi != 0)
-					info = info - (probXi * (Math.log(probXi) / Math.log(10)));
-
-			}
-			info -= clsum;
-
-			if (!sMap.containsKey(info)) {
-				LinkedList<Integer> list = new LinkedList<Integer>();
-				list.add(FN);
-
-				sMap.put(info, list);
-			} else {
-				sMap.get(info).add(FN);
-			}
-
-		}// end loop all FEATURES
-
-		LinkedList<Integer> list2 = new LinkedList<Integer>();
-
-		for (double sc : sMap.keySet()) {
-			list2.addAll(sMap.get(sc));
-		}
-		return list2;
-	}// end mutualInformation(Node)>
-
-	/**
-	 * Calculates the Conditional Mutual Information of 2 features given a class
-	 * 
-	 */
-	private LinkedList<Integer> calculateCMI_Memory(int FN1,
-			Vector<Integer> usedFeatures, int m) {
-
-		Hashtable<Integer, Hashtable<Double, ClassCounter>> featureName_HT = trainResult
-				.getFeatureTable();
-
-		int fcnt = 0;
-		int allfcnt = 0;
-		double[] freq = trainResult.getClassFreqs().clone();
-		LinkedList<Integer> usedFeatures_SortedCMIvalueListLL = new LinkedList<Integer>();
-
-		SortedMap<Double, LinkedList> sMap = new TreeMap<Double, LinkedList>()
-				.descendingMap();
-
-		double sumXC = 0;
-		for (Double FV1 : featureName_HT.get(FN1).keySet()) {
-
-			for (int k = 0; k < numClasses; k++) {
-				double pXC = featureName_HT.get(FN1).get(FV1).getCountClass(k)
-						/ freq[k];
-				if (pXC != 0) {
-					sumXC += pXC * (Math.log(pXC) / Math.log(10));
-				}
-			}
-		}
-
-		Iterator it = usedFeatures.iterator();
-		while (it.hasNext()) {
-			int FN2 = (Integer) it.next();
-			double CMIvalue = 0.0;
-
-			double sumXYC = 0;
-			double sumYC = 0;
-			for (double FV2 : featureName_HT.get(FN2).keySet()) {
-
-				for (int k = 0; k < numClasses; k++) {
-					double pYC = featureName_HT.get(FN2).get(FV2)
-							.getCountClass(k)
-							/ freq[k];
-					if (pYC != 0) {
-						sumYC += pYC * (Math.log(pYC) / Math.log(10));
-					}
-					// pXYC
-					for (double FV1 : featureName_HT.get(FN1).keySet()) {
-
-						double pXYC = compareConditionalInstanceIDLists(FN1,
-								FV1, FN2, FV2, k)
-								/ freq[k];
-						if (pXYC != 0) {
-							sumXYC += pXYC * (Math.log(pXYC) / Math.log(10));
-						}
-					}
-
-				}
-			}
-
-			CMIvalue = (sumXYC - sumXC - sumYC);
-			// KDB treshold to eliminate low CMI value features
-			if (treshold < CMIvalue) {
-				if (!sMap.containsKey(CMIvalue)) {
-					LinkedList<Integer> list = new LinkedList<Integer>();
-					list.add(FN2);
-
-					sMap.put(CMIvalue, list);
-				} else {
-					sMap.get(CMIvalue).add(FN2);
-				}
-				fcnt++;
-				allfcnt++;
-
-			}
-			// removing redundant and lowest CMI values
-			if ((fcnt > (m + 10))) {
-				int delAmount = fcnt - m;
-				while (delAmount > 0) {
-					LinkedList<Integer> list2 = sMap.get(sMap.lastKey());
-					if (list2.size() <= delAmount) {
-						delAmount -= list2.size();
-						fcnt -= list2.size();
-						sMap.remove(sMap.lastKey());
-
-					} else {
-						list2.removeFirst();
-						sMap.put(sMap.lastKey(), list2);
-						delAmount--;
-						fcnt--;
-					}
-
-				}
-
-			}
-		}// end FN2 lus
-
-		for (double sc : sMap.keySet()) {
-			usedFeatures_SortedCMIvalueListLL.addAll(sMap.get(sc));
-		}
-
-		return usedFeatures_SortedCMIvalueListLL;
-
-	}
-
 	/**
 	 * Calculates the prob of the testExample being generated by each category
 	 * 
@@ -374,10 +194,8 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 		System.out.println("Start classification process");
 		// classification process KDB, cfr. theory
 		HashMap<Object, Double> out = new HashMap<Object, Double>();
-		coverAbsentFeatures_And_fill_helpMap(inst);
 		// fetch frequencies
-		Hashtable<Integer, Hashtable<Double, ClassCounter>> featureName_HT = trainResult
-				.getFeatureTable();
+		CountTable counts = trainResult.getCounts();
 		double[] freq = trainResult.getClassFreqs().clone();
 
 		// fetch dependencies for current working k value
@@ -385,6 +203,11 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 		// get feature list
 		Set<Integer> List = BN.getNodes();
 
+		// instances that share the value of the test instance, per feature
+		HashMap<Integer, BitSet> matches = new HashMap<Integer, BitSet>();
+		for (int feature : List)
+			matches.put(feature, retrieveInstanceIDList(feature, inst));
+
 		for (int k = 0; k < numClasses; k++) {
 			Iterator itrtlc = List.iterator();
 
@@ -393,70 +216,25 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 
 				int feature_current = (Integer) itrtlc.next();
 				// for laplace
-				int numValues = featureName_HT.get(feature_current).size();
+				int numValues = counts.noValues(counts.slot(feature_current));
 
 				Vector<Integer> parents = BN.getNodeParents(feature_current);
-				SortedMap<Integer, LinkedList> sMap = new TreeMap<Integer, LinkedList>();
-				Vector<Integer> list_instanceIDs = retrieveInstanceIDList(
-						feature_current, getInstValue(feature_current, inst), k);
+				BitSet list_instanceIDs = matches.get(feature_current);
 
-				double numerator = list_instanceIDs.size();
+				double numerator = cardinality(list_instanceIDs, classSets[k]);
 				// will be overwritten if feature has parents in BN
 				double denominator = freq[k];
 
 				if (parents.size() > 0) {
-
-					Vector<Integer> parentList_instanceIDs;
-					Iterator it = parents.iterator();
-
-					// if more parent lists,sort by list size
-					// so duplicate check algo can go faster
-					if ((parents.size() > 3) && (numFeatures > 50)) {
-
-						while (it.hasNext()) {
-							int parent = (Integer) it.next();
-							int newsize;
-							newsize = retrieveInstanceIDList(parent,
-									getInstValue(parent, inst), k).size();
-							if (!sMap.containsKey(newsize)) {
-								LinkedList<Integer> list = new LinkedList<Integer>();
-								list.add(parent);
-								sMap.put(newsize, list);
-							} else {
-								sMap.get(newsize).add(parent);
-							}
-						}
-						LinkedList<Integer> list2 = new LinkedList<Integer>();
-
-						for (int sc : sMap.keySet()) {
-							list2.addAll(sMap.get(sc));
-						}
-						// filled parent map
-
-						it = list2.iterator();
-
-					}
-					int parent = (Integer) it.next();
-					parentList_instanceIDs = retrieveInstanceIDList(parent,
-							getInstValue(parent, inst), k);
-
 					// calculate mutual elements in sample-id lists of all
 					// parents of current feature
-					while (it.hasNext() && parentList_instanceIDs != null) {
-						parent = (Integer) it.next();
-						parentList_instanceIDs = fnc.cutVectorsSort(
-								parentList_instanceIDs, retrieveInstanceIDList(
-										parent, getInstValue(parent, inst), k));
-					}
-
-					Vector<Integer> newlist = null;
-					denominator = parentList_instanceIDs.size();
-					if (parentList_instanceIDs != null) {
-						newlist = fnc.cutVectorsSort(list_instanceIDs,
-								parentList_instanceIDs);
-					}
-					numerator = newlist.size();
-
+					BitSet parentList_instanceIDs = (BitSet) classSets[k]
+							.clone();
+					for (int parent : parents)
+						parentList_instanceIDs.and(matches.get(parent));
+					denominator = parentList_instanceIDs.cardinality();
+					numerator = cardinality(list_instanceIDs,
+							parentList_instanceIDs);
 				}
 				classScore += fnc
 						.log2(((numerator + 1) / (denominator + numValues)));
@@ -474,47 +252,29 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 	}
 
 	/**
-	 * fetch sample-id lists of all classes for one feature value p(X=x)=(SUM
-	 * Lists).size()
+	 * fetch the set of training instances that have the same value for a
+	 * feature as an instance, for all classes
 	 * 
 	 * @param FN
 	 *            feature name
-	 * @param FV
-	 *            feature value
-	 * @param CV
-	 *            class value
+	 * @param inst
+	 *            the instance
 	 */
-
-	protected Vector<Integer> retrieveInstanceIDList(int FN, Double FV, int CV) {
-		Hashtable<Integer, Hashtable<Double, ClassCounter>> featureName_HT = trainResult
-				.getFeatureTable();
-		Vector<Integer> v = null;
-		if (featureName_HT.containsKey(FN)) {
-			if (featureName_HT.get(FN).containsKey(FV)) {
-				v = featureName_HT.get(FN).get(FV).getClassInstanceIDList(CV);
-			}
-		}
-		return v;
+	protected BitSet retrieveInstanceIDList(int FN, Instance inst) {
+		CountTable counts = trainResult.getCounts();
+		int slot = counts.slot(FN);
+		if (slot < 0)
+			return new BitSet();
+		return counts.instances(slot, counts.valueId(slot, inst));
 	}
 
-	// returns [(A AND B) GIVEN C] amount (still needs division by amount of
-	// C-instances)
-	protected int compareConditionalInstanceIDLists(int FN1, Double FV1,
-			Integer FN2, Double FV2, int CV) {
-		return fnc.cutVectorsSort(retrieveInstanceIDList(FN1, FV1, CV),
-				retrieveInstanceIDList(FN2, FV2, CV)).size();
-	}
-
-	// returns [(A AND B) GIVEN C] amount (still needs division by amount of
-	// C-instances)
-	protected Vector<Integer> compareExistingConditionalInstanceIDLists(
-			int FN1, Double FV1, Vector<Integer> v2, int CV) {
-		return fnc.cutVectorsSort(retrieveInstanceIDList(FN1, FV1, CV), v2);
-	}
-
-	protected Vector<Integer> compareExistingConditionalInstanceIDLists(
-			Vector<Integer> v1, Vector<Integer> v2) {
-		return fnc.cutVectorsSort(v1, v2);
+	/**
+	 * Returns the number of elements two sets have in common.
+	 */
+	protected static int cardinality(BitSet a, BitSet b) {
+		BitSet both = (BitSet) a.clone();
+		both.and(b);
+		return both.cardinality();
 	}
 
 	/**
@@ -530,6 +290,31 @@ public class KDependentBayesClassifier extends AbstractBayesianClassifier {
 		this.currentWorkingK = k;
 	}
 
+	/**
+	 * Only consider the given number of features with the highest mutual
+	 * information with the class as parents of the other features. This makes
+	 * building the networks linear in the number of features instead of
+	 * quadratic. Use 0, the default, to consider all features.
+	 * 
+	 * @param candidates
+	 *            the number of candidate parents
+	 */
+	public void setCandidates(int candidates) {
+		this.candidates = candidates;
+	}
+
+	/**
+	 * Sets the number of bytes that can be used to keep the instance sets of
+	 * feature values in memory while the networks are built. The default is a
+	 * quarter of the maximum heap size.
+	 * 
+	 * @param bytes
+	 *            the memory budget in bytes
+	 */
+	public void setMemoryBudget(long bytes) {
+		this.memoryBudget = bytes;
+	}
+
 	public double getTreshold() {
 		return treshold;
 	}
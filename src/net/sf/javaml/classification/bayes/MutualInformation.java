@@ -0,0 +1,278 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.classification.bayes;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import net.sf.javaml.utils.ContingencyTables;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Calculates the mutual information between the features and the class, and
+ * the conditional mutual information between pairs of features given the
+ * class, from the counts of a {@link CountTable}. Both are expressed in bits.
+ *
+ * The joint counts of two features are found by intersecting the instance
+ * sets of their values as bit sets and counting the bits per class. The bit
+ * sets of the most informative features are kept in memory, up to a memory
+ * budget; the others are rebuilt from the postings when they are needed. When
+ * the data is sparse, only the values that are present are intersected and
+ * the counts of the absent values follow from the marginal counts.
+ *
+ * @see KDependentBayesClassifier
+ *
+ * @author Thomas Abeel
+ */
+class MutualInformation {
+
+	/* Use the postings instead of the words of a bit set below this fill */
+	private static final int PROBE_RATIO = 2;
+
+	private final CountTable counts;
+
+	/* number of 64 bit words in a bit set over all instances */
+	private final int words;
+
+	private final int noClasses;
+
+	/* the instances of each class as bit sets */
+	private final long[][] classBits;
+
+	private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+
+	/* the bit sets of the present values of cached slots, null otherwise */
+	private long[][][] cache;
+
+	MutualInformation(CountTable counts) {
+		this.counts = counts;
+		this.words = (counts.size() + 63) >>> 6;
+		this.noClasses = counts.noClasses();
+		classBits = new long[noClasses][words];
+		for (int i = 0; i < counts.size(); i++)
+			classBits[counts.classOf(i)][i >>> 6] |= 1L << i;
+	}
+
+	/**
+	 * Sets the maximum number of bytes that is used to keep the bit sets of
+	 * feature values in memory.
+	 */
+	void setMemoryBudget(long bytes) {
+		this.memoryBudget = bytes;
+	}
+
+	/* Number of values of a slot that have postings */
+	private int present(int slot) {
+		return counts.isSparse() ? counts.noValues(slot) - 1 : counts.noValues(slot);
+	}
+
+	/**
+	 * Returns the mutual information between the feature of a slot and the
+	 * class.
+	 */
+	double classInformation(int slot) {
+		double[][] m = new double[counts.noValues(slot)][noClasses];
+		for (int v = 0; v < m.length; v++)
+			for (int k = 0; k < noClasses; k++)
+				m[v][k] = counts.count(slot, v, k);
+		return ContingencyTables.entropyOverColumns(m) - ContingencyTables.entropyConditionedOnRows(m);
+	}
+
+	/**
+	 * Returns all slots ordered by decreasing mutual information with the
+	 * class. Slots with the same mutual information keep their order.
+	 */
+	Integer[] order() {
+		final double[] mi = new double[counts.noFeatures()];
+		Parallel.forRange(mi.length, 64, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int s = from; s < to; s++)
+					mi[s] = classInformation(s);
+			}
+		});
+		Integer[] order = new Integer[mi.length];
+		for (int s = 0; s < order.length; s++)
+			order[s] = s;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(mi[b], mi[a]);
+			}
+		});
+		return order;
+	}
+
+	/* Builds the bit sets of the present values of a slot */
+	private long[][] bits(int slot) {
+		long[][] out = new long[present(slot)][words];
+		int[] p = counts.postings(slot);
+		for (int v = 0; v < out.length; v++) {
+			long[] b = out[v];
+			for (int j = counts.from(slot, v); j < counts.to(slot, v); j++)
+				b[p[j] >>> 6] |= 1L << p[j];
+		}
+		return out;
+	}
+
+	private long[][] cached(int slot) {
+		long[][] b = cache == null ? null : cache[slot];
+		return b != null ? b : bits(slot);
+	}
+
+	/**
+	 * Keeps the bit sets of the slots in memory, in the given order, as long
+	 * as they fit in the memory budget.
+	 */
+	private void fillCache(Integer[] order, int limit) {
+		cache = new long[counts.noFeatures()][][];
+		long used = 0;
+		int n = 0;
+		for (; n < limit; n++) {
+			used += 8L * words * present(order[n]);
+			if (used > memoryBudget)
+				break;
+		}
+		final Integer[] slots = Arrays.copyOf(order, n);
+		Parallel.forRange(slots.length, 16, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int i = from; i < to; i++)
+					cache[slots[i]] = bits(slots[i]);
+			}
+		});
+	}
+
+	/**
+	 * Returns the conditional mutual information between the features of two
+	 * slots given the class.
+	 */
+	double conditional(int a, int b) {
+		return conditional(a, cached(a), b, cached(b));
+	}
+
+	private double conditional(int a, long[][] bitsA, int b, long[][] bitsB) {
+		int na = counts.noValues(a), nb = counts.noValues(b);
+		int pa = bitsA.length, pb = bitsB.length;
+		/* joint[k][x][y] is the number of instances of class k with A=x, B=y */
+		double[][][] joint = new double[noClasses][na][nb];
+		int[] postings = counts.postings(a);
+		for (int x = 0; x < pa; x++) {
+			int from = counts.from(a, x), to = counts.to(a, x);
+			for (int y = 0; y < pb; y++) {
+				long[] by = bitsB[y];
+				if ((to - from) * PROBE_RATIO < words) {
+					for (int j = from; j < to; j++) {
+						int i = postings[j];
+						if ((by[i >>> 6] & (1L << i)) != 0)
+							joint[counts.classOf(i)][x][y]++;
+					}
+				} else {
+					long[] bx = bitsA[x];
+					for (int w = 0; w < words; w++) {
+						long both = bx[w] & by[w];
+						if (both == 0)
+							continue;
+						for (int k = 0; k < noClasses; k++)
+							joint[k][x][y] += Long.bitCount(both & classBits[k][w]);
+					}
+				}
+			}
+		}
+		/* the absent values take the remaining counts */
+		for (int k = 0; k < noClasses; k++) {
+			double[][] m = joint[k];
+			for (int x = 0; x < pa; x++)
+				if (pb < nb)
+					m[x][pb] = counts.count(a, x, k) - sum(m[x], pb);
+			if (pa < na) {
+				for (int y = 0; y < pb; y++) {
+					double sum = 0;
+					for (int x = 0; x < pa; x++)
+						sum += m[x][y];
+					m[pa][y] = counts.count(b, y, k) - sum;
+				}
+				if (pb < nb)
+					m[pa][pb] = counts.count(a, pa, k) - sum(m[pa], pb);
+			}
+		}
+		double cmi = 0;
+		for (int k = 0; k < noClasses; k++) {
+			double[][] m = joint[k];
+			double p = counts.classCount(k) / (double) counts.size();
+			if (p > 0)
+				cmi += p * (ContingencyTables.entropyOverColumns(m) - ContingencyTables.entropyConditionedOnRows(m));
+		}
+		return cmi;
+	}
+
+	private static double sum(double[] row, int n) {
+		double sum = 0;
+		for (int i = 0; i < n; i++)
+			sum += row[i];
+		return sum;
+	}
+
+	/**
+	 * Selects for every feature the parents of the k-dependence Bayesian
+	 * network. For the feature at position o in the order, the candidates are
+	 * the features before it, or only the first <code>candidates</code>
+	 * features when this is positive. The candidates with a conditional mutual
+	 * information above the threshold are ranked, and at most
+	 * <code>maxParents</code> of them are kept. The features are handled in
+	 * parallel.
+	 *
+	 * @param order
+	 *            the slots ordered by decreasing mutual information with the
+	 *            class
+	 * @param maxParents
+	 *            the maximum number of parents of a feature
+	 * @param threshold
+	 *            the minimum conditional mutual information of a parent
+	 * @param candidates
+	 *            the number of most informative features that are
+	 *            considered as parents, 0 to consider all
+	 * @return the slots of the parents of each slot, best parent first
+	 */
+	int[][] parents(final Integer[] order, final int maxParents, final double threshold, int candidates) {
+		final int n = order.length;
+		final int limit = candidates > 0 ? Math.min(candidates, n) : n;
+		final int[][] out = new int[counts.noFeatures()][];
+		fillCache(order, limit);
+		Parallel.forRange(n, 1, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int i = from; i < to; i++) {
+					/* the last features have the most candidates, start with them */
+					int o = n - 1 - i;
+					int a = order[o];
+					int m = Math.min(o, limit);
+					long[][] bitsA = m > 0 ? cached(a) : null;
+					final double[] cmi = new double[m];
+					Integer[] rank = new Integer[m];
+					int kept = 0;
+					for (int j = 0; j < m; j++) {
+						cmi[j] = conditional(a, bitsA, order[j], cached(order[j]));
+						if (threshold < cmi[j])
+							rank[kept++] = j;
+					}
+					rank = Arrays.copyOf(rank, kept);
+					Arrays.sort(rank, new Comparator<Integer>() {
+						@Override
+						public int compare(Integer x, Integer y) {
+							return Double.compare(cmi[y], cmi[x]);
+						}
+					});
+					int[] parents = new int[Math.min(maxParents, kept)];
+					for (int j = 0; j < parents.length; j++)
+						parents[j] = order[rank[j]];
+					out[a] = parents;
+				}
+			}
+		});
+		cache = null;
+		return out;
+	}
+
+}
@@ -1,30 +1,97 @@
 /**
- * %SVN.HEADER% 
+ * %SVN.HEADER%
  */
 package net.sf.javaml.classification.bayes;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import net.sf.javaml.classification.UpdateableClassifier;
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.exception.TrainingRequiredException;
+import net.sf.javaml.tools.BinaryModel;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
+import net.sf.javaml.utils.Parallel;
 
 /**
  * Implementation of the Naive Bayes classification algorithm.
- * 
+ *
+ * The classifier keeps the count and the log2 of the Laplace corrected count
+ * of each feature value per class. The part of the score that does not depend
+ * on the instance, including the Laplace denominators and, for sparse data
+ * sets, the likelihood of all features being absent, is kept per class. It is
+ * calculated from the number of features with each number of values, so it
+ * does not need a pass over all features. Classifying an instance only needs
+ * to look at the features the instance has, and updating the classifier only
+ * touches the features of the new instance.
+ *
+ * The classifier can be updated and classify instances from several threads
+ * at the same time. The frequency tables returned by
+ * {@link #getFeatureTable()} and {@link #getClassFreqs()} describe the data
+ * set the classifier was built with, they do not include updates. A
+ * classifier that is read from the binary model format has no feature table,
+ * its class frequencies are those of the written classifier.
+ *
  * @author Lieven Baeyens
  * @author Thomas Abeel
- * 
+ *
  */
-public class NaiveBayesClassifier extends AbstractBayesianClassifier {
+public class NaiveBayesClassifier extends AbstractBayesianClassifier implements
+		UpdateableClassifier, BinaryModel {
 
 	private static final long serialVersionUID = -3206001837043122519L;
 
+	/* Minimum number of features before a loop is split over threads */
+	private static final int MIN_CHUNK = 64;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/* slot of each attribute index, -1 for attributes that never occur */
+	private int[] slots;
+
+	/* attribute index of each slot */
+	private int[] features;
+
+	private int noSlots;
+
+	/* sorted values of each slot that occur in the training data */
+	private double[][] values;
+
+	/* count of each value per class, indexed by valueId * numClasses + class */
+	private int[][] counts;
+
+	/* log2(count + 1) of each value per class, indexed as the counts */
+	private double[][] logCounts;
+
+	/* number of training instances of each class that have the feature */
+	private int[][] present;
+
+	private int[] classCounts;
+
+	/* number of features that have a given number of values */
+	private HashMap<Integer, Integer> valueHistogram;
+
+	/*
+	 * per class, the number of features that a given number of training
+	 * instances of that class have, only used for sparse data
+	 */
+	private List<HashMap<Integer, Integer>> presentHistogram;
+
+	/* score of each class for an instance without known features */
+	private double[] base;
+
 	/**
 	 * Instantiate the Naive Bayes algorithm with inclusion of laplace
 	 * correction
-	 * 
+	 *
 	 * @param lap
 	 *            laplace correction
 	 * @param log
@@ -39,57 +106,479 @@ public class NaiveBayesClassifier extends AbstractBayesianClassifier {
 
 	@Override
 	public void buildClassifier(Dataset data) {
-		super.buildClassifier(data);
+		lock.writeLock().lock();
+		try {
+			super.buildClassifier(data);
+			load(trainResult.getCounts());
+			refresh();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Copies the counts of the table built from the training data.
+	 */
+	private void load(final CountTable table) {
+		noSlots = table.noFeatures();
+		features = new int[noSlots];
+		int maxAttribute = -1;
+		for (int s = 0; s < noSlots; s++) {
+			features[s] = table.feature(s);
+			maxAttribute = Math.max(maxAttribute, features[s]);
+		}
+		slots = new int[maxAttribute + 1];
+		Arrays.fill(slots, -1);
+		for (int s = 0; s < noSlots; s++)
+			slots[features[s]] = s;
+		classCounts = new int[numClasses];
+		for (int k = 0; k < numClasses; k++)
+			classCounts[k] = table.classCount(k);
+		values = new double[noSlots][];
+		counts = new int[noSlots][];
+		logCounts = new double[noSlots][];
+		present = new int[noSlots][];
+		Parallel.forRange(noSlots, MIN_CHUNK, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int s = from; s < to; s++) {
+					int numValues = sparse ? table.noValues(s) - 1 : table
+							.noValues(s);
+					double[] v = new double[numValues];
+					int[] c = new int[numValues * numClasses];
+					double[] lc = new double[c.length];
+					int[] p = new int[numClasses];
+					for (int i = 0; i < numValues; i++) {
+						v[i] = table.value(s, i);
+						for (int k = 0; k < numClasses; k++) {
+							c[i * numClasses + k] = table.count(s, i, k);
+							lc[i * numClasses + k] = fnc.log2(c[i
+									* numClasses + k] + 1);
+							p[k] += c[i * numClasses + k];
+						}
+					}
+					values[s] = v;
+					counts[s] = c;
+					logCounts[s] = lc;
+					present[s] = p;
+				}
+			}
+		});
+		valueHistogram = new HashMap<Integer, Integer>();
+		presentHistogram = new ArrayList<HashMap<Integer, Integer>>();
+		for (int k = 0; k < numClasses; k++)
+			presentHistogram.add(new HashMap<Integer, Integer>());
+		for (int s = 0; s < noSlots; s++)
+			activate(s);
+	}
+
+	/* Starts an empty model for updates without training data */
+	private void init() {
+		if (classCounts != null)
+			return;
+		trainResult = new BayesResult();
+		classes = new Object[0];
+		numClasses = 0;
+		numInstances = 0;
+		numFeatures = 0;
+		Classname2IndexCCountermap.clear();
+		noSlots = 0;
+		slots = new int[0];
+		features = new int[0];
+		values = new double[0][];
+		counts = new int[0][];
+		logCounts = new double[0][];
+		present = new int[0][];
+		classCounts = new int[0];
+		valueHistogram = new HashMap<Integer, Integer>();
+		presentHistogram = new ArrayList<HashMap<Integer, Integer>>();
+	}
+
+	private static void add(HashMap<Integer, Integer> histogram, int key,
+			int delta) {
+		Integer old = histogram.get(key);
+		int n = (old == null ? 0 : old) + delta;
+		if (n == 0)
+			histogram.remove(key);
+		else
+			histogram.put(key, n);
+	}
+
+	/* Number of values of a feature, including the absent value */
+	private int numValues(int s) {
+		return sparse ? values[s].length + 1 : values[s].length;
+	}
+
+	/*
+	 * Adds a feature that has at least one value to the histograms. Features
+	 * without values do not take part in the model.
+	 */
+	private void activate(int s) {
+		if (values[s].length == 0)
+			return;
+		add(valueHistogram, numValues(s), 1);
+		if (sparse)
+			for (int k = 0; k < numClasses; k++)
+				add(presentHistogram.get(k), present[s][k], 1);
+	}
+
+	private void deactivate(int s) {
+		if (values[s].length == 0)
+			return;
+		add(valueHistogram, numValues(s), -1);
+		if (sparse)
+			for (int k = 0; k < numClasses; k++)
+				add(presentHistogram.get(k), present[s][k], -1);
+	}
+
+	/**
+	 * Calculates the score of an instance without known features.
+	 */
+	private void refresh() {
+		double[] b = new double[numClasses];
+		for (int k = 0; k < numClasses; k++) {
+			double n = classCounts[k];
+			b[k] = fnc.log2(n) - fnc.log2(numInstances);
+			// Laplace correction
+			for (Map.Entry<Integer, Integer> e : valueHistogram.entrySet())
+				b[k] -= e.getValue() * fnc.log2(n + e.getKey());
+			// the absent value of every feature
+			if (sparse)
+				for (Map.Entry<Integer, Integer> e : presentHistogram.get(k)
+						.entrySet())
+					b[k] += e.getValue() * fnc.log2(n - e.getKey() + 1);
+		}
+		base = b;
+	}
+
+	private int slot(int attribute) {
+		return attribute < slots.length ? slots[attribute] : -1;
+	}
+
+	private int addSlot(int attribute) {
+		if (attribute >= slots.length) {
+			int old = slots.length;
+			slots = Arrays.copyOf(slots, Math.max(attribute + 1, 2 * old));
+			Arrays.fill(slots, old, slots.length, -1);
+		}
+		if (noSlots == features.length) {
+			int capacity = Math.max(16, 2 * noSlots);
+			features = Arrays.copyOf(features, capacity);
+			values = Arrays.copyOf(values, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			logCounts = Arrays.copyOf(logCounts, capacity);
+			present = Arrays.copyOf(present, capacity);
+		}
+		int s = noSlots++;
+		numFeatures = noSlots;
+		slots[attribute] = s;
+		features[s] = attribute;
+		values[s] = new double[0];
+		counts[s] = new int[0];
+		logCounts[s] = new double[0];
+		present[s] = new int[numClasses];
+		return s;
+	}
+
+	private int addClass(Object clazz) {
+		int k = numClasses;
+		int c = numClasses + 1;
+		for (int s = 0; s < noSlots; s++) {
+			int numValues = values[s].length;
+			int[] newCounts = new int[numValues * c];
+			double[] newLogCounts = new double[numValues * c];
+			for (int v = 0; v < numValues; v++) {
+				System.arraycopy(counts[s], v * k, newCounts, v * c, k);
+				System.arraycopy(logCounts[s], v * k, newLogCounts, v * c, k);
+			}
+			counts[s] = newCounts;
+			logCounts[s] = newLogCounts;
+			present[s] = Arrays.copyOf(present[s], c);
+		}
+		classCounts = Arrays.copyOf(classCounts, c);
+		classes = Arrays.copyOf(classes, c);
+		classes[k] = clazz;
+		Classname2IndexCCountermap.put(clazz, k);
+		HashMap<Integer, Integer> histogram = new HashMap<Integer, Integer>();
+		presentHistogram.add(histogram);
+		numClasses = c;
+		// no instance of the new class has any feature
+		if (sparse)
+			for (int s = 0; s < noSlots; s++)
+				if (values[s].length > 0)
+					add(histogram, 0, 1);
+		return k;
+	}
+
+	/*
+	 * Inserts an empty row for a new value, or removes the row of a value that
+	 * no longer occurs.
+	 */
+	private void resize(int s, int v, boolean insert, double value) {
+		int n = values[s].length, c = numClasses;
+		int m = insert ? n + 1 : n - 1;
+		double[] newValues = new double[m];
+		int[] newCounts = new int[m * c];
+		double[] newLogCounts = new double[m * c];
+		int skip = insert ? 0 : 1, gap = insert ? 1 : 0;
+		System.arraycopy(values[s], 0, newValues, 0, v);
+		System.arraycopy(values[s], v + skip, newValues, v + gap, n - v - skip);
+		System.arraycopy(counts[s], 0, newCounts, 0, v * c);
+		System.arraycopy(counts[s], (v + skip) * c, newCounts, (v + gap) * c,
+				(n - v - skip) * c);
+		System.arraycopy(logCounts[s], 0, newLogCounts, 0, v * c);
+		System.arraycopy(logCounts[s], (v + skip) * c, newLogCounts, (v + gap)
+				* c, (n - v - skip) * c);
+		if (insert)
+			newValues[v] = value;
+		values[s] = newValues;
+		counts[s] = newCounts;
+		logCounts[s] = newLogCounts;
+	}
+
+	/**
+	 * Adds (sign 1) or removes (sign -1) an instance from the counts.
+	 */
+	private void add(Instance inst, int sign) {
+		Integer cls = Classname2IndexCCountermap.get(inst.classValue());
+		int[] keys = CountTable.keys(inst);
+		if (sign < 0) {
+			// check everything before anything is changed
+			boolean known = cls != null && classCounts[cls] > 0;
+			for (int j = 0; known && j < keys.length; j++) {
+				int s = slot(keys[j]);
+				int v = s < 0 ? -1 : Arrays.binarySearch(values[s], inst
+						.value(keys[j]));
+				known = v >= 0 && counts[s][v * numClasses + cls] > 0;
+			}
+			if (!known)
+				throw new IllegalArgumentException(
+						"The instance is not part of the training data");
+		}
+		int k = cls == null ? addClass(inst.classValue()) : cls;
+		numInstances += sign;
+		classCounts[k] += sign;
+		for (int key : keys) {
+			int s = slot(key);
+			if (s < 0)
+				s = addSlot(key);
+			deactivate(s);
+			double value = inst.value(key);
+			int v = Arrays.binarySearch(values[s], value);
+			if (v < 0) {
+				v = -v - 1;
+				resize(s, v, true, value);
+			}
+			int i = v * numClasses + k;
+			counts[s][i] += sign;
+			logCounts[s][i] = fnc.log2(counts[s][i] + 1);
+			present[s][k] += sign;
+			if (sign < 0) {
+				int total = 0;
+				for (int c = 0; c < numClasses; c++)
+					total += counts[s][v * numClasses + c];
+				if (total == 0)
+					resize(s, v, false, value);
+			}
+			activate(s);
+		}
+	}
+
+	@Override
+	public void update(Instance instance) {
+		lock.writeLock().lock();
+		try {
+			init();
+			add(instance, 1);
+			refresh();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void update(Dataset data) {
+		lock.writeLock().lock();
+		try {
+			init();
+			for (Instance inst : data)
+				add(inst, 1);
+			refresh();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void forget(Instance instance) {
+		lock.writeLock().lock();
+		try {
+			init();
+			add(instance, -1);
+			refresh();
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
 	 * Calculates the probability that testExample belongs a certain class
-	 * 
+	 *
 	 * @param testExample
 	 *            The test example to be categorized
 	 */
 
 	protected HashMap<Object, Double> calculateProbs(Instance inst) {
+		double[] score;
+		Object[] names;
+		lock.readLock().lock();
+		try {
+			if (base == null)
+				throw new TrainingRequiredException();
+			score = base.clone();
+			names = classes;
+			int c = numClasses;
+			// Subtraction/addition of log2 instead of division/multiplication
+			if (sparse) {
+				// only the features of the instance differ from the absent
+				// value
+				for (Integer key : inst.keySet()) {
+					int s = slot(key);
+					if (s < 0 || values[s].length == 0)
+						continue;
+					int v = Arrays.binarySearch(values[s], inst.value(key));
+					for (int k = 0; k < c; k++) {
+						double numerator = v < 0 ? 0 : logCounts[s][v * c + k];
+						score[k] += numerator
+								- fnc.log2(classCounts[k] - present[s][k] + 1);
+					}
+				}
+			} else {
+				for (int s = 0; s < noSlots; s++) {
+					int attribute = features[s];
+					if (values[s].length == 0 || !inst.containsKey(attribute))
+						continue;
+					int v = Arrays.binarySearch(values[s], inst
+							.value(attribute));
+					if (v >= 0)
+						for (int k = 0; k < c; k++)
+							score[k] += logCounts[s][v * c + k];
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
 
-		HashMap<Object, Double> out = new HashMap<Object, Double>(numClasses);
-		coverAbsentFeatures_And_fill_helpMap(inst);
-		// fetch conditional freqs
-		Hashtable<Integer, Hashtable<Double, ClassCounter>> featureName_HT = trainResult
-				.getFeatureTable();
-		double[] freq = trainResult.getClassFreqs().clone();
-		
-		// Normalisation factor
+		// Normalizing to probabilities, relative to the highest score to
+		// avoid underflow
+		double max = Double.NEGATIVE_INFINITY;
+		for (int k = 0; k < score.length; k++)
+			max = Math.max(max, score[k]);
 		double total = 0;
-		
-		// Subtraction/addition of log2 instead of division/multiplication
-		for (int k = 0; k < numClasses; k++) {
+		for (int k = 0; k < score.length; k++) {
+			score[k] = Math.pow(2, score[k] - max);
+			total += score[k];
+		}
+		HashMap<Object, Double> out = new HashMap<Object, Double>(score.length);
+		for (int k = 0; k < score.length; k++)
+			out.put(names[k], score[k] / total);
+		return out;
+	}
 
-			double denominator = freq[k];
-			double classScore = fnc.log2(freq[k]) - fnc.log2(numInstances); 
+	/**
+	 * Writes the counts of all features. The values, counts and logarithms of
+	 * the counts of the features are each written as a single block, with the
+	 * position of each feature in the blocks.
+	 */
+	@Override
+	public void write(ModelOutput out) throws IOException {
+		lock.readLock().lock();
+		try {
+			if (base == null)
+				throw new TrainingRequiredException();
+			int c = numClasses;
+			int[] offset = new int[noSlots + 1];
+			for (int s = 0; s < noSlots; s++)
+				offset[s + 1] = offset[s] + values[s].length;
+			double[] v = new double[offset[noSlots]];
+			int[] n = new int[v.length * c];
+			double[] ln = new double[n.length];
+			int[] p = new int[noSlots * c];
+			for (int s = 0; s < noSlots; s++) {
+				System.arraycopy(values[s], 0, v, offset[s], values[s].length);
+				System.arraycopy(counts[s], 0, n, offset[s] * c, counts[s].length);
+				System.arraycopy(logCounts[s], 0, ln, offset[s] * c,
+						logCounts[s].length);
+				System.arraycopy(present[s], 0, p, s * c, c);
+			}
+			out.writeBoolean(laplace);
+			out.writeBoolean(log);
+			out.writeBoolean(sparse);
+			out.writeInt(numInstances);
+			out.writeObjects(classes);
+			out.writeInts(classCounts);
+			out.writeInts(Arrays.copyOf(features, noSlots));
+			out.writeInts(offset);
+			out.writeDoubles(v);
+			out.writeInts(n);
+			out.writeDoubles(ln);
+			out.writeInts(p);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
 
-			for (Object key : featureName_HT.keySet()) {
+	/**
+	 * Reads a classifier that was written with {@link #write(ModelOutput)}.
+	 */
+	public static NaiveBayesClassifier read(ModelInput in) throws IOException {
+		NaiveBayesClassifier nb = new NaiveBayesClassifier(in.readBoolean(), in
+				.readBoolean(), in.readBoolean());
+		nb.numInstances = in.readInt();
+		nb.classes = in.readObjects();
+		nb.classCounts = in.readInts();
+		nb.features = in.readInts();
+		int[] offset = in.readInts();
+		double[] v = in.readDoubles();
+		int[] n = in.readInts();
+		double[] ln = in.readDoubles();
+		int[] p = in.readInts();
 
-				int featureName = (Integer) key;
-				int numValues = featureName_HT.get(featureName).size();
-				Double featureValue = getInstValue(featureName, inst);
-				double numerator = featureName_HT.get(featureName).get(
-						featureValue).getCountClass(k);
-				// Laplace correction
-				classScore += fnc
-						.log2(numerator + 1) - fnc.log2(denominator + numValues); 
-			}
-			
-			out.put(classes[k], classScore);
-			total = total + Math.pow(2,classScore); 
+		int c = nb.numClasses = nb.classes.length;
+		double[] freq = new double[c];
+		for (int k = 0; k < c; k++) {
+			nb.Classname2IndexCCountermap.put(nb.classes[k], k);
+			freq[k] = nb.classCounts[k];
 		}
-		
-		// Normalizing to probabilities 
-		for (int l = 0; l < classes.length; l++) { 
-			double classScore = out.get(classes[l]); 
-			out.put(classes[l], Math.pow(2.0,(classScore-fnc.log2(total)))); 
+		nb.trainResult = new BayesResult();
+		nb.trainResult.setClassFreqs(freq);
+		int slots = nb.noSlots = nb.numFeatures = nb.features.length;
+		int maxAttribute = -1;
+		for (int s = 0; s < slots; s++)
+			maxAttribute = Math.max(maxAttribute, nb.features[s]);
+		nb.slots = new int[maxAttribute + 1];
+		Arrays.fill(nb.slots, -1);
+		nb.values = new double[slots][];
+		nb.counts = new int[slots][];
+		nb.logCounts = new double[slots][];
+		nb.present = new int[slots][];
+		for (int s = 0; s < slots; s++) {
+			nb.slots[nb.features[s]] = s;
+			nb.values[s] = Arrays.copyOfRange(v, offset[s], offset[s + 1]);
+			nb.counts[s] = Arrays.copyOfRange(n, offset[s] * c, offset[s + 1]
+					* c);
+			nb.logCounts[s] = Arrays.copyOfRange(ln, offset[s] * c,
+					offset[s + 1] * c);
+			nb.present[s] = Arrays.copyOfRange(p, s * c, (s + 1) * c);
 		}
-
-		return out; 
+		nb.valueHistogram = new HashMap<Integer, Integer>();
+		nb.presentHistogram = new ArrayList<HashMap<Integer, Integer>>();
+		for (int k = 0; k < c; k++)
+			nb.presentHistogram.add(new HashMap<Integer, Integer>());
+		for (int s = 0; s < slots; s++)
+			nb.activate(s);
+		nb.refresh();
+		return nb;
 	}
 
 	@Override
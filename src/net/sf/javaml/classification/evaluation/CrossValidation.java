@@ -3,18 +3,36 @@
  */
 package net.sf.javaml.classification.evaluation;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import net.sf.javaml.classification.Classifier;
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.DefaultDataset;
 import net.sf.javaml.core.Instance;
+import net.sf.javaml.utils.ExecutionContext;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
+import net.sf.javaml.utils.Seedable;
 
 /**
  * Implementation of the cross-validation evaluation technique.
  * 
+ * By default the folds are evaluated one after the other with the classifier
+ * itself. With {@link #setParallelFolds(boolean)} they are evaluated in
+ * parallel, each with a copy of the classifier, see
+ * {@link #crossValidation(Dataset, int, Random)}.
+ * 
  * 
  * 
  * 
@@ -27,13 +45,68 @@ public class CrossValidation {
 
     private Classifier classifier;
 
+    private ExecutionContext context = new ExecutionContext();
+
+    /* the context for the parallel folds, null for the library wide one */
+    private ParallelContext parallel = null;
+
+    private boolean parallelFolds = false;
+
     public CrossValidation(Classifier classifier) {
         this.classifier = classifier;
     }
 
+    /**
+     * Sets the context that reports the progress and can stop the cross
+     * validation. Each fold is an iteration. When the context stops the cross
+     * validation, the results of the folds that were done are returned.
+     * 
+     * @param context
+     *            the execution context
+     */
+    public void setExecutionContext(ExecutionContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Sets the context that evaluates the folds in parallel, when they are.
+     * 
+     * @see #setParallelFolds(boolean)
+     * 
+     * @param context
+     *            the parallel context, null for the library wide context
+     */
+    public void setParallelContext(ParallelContext context) {
+        this.parallel = context;
+    }
+
+    /**
+     * Sets whether the folds are evaluated in parallel, each with its own
+     * copy of the classifier. By default they are evaluated one after the
+     * other with the classifier itself.
+     * 
+     * @see #crossValidation(Dataset, int, Random)
+     * 
+     * @param parallelFolds
+     *            true to evaluate the folds in parallel
+     */
+    public void setParallelFolds(boolean parallelFolds) {
+        this.parallelFolds = parallelFolds;
+    }
+
     /**
      * Performs cross validation with the specified parameters.
      * 
+     * By default the classifier itself is trained on each fold in turn. When
+     * the folds run in parallel, see {@link #setParallelFolds(boolean)}, each
+     * fold trains a copy of the classifier made by serialization and the
+     * classifier itself is left untrained. Copies of a {@link Seedable}
+     * classifier get a seed derived from <code>rg</code> and the fold, so that
+     * the folds do not all use the same random numbers and the results do not
+     * depend on the number of threads. They can differ from the results of
+     * the folds with the classifier itself. Classifiers that cannot be
+     * serialized are always evaluated one after the other.
+     * 
      * @param data
      *            the data set to use in the cross validation. This data set is
      *            split in the appropriate number of folds.
@@ -45,56 +118,126 @@ public class CrossValidation {
      */
     public Map<Object, PerformanceMeasure> crossValidation(Dataset data, int numFolds, Random rg) {
         // TODO use EvaluateDataset
-        Dataset[] folds = data.folds(numFolds, rg);
+        final Dataset[] folds = data.folds(numFolds, rg);
+        final int n = folds.length;
+        final Set<Object> classes = data.classes();
+        ParallelContext pc = parallel == null ? Parallel.context() : parallel;
+        final Classifier[] learners = learners(n, rg);
+        if (n < 2 || learners[0] == classifier)
+            pc = pc.withParallelism(1);
+        final List<Map<Object, PerformanceMeasure>> results = new ArrayList<Map<Object, PerformanceMeasure>>();
+        for (int i = 0; i < n; i++)
+            results.add(null);
+        pc.forEach(n, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    if (!context.proceed("crossvalidation", i, n))
+                        continue;
+                    Dataset training = new DefaultDataset();
+                    for (int j = 0; j < n; j++) {
+                        if (j != i)
+                            training.addAll(folds[j]);
+
+                    }
+                    results.set(i, evaluate(learners[i], training, folds[i], classes));
+                }
+            }
+        });
+        /* Sum the folds in order */
         Map<Object, PerformanceMeasure> out = new HashMap<Object, PerformanceMeasure>();
-        for (Object o : data.classes()) {
+        for (Object o : classes) {
             out.put(o, new PerformanceMeasure());
         }
-        for (int i = 0; i < numFolds; i++) {
-            Dataset validation = folds[i];
-            Dataset training = new DefaultDataset();
-            for (int j = 0; j < numFolds; j++) {
-                if (j != i)
-                    training.addAll(folds[j]);
-
+        for (Map<Object, PerformanceMeasure> fold : results) {
+            if (fold == null)
+                continue;
+            for (Object o : classes) {
+                PerformanceMeasure sum = out.get(o), pm = fold.get(o);
+                sum.tp += pm.tp;
+                sum.fp += pm.fp;
+                sum.tn += pm.tn;
+                sum.fn += pm.fn;
             }
+        }
+        return out;
+
+    }
 
-            classifier.buildClassifier(training);
+    /*
+     * The classifier of each fold: copies of the classifier with their own
+     * seeds when the folds run in parallel, also on a single thread so that
+     * the results do not depend on the number of threads, otherwise the
+     * classifier itself.
+     */
+    private Classifier[] learners(int n, Random rg) {
+        Classifier[] out = new Classifier[n];
+        Arrays.fill(out, classifier);
+        if (!parallelFolds || n == 1)
+            return out;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bytes);
+            oos.writeObject(classifier);
+            oos.close();
+            Classifier[] copies = new Classifier[n];
+            long seed = rg.nextLong();
+            for (int i = 0; i < n; i++) {
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+                copies[i] = (Classifier) ois.readObject();
+                ois.close();
+                if (copies[i] instanceof Seedable)
+                    ((Seedable) copies[i]).setSeed(ParallelContext.seed(seed, i));
+            }
+            return copies;
+        } catch (IOException e) {
+            /* not serializable, the folds run one after the other */
+            return out;
+        } catch (ClassNotFoundException e) {
+            return out;
+        }
+    }
 
-            for (Instance instance : validation) {
-                Object prediction = classifier.classify(instance);
-                if (instance.classValue().equals(prediction)) {// prediction
-                    // ==class
-                    for (Object o : out.keySet()) {
-                        if (o.equals(instance.classValue())) {
-                            out.get(o).tp++;
-                        } else {
-                            out.get(o).tn++;
-                        }
+    /* Trains the classifier on the training data and tests it on one fold */
+    private static Map<Object, PerformanceMeasure> evaluate(Classifier classifier, Dataset training,
+            Dataset validation, Set<Object> classes) {
+        Map<Object, PerformanceMeasure> out = new HashMap<Object, PerformanceMeasure>();
+        for (Object o : classes) {
+            out.put(o, new PerformanceMeasure());
+        }
+        classifier.buildClassifier(training);
 
+        for (Instance instance : validation) {
+            Object prediction = classifier.classify(instance);
+            if (instance.classValue().equals(prediction)) {// prediction
+                // ==class
+                for (Object o : out.keySet()) {
+                    if (o.equals(instance.classValue())) {
+                        out.get(o).tp++;
+                    } else {
+                        out.get(o).tn++;
                     }
-                } else {// prediction != class
-                    for (Object o : out.keySet()) {
-                        /* prediction is positive class */
-                        if (prediction.equals(o)) {
-                            out.get(o).fp++;
-                        }
-                        /* instance is positive class */
-                        else if (o.equals(instance.classValue())) {
-                            out.get(o).fn++;
-                        }
-                        /* none is positive class */
-                        else {
-                            out.get(o).tn++;
-                        }
 
+                }
+            } else {// prediction != class
+                for (Object o : out.keySet()) {
+                    /* prediction is positive class */
+                    if (prediction.equals(o)) {
+                        out.get(o).fp++;
                     }
+                    /* instance is positive class */
+                    else if (o.equals(instance.classValue())) {
+                        out.get(o).fn++;
+                    }
+                    /* none is positive class */
+                    else {
+                        out.get(o).tn++;
+                    }
+
                 }
             }
-
         }
         return out;
-
     }
 
     /**
@@ -106,6 +249,8 @@ public class CrossValidation {
      * @param numFolds
      *            the number of folds to create
      * @return the results of the cross-validation.
+     * @see #crossValidation(Dataset, int, Random) for the classifier when the
+     *      folds run in parallel
      */
     public Map<Object, PerformanceMeasure> crossValidation(Dataset data, int folds) {
         return crossValidation(data, folds, new Random(System.currentTimeMillis()));
@@ -121,6 +266,8 @@ public class CrossValidation {
      *            split in the appropriate number of folds.
      * 
      * @return the results of the cross-validation.
+     * @see #crossValidation(Dataset, int, Random) for the classifier when the
+     *      folds run in parallel
      */
     public Map<Object, PerformanceMeasure> crossValidation(Dataset data) {
         return crossValidation(data, 10);
@@ -4,6 +4,7 @@
 package net.sf.javaml.classification.meta;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Random;
 
@@ -12,12 +13,20 @@ import net.sf.javaml.classification.Classifier;
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.sampling.Sampling;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
 import be.abeel.util.Pair;
 
 /**
  * Bagging meta learner. This implementation can also calculate the out-of-bag
  * error estimate while training at very little extra cost.
  * 
+ * The classifiers are trained in parallel only when they are declared
+ * independent with {@link #setIndependentClassifiers(boolean)}: distinct
+ * objects that share no mutable state, like a random generator. Classifier i
+ * is trained on the sample with seed <code>seed + i</code>, so for independent
+ * classifiers the result does not depend on the number of threads.
+ * 
  * 
  * @author Thomas Abeel
  * 
@@ -34,6 +43,11 @@ public class Bagging extends AbstractClassifier {
 
 	private long seed;
 
+	/* the context for the parallel training, null for the library wide one */
+	private transient ParallelContext parallel = null;
+
+	private boolean independent = false;
+
 	/**
 	 * Please use the 3 argument constructor.
 	 * 
@@ -69,28 +83,70 @@ public class Bagging extends AbstractClassifier {
 		return outOfBagErrorEstimate;
 	}
 
-	public void buildClassifier(Dataset data) {
+	/**
+	 * Sets the context that trains the classifiers in parallel.
+	 * 
+	 * @param context
+	 *            the parallel context, null for the library wide context
+	 */
+	public void setParallelContext(ParallelContext context) {
+		this.parallel = context;
+	}
+
+	/**
+	 * Declares whether the classifiers can be trained at the same time: they
+	 * are distinct objects and do not share any mutable state, for example
+	 * each has its own random generator. By default they are trained one
+	 * after the other, as Bagging cannot check this.
+	 * 
+	 * @param independent
+	 *            true to train the classifiers in parallel
+	 */
+	public void setIndependentClassifiers(boolean independent) {
+		this.independent = independent;
+	}
+
+	public void buildClassifier(final Dataset data) {
 		this.dataReference = data;
-		int t = 0, f = 0;
-		for (int i = 0; i < classifiers.length; i++) {
-			Pair<Dataset, Dataset>sample = samplingMethod.sample(data,data
-					.size(), seed++);
-			classifiers[i].buildClassifier(sample.x());
-			if (calculateOutOfBagErrorEstimate) {
-				for (Instance inst : sample.y()) {
-					Object predClass = classifiers[i].classify(inst);
-					if (predClass.equals(inst.classValue())) {
-						t++;
-					} else {
-						f++;
+		final long base = seed;
+		seed += classifiers.length;
+		final int[] correct = new int[classifiers.length];
+		final int[] wrong = new int[classifiers.length];
+		ParallelContext context = parallel == null ? Parallel.context() : parallel;
+		/* The same classifier object cannot be trained by two threads */
+		Map<Classifier, Boolean> distinct = new IdentityHashMap<Classifier, Boolean>();
+		for (Classifier c : classifiers)
+			distinct.put(c, true);
+		if (!independent || distinct.size() < classifiers.length)
+			context = context.withParallelism(1);
+		context.forEach(classifiers.length, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int i = from; i < to; i++) {
+					Pair<Dataset, Dataset> sample = samplingMethod.sample(data, data.size(), base + i);
+					classifiers[i].buildClassifier(sample.x());
+					if (calculateOutOfBagErrorEstimate) {
+						for (Instance inst : sample.y()) {
+							Object predClass = classifiers[i].classify(inst);
+							if (predClass.equals(inst.classValue())) {
+								correct[i]++;
+							} else {
+								wrong[i]++;
+							}
+						}
 					}
 				}
-				outOfBagErrorEstimate = t / (t + f);
-				
 			}
-			
+		});
+		if (calculateOutOfBagErrorEstimate) {
+			int t = 0, f = 0;
+			for (int i = 0; i < classifiers.length; i++) {
+				t += correct[i];
+				f += wrong[i];
+			}
+			if (t + f > 0)
+				outOfBagErrorEstimate = (double) f / (t + f);
 		}
-		
 
 	}
 
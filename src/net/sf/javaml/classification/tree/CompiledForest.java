@@ -0,0 +1,339 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.classification.tree;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.tools.BinaryModel;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Compact representation of a forest of random trees for classification.
+ *
+ * The nodes of all trees are stored in a few primitive arrays. Node
+ * <code>n</code> compares an instance with two centers on the attributes
+ * <code>attributes[offset[n]]</code> to
+ * <code>attributes[offset[n + 1] - 1]</code>, with the Manhattan distance,
+ * and continues to the child of the nearest center. A leaf holds the index of
+ * its class. The nodes of a tree are laid out depth-first, so the first
+ * nodes that an instance visits are close to each other in memory.
+ *
+ * Many instances can be classified at once. They are handled in blocks, each
+ * tree classifies all instances of a block before the next tree is used, so
+ * the nodes of a tree stay in the cache.
+ *
+ * @see RandomTree
+ * @see RandomForest
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class CompiledForest implements Serializable, BinaryModel {
+
+    private static final long serialVersionUID = 2874420718335263419L;
+
+    /* Number of instances that all trees classify in turn */
+    private static final int BLOCK = 256;
+
+    private final Object[] classes;
+
+    /* index of the root node of each tree */
+    private final int[] roots;
+
+    /*
+     * the left child of node n at 2n and the right child at 2n+1, a leaf has
+     * the complement of its class index at 2n
+     */
+    private final int[] children;
+
+    /* the attributes of node n start at offset[n] and end at offset[n+1] */
+    private final int[] offset;
+
+    private final int[] attributes;
+
+    private final float[] leftCenter;
+
+    private final float[] rightCenter;
+
+    private CompiledForest(Object[] classes, int[] roots, int[] children, int[] offset, int[] attributes,
+            float[] leftCenter, float[] rightCenter) {
+        this.classes = classes;
+        this.roots = roots;
+        this.children = children;
+        this.offset = offset;
+        this.attributes = attributes;
+        this.leftCenter = leftCenter;
+        this.rightCenter = rightCenter;
+    }
+
+    /**
+     * Joins the trees of several forests into one forest.
+     *
+     * @param forests
+     *            the forests to join
+     * @param classes
+     *            all classes the trees can predict, in order
+     * @return a forest with all trees
+     */
+    static CompiledForest join(List<CompiledForest> forests, Collection<Object> classes) {
+        Object[] labels = classes.toArray();
+        HashMap<Object, Integer> index = new HashMap<Object, Integer>();
+        for (int k = 0; k < labels.length; k++)
+            index.put(labels[k], k);
+        int trees = 0, nodes = 0, attributes = 0;
+        for (CompiledForest f : forests) {
+            trees += f.roots.length;
+            nodes += f.noNodes();
+            attributes += f.attributes.length;
+        }
+        int[] roots = new int[trees];
+        int[] children = new int[2 * nodes];
+        int[] offset = new int[nodes + 1];
+        int[] attr = new int[attributes];
+        float[] left = new float[attributes];
+        float[] right = new float[attributes];
+        int t = 0, n = 0, a = 0;
+        for (CompiledForest f : forests) {
+            int[] map = new int[f.classes.length];
+            for (int k = 0; k < map.length; k++) {
+                Integer i = index.get(f.classes[k]);
+                if (i == null)
+                    throw new IllegalArgumentException("Unknown class: " + f.classes[k]);
+                map[k] = i;
+            }
+            for (int r : f.roots)
+                roots[t++] = r + n;
+            for (int m = 0; m < f.noNodes(); m++) {
+                int c = f.children[2 * m];
+                if (c < 0) {
+                    children[2 * (n + m)] = ~map[~c];
+                } else {
+                    children[2 * (n + m)] = c + n;
+                    children[2 * (n + m) + 1] = f.children[2 * m + 1] + n;
+                }
+                offset[n + m] = f.offset[m] + a;
+            }
+            System.arraycopy(f.attributes, 0, attr, a, f.attributes.length);
+            System.arraycopy(f.leftCenter, 0, left, a, f.attributes.length);
+            System.arraycopy(f.rightCenter, 0, right, a, f.attributes.length);
+            n += f.noNodes();
+            a += f.attributes.length;
+        }
+        offset[nodes] = a;
+        return new CompiledForest(labels, roots, children, offset, attr, left, right);
+    }
+
+    @Override
+    public void write(ModelOutput out) throws IOException {
+        out.writeObjects(classes);
+        out.writeInts(roots);
+        out.writeInts(children);
+        out.writeInts(offset);
+        out.writeInts(attributes);
+        out.writeFloats(leftCenter);
+        out.writeFloats(rightCenter);
+    }
+
+    /**
+     * Reads a forest that was written with {@link #write(ModelOutput)}.
+     */
+    public static CompiledForest read(ModelInput in) throws IOException {
+        Object[] classes = in.readObjects();
+        int[] roots = in.readInts();
+        int[] children = in.readInts();
+        int[] offset = in.readInts();
+        int[] attributes = in.readInts();
+        float[] left = in.readFloats();
+        float[] right = in.readFloats();
+        return new CompiledForest(classes, roots, children, offset, attributes, left, right);
+    }
+
+    /**
+     * Returns the number of trees in this forest.
+     */
+    public int noTrees() {
+        return roots.length;
+    }
+
+    /**
+     * Returns the number of nodes of all trees together.
+     */
+    public int noNodes() {
+        return offset.length - 1;
+    }
+
+    /**
+     * Returns the classes of this forest. The class indices that are returned
+     * by the other methods refer to this array.
+     */
+    public Object[] classes() {
+        return classes.clone();
+    }
+
+    /**
+     * Returns the index of the class that a tree predicts for an instance.
+     *
+     * @param tree
+     *            the index of the tree
+     * @param instance
+     *            the instance to classify
+     * @return the index of the predicted class
+     */
+    public int predict(int tree, Instance instance) {
+        int n = roots[tree];
+        int c;
+        while ((c = children[2 * n]) >= 0) {
+            double distLeft = 0, distRight = 0;
+            for (int i = offset[n]; i < offset[n + 1]; i++) {
+                double value = instance.value(attributes[i]);
+                distLeft += Math.abs(value - leftCenter[i]);
+                distRight += Math.abs(value - rightCenter[i]);
+            }
+            n = distLeft > distRight ? children[2 * n + 1] : c;
+        }
+        return ~c;
+    }
+
+    /**
+     * Returns the number of trees that vote for each class.
+     *
+     * @param instance
+     *            the instance to classify
+     * @return the votes, indexed as {@link #classes()}
+     */
+    public int[] votes(Instance instance) {
+        int[] out = new int[classes.length];
+        for (int t = 0; t < roots.length; t++)
+            out[predict(t, instance)]++;
+        return out;
+    }
+
+    /**
+     * Returns the number of trees that vote for each class, for many instances
+     * at once. The instances are classified in parallel.
+     *
+     * @param instances
+     *            the instances to classify
+     * @return the votes of each instance, indexed as {@link #classes()}
+     */
+    public int[][] votes(final List<? extends Instance> instances) {
+        final int[][] out = new int[instances.size()][classes.length];
+        Parallel.forRange(instances.size(), BLOCK, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                Instance[] block = new Instance[BLOCK];
+                for (int start = from; start < to; start += BLOCK) {
+                    int size = Math.min(BLOCK, to - start);
+                    for (int i = 0; i < size; i++)
+                        block[i] = instances.get(start + i);
+                    for (int t = 0; t < roots.length; t++)
+                        for (int i = 0; i < size; i++)
+                            out[start + i][predict(t, block[i])]++;
+                }
+            }
+        });
+        return out;
+    }
+
+    /* The class with the most votes, the first one on a tie */
+    static int best(int[] votes) {
+        int best = 0;
+        for (int k = 1; k < votes.length; k++)
+            if (votes[k] > votes[best])
+                best = k;
+        return best;
+    }
+
+    /**
+     * Returns the class with the most votes for each instance. Ties are
+     * resolved in favor of the class that comes first.
+     *
+     * @param instances
+     *            the instances to classify
+     * @return the predicted class of each instance
+     */
+    public Object[] classify(List<? extends Instance> instances) {
+        int[][] votes = votes(instances);
+        Object[] out = new Object[votes.length];
+        for (int i = 0; i < votes.length; i++)
+            out[i] = classes[best(votes[i])];
+        return out;
+    }
+
+    /**
+     * Collects the nodes of a single tree while it is built. The nodes have
+     * to be added depth-first: the split of a node is set before the nodes of
+     * its children are added.
+     */
+    static class Builder {
+
+        private int[] children = new int[32];
+
+        private int[] offset = new int[17];
+
+        private int nodes = 0;
+
+        private int[] attributes = new int[64];
+
+        private float[] leftCenter = new float[64];
+
+        private float[] rightCenter = new float[64];
+
+        private int size = 0;
+
+        /**
+         * Adds a node and returns its index.
+         */
+        int add() {
+            if (nodes + 1 == offset.length) {
+                offset = Arrays.copyOf(offset, 2 * offset.length);
+                children = Arrays.copyOf(children, 2 * offset.length);
+            }
+            offset[nodes] = size;
+            return nodes++;
+        }
+
+        void leaf(int node, int clazz) {
+            children[2 * node] = ~clazz;
+        }
+
+        /**
+         * Sets the split of the last added node.
+         */
+        void split(int[] attr, int noAttributes, float[] left, float[] right) {
+            if (size + noAttributes > attributes.length) {
+                int capacity = Math.max(2 * attributes.length, size + noAttributes);
+                attributes = Arrays.copyOf(attributes, capacity);
+                leftCenter = Arrays.copyOf(leftCenter, capacity);
+                rightCenter = Arrays.copyOf(rightCenter, capacity);
+            }
+            System.arraycopy(attr, 0, attributes, size, noAttributes);
+            System.arraycopy(left, 0, leftCenter, size, noAttributes);
+            System.arraycopy(right, 0, rightCenter, size, noAttributes);
+            size += noAttributes;
+        }
+
+        void children(int node, int left, int right) {
+            children[2 * node] = left;
+            children[2 * node + 1] = right;
+        }
+
+        CompiledForest build(Object[] classes) {
+            int[] off = Arrays.copyOf(offset, nodes + 1);
+            off[nodes] = size;
+            return new CompiledForest(classes, new int[] { 0 }, Arrays.copyOf(children, 2 * nodes), off,
+                    Arrays.copyOf(attributes, size), Arrays.copyOf(leftCenter, size), Arrays.copyOf(rightCenter,
+                            size));
+        }
+    }
+
+}
@@ -0,0 +1,498 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.classification.tree;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import net.sf.javaml.classification.Classifier;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.exception.TrainingRequiredException;
+import net.sf.javaml.tools.BinaryModel;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
+import net.sf.javaml.utils.ArrayUtils;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.Seedable;
+
+/**
+ * CART decision tree for classification. Each node splits on the attribute
+ * and threshold that reduce the Gini impurity or the entropy of the classes
+ * the most.
+ *
+ * The instances are sorted once on each attribute. Every node owns a range of
+ * positions in these sorted orders, so the best threshold of an attribute is
+ * found in a single scan over the range. After a split the range of each
+ * attribute is partitioned in place, keeping the order. The candidate
+ * attributes of a node are evaluated in parallel, as is the partitioning.
+ * Training needs a double and an int per value of the data set.
+ *
+ * A node can consider a random selection of the attributes, as in random
+ * forests. If none of them can split the node, more attributes are drawn
+ * until one can.
+ *
+ * Missing values, stored as NaN, always follow the right branch of a split:
+ * they are sorted after all other values, also after positive infinity, and
+ * are never split from each other.
+ *
+ * The nodes are built from an explicit stack, so deep trees of degenerate
+ * data do not overflow the call stack.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class DecisionTree implements Classifier, BinaryModel, Seedable {
+
+    private static final long serialVersionUID = 6613932154357232411L;
+
+    /**
+     * The impurity measures that can be used to select splits.
+     */
+    public enum Impurity {
+        GINI, ENTROPY
+    }
+
+    /* Number of position-attribute pairs below which a node works serially */
+    private static final int MIN_WORK = 1 << 14;
+
+    private Impurity impurity;
+
+    /* number of attributes considered at each node, 0 for all */
+    private int candidates;
+
+    private Random rg;
+
+    private int maxDepth = Integer.MAX_VALUE;
+
+    private int minLeafSize = 1;
+
+    private Object[] classes;
+
+    /*
+     * The nodes, depth-first so the left child of an internal node is the next
+     * node. A leaf has feature -1, and the position of its class distribution
+     * as right child.
+     */
+    private int[] feature;
+
+    private double[] threshold;
+
+    private int[] right;
+
+    private int noNodes;
+
+    private double[] distribution;
+
+    private int noLeaves;
+
+    /* training state, only used while building */
+    private transient double[][] values;
+
+    private transient int[] classOf;
+
+    private transient int[][] sorted;
+
+    private transient boolean[] goesLeft;
+
+    private transient int[] order;
+
+    /* x ln(x) for the counts of the entropy */
+    private transient double[] xlogx;
+
+    /**
+     * Creates a decision tree that considers all attributes at each node and
+     * uses the Gini impurity.
+     */
+    public DecisionTree() {
+        this(Impurity.GINI, 0, null);
+    }
+
+    /**
+     * Creates a decision tree.
+     *
+     * @param impurity
+     *            the impurity measure used to select splits
+     * @param candidates
+     *            the number of random attributes considered at each node, 0
+     *            to consider all attributes
+     * @param rg
+     *            the random generator used to select attributes
+     */
+    public DecisionTree(Impurity impurity, int candidates, Random rg) {
+        this.impurity = impurity;
+        this.candidates = candidates;
+        if (rg == null)
+            rg = new Random(System.currentTimeMillis());
+        this.rg = rg;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.rg = new Random(seed);
+    }
+
+    /**
+     * Sets the maximum depth of the tree, a tree of depth 0 is a single leaf.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets the minimum number of training instances in a leaf.
+     */
+    public void setMinLeafSize(int minLeafSize) {
+        this.minLeafSize = minLeafSize;
+    }
+
+    @Override
+    public void buildClassifier(final Dataset data) {
+        if (data.size() == 0)
+            throw new IllegalArgumentException("Can not build a tree without training data");
+        classes = data.classes().toArray();
+        HashMap<Object, Integer> classIndex = new HashMap<Object, Integer>();
+        for (int k = 0; k < classes.length; k++)
+            classIndex.put(classes[k], k);
+        final int n = data.size();
+        int d = data.noAttributes();
+        classOf = new int[n];
+        for (int i = 0; i < n; i++)
+            classOf[i] = classIndex.get(data.get(i).classValue());
+        values = new double[d][];
+        sorted = new int[d][];
+        Parallel.forRange(d, Math.max(1, MIN_WORK / n), new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int a = from; a < to; a++) {
+                    double[] column = new double[n];
+                    for (int i = 0; i < n; i++)
+                        column[i] = data.get(i).value(a);
+                    values[a] = column;
+                    sorted[a] = sort(column);
+                }
+            }
+        });
+        goesLeft = new boolean[n];
+        order = new int[d];
+        for (int a = 0; a < d; a++)
+            order[a] = a;
+        xlogx = new double[n + 1];
+        for (int i = 1; i <= n; i++)
+            xlogx[i] = i * Math.log(i);
+        feature = new int[64];
+        threshold = new double[64];
+        right = new int[64];
+        distribution = new double[16 * classes.length];
+        noNodes = 0;
+        noLeaves = 0;
+        try {
+            if (d > 0) {
+                build(n);
+            } else {
+                int[] counts = new int[classes.length];
+                for (int i = 0; i < n; i++)
+                    counts[classOf[i]]++;
+                leaf(addNode(), counts, n);
+            }
+        } finally {
+            values = null;
+            sorted = null;
+            classOf = null;
+            goesLeft = null;
+            order = null;
+            xlogx = null;
+        }
+        feature = Arrays.copyOf(feature, noNodes);
+        threshold = Arrays.copyOf(threshold, noNodes);
+        right = Arrays.copyOf(right, noNodes);
+        distribution = Arrays.copyOf(distribution, noLeaves * classes.length);
+    }
+
+    private int addNode() {
+        if (noNodes == feature.length) {
+            feature = Arrays.copyOf(feature, 2 * noNodes);
+            threshold = Arrays.copyOf(threshold, 2 * noNodes);
+            right = Arrays.copyOf(right, 2 * noNodes);
+        }
+        return noNodes++;
+    }
+
+    private void leaf(int node, int[] counts, int size) {
+        int k = classes.length;
+        if ((noLeaves + 1) * k > distribution.length)
+            distribution = Arrays.copyOf(distribution, 2 * distribution.length);
+        for (int c = 0; c < k; c++)
+            distribution[noLeaves * k + c] = counts[c] / (double) size;
+        feature[node] = -1;
+        right[node] = noLeaves++;
+    }
+
+    /*
+     * The positions of a column in ascending order, followed by the positions
+     * of the missing values in their original order.
+     */
+    private static int[] sort(double[] column) {
+        int[] order = ArrayUtils.sort(column);
+        int[] out = new int[order.length];
+        int n = 0;
+        for (int i : order)
+            if (!Double.isNaN(column[i]))
+                out[n++] = i;
+        for (int i = 0; i < column.length; i++)
+            if (Double.isNaN(column[i]))
+                out[n++] = i;
+        return out;
+    }
+
+    /**
+     * Builds all nodes for the n training instances. The nodes are created
+     * depth-first from a stack of the ranges that remain to be built.
+     */
+    private void build(int n) {
+        /* from, to, depth and the parent of a right child or -1 */
+        ArrayDeque<int[]> stack = new ArrayDeque<int[]>();
+        stack.push(new int[] { 0, n, 0, -1 });
+        while (!stack.isEmpty()) {
+            int[] range = stack.pop();
+            int node = addNode();
+            if (range[3] >= 0)
+                right[range[3]] = node;
+            int mid = split(node, range[0], range[1], range[2]);
+            if (mid >= 0) {
+                /* the left child is built first, so it is the next node */
+                stack.push(new int[] { mid, range[1], range[2] + 1, node });
+                stack.push(new int[] { range[0], mid, range[2] + 1, -1 });
+            }
+        }
+    }
+
+    /**
+     * Makes a node for the instances at positions from (inclusive) to
+     * (exclusive) of the sorted orders, either a leaf or a split that
+     * partitions the range.
+     *
+     * @return the first position of the right child, or -1 for a leaf
+     */
+    private int split(int node, final int from, final int to, int depth) {
+        final int size = to - from;
+        int[] rows = sorted[0];
+        final int[] counts = new int[classes.length];
+        int noPresent = 0;
+        for (int i = from; i < to; i++)
+            if (counts[classOf[rows[i]]]++ == 0)
+                noPresent++;
+        if (noPresent == 1 || depth >= maxDepth || size < 2 * minLeafSize) {
+            leaf(node, counts, size);
+            return -1;
+        }
+
+        /* draw candidates in batches until one of them can split the node */
+        int d = sorted.length;
+        int batch = candidates > 0 ? candidates : d;
+        int bestAttribute = -1, bestPosition = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int evaluated = 0; evaluated < d && bestAttribute < 0; evaluated += batch) {
+            final int first = evaluated, last = Math.min(d, evaluated + batch);
+            if (candidates > 0) {
+                for (int i = first; i < last; i++) {
+                    int j = i + rg.nextInt(d - i);
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                }
+            }
+            final double[] scores = new double[last - first];
+            final int[] positions = new int[last - first];
+            Parallel.forRange(last - first, Math.max(1, MIN_WORK / size), new Parallel.RangeTask() {
+                @Override
+                public void run(int start, int end) {
+                    for (int j = start; j < end; j++)
+                        positions[j] = bestSplit(order[first + j], from, to, counts, scores, j);
+                }
+            });
+            for (int j = 0; j < scores.length; j++) {
+                if (positions[j] >= 0 && scores[j] > bestScore) {
+                    bestScore = scores[j];
+                    bestAttribute = order[first + j];
+                    bestPosition = positions[j];
+                }
+            }
+        }
+        if (bestAttribute < 0) {
+            leaf(node, counts, size);
+            return -1;
+        }
+
+        int[] split = sorted[bestAttribute];
+        double value = values[bestAttribute][split[bestPosition]];
+        double next = values[bestAttribute][split[bestPosition + 1]];
+        double t = (value + next) / 2;
+        /* rounding or overflow can put the midpoint on the wrong side */
+        if (!(t >= value && t < next))
+            t = value;
+        final int mid = bestPosition + 1;
+        for (int i = from; i < to; i++)
+            goesLeft[split[i]] = i < mid;
+        Parallel.forRange(d, Math.max(1, MIN_WORK / size), new Parallel.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int[] buffer = new int[size];
+                for (int a = start; a < end; a++)
+                    partition(sorted[a], from, to, buffer);
+            }
+        });
+        feature[node] = bestAttribute;
+        threshold[node] = t;
+        return mid;
+    }
+
+    /* Moves the left rows to the front of the range, keeping their order */
+    private void partition(int[] rows, int from, int to, int[] buffer) {
+        int left = from, noRight = 0;
+        for (int i = from; i < to; i++) {
+            if (goesLeft[rows[i]])
+                rows[left++] = rows[i];
+            else
+                buffer[noRight++] = rows[i];
+        }
+        System.arraycopy(buffer, 0, rows, left, noRight);
+    }
+
+    /**
+     * Finds the best split of an attribute for the instances at positions
+     * from (inclusive) to (exclusive). The score is larger for splits with a
+     * lower impurity.
+     *
+     * @return the last position of the left child, or -1 if the attribute can
+     *         not split the instances
+     */
+    private int bestSplit(int a, int from, int to, int[] counts, double[] scores, int j) {
+        int[] rows = sorted[a];
+        double[] v = values[a];
+        int k = counts.length;
+        int[] left = new int[k];
+        int[] remaining = counts.clone();
+        boolean gini = impurity == Impurity.GINI;
+        /* sums of the squared counts for Gini, of x ln(x) for the entropy */
+        double sumLeft = 0, sumRight = 0;
+        for (int c = 0; c < k; c++)
+            sumRight += gini ? (double) counts[c] * counts[c] : xlogx[counts[c]];
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to - 1; i++) {
+            int c = classOf[rows[i]];
+            if (gini) {
+                sumLeft += 2 * left[c] + 1;
+                sumRight -= 2 * remaining[c] - 1;
+            } else {
+                sumLeft += xlogx[left[c] + 1] - xlogx[left[c]];
+                sumRight += xlogx[remaining[c] - 1] - xlogx[remaining[c]];
+            }
+            left[c]++;
+            remaining[c]--;
+            int noLeft = i - from + 1, noRight = to - from - noLeft;
+            if (noLeft < minLeafSize || noRight < minLeafSize)
+                continue;
+            /* only split between different values, NaN can not be split */
+            if (!(v[rows[i]] < v[rows[i + 1]]))
+                continue;
+            double score;
+            if (gini)
+                score = sumLeft / noLeft + sumRight / noRight;
+            else
+                score = sumLeft - xlogx[noLeft] + sumRight - xlogx[noRight];
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        scores[j] = bestScore;
+        return best;
+    }
+
+    @Override
+    public void write(ModelOutput out) throws IOException {
+        if (classes == null)
+            throw new TrainingRequiredException("The tree has not been built");
+        out.writeInt(impurity.ordinal());
+        out.writeInt(candidates);
+        out.writeInt(maxDepth);
+        out.writeInt(minLeafSize);
+        out.writeObjects(classes);
+        out.writeInts(feature);
+        out.writeDoubles(threshold);
+        out.writeInts(right);
+        out.writeDoubles(distribution);
+    }
+
+    /**
+     * Reads a tree that was written with {@link #write(ModelOutput)}. The tree
+     * gets a new random generator.
+     */
+    public static DecisionTree read(ModelInput in) throws IOException {
+        DecisionTree dt = new DecisionTree(Impurity.values()[in.readInt()], in.readInt(), null);
+        dt.maxDepth = in.readInt();
+        dt.minLeafSize = in.readInt();
+        dt.classes = in.readObjects();
+        dt.feature = in.readInts();
+        dt.threshold = in.readDoubles();
+        dt.right = in.readInts();
+        dt.distribution = in.readDoubles();
+        dt.noNodes = dt.feature.length;
+        dt.noLeaves = dt.distribution.length / dt.classes.length;
+        return dt;
+    }
+
+    /* Position of the class distribution of the leaf an instance ends up in */
+    private int leafOf(Instance instance) {
+        int n = 0;
+        while (feature[n] >= 0)
+            n = instance.value(feature[n]) <= threshold[n] ? n + 1 : right[n];
+        return right[n] * classes.length;
+    }
+
+    /**
+     * Returns the index of the predicted class in {@link #classes()}.
+     */
+    int predict(Instance instance) {
+        int leaf = leafOf(instance);
+        int best = 0;
+        for (int c = 1; c < classes.length; c++)
+            if (distribution[leaf + c] > distribution[leaf + best])
+                best = c;
+        return best;
+    }
+
+    Object[] classes() {
+        return classes;
+    }
+
+    /**
+     * Returns the class with the highest frequency in the leaf of the
+     * instance, the first class in the order of the training data on a tie.
+     */
+    @Override
+    public Object classify(Instance instance) {
+        return classes[predict(instance)];
+    }
+
+    /**
+     * Returns the class frequencies of the training instances in the leaf of
+     * the instance.
+     */
+    @Override
+    public Map<Object, Double> classDistribution(Instance instance) {
+        int leaf = leafOf(instance);
+        HashMap<Object, Double> out = new HashMap<Object, Double>();
+        for (int c = 0; c < classes.length; c++)
+            out.put(classes[c], distribution[leaf + c]);
+        return out;
+    }
+
+}
@@ -0,0 +1,381 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.classification.tree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.javaml.classification.AbstractClassifier;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Gradient boosted decision trees for classification.
+ *
+ * Each round adds a regression tree that takes a Newton step on the log loss:
+ * a single tree on the log-odds for two classes, or one tree per class on the
+ * softmax scores for more classes. The trees are grown depth-first to a
+ * maximum depth, the gain of a split and the value of a leaf follow from the
+ * sums of the gradients and hessians with L2 regularization.
+ *
+ * Before training, the values of each attribute are replaced by the index of
+ * their quantile bin, so a node only needs a histogram of the gradients per
+ * bin to find its best split. The histograms of the attributes are built in
+ * parallel. Only the histogram of the smaller child of a node is built, that
+ * of its sibling is the difference with the histogram of the parent.
+ *
+ * Missing values, stored as NaN, always follow the right branch of a split.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class GradientBoostedTrees extends AbstractClassifier {
+
+    private static final long serialVersionUID = -4839272740712215360L;
+
+    /* Number of row-bin updates below which a histogram is built serially */
+    private static final int MIN_WORK = 1 << 16;
+
+    private int rounds;
+
+    private double learningRate = 0.1;
+
+    private int maxDepth = 6;
+
+    private int maxBins = 256;
+
+    private double lambda = 1;
+
+    private double minChildWeight = 1;
+
+    private Object[] classes;
+
+    /* number of scores, 1 for two classes, the number of classes otherwise */
+    private int outputs;
+
+    private double[] initial;
+
+    /*
+     * The nodes of all trees, depth-first so the left child of an internal
+     * node is the next node. A leaf has feature -1 and its value as threshold.
+     */
+    private int[] feature;
+
+    private double[] threshold;
+
+    private int[] right;
+
+    private int noNodes;
+
+    /* root node of each tree, round by round and output by output */
+    private int[] roots;
+
+    /* training state, only used while building */
+    private transient QuantileBins bins;
+
+    private transient int[] rows;
+
+    private transient double[] gradient, hessian, scores;
+
+    /**
+     * Creates gradient boosted trees with the default parameters: a learning
+     * rate of 0.1, trees of depth 6, 256 bins per attribute, an L2
+     * regularization of 1 and a minimum hessian of 1 in each leaf.
+     *
+     * @param rounds
+     *            the number of boosting rounds
+     */
+    public GradientBoostedTrees(int rounds) {
+        this.rounds = rounds;
+    }
+
+    /**
+     * Sets the factor with which the value of each leaf is multiplied.
+     */
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * Sets the maximum depth of the trees, a tree of depth 0 is a single leaf.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets the maximum number of bins of an attribute, including the bin of
+     * the missing values. Up to 256 bins are stored in a byte per value, more
+     * bins, up to 65536, in two bytes per value.
+     */
+    public void setMaxBins(int maxBins) {
+        this.maxBins = maxBins;
+    }
+
+    /**
+     * Sets the L2 regularization of the leaf values.
+     */
+    public void setLambda(double lambda) {
+        this.lambda = lambda;
+    }
+
+    /**
+     * Sets the minimum sum of the hessians in a leaf.
+     */
+    public void setMinChildWeight(double minChildWeight) {
+        this.minChildWeight = minChildWeight;
+    }
+
+    @Override
+    public void buildClassifier(Dataset data) {
+        if (data.size() == 0)
+            throw new IllegalArgumentException("Can not build gradient boosted trees without training data");
+        super.buildClassifier(data);
+        classes = data.classes().toArray();
+        HashMap<Object, Integer> classIndex = new HashMap<Object, Integer>();
+        for (int k = 0; k < classes.length; k++)
+            classIndex.put(classes[k], k);
+        final int n = data.size();
+        final int[] y = new int[n];
+        int[] count = new int[classes.length];
+        for (int i = 0; i < n; i++) {
+            y[i] = classIndex.get(data.get(i).classValue());
+            count[y[i]]++;
+        }
+        outputs = classes.length <= 2 ? 1 : classes.length;
+        initial = new double[outputs];
+        if (classes.length == 2)
+            initial[0] = Math.log((double) count[1] / count[0]);
+        else if (classes.length > 2)
+            for (int k = 0; k < outputs; k++)
+                initial[k] = Math.log((double) count[k] / n);
+
+        feature = new int[64];
+        threshold = new double[64];
+        right = new int[64];
+        noNodes = 0;
+        roots = new int[classes.length < 2 ? 0 : rounds * outputs];
+        if (roots.length == 0)
+            return;
+
+        bins = new QuantileBins(data, maxBins);
+        rows = new int[n];
+        gradient = new double[n];
+        hessian = new double[n];
+        scores = new double[n * outputs];
+        for (int i = 0; i < n; i++)
+            System.arraycopy(initial, 0, scores, i * outputs, outputs);
+        final double[] p = new double[n * outputs];
+        try {
+            for (int r = 0; r < rounds; r++) {
+                Parallel.forRange(n, 1024, new Parallel.RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        for (int i = from; i < to; i++)
+                            probabilities(scores, i * outputs, p, i * outputs);
+                    }
+                });
+                for (int k = 0; k < outputs; k++) {
+                    for (int i = 0; i < n; i++) {
+                        double pk = p[i * outputs + k];
+                        double target = outputs == 1 ? y[i] : (y[i] == k ? 1 : 0);
+                        gradient[i] = pk - target;
+                        hessian[i] = Math.max(pk * (1 - pk), 1e-16);
+                        rows[i] = i;
+                    }
+                    double g = 0, h = 0;
+                    for (int i = 0; i < n; i++) {
+                        g += gradient[i];
+                        h += hessian[i];
+                    }
+                    roots[r * outputs + k] = grow(k, 0, n, histogram(0, n), g, h, 0);
+                }
+            }
+        } finally {
+            bins = null;
+            rows = null;
+            gradient = hessian = scores = null;
+        }
+        feature = Arrays.copyOf(feature, noNodes);
+        threshold = Arrays.copyOf(threshold, noNodes);
+        right = Arrays.copyOf(right, noNodes);
+    }
+
+    /* Turns the scores at position from into class probabilities */
+    private void probabilities(double[] s, int from, double[] out, int to) {
+        if (outputs == 1) {
+            out[to] = 1 / (1 + Math.exp(-s[from]));
+            return;
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < outputs; k++)
+            max = Math.max(max, s[from + k]);
+        double total = 0;
+        for (int k = 0; k < outputs; k++) {
+            out[to + k] = Math.exp(s[from + k] - max);
+            total += out[to + k];
+        }
+        for (int k = 0; k < outputs; k++)
+            out[to + k] /= total;
+    }
+
+    /**
+     * Builds the histogram of the gradients and hessians of the rows at
+     * positions from (inclusive) to (exclusive), over all attributes.
+     */
+    private double[] histogram(final int from, final int to) {
+        final double[] histogram = new double[2 * bins.totalBins()];
+        int minChunk = Math.max(1, MIN_WORK / Math.max(1, to - from));
+        Parallel.forRange(bins.noAttributes(), minChunk, new Parallel.RangeTask() {
+            @Override
+            public void run(int first, int last) {
+                for (int a = first; a < last; a++)
+                    bins.histogram(a, rows, from, to, gradient, hessian, histogram);
+            }
+        });
+        return histogram;
+    }
+
+    private int addNode() {
+        if (noNodes == feature.length) {
+            feature = Arrays.copyOf(feature, 2 * noNodes);
+            threshold = Arrays.copyOf(threshold, 2 * noNodes);
+            right = Arrays.copyOf(right, 2 * noNodes);
+        }
+        return noNodes++;
+    }
+
+    private double gain(double g, double h) {
+        return g * g / (h + lambda);
+    }
+
+    /**
+     * Grows the node for the rows at positions from (inclusive) to (exclusive)
+     * and all nodes below it. The histogram of the node is reused for one of
+     * its children.
+     *
+     * @return the index of the node
+     */
+    private int grow(int output, int from, int to, final double[] histogram, final double g, final double h,
+            int depth) {
+        int node = addNode();
+        int bestAttribute = -1, bestBin = -1;
+        double bestGain = 0;
+        if (depth < maxDepth) {
+            final double[] gains = new double[bins.noAttributes()];
+            final int[] splits = new int[gains.length];
+            Parallel.forRange(gains.length, 256, new Parallel.RangeTask() {
+                @Override
+                public void run(int first, int last) {
+                    for (int a = first; a < last; a++)
+                        bestSplit(a, histogram, g, h, gains, splits);
+                }
+            });
+            for (int a = 0; a < gains.length; a++) {
+                if (gains[a] > bestGain) {
+                    bestGain = gains[a];
+                    bestAttribute = a;
+                    bestBin = splits[a];
+                }
+            }
+        }
+        if (bestAttribute < 0) {
+            double value = -learningRate * g / (h + lambda);
+            feature[node] = -1;
+            threshold[node] = value;
+            for (int i = from; i < to; i++)
+                scores[rows[i] * outputs + output] += value;
+            return node;
+        }
+
+        /* partition the rows, the left ones first */
+        int i = from, j = to - 1;
+        while (i <= j) {
+            if (bins.bin(bestAttribute, rows[i]) <= bestBin) {
+                i++;
+            } else {
+                int tmp = rows[i];
+                rows[i] = rows[j];
+                rows[j--] = tmp;
+            }
+        }
+        int mid = i;
+        double gl = 0, hl = 0;
+        int base = 2 * bins.offset(bestAttribute);
+        for (int b = 0; b <= bestBin; b++) {
+            gl += histogram[base + 2 * b];
+            hl += histogram[base + 2 * b + 1];
+        }
+
+        /* build the smaller child, the parent becomes the larger child */
+        boolean leftSmaller = mid - from <= to - mid;
+        double[] smaller = leftSmaller ? histogram(from, mid) : histogram(mid, to);
+        for (int b = 0; b < histogram.length; b++)
+            histogram[b] -= smaller[b];
+        double[] leftHistogram = leftSmaller ? smaller : histogram;
+        double[] rightHistogram = leftSmaller ? histogram : smaller;
+
+        feature[node] = bestAttribute;
+        threshold[node] = bins.edge(bestAttribute, bestBin);
+        grow(output, from, mid, leftHistogram, gl, hl, depth + 1);
+        /* growing may replace the arrays, so assign after it */
+        int child = grow(output, mid, to, rightHistogram, g - gl, h - hl, depth + 1);
+        right[node] = child;
+        return node;
+    }
+
+    /* Finds the bin after which to split an attribute, and the gain of it */
+    private void bestSplit(int a, double[] histogram, double g, double h, double[] gains, int[] splits) {
+        int base = 2 * bins.offset(a);
+        double parent = gain(g, h);
+        double gl = 0, hl = 0;
+        /* the last bin holds the missing values, they always go right */
+        for (int b = 0; b < bins.noBins(a) - 1; b++) {
+            gl += histogram[base + 2 * b];
+            hl += histogram[base + 2 * b + 1];
+            double hr = h - hl;
+            if (hl < minChildWeight || hr < minChildWeight)
+                continue;
+            double gain = gain(gl, hl) + gain(g - gl, hr) - parent;
+            if (gain > gains[a]) {
+                gains[a] = gain;
+                splits[a] = b;
+            }
+        }
+    }
+
+    /* The scores of an instance for each output */
+    private double[] score(Instance instance) {
+        double[] s = initial.clone();
+        for (int t = 0; t < roots.length; t++) {
+            int n = roots[t];
+            while (feature[n] >= 0)
+                n = instance.value(feature[n]) <= threshold[n] ? n + 1 : right[n];
+            s[t % outputs] += threshold[n];
+        }
+        return s;
+    }
+
+    @Override
+    public Map<Object, Double> classDistribution(Instance instance) {
+        HashMap<Object, Double> out = new HashMap<Object, Double>();
+        if (classes.length == 1) {
+            out.put(classes[0], 1.0);
+            return out;
+        }
+        double[] p = new double[outputs];
+        probabilities(score(instance), 0, p, 0);
+        if (outputs == 1) {
+            out.put(classes[0], 1 - p[0]);
+            out.put(classes[1], p[0]);
+        } else {
+            for (int k = 0; k < outputs; k++)
+                out.put(classes[k], p[k]);
+        }
+        return out;
+    }
+
+}
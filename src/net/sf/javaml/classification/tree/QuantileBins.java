@@ -0,0 +1,188 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.classification.tree;
+
+import java.util.Arrays;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * The attribute values of a data set replaced by the index of their quantile
+ * bin. The bins of an attribute are bounded by the values in
+ * <code>edges</code>: a value belongs to the first bin whose edge is not
+ * smaller than the value. Missing values, stored as NaN, get a bin of their
+ * own after all others.
+ *
+ * The bins are stored per attribute, as bytes when there are at most 256
+ * bins and as chars otherwise.
+ *
+ * @see GradientBoostedTrees
+ *
+ * @author Thomas Abeel
+ *
+ */
+class QuantileBins {
+
+    private final int size;
+
+    /* upper bound of each bin of each attribute, except the missing bin */
+    private final double[][] edges;
+
+    /* first bin of each attribute in a histogram over all attributes */
+    private final int[] offset;
+
+    private final byte[][] small;
+
+    private final char[][] large;
+
+    /**
+     * Bins all attributes of a data set, in parallel.
+     *
+     * @param data
+     *            the data set
+     * @param maxBins
+     *            the maximum number of bins of an attribute, including the
+     *            bin for missing values, between 2 and 65536
+     */
+    QuantileBins(final Dataset data, final int maxBins) {
+        if (maxBins < 2 || maxBins > 65536)
+            throw new IllegalArgumentException("The number of bins should be between 2 and 65536: " + maxBins);
+        size = data.size();
+        int noAttributes = data.noAttributes();
+        edges = new double[noAttributes][];
+        small = maxBins <= 256 ? new byte[noAttributes][] : null;
+        large = maxBins <= 256 ? null : new char[noAttributes][];
+        Parallel.forRange(noAttributes, 1, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                double[] column = new double[size];
+                for (int a = from; a < to; a++) {
+                    /* adding zero turns -0.0 into 0.0, they share a bin */
+                    for (int i = 0; i < size; i++)
+                        column[i] = data.get(i).value(a) + 0.0;
+                    bin(a, column, maxBins - 1);
+                }
+            }
+        });
+        offset = new int[noAttributes + 1];
+        for (int a = 0; a < noAttributes; a++)
+            offset[a + 1] = offset[a] + noBins(a);
+    }
+
+    private void bin(int a, double[] column, int maxEdges) {
+        double[] sorted = column.clone();
+        Arrays.sort(sorted);
+        /* NaN is sorted after all numbers */
+        int m = 0;
+        while (m < sorted.length && !Double.isNaN(sorted[m]))
+            m++;
+        int distinct = 0;
+        for (int i = 0; i < m; i++)
+            if (i == 0 || sorted[i] > sorted[i - 1])
+                distinct++;
+        double[] e = new double[Math.min(distinct, maxEdges)];
+        int n = 0;
+        if (distinct <= maxEdges) {
+            for (int i = 0; i < m; i++)
+                if (n == 0 || sorted[i] > e[n - 1])
+                    e[n++] = sorted[i];
+        } else {
+            for (int q = 1; q <= maxEdges; q++) {
+                double v = sorted[(int) Math.ceil((double) q * m / maxEdges) - 1];
+                if (n == 0 || v > e[n - 1])
+                    e[n++] = v;
+            }
+            e = Arrays.copyOf(e, n);
+        }
+        edges[a] = e;
+        if (small != null)
+            small[a] = new byte[column.length];
+        else
+            large[a] = new char[column.length];
+        for (int i = 0; i < column.length; i++) {
+            int b = bin(e, column[i]);
+            if (small != null)
+                small[a][i] = (byte) b;
+            else
+                large[a][i] = (char) b;
+        }
+    }
+
+    private static int bin(double[] edges, double value) {
+        if (Double.isNaN(value))
+            return edges.length;
+        int b = Arrays.binarySearch(edges, value);
+        return b >= 0 ? b : -b - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int noAttributes() {
+        return edges.length;
+    }
+
+    /**
+     * Returns the number of bins of an attribute, including the missing bin.
+     */
+    int noBins(int a) {
+        return edges[a].length + 1;
+    }
+
+    /**
+     * Returns the number of bins of all attributes together.
+     */
+    int totalBins() {
+        return offset[offset.length - 1];
+    }
+
+    /**
+     * Returns the first bin of an attribute in a histogram over all
+     * attributes.
+     */
+    int offset(int a) {
+        return offset[a];
+    }
+
+    /**
+     * Returns the upper bound of a bin. A value goes to this bin or one
+     * before it if and only if it is not larger than the bound.
+     */
+    double edge(int a, int bin) {
+        return edges[a][bin];
+    }
+
+    int bin(int a, int row) {
+        return small != null ? small[a][row] & 0xFF : large[a][row];
+    }
+
+    /**
+     * Adds the gradient and hessian of the rows at positions from (inclusive)
+     * to (exclusive) to the histogram of an attribute. The sums of bin b are
+     * at 2 * (offset(a) + b) and the next position.
+     */
+    void histogram(int a, int[] rows, int from, int to, double[] gradient, double[] hessian, double[] histogram) {
+        int base = 2 * offset[a];
+        if (small != null) {
+            byte[] bins = small[a];
+            for (int i = from; i < to; i++) {
+                int r = rows[i];
+                int b = base + 2 * (bins[r] & 0xFF);
+                histogram[b] += gradient[r];
+                histogram[b + 1] += hessian[r];
+            }
+        } else {
+            char[] bins = large[a];
+            for (int i = from; i < to; i++) {
+                int r = rows[i];
+                int b = base + 2 * bins[r];
+                histogram[b] += gradient[r];
+                histogram[b + 1] += hessian[r];
+            }
+        }
+    }
+
+}
@@ -3,23 +3,60 @@
  */
 package net.sf.javaml.classification.tree;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
 import net.sf.javaml.classification.Classifier;
-import net.sf.javaml.classification.evaluation.PerformanceMeasure;
 import net.sf.javaml.classification.meta.Bagging;
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.exception.TrainingRequiredException;
+import net.sf.javaml.tools.BinaryModel;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
+import net.sf.javaml.utils.ParallelContext;
+import net.sf.javaml.utils.Seedable;
 
-public class RandomForest implements Classifier {
+/**
+ * Random forest of {@link RandomTree}s, each built on a bootstrap sample of
+ * the training data. After training, all trees are packed into a single
+ * {@link CompiledForest} that is used for classification.
+ *
+ * The forest can also be grown with CART {@link DecisionTree}s that consider
+ * <code>numAttributes</code> random attributes at each node, see
+ * {@link #setImpurity(DecisionTree.Impurity)}.
+ *
+ * The trees are built in parallel. Each tree has its own random generator,
+ * derived from the generator of the forest, so the forest does not depend on
+ * the number of threads.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class RandomForest implements Classifier, BinaryModel, Seedable {
 
 	/**
      * 
      */
 	private static final long serialVersionUID = 5832370995432897745L;
 
-	private Bagging bagger;
+	private CompiledForest forest;
+
+	private DecisionTree[] decisionTrees;
+
+	/* index in classes of each class of each decision tree */
+	private int[][] classMap;
+
+	private DecisionTree.Impurity impurity = null;
+
+	private Object[] classes;
+
+	private double outOfBagErrorEstimate;
 
 	private int treeCount;
 
@@ -34,6 +71,9 @@ public class RandomForest implements Classifier {
 
 	private Random rg;
 
+	/* the context for the parallel training, null for the library wide one */
+	private transient ParallelContext parallel = null;
+
 	public RandomForest(int treeCount) {
 		this(treeCount, false, 1, new Random(System.currentTimeMillis()));
 	}
@@ -47,32 +87,158 @@ public class RandomForest implements Classifier {
 		this.numAttributes = numAttributes;
 	}
 
+	/**
+	 * Grows the forest with decision trees that select splits with the given
+	 * impurity measure, instead of random trees. Set to null to use random
+	 * trees.
+	 */
+	public void setImpurity(DecisionTree.Impurity impurity) {
+		this.impurity = impurity;
+	}
+
 	public double getOutOfBagErrorEstimate() {
-		return bagger.getOutOfBagErrorEstimate();
+		return outOfBagErrorEstimate;
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		this.rg = new Random(seed);
+	}
+
+	/**
+	 * Sets the context that builds the trees in parallel.
+	 * 
+	 * @param context
+	 *            the parallel context, null for the library wide context
+	 */
+	public void setParallelContext(ParallelContext context) {
+		this.parallel = context;
 	}
 
 	public void buildClassifier(Dataset data) {
 		if (treeCount < 0)
 			treeCount = (int) Math.sqrt(data.noAttributes()) + 1;
-		RandomTree[] trees = new RandomTree[treeCount];
 		assert (rg != null);
+		Classifier[] trees = new Classifier[treeCount];
+		/* a generator per tree, so that the trees can be built in parallel */
+		long seed = rg.nextLong();
 		for (int i = 0; i < trees.length; i++) {
-			trees[i] = new RandomTree(numAttributes, rg);
+			if (impurity != null)
+				trees[i] = new DecisionTree(impurity, numAttributes, ParallelContext.random(seed, i));
+			else
+				trees[i] = new RandomTree(numAttributes, ParallelContext.random(seed, i));
 		}
-		bagger = new Bagging(trees, rg);
+		Bagging bagger = new Bagging(trees, rg);
+		bagger.setIndependentClassifiers(true);
+		bagger.setParallelContext(parallel);
 		bagger.setCalculateOutOfBagErrorEstimate(calculateOutOfBagErrorEstimate);
 		bagger.buildClassifier(data);
+		outOfBagErrorEstimate = bagger.getOutOfBagErrorEstimate();
+
+		classes = data.classes().toArray();
+		if (impurity != null) {
+			forest = null;
+			decisionTrees = new DecisionTree[treeCount];
+			for (int i = 0; i < treeCount; i++)
+				decisionTrees[i] = (DecisionTree) trees[i];
+			mapClasses();
+		} else {
+			decisionTrees = null;
+			classMap = null;
+			List<CompiledForest> compiled = new ArrayList<CompiledForest>();
+			for (Classifier tree : trees)
+				compiled.add(((RandomTree) tree).compiled());
+			forest = CompiledForest.join(compiled, data.classes());
+		}
+	}
 
+	/* Maps the classes of each decision tree to those of the forest */
+	private void mapClasses() {
+		classMap = new int[decisionTrees.length][];
+		List<Object> index = Arrays.asList(classes);
+		for (int i = 0; i < decisionTrees.length; i++) {
+			Object[] treeClasses = decisionTrees[i].classes();
+			classMap[i] = new int[treeClasses.length];
+			for (int k = 0; k < treeClasses.length; k++)
+				classMap[i][k] = index.indexOf(treeClasses[k]);
+		}
 	}
 
+	@Override
+	public void write(ModelOutput out) throws IOException {
+		if (classes == null)
+			throw new TrainingRequiredException("The forest has not been built");
+		out.writeInt(treeCount);
+		out.writeInt(numAttributes);
+		out.writeBoolean(calculateOutOfBagErrorEstimate);
+		out.writeDouble(outOfBagErrorEstimate);
+		out.writeInt(impurity == null ? -1 : impurity.ordinal());
+		out.writeObjects(classes);
+		if (forest != null) {
+			forest.write(out);
+		} else {
+			for (DecisionTree tree : decisionTrees)
+				tree.write(out);
+		}
+	}
+
+	/**
+	 * Reads a forest that was written with {@link #write(ModelOutput)}. The
+	 * forest gets a new random generator.
+	 */
+	public static RandomForest read(ModelInput in) throws IOException {
+		int treeCount = in.readInt();
+		int numAttributes = in.readInt();
+		boolean oob = in.readBoolean();
+		RandomForest rf = new RandomForest(treeCount, oob, numAttributes, null);
+		rf.outOfBagErrorEstimate = in.readDouble();
+		int impurity = in.readInt();
+		rf.impurity = impurity < 0 ? null : DecisionTree.Impurity.values()[impurity];
+		rf.classes = in.readObjects();
+		if (rf.impurity == null) {
+			rf.forest = CompiledForest.read(in);
+		} else {
+			rf.decisionTrees = new DecisionTree[treeCount];
+			for (int i = 0; i < treeCount; i++)
+				rf.decisionTrees[i] = DecisionTree.read(in);
+			rf.mapClasses();
+		}
+		return rf;
+	}
+
+	private int[] votes(Instance instance) {
+		if (forest != null)
+			return forest.votes(instance);
+		int[] votes = new int[classes.length];
+		for (int i = 0; i < decisionTrees.length; i++)
+			votes[classMap[i][decisionTrees[i].predict(instance)]]++;
+		return votes;
+	}
+
+	/**
+	 * Returns the trees of this forest in a form that can classify many
+	 * instances at once, or null for a forest of decision trees.
+	 */
+	public CompiledForest getCompiledForest() {
+		return forest;
+	}
+
+	/**
+	 * Returns the class with the most votes, the first class in the order of
+	 * the training data when several classes have the same number of votes.
+	 */
 	@Override
 	public Object classify(Instance instance) {
-		return bagger.classify(instance);
+		return classes[CompiledForest.best(votes(instance))];
 	}
 
 	@Override
 	public Map<Object, Double> classDistribution(Instance instance) {
-		return bagger.classDistribution(instance);
+		int[] votes = votes(instance);
+		Map<Object, Double> membership = new HashMap<Object, Double>();
+		for (int k = 0; k < votes.length; k++)
+			membership.put(classes[k], votes[k] / (double) treeCount);
+		return membership;
 	}
 
 }
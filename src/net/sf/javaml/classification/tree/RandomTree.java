@@ -3,28 +3,38 @@
  */
 package net.sf.javaml.classification.tree;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.SortedSet;
-import java.util.Vector;
+import java.util.TreeSet;
 
 import net.sf.javaml.classification.Classifier;
 import net.sf.javaml.core.Dataset;
-import net.sf.javaml.core.DefaultDataset;
 import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.exception.TrainingRequiredException;
+import net.sf.javaml.tools.BinaryModel;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
+import net.sf.javaml.utils.Seedable;
 
 /**
  * Simple and fast implementation of the RandomTree classifier.
- * 
- * Currently only works for binary problems.
- * 
+ *
+ * Each node splits the data with the means of two groups of classes on a
+ * random selection of attributes: the first class present in the node and
+ * all other classes. The tree is built on an array with the indices of the
+ * instances, that is partitioned in place for the children of each node. The
+ * built tree is stored as a {@link CompiledForest}.
+ *
  * @author Thomas Abeel
- * 
+ *
  */
-public class RandomTree implements Classifier {
+public class RandomTree implements Classifier, BinaryModel, Seedable {
     /**
-     * 
+     *
      */
     private static final long serialVersionUID = -6421557885832628441L;
 
@@ -33,43 +43,89 @@ public class RandomTree implements Classifier {
 
     private Random rg = null;
 
-    /* Mean of the second class of this split */
-    private float[] rightCenter = null;
+    private CompiledForest tree = null;
 
-    /* Mean of the first class of this split */
-    private float[] leftCenter = null;
+    private Object[] classes = null;
 
-    private Object finalClass = null;
+    private SortedSet<Object> parentClasses = null;
 
-    private RandomTree leftChild = null;
+    /* training state, only used while building */
+    private Instance[] rows;
 
-    private RandomTree rightChild = null;
+    private int[] classOf;
 
-    private Vector<Integer> splitAttributes = null;
+    private int[] index;
 
-    private SortedSet<Object> parentClasses = null;
+    private int[] scratch;
 
-    private RandomTree(int attributes, Random rg, SortedSet<Object> classes) {
+    public RandomTree(int attributes, Random rg) {
         this.rg = rg;
         this.noSplitAttributes = attributes;
-        this.parentClasses = classes;
     }
 
-    public RandomTree(int attributes, Random rg) {
-        this(attributes, rg, null);
+    @Override
+    public void setSeed(long seed) {
+        this.rg = new Random(seed);
     }
 
     @Override
     public void buildClassifier(Dataset data) {
-        if (parentClasses == null)
-            parentClasses = data.classes();
-
-        if (data.classes().size() == 1) {
-            finalClass = data.classes().first();
+        parentClasses = data.classes();
+        if (data.size() == 0)
+            throw new IllegalArgumentException("Can not build a tree without training data");
+        classes = parentClasses.toArray();
+        HashMap<Object, Integer> classIndex = new HashMap<Object, Integer>();
+        for (int k = 0; k < classes.length; k++)
+            classIndex.put(classes[k], k);
+        int n = data.size();
+        rows = data.toArray(new Instance[n]);
+        classOf = new int[n];
+        index = new int[n];
+        scratch = new int[n];
+        for (int i = 0; i < n; i++) {
+            classOf[i] = classIndex.get(rows[i].classValue());
+            index[i] = i;
+        }
+        CompiledForest.Builder builder = new CompiledForest.Builder();
+        try {
+            build(builder, 0, n, classes.length);
+        } finally {
+            rows = null;
+            classOf = index = scratch = null;
+        }
+        tree = builder.build(classes);
+        /* The training data is not needed when it ends up in a single leaf */
+        if (tree.noNodes() == 1)
             data.clear();
-            return;
+    }
+
+    /**
+     * Builds the node for the instances at positions from (inclusive) to
+     * (exclusive) in the index, and all nodes below it.
+     *
+     * @return the index of the node
+     */
+    private int build(CompiledForest.Builder builder, int from, int to, int noClasses) {
+        int node = builder.add();
+        boolean[] present = new boolean[noClasses];
+        int first = noClasses, noPresent = 0;
+        for (int i = from; i < to; i++) {
+            int c = classOf[index[i]];
+            if (!present[c]) {
+                present[c] = true;
+                noPresent++;
+                first = Math.min(first, c);
+            }
+        }
+        if (noPresent == 1) {
+            builder.leaf(node, first);
+            return node;
         }
-        Dataset left = null, right = null;
+        int noAttributes = rows[index[from]].noAttributes();
+        int[] splitAttributes = new int[noAttributes];
+        int size = 0;
+        float[] leftCenter = null, rightCenter = null;
+        int split = from;
         boolean correctSplit = false;
         /* To keep track of how many times we already tried to split the data */
         int iterationCount = 0;
@@ -78,116 +134,119 @@ public class RandomTree implements Classifier {
 
             /*
              * Select the attributes on which to split the data.
-             * 
+             *
              * When we face problems to split, we start using more attributes,
              * to force a split.
              */
-            splitAttributes = new Vector<Integer>();
-            for (int i = 0; i < data.noAttributes(); i++)
-                splitAttributes.add(i);
+            for (size = 0; size < noAttributes; size++)
+                splitAttributes[size] = size;
 
-            while (splitAttributes.size() / (iterationCount * iterationCount) > noSplitAttributes) {
-            	splitAttributes.remove(rg.nextInt(splitAttributes.size()));
+            while (size / (iterationCount * iterationCount) > noSplitAttributes) {
+                int r = rg.nextInt(size);
+                System.arraycopy(splitAttributes, r + 1, splitAttributes, r, size - r - 1);
+                size--;
             }
 
             /* calculate mean for each class */
             int count0 = 0, count1 = 0;
-            leftCenter = new float[splitAttributes.size()];
-            rightCenter = new float[splitAttributes.size()];
-            for (Instance inst : data) {
-                if (data.classIndex(inst.classValue()) == 0) {
+            leftCenter = new float[size];
+            rightCenter = new float[size];
+            for (int i = from; i < to; i++) {
+                Instance inst = rows[index[i]];
+                if (classOf[index[i]] == first) {
                     count0++;
-                    for (int j = 0; j < splitAttributes.size(); j++) {
-                        leftCenter[j] += inst.value(splitAttributes.get(j));
+                    for (int j = 0; j < size; j++) {
+                        leftCenter[j] += inst.value(splitAttributes[j]);
                     }
                 } else {
                     count1++;
-                    for (int j = 0; j < splitAttributes.size(); j++) {
-                        rightCenter[j] += inst.value(splitAttributes.get(j));
+                    for (int j = 0; j < size; j++) {
+                        rightCenter[j] += inst.value(splitAttributes[j]);
                     }
                 }
             }
 
-            for (int i = 0; i < splitAttributes.size(); i++) {
+            for (int i = 0; i < size; i++) {
                 leftCenter[i] /= count0;
                 rightCenter[i] /= count1;
             }
 
-            /* place-holder for instances */
-            double[] tmp = new double[splitAttributes.size()];
-            /* data sets to construct children */
-            left = new DefaultDataset();
-            right = new DefaultDataset();
-            for (Instance inst : data) {
-                for (int i = 0; i < splitAttributes.size(); i++) {
-                    tmp[i] = inst.value(splitAttributes.get(i));
+            /*
+             * Partition the index, the left instances keep their order at the
+             * start, the right instances follow them in their order.
+             */
+            split = from;
+            int noRight = 0;
+            for (int i = from; i < to; i++) {
+                Instance inst = rows[index[i]];
+                double distLeft = 0, distRight = 0;
+                for (int j = 0; j < size; j++) {
+                    double value = inst.value(splitAttributes[j]);
+                    distLeft += Math.abs(value - leftCenter[j]);
+                    distRight += Math.abs(value - rightCenter[j]);
                 }
-                double distLeft = dist(tmp, leftCenter);
-                double distRight = dist(tmp, rightCenter);
                 if (distLeft > distRight)
-                    right.add(inst);
+                    scratch[noRight++] = index[i];
                 else
-                    left.add(inst);
-
+                    index[split++] = index[i];
             }
-            correctSplit = left.size() != 0 && right.size() != 0;
+            System.arraycopy(scratch, 0, index, split, noRight);
+            correctSplit = split != from && split != to;
 
             if (!correctSplit) {
-                if ((iterationCount * iterationCount) * noSplitAttributes > data.noAttributes()) {
+                if ((iterationCount * iterationCount) * noSplitAttributes > noAttributes) {
                     /*
                      * This data set can not be split properly. This is most
                      * likely due to ambiguous training data. Randomly select
                      * one of the possible classes as output class.
                      */
-                    Vector<Object> possibleClasses = new Vector<Object>();
-                    possibleClasses.addAll(data.classes());
-                    this.finalClass = possibleClasses.get(rg.nextInt(possibleClasses.size()));
-                    data.clear();
-                    left = null;
-                    right = null;
-                    return;
-
+                    int choice = rg.nextInt(noPresent);
+                    for (int c = 0; c < noClasses; c++) {
+                        if (present[c] && choice-- == 0) {
+                            builder.leaf(node, c);
+                            return node;
+                        }
+                    }
                 }
             }
         }
-        leftChild = new RandomTree(noSplitAttributes, rg, parentClasses);
-        leftChild.buildClassifier(left);
-        rightChild = new RandomTree(noSplitAttributes, rg, parentClasses);
-        rightChild.buildClassifier(right);
-
+        builder.split(splitAttributes, size, leftCenter, rightCenter);
+        int left = build(builder, from, split, noClasses);
+        int right = build(builder, split, to, noClasses);
+        builder.children(node, left, right);
+        return node;
     }
 
-    private double dist(double[] a, float[] b) {
-        double sum = 0;
-        for (int i = 0; i < a.length; i++) {
-            sum += Math.abs(a[i] - b[i]);
-        }
-        return sum;
+    /**
+     * Returns the tree as a forest with a single tree.
+     */
+    CompiledForest compiled() {
+        return tree;
     }
 
     @Override
-    public Object classify(Instance instance) {
+    public void write(ModelOutput out) throws IOException {
+        if (tree == null)
+            throw new TrainingRequiredException("The tree has not been built");
+        out.writeInt(noSplitAttributes);
+        tree.write(out);
+    }
 
-        if (finalClass != null)
-            return finalClass;
-        else {
-            assert (rightCenter != null);
-            assert (leftCenter != null);
-            assert (leftChild != null);
-            assert (rightChild != null);
-            assert (splitAttributes != null);
-            double[] tmp = new double[noSplitAttributes];
-            for (int i = 0; i < noSplitAttributes; i++) {
-                tmp[i] = instance.value(splitAttributes.get(i));
+    /**
+     * Reads a tree that was written with {@link #write(ModelOutput)}. The tree
+     * gets a new random generator.
+     */
+    public static RandomTree read(ModelInput in) throws IOException {
+        RandomTree rt = new RandomTree(in.readInt(), new Random());
+        rt.tree = CompiledForest.read(in);
+        rt.classes = rt.tree.classes();
+        rt.parentClasses = new TreeSet<Object>(Arrays.asList(rt.classes));
+        return rt;
+    }
 
-            }
-            double distLeft = dist(tmp, leftCenter);
-            double distRight = dist(tmp, rightCenter);
-            if (distLeft > distRight)
-                return rightChild.classify(instance);
-            else
-                return leftChild.classify(instance);
-        }
+    @Override
+    public Object classify(Instance instance) {
+        return classes[tree.predict(0, instance)];
     }
 
     @Override
@@ -11,6 +11,8 @@ import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.DistanceMeasure;
 import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.metrics.Metrics;
+import net.sf.javaml.utils.ExecutionContext;
 import net.sf.javaml.utils.GammaFunction;
 import net.sf.javaml.utils.MathUtils;
 
@@ -56,7 +58,8 @@ public class AQBC implements Clusterer {
 	/**
 	 * XXX write doc
 	 * 
-	 * FIXME remove output on the console
+	 * The progress of the algorithm is reported as <code>aqbc.*</code>
+	 * metrics, see {@link Metrics}.
 	 */
 	public Dataset[] cluster(Dataset data) {
 		this.data = data;
@@ -69,7 +72,7 @@ public class AQBC implements Clusterer {
 			SP = normalize(data);
 		else
 			SP = dontnormalize(data);
-		System.out.println("Remaining datapoints = " + SP.size());
+		Metrics.record("aqbc.points", SP.size());
 		// Vector<Instance> SP = new Vector<Instance>();
 		// for (int i = 0; i < norm.size(); i++) {
 		// SP.add(data.getInstance(i));
@@ -91,28 +94,31 @@ public class AQBC implements Clusterer {
 		double EXTTRESH = R / 2.0f;
 		int MINNRGENES = 2;
 		int cluster = 0;
+		int iteration = 0;
 
-		while (NRNOCONV < maxNRNOCONV && TOOFEWPOINTS < TFPTH && BPR < BPRTH && RRES < 2) {
+		while (NRNOCONV < maxNRNOCONV && TOOFEWPOINTS < TFPTH && BPR < BPRTH && RRES < 2
+				&& context.proceed("aqbc", iteration, -1)) {
+			iteration++;
 
 			// determine cluster center
 			boolean clusterLocalisationConverged = wan_shr_adap(SP, EXTTRESH);
 			if (clusterLocalisationConverged) {
-				System.out.println("Found cluster -> EM");
+				Metrics.count("aqbc.localisations", 1);
 				// System.out.println("EXTTRESH2 = "+EXTTRESH2);
 				// optimize cluster quality
-				System.out.println("Starting EM");
 				boolean emConverged = exp_max(SP, ME, EXTTRESH2, S);
 				if (emConverged) {
-					System.out.println("EM converged, predicting radius...");
+					Metrics.count("aqbc.em.converged", 1);
 					// System.exit(-1);
 					NRNOCONV = 0;
 					if (Math.abs(RADNW - EXTTRESH) / EXTTRESH < REITERTHR) {
 						Vector<TaggedInstance> Q = retrieveInstances(SP, ME, RADNW);
 						if (Q.size() == 0) {
-							System.err.println("Significance level not reached");
+							Metrics.count("aqbc.insignificant", 1);
 						}
 						if (Q.size() > MINNRGENES) {
 							cluster++;
+							Metrics.record("aqbc.cluster.size", Q.size());
 							outputCluster(Q, cluster);
 							removeInstances(SP, Q);
 							TOOFEWPOINTS = 0;
@@ -125,12 +131,7 @@ public class AQBC implements Clusterer {
 					} else {
 						EXTTRESH = RADNW;
 						BPR++;
-						if (BPR == BPRTH) {
-							System.out.println("Radius cannot be predicted!");
-
-						} else {
-							System.out.println("Trying new radius...");
-						}
+						Metrics.count("aqbc.radius.retries", 1);
 					}
 
 				} else {
@@ -139,20 +140,19 @@ public class AQBC implements Clusterer {
 						EXTTRESH = R / 2;
 
 						RRES++;
-						System.out.println("Resetting radius to: " + EXTTRESH);
+						Metrics.count("aqbc.radius.resets", 1);
 						if (RRES == 2) {
-							System.out.println("No convergence: Algorithm aborted - RRES exceeded!");
+							Metrics.count("aqbc.aborted", 1);
 							break;
 						} else {
 							BPR = 0;
 						}
 					} else {
-						System.out.println("No convergence: Algorithm aborted - NRNOCONV exceeded!");
+						Metrics.count("aqbc.aborted", 1);
 						break;
 					}
 				}
 				if (TOOFEWPOINTS == TFPTH) {
-					System.out.println("No more significant clusters found: Algorithms aborted!");
 					break;
 				}
 			}
@@ -281,6 +281,20 @@ public class AQBC implements Clusterer {
 
 	private Vector<Dataset> clusters = new Vector<Dataset>();
 
+	private ExecutionContext context = new ExecutionContext();
+
+	/**
+	 * Sets the context that reports the progress and can stop the search for
+	 * clusters. When the context stops the algorithm, the clusters found so
+	 * far are returned.
+	 * 
+	 * @param context
+	 *            the execution context
+	 */
+	public void setExecutionContext(ExecutionContext context) {
+		this.context = context;
+	}
+
 	/**
 	 * output all the instances in q as a single cluster with the given index
 	 * 
@@ -402,7 +416,7 @@ public class AQBC implements Clusterer {
 
 		if (CONV) {
 			if (MathUtils.eq(PC, 0) || MathUtils.eq(PB, 0)) {
-				System.out.println("EM: No or incorrect convergence! - PC==0 || PB==0");
+				Metrics.count("aqbc.em.failed", 1);
 				CONV = false;
 				RADNW = 0;
 				return false;
@@ -421,21 +435,20 @@ public class AQBC implements Clusterer {
 			// System.out.println("CB = "+CB);
 			// System.out.println("LO = "+LO);
 			if (LO <= 0) {
-				System.out.println("EM: Impossible to calculate radius - LO<0!");
+				Metrics.count("aqbc.em.noradius", 1);
 				return false;
 			}
 
 			double DIS = -2 * VAR * Math.log(LO);
 			// System.out.println("DIS = "+DIS);
 			if (DIS <= 0) {
-				System.out.println("EM: Impossible to calculate radius - DIS<0!");
-				System.out.println();
+				Metrics.count("aqbc.em.noradius", 1);
 				return false;
 			}
 			RADNW = (float) Math.sqrt(DIS);
 			return true;
 		} else {
-			System.out.println("EM: No or incorrect convergence! Probably not enough iterations for EM");
+			Metrics.count("aqbc.em.failed", 1);
 			return false;
 		}
 	}
@@ -582,7 +595,7 @@ public class AQBC implements Clusterer {
 			for (int i = 0; i < CE.length; i++)
 				CE[i] = 1;
 			EXTTRESH2 += 0.000001;
-			System.out.println("Cluster center localisation did not reach preliminary estimate of radius!");
+			Metrics.count("aqbc.localisation.radius", 1);
 			return true;// TODO check if it should really be true, false is more
 			// logical
 
@@ -615,9 +628,8 @@ public class AQBC implements Clusterer {
 			ME1 = ME2;
 
 		}
-		System.out.println("Preliminary cluster location did not converge");
+		Metrics.count("aqbc.localisation.failed", 1);
 		// System.out.println("\t DMI = "+Arrays.toString(DMI));
-		System.out.println("\t EXTTRESH2 = " + EXTTRESH2);
 		return false;
 	}
 
@@ -0,0 +1,311 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.clustering;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.sf.javaml.clustering.SOM.GridType;
+import net.sf.javaml.clustering.SOM.NeighbourhoodFunction;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Batch variant of the Self Organizing Map.
+ *
+ * Instead of adapting the map after every randomly drawn input vector, each
+ * epoch first determines the best matching unit (BMU) of every input vector
+ * and then replaces each weight vector with the neighbourhood-weighted mean of
+ * all input vectors. There is no learning rate, only the neighbourhood width
+ * shrinks over the epochs.
+ *
+ * All weight vectors are stored in a single flat array and the BMU search is
+ * done in parallel over the input vectors, as is the weight update over the
+ * nodes. The BMU search uses the squared Euclidean distance, for which the
+ * weighted mean is the optimal update.
+ *
+ * <bibtex> T. Kohonen (1993): "Things you haven't heard about the
+ * Self-Organizing Map", Proceedings of the IEEE International Conference on
+ * Neural Networks, 1147-1156 </bibtex>
+ *
+ * @see SOM
+ *
+ */
+public class BatchSOM implements Clusterer {
+
+    private int xdim, ydim, epochs;
+
+    private double initialRadius;
+
+    private GridType gridType;
+
+    private NeighbourhoodFunction neighbourhoodFunction;
+
+    private Random rg;
+
+    /* Flat weight vectors, node n occupies [n*dim, (n+1)*dim) */
+    private double[] weights;
+
+    /* Flat lattice locations, node n occupies [2*n, 2*n+2) */
+    private double[] locations;
+
+    private int dim;
+
+    private static final double YVALUE = 0.866;
+
+    /**
+     * Create a 2 by 2 batch self-organizing map using a hexagonal grid, 100
+     * epochs, initial radius 8 and a Gaussian neighbourhood function.
+     */
+    public BatchSOM() {
+        this(2, 2, GridType.HEXAGONAL, 100, 8, NeighbourhoodFunction.GAUSSIAN);
+    }
+
+    /**
+     * Create a new batch self-organizing map with the provided parameters.
+     *
+     * @param xdim
+     *            number of dimension on x-axis
+     * @param ydim
+     *            number of dimension on y-axis
+     * @param grid
+     *            type of grid
+     * @param epochs
+     *            maximum number of passes over the data
+     * @param initialRadius
+     *            initial radius of the neighbourhood
+     * @param nbf
+     *            neighborhood function
+     */
+    public BatchSOM(int xdim, int ydim, GridType grid, int epochs, double initialRadius, NeighbourhoodFunction nbf) {
+        this(xdim, ydim, grid, epochs, initialRadius, nbf, new Random(System.currentTimeMillis()));
+    }
+
+    /**
+     * Create a new batch self-organizing map with the provided parameters.
+     *
+     * @param xdim
+     *            number of dimension on x-axis
+     * @param ydim
+     *            number of dimension on y-axis
+     * @param grid
+     *            type of grid
+     * @param epochs
+     *            maximum number of passes over the data
+     * @param initialRadius
+     *            initial radius of the neighbourhood
+     * @param nbf
+     *            neighborhood function
+     * @param rg
+     *            random generator used to initialize the map
+     */
+    public BatchSOM(int xdim, int ydim, GridType grid, int epochs, double initialRadius, NeighbourhoodFunction nbf,
+            Random rg) {
+        if (xdim < 1 || ydim < 1)
+            throw new IllegalArgumentException("The map should have at least one node");
+        this.xdim = xdim;
+        this.ydim = ydim;
+        this.gridType = grid;
+        this.epochs = epochs;
+        this.initialRadius = initialRadius;
+        this.neighbourhoodFunction = nbf;
+        this.rg = rg;
+    }
+
+    @Override
+    public Dataset[] cluster(Dataset data) {
+        if (data.size() == 0)
+            throw new RuntimeException("The dataset should not be empty");
+        final int n = data.size();
+        dim = data.noAttributes();
+        final double[] input = new double[n * dim];
+        for (int i = 0; i < n; i++) {
+            Instance inst = data.instance(i);
+            for (int j = 0; j < dim; j++)
+                input[i * dim + j] = inst.value(j);
+        }
+        train(input, n);
+
+        int[] bmu = new int[n];
+        findBestMatchingUnits(input, n, bmu);
+        Dataset[] clusters = new Dataset[nodes()];
+        int nonEmpty = 0;
+        for (int i = 0; i < n; i++) {
+            if (clusters[bmu[i]] == null) {
+                clusters[bmu[i]] = new DefaultDataset();
+                nonEmpty++;
+            }
+            clusters[bmu[i]].add(data.instance(i));
+        }
+        Dataset[] output = new Dataset[nonEmpty];
+        int index = 0;
+        for (Dataset tmp : clusters) {
+            if (tmp != null)
+                output[index++] = tmp;
+        }
+        return output;
+    }
+
+    /**
+     * Returns a copy of the trained weight vectors, one row per node of the
+     * map. Returns null if the map has not been trained yet.
+     *
+     * @return the weight vectors of the map
+     */
+    public double[][] weights() {
+        if (weights == null)
+            return null;
+        double[][] out = new double[nodes()][dim];
+        for (int i = 0; i < out.length; i++)
+            System.arraycopy(weights, i * dim, out[i], 0, dim);
+        return out;
+    }
+
+    private int nodes() {
+        return xdim * ydim;
+    }
+
+    /*
+     * Trains the map on the flattened input vectors.
+     */
+    private void train(final double[] input, final int n) {
+        final int nodes = nodes();
+        initLattice();
+        /* Initialize weights with randomly drawn input vectors */
+        weights = new double[nodes * dim];
+        for (int i = 0; i < nodes; i++)
+            System.arraycopy(input, rg.nextInt(n) * dim, weights, i * dim, dim);
+
+        int[] bmu = new int[n];
+        int[] previous = new int[n];
+        final double[] sums = new double[nodes * dim];
+        final double[] counts = new double[nodes];
+        double previousWidth = -1;
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            final double width = width(epoch);
+            findBestMatchingUnits(input, n, bmu);
+            /* Nothing changes anymore when neither the assignment nor the width does */
+            if (width == previousWidth && Arrays.equals(bmu, previous))
+                break;
+            System.arraycopy(bmu, 0, previous, 0, n);
+            previousWidth = width;
+
+            /* Aggregate the input vectors per best matching unit */
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                int c = bmu[i];
+                counts[c]++;
+                int off = c * dim, ioff = i * dim;
+                for (int j = 0; j < dim; j++)
+                    sums[off + j] += input[ioff + j];
+            }
+            /* Replace each weight by the neighbourhood weighted mean */
+            final double cutoff = neighbourhoodFunction == NeighbourhoodFunction.GAUSSIAN ? 3 * width : width;
+            final double cutoff2 = cutoff * cutoff;
+            Parallel.forRange(nodes, 16, new Parallel.RangeTask() {
+                @Override
+                public void run(int from, int to) {
+                    double[] acc = new double[dim];
+                    for (int node = from; node < to; node++) {
+                        Arrays.fill(acc, 0);
+                        double total = 0;
+                        double x = locations[2 * node], y = locations[2 * node + 1];
+                        for (int c = 0; c < nodes; c++) {
+                            if (counts[c] == 0)
+                                continue;
+                            double dx = locations[2 * c] - x, dy = locations[2 * c + 1] - y;
+                            double d2 = dx * dx + dy * dy;
+                            if (d2 > cutoff2)
+                                continue;
+                            double h = neighbourhood(d2, width);
+                            int off = c * dim;
+                            for (int j = 0; j < dim; j++)
+                                acc[j] += h * sums[off + j];
+                            total += h * counts[c];
+                        }
+                        if (total > 0) {
+                            int off = node * dim;
+                            for (int j = 0; j < dim; j++)
+                                weights[off + j] = acc[j] / total;
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /*
+     * Neighbourhood width at a given epoch.
+     */
+    private double width(int epoch) {
+        if (neighbourhoodFunction == NeighbourhoodFunction.GAUSSIAN)
+            return initialRadius * Math.exp(-1.0 * epoch / epochs);
+        else
+            return Math.ceil(initialRadius * (1 - ((double) epoch) / epochs));
+    }
+
+    /*
+     * Neighbourhood weight for a node at squared lattice distance d2.
+     */
+    private double neighbourhood(double d2, double width) {
+        if (neighbourhoodFunction == NeighbourhoodFunction.GAUSSIAN)
+            return Math.exp(-d2 / (2.0 * width * width));
+        else
+            return 1;
+    }
+
+    /*
+     * Computes the best matching unit of every input vector in parallel.
+     */
+    private void findBestMatchingUnits(final double[] input, int n, final int[] bmu) {
+        final int nodes = nodes();
+        Parallel.forRange(n, 64, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    int ioff = i * dim;
+                    int best = 0;
+                    double bestDistance = Double.POSITIVE_INFINITY;
+                    for (int node = 0; node < nodes; node++) {
+                        int off = node * dim;
+                        double sum = 0;
+                        /* Abandon early when this node can no longer win */
+                        for (int j = 0; j < dim && sum < bestDistance; j++) {
+                            double diff = input[ioff + j] - weights[off + j];
+                            sum += diff * diff;
+                        }
+                        if (sum < bestDistance) {
+                            bestDistance = sum;
+                            best = node;
+                        }
+                    }
+                    bmu[i] = best;
+                }
+            }
+        });
+    }
+
+    /*
+     * Lays out the nodes on a rectangular or hexagonal lattice.
+     */
+    private void initLattice() {
+        locations = new double[2 * nodes()];
+        for (int row = 0; row < ydim; row++) {
+            for (int col = 0; col < xdim; col++) {
+                int node = row * xdim + col;
+                if (gridType == GridType.RECTANGLES) {
+                    locations[2 * node] = col;
+                    locations[2 * node + 1] = row;
+                } else {
+                    locations[2 * node] = col + (row % 2 == 1 ? 0.5 : 0);
+                    locations[2 * node + 1] = row * YVALUE;
+                }
+            }
+        }
+    }
+
+}
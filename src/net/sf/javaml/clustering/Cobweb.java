@@ -11,6 +11,7 @@ import net.sf.javaml.core.DefaultDataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.filter.DatasetFilter;
 import net.sf.javaml.filter.normalize.NormalizeMean;
+import net.sf.javaml.utils.ExecutionContext;
 
 
 /**
@@ -708,6 +709,22 @@ public class Cobweb implements Clusterer {
 
     private DatasetFilter filter = new NormalizeMean();
 
+    private ExecutionContext context = new ExecutionContext();
+
+    /**
+     * Sets the context that reports the progress and can stop the
+     * clustering. Each instance that is added to the tree is an iteration.
+     * When the context stops the algorithm, the tree is not changed anymore
+     * and each remaining instance is put in the cluster of the leaf it fits
+     * best, so the clusters still contain all instances.
+     * 
+     * @param context
+     *            the execution context
+     */
+    public void setExecutionContext(ExecutionContext context) {
+        this.context = context;
+    }
+
     public Dataset[] cluster(Dataset data) {
 
         filter.filter(data);
@@ -715,23 +732,59 @@ public class Cobweb implements Clusterer {
         m_cobwebTree = null;
         m_numberSplits = 0;
         m_numberMerges = 0;
-        for (int i = 0; i < data.size(); i++) {
-            updateClusterer(data.instance(i));
+        int added = 0;
+        while (added < data.size() && context.proceed("cobweb", added, data.size())) {
+            updateClusterer(data.instance(added));
+            added++;
         }
         determineNumberOfClusters();
+        if (m_cobwebTree == null) {
+            /* stopped before the first instance, they are all one cluster */
+            if (data.size() == 0)
+                return new Dataset[0];
+            Dataset all = new DefaultDataset();
+            all.addAll(data);
+            return new Dataset[] { all };
+        }
         // printNode(m_cobwebTree, 0);
 
         Vector<Dataset> clusters = new Vector<Dataset>();
-        createClusters(m_cobwebTree, clusters);
+        Vector<CNode> leaves = new Vector<CNode>();
+        createClusters(m_cobwebTree, clusters, leaves);
+        /*
+         * the instances that were not added when the context stopped the
+         * algorithm go to the leaf they fit best, without changing the tree
+         */
+        for (int i = added; i < data.size(); i++) {
+            Instance inst = data.instance(i);
+            clusters.get(leaves.indexOf(leafFor(inst))).add(inst);
+        }
         Dataset[] out = new Dataset[clusters.size()];
         clusters.toArray(out);
         return out;
     }
 
-    private void createClusters(CNode tree, Vector<Dataset> clusters) {
+    /**
+     * Sorts an instance down the tree to the leaf whose category utility is
+     * best with the instance, without adding it.
+     */
+    private CNode leafFor(Instance inst) {
+        CNode node = m_cobwebTree;
+        while (node.m_children != null) {
+            double[] cu = node.cuScoresForChildren(inst);
+            int best = 0;
+            for (int i = 1; i < cu.length; i++)
+                if (cu[i] > cu[best])
+                    best = i;
+            node = node.m_children.elementAt(best);
+        }
+        return node;
+    }
+
+    private void createClusters(CNode tree, Vector<Dataset> clusters, Vector<CNode> leaves) {
         if (tree.m_children != null) {
             for (CNode y : tree.m_children) {
-                createClusters(y, clusters);
+                createClusters(y, clusters, leaves);
             }
         } else {
             Dataset tmp = new DefaultDataset();
@@ -740,6 +793,7 @@ public class Cobweb implements Clusterer {
                 tmp.add(fromTree.instance(i));
             }
             clusters.add(tmp);
+            leaves.add(tree);
         }
 
     }
@@ -11,7 +11,11 @@ import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.DistanceMeasure;
 import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.metrics.Metrics;
 import net.sf.javaml.tools.DatasetTools;
+import net.sf.javaml.utils.ExecutionContext;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
 
 /**
  * Implements the K-means algorithms as described by Mac Queen in 1967.
@@ -21,6 +25,11 @@ import net.sf.javaml.tools.DatasetTools;
  * Mathematical Statistics and Probability", Berkeley, University of California
  * Press, 1:281-297 </bibtex>
  * 
+ * The instances are assigned to the closest centroids in parallel only when
+ * the distance measure is declared thread safe with
+ * {@link #setThreadSafeDistance(boolean)}, distance measures are not required
+ * to be.
+ * 
  * 
  * @author Thomas Abeel
  * 
@@ -55,6 +64,22 @@ public class KMeans implements Clusterer {
      */
     private Instance[] centroids;
 
+    /**
+     * Controls the iterations, by default they are not limited.
+     */
+    private ExecutionContext context = new ExecutionContext();
+
+    /**
+     * The context to assign the instances in parallel, null for the library
+     * wide context.
+     */
+    private ParallelContext parallel = null;
+
+    /**
+     * Whether the distance measure may be called from several threads.
+     */
+    private boolean threadSafeDistance = false;
+
     /**
      * Constuct a default K-means clusterer with 100 iterations, 4 clusters, a
      * default random generator and using the Euclidean distance.
@@ -109,17 +134,55 @@ public class KMeans implements Clusterer {
         rg = new Random(System.currentTimeMillis());
     }
 
+    /**
+     * Sets the context that reports the progress of the iterations and can
+     * stop them. When the context stops the algorithm, the instances are
+     * assigned to the centroids found so far.
+     * 
+     * @param context
+     *            the execution context
+     */
+    public void setExecutionContext(ExecutionContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Sets the context that assigns the instances to the closest centroids
+     * in parallel, when the distance measure is thread safe.
+     * 
+     * @see #setThreadSafeDistance(boolean)
+     * 
+     * @param context
+     *            the parallel context, null for the library wide context
+     */
+    public void setParallelContext(ParallelContext context) {
+        this.parallel = context;
+    }
+
+    /**
+     * Declares whether the distance measure can be called from several
+     * threads at the same time. By default the instances are assigned on the
+     * calling thread, as distance measures do not have to be thread safe.
+     * 
+     * @param threadSafe
+     *            true to assign the instances in parallel
+     */
+    public void setThreadSafeDistance(boolean threadSafe) {
+        this.threadSafeDistance = threadSafe;
+    }
+
     /**
      * Execute the KMeans clustering algorithm on the data set that is provided.
      * 
      * @param data data set to cluster
      * @param clusters as an array of Datasets. Each Dataset represents a cluster.
      */
-    public Dataset[] cluster(Dataset data) {
+    public Dataset[] cluster(final Dataset data) {
         if (data.size() == 0)
             throw new RuntimeException("The dataset should not be empty");
         if (numberOfClusters == 0)
             throw new RuntimeException("There should be at least one cluster");
+        long start = Metrics.start();
         // Place K points into the space represented by the objects that are
         // being clustered. These points represent the initial group of
         // centroids.
@@ -142,23 +205,31 @@ public class KMeans implements Clusterer {
         int iterationCount = 0;
         boolean centroidsChanged = true;
         boolean randomCentroids = true;
-        while (randomCentroids || (iterationCount < this.numberOfIterations && centroidsChanged)) {
+        ParallelContext pc = parallel == null ? Parallel.context() : parallel;
+        if (!threadSafeDistance)
+            pc = pc.withParallelism(1);
+        while ((randomCentroids || (iterationCount < this.numberOfIterations && centroidsChanged))
+                && context.proceed("kmeans", iterationCount, numberOfIterations)) {
             iterationCount++;
             // Assign each object to the group that has the closest centroid.
-            int[] assignment = new int[data.size()];
-            for (int i = 0; i < data.size(); i++) {
-                int tmpCluster = 0;
-                double minDistance = dm.measure(centroids[0], data.instance(i));
-                for (int j = 1; j < centroids.length; j++) {
-                    double dist = dm.measure(centroids[j], data.instance(i));
-                    if (dm.compare(dist, minDistance)) {
-                        minDistance = dist;
-                        tmpCluster = j;
+            final int[] assignment = new int[data.size()];
+            pc.forRange(data.size(), 256, new Parallel.RangeTask() {
+                @Override
+                public void run(int from, int to) {
+                    for (int i = from; i < to; i++) {
+                        int tmpCluster = 0;
+                        double minDistance = dm.measure(centroids[0], data.instance(i));
+                        for (int j = 1; j < centroids.length; j++) {
+                            double dist = dm.measure(centroids[j], data.instance(i));
+                            if (dm.compare(dist, minDistance)) {
+                                minDistance = dist;
+                                tmpCluster = j;
+                            }
+                        }
+                        assignment[i] = tmpCluster;
                     }
                 }
-                assignment[i] = tmpCluster;
-
-            }
+            });
             // When all objects have been assigned, recalculate the positions of
             // the K centroids and start over.
             // The new position of the centroid is the weighted center of the
@@ -217,6 +288,8 @@ public class KMeans implements Clusterer {
             output[tmpCluster].add(data.instance(i));
 
         }
+        Metrics.count("kmeans.iterations", iterationCount);
+        Metrics.stop("kmeans.cluster", start);
         return output;
     }
 
@@ -10,6 +10,7 @@ import net.sf.javaml.core.DefaultDataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.DistanceMeasure;
 import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.metrics.Metrics;
 import net.sf.javaml.tools.DatasetTools;
 
 /**
@@ -70,6 +71,7 @@ public class KMedoids implements Clusterer {
 
 	@Override
 	public Dataset[] cluster(Dataset data) {
+		long start = Metrics.start();
 		Instance[] medoids = new Instance[numberOfClusters];
 		Dataset[] output = new DefaultDataset[numberOfClusters];
 		for (int i = 0; i < numberOfClusters; i++) {
@@ -86,7 +88,8 @@ public class KMedoids implements Clusterer {
 			changed = recalculateMedoids(assignment, medoids, output, data);
 
 		}
-
+		Metrics.count("kmedoids.iterations", count);
+		Metrics.stop("kmedoids.cluster", start);
 		return output;
 
 	}
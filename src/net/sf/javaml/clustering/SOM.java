@@ -13,6 +13,7 @@ import net.sf.javaml.core.DefaultDataset;
 import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.distance.DistanceMeasure;
 import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.utils.ExecutionContext;
 
 /**
  * An implementation of the Self Organizing Maps algorithm as proposed by
@@ -654,7 +655,7 @@ public class SOM implements Clusterer {
             double s = (double) steps;
             double wCache; // width cache
             double exp;
-            for (int n = 0; n < steps; n++) {
+            for (int n = 0; n < steps && context.proceed("som", n, steps); n++) {
                 wCache = Math.ceil(width * (1 - (n / s))); // adapts the width
                 // function as it is
                 // a function of
@@ -679,7 +680,7 @@ public class SOM implements Clusterer {
             double s = (double) steps;
             double wCache; // width cache
             double lin;
-            for (int n = 0; n < steps; n++) {
+            for (int n = 0; n < steps && context.proceed("som", n, steps); n++) {
                 wCache = Math.ceil(width * (1 - (n / s))); // adapts the width
                 // function as it is
                 // a function of
@@ -706,7 +707,7 @@ public class SOM implements Clusterer {
             double wCache; // width cache
             double inv;
             A = steps / 100.0;
-            for (int n = 0; n < steps; n++) {
+            for (int n = 0; n < steps && context.proceed("som", n, steps); n++) {
                 wCache = Math.ceil(width * (1 - (n / s))); // adapts the width
                 // function as it is
                 // a function of
@@ -728,7 +729,7 @@ public class SOM implements Clusterer {
         private void doGaussianExpAdaptation() {
             // update the weightvectors with random instances.
             // the steps variable is the number of times this update is done
-            for (int n = 0; n < steps; n++) {
+            for (int n = 0; n < steps && context.proceed("som", n, steps); n++) {
                 double wCache = math.gaussianWidth(width, n, steps);
                 double exp = math.expLRP(n, lrate, steps);
                 double[] input = iVector.getNodeValuesAt(generator.nextInt(iVectorSize));
@@ -750,7 +751,7 @@ public class SOM implements Clusterer {
             double[] wLocation; // location of a winner node
             double wCache; // width cache
             double lin;
-            for (int n = 0; n < steps; n++) {
+            for (int n = 0; n < steps && context.proceed("som", n, steps); n++) {
                 wCache = math.gaussianWidth(width, n, steps);
                 lin = math.linLRP(n, lrate, steps);
                 input = iVector.getNodeValuesAt(generator.nextInt(iVectorSize));
@@ -773,7 +774,7 @@ public class SOM implements Clusterer {
             double wCache; // width cache
             double inv;
             A = steps / 100.0;
-            for (int n = 0; n < steps; n++) {
+            for (int n = 0; n < steps && context.proceed("som", n, steps); n++) {
                 wCache = math.gaussianWidth(width, n, steps);
                 inv = math.invLRP(n, lrate, A, A);
                 input = iVector.getNodeValuesAt(generator.nextInt(iVectorSize));
@@ -926,6 +927,20 @@ public class SOM implements Clusterer {
 
     private WeightVectors wV;
 
+    private ExecutionContext context = new ExecutionContext();
+
+    /**
+     * Sets the context that reports the progress and can stop the training.
+     * When the context stops the training, the instances are labeled with the
+     * map trained so far.
+     * 
+     * @param context
+     *            the execution context
+     */
+    public void setExecutionContext(ExecutionContext context) {
+        this.context = context;
+    }
+
     @Override
     public Dataset[] cluster(Dataset data) {
         // hexa || rect
@@ -4,8 +4,8 @@
 package net.sf.javaml.clustering.evaluation;
 
 import net.sf.javaml.core.Dataset;
-import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.matrix.Matrix;
 
 /**
  * TODO uitleg
@@ -28,11 +28,10 @@ public class CIndex implements ClusterEvaluation {
 
         // calculate intra cluster distances and sum of all.
         for (int i = 0; i < clusters.length; i++) {
+            Matrix intra = Matrix.distances(clusters[i], dm);
         	for (int j = 0; j < clusters[i].size(); j++) {
-            	Instance x = clusters[i].instance(j);
                 for (int k = j + 1; k < clusters[i].size(); k++) {
-                    Instance y = clusters[i].instance(k);
-                    double distance = dm.measure(x, y);
+                    double distance = intra.get(j, k);
                     dw += distance;
                     if (maxDw < distance) {
                         maxDw = distance;
@@ -42,6 +41,7 @@ public class CIndex implements ClusterEvaluation {
                     }
                 }
             }
+            intra.close();
         }
         // calculate C Index
         double cIndex = (dw - minDw) / (maxDw - minDw);
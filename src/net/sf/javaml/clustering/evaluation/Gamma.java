@@ -4,8 +4,8 @@
 package net.sf.javaml.clustering.evaluation;
 
 import net.sf.javaml.core.Dataset;
-import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.matrix.Matrix;
 
 /**
  * TODO uitleg
@@ -26,26 +26,25 @@ public class Gamma implements ClusterEvaluation {
 
 		// calculate max intra cluster distance
 		for (int i = 0; i < datas.length; i++) {
+			Matrix intra = Matrix.distances(datas[i], dm);
 			for (int j = 0; j < datas[i].size(); j++) {
-				Instance x = datas[i].instance(j);
 				for (int k = j + 1; k < datas[i].size(); k++) {
-					Instance y = datas[i].instance(k);
-					double distance = dm.measure(x, y);
+					double distance = intra.get(j, k);
 					if (maxIntraDist < distance) {
 						maxIntraDist = distance;
 					}
 				}
 			}
+			intra.close();
 		}
 		// calculate inter cluster distances
 		// count sPlus and sMin
 		for (int i = 0; i < datas.length; i++) {
-			for (int j = 0; j < datas[i].size(); j++) {
-				Instance x = datas[i].instance(j);
-				for (int k = i + 1; k < datas.length; k++) {
+			for (int k = i + 1; k < datas.length; k++) {
+				Matrix inter = Matrix.pairwise(datas[i], datas[k], dm);
+				for (int j = 0; j < datas[i].size(); j++) {
 					for (int l = 0; l < datas[k].size(); l++) {
-						Instance y = datas[k].instance(l);
-						double distance = dm.measure(x, y);
+						double distance = inter.get(j, l);
 						if (distance < maxIntraDist) {
 							sMin++;
 						}
@@ -54,6 +53,7 @@ public class Gamma implements ClusterEvaluation {
 						}
 					}
 				}
+				inter.close();
 			}
 		}
 		// calculate gamma
@@ -4,8 +4,8 @@
 package net.sf.javaml.clustering.evaluation;
 
 import net.sf.javaml.core.Dataset;
-import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.matrix.Matrix;
 
 /**
  * TODO uitleg
@@ -26,14 +26,19 @@ public class Tau implements ClusterEvaluation {
 		
 		for (int i = 0; i < datas.length; i++) {
 			maxIntraDist[i] = Double.MIN_VALUE;
+			/*
+			 * the maximum intra cluster distance when point j is compared to
+			 * the other clusters, so that the inter cluster distances can be
+			 * counted one cluster at a time
+			 */
+			double[] maxAt = new double[datas[i].size()];
+			Matrix intra = Matrix.distances(datas[i], dm);
 			for (int j = 0; j < datas[i].size(); j++) {
-				Instance x = datas[i].instance(j);
 				// calculate intra cluster distances, count their number and
 				// find max.
 				// count t.
 				for (int k = j + 1; k < datas[i].size(); k++) {
-					Instance y = datas[i].instance(k);
-					double distance = dm.measure(x, y);
+					double distance = intra.get(j, k);
 					fw++;
 					if (maxIntraDist[i] < distance) {
 						maxIntraDist[i] = distance;
@@ -41,26 +46,31 @@ public class Tau implements ClusterEvaluation {
 					// 2 distances (2 pairs of points): t+1
 					t++;
 				}
-				// calculate inter cluster distances, count their number and
-				// find min.
-				// count sPlus, sMin and t.
-				for (int k = i + 1; k < datas.length; k++) {
+				maxAt[j] = maxIntraDist[i];
+			}
+			intra.close();
+			// calculate inter cluster distances, count their number and
+			// find min.
+			// count sPlus, sMin and t.
+			for (int k = i + 1; k < datas.length; k++) {
+				Matrix inter = Matrix.pairwise(datas[i], datas[k], dm);
+				for (int j = 0; j < datas[i].size(); j++) {
 					for (int l = 0; l < datas[k].size(); l++) {
-						Instance y = datas[k].instance(l);
-						double distance = dm.measure(x, y);
+						double distance = inter.get(j, l);
 						fb++;
-						if (distance < maxIntraDist[i]) {
+						if (distance < maxAt[j]) {
 							sMin++;
 						}
 						// 2 distances (2 pairs of points) compaired: t+1
 						t++;
-						if (distance > maxIntraDist[i]) {
+						if (distance > maxAt[j]) {
 							sPlus++;
 						}
 						// 2 distances (2 pairs of points) compaired: t+1
 						t++;
 					}
 				}
+				inter.close();
 			}
 		}
 		nd = fw + fb;
@@ -11,6 +11,8 @@ import net.sf.javaml.core.DefaultDataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.AbstractSimilarity;
 import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.matrix.Matrix;
+import net.sf.javaml.utils.ExecutionContext;
 
 public class MCL implements Clusterer {
 
@@ -60,19 +62,35 @@ public class MCL implements Clusterer {
     // maximum value considered zero for pruning operations
     private double maxZero = 0.001;
 
+    private ExecutionContext context = new ExecutionContext();
+
+    /**
+     * Sets the context that reports the progress and can stop the MCL
+     * iterations.
+     * 
+     * @see MarkovClustering#setExecutionContext(ExecutionContext)
+     * 
+     * @param context
+     *            the execution context
+     */
+    public void setExecutionContext(ExecutionContext context) {
+        this.context = context;
+    }
+
     public Dataset[] cluster(Dataset data) {
         SparseMatrix dataSparseMatrix = new SparseMatrix();
+        Matrix similarities = Matrix.distances(data, dm);
         for (int i = 0; i < data.size(); i++) {
             for (int j = 0; j <= i; j++) {
-                Instance x = data.instance(i);
-                Instance y = data.instance(j);
-                double dist = dm.measure(x, y);
+                double dist = similarities.get(i, j);
                 if (dist > maxZero)
-                    dataSparseMatrix.add(i, j, dm.measure(x, y));
+                    dataSparseMatrix.add(i, j, dist);
             }
         }
+        similarities.close();
 
         MarkovClustering mcl = new MarkovClustering();
+        mcl.setExecutionContext(context);
         SparseMatrix matrix = mcl.run(dataSparseMatrix, maxResidual, pGamma, loopGain, maxZero);
         
         // convert matrix to output dataset:
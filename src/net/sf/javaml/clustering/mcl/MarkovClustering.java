@@ -3,6 +3,9 @@
  */
 package net.sf.javaml.clustering.mcl;
 
+import net.sf.javaml.metrics.Metrics;
+import net.sf.javaml.utils.ExecutionContext;
+
 /**
  * MarkovClustering implements the Markov clustering (MCL) algorithm for graphs,
  * using a HashMap-based sparse representation of a Markov matrix, i.e., an
@@ -51,6 +54,22 @@ package net.sf.javaml.clustering.mcl;
  */
 public class MarkovClustering {
 
+    private ExecutionContext context = new ExecutionContext();
+
+    /**
+     * Sets the context that reports the progress and can stop the iterations.
+     * The process is not guaranteed to converge within a given number of
+     * iterations, a context with a time budget or a maximum number of
+     * iterations bounds it. When the context stops the process, the matrix of
+     * the last iteration is returned.
+     * 
+     * @param context
+     *            the execution context
+     */
+    public void setExecutionContext(ExecutionContext context) {
+        this.context = context;
+    }
+
     /**
      * run the MCL process.
      * 
@@ -68,6 +87,7 @@ public class MarkovClustering {
      * @return the resulting matrix
      */
     public SparseMatrix run(SparseMatrix a, double maxResidual, double pGamma, double loopGain, double maxZero) {
+        long start = Metrics.start();
         // add cycles
         addLoops(a, loopGain);
         a.normaliseRows();
@@ -75,11 +95,13 @@ public class MarkovClustering {
         int i = 0;
 
         // main iteration
-        while (residual > maxResidual) {
+        while (residual > maxResidual && context.proceed("mcl", i, -1)) {
             i++;
             a = expand(a);
             residual = inflate(a, pGamma, maxZero);
         }
+        Metrics.count("mcl.iterations", i);
+        Metrics.stop("mcl.run", start);
         return a;
 
     }
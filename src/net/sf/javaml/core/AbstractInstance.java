@@ -4,6 +4,7 @@
 package net.sf.javaml.core;
 
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implementation of some standard methods for instances.
@@ -23,7 +24,8 @@ public abstract class AbstractInstance implements Instance {
 	 */
 	private static final long serialVersionUID = -1712202124913999825L;
 
-	static int nextID = 0;
+	/* Instances may be created from several threads at once */
+	static final AtomicInteger nextID = new AtomicInteger();
 
     private final int ID;
 
@@ -66,8 +68,7 @@ public abstract class AbstractInstance implements Instance {
     }
 
     protected AbstractInstance(Object classValue) {
-        ID = nextID;
-        nextID++;
+        ID = nextID.getAndIncrement();
         this.classValue = classValue;
     }
 
@@ -14,7 +14,9 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.Vector;
 
+import net.sf.javaml.distance.BoundedDistanceMeasure;
 import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.metrics.Metrics;
 
 /**
  * Provides a standard data set implementation.
@@ -136,20 +138,47 @@ public class DefaultDataset extends ArrayList<Instance> implements Dataset {
      */
     @Override
     public Set<Instance> kNearest(int k, Instance inst, DistanceMeasure dm) {
+        long start = Metrics.start();
         Map<Instance, Double> closest = new HashMap<Instance, Double>();
         double max = dm.getMaxValue();
+        /*
+         * Once we have k neighbors, bounded measures only need to calculate
+         * distances that are better than the farthest of them.
+         */
+        BoundedDistanceMeasure bounded = dm instanceof BoundedDistanceMeasure ? (BoundedDistanceMeasure) dm : null;
         for (Instance tmp : this) {
-            double d = dm.measure(inst, tmp);
+            double d;
+            if (bounded != null && closest.size() >= k)
+                d = bounded.measure(inst, tmp, max);
+            else
+                d = dm.measure(inst, tmp);
             if (dm.compare(d, max) && !inst.equals(tmp)) {
                 closest.put(tmp, d);
                 if (closest.size() > k)
-                    max = removeFarthest(closest,dm);
+                    removeFarthest(closest, dm);
+                if (closest.size() == k)
+                    max = farthest(closest, dm);
             }
 
         }
+        Metrics.count("dataset.kNearest.distances", size());
+        Metrics.stop("dataset.kNearest", start);
         return closest.keySet();
     }
 
+    /*
+     * Returns the distance of the element that is farthest from the supplied
+     * element.
+     */
+    private double farthest(Map<Instance, Double> vector, DistanceMeasure dm) {
+        double max = dm.getMinValue();
+        for (double d : vector.values()) {
+            if (dm.compare(max, d))
+                max = d;
+        }
+        return max;
+    }
+
     /*
      * Removes the element from the vector that is farthest from the supplied
      * element.
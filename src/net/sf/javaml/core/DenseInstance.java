@@ -132,6 +132,19 @@ public class DenseInstance extends AbstractInstance implements Instance {
         return keys;
     }
 
+    /**
+     * Sets the value of an attribute without boxing it, see
+     * {@link #put(Integer, Double)}.
+     * 
+     * @param pos
+     *            the index of the attribute
+     * @param value
+     *            the new value
+     */
+    public void setValue(int pos, double value) {
+        attributes[pos] = value;
+    }
+
     @Override
     public Double put(Integer key, Double value) {
         double val = attributes[key];
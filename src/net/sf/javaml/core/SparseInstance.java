@@ -105,6 +105,15 @@ public class SparseInstance extends AbstractInstance implements Instance {
         return get(pos).doubleValue();
     }
 
+    /**
+     * Returns the value of the attributes that are not set.
+     *
+     * @return the default value
+     */
+    public double getDefaultValue() {
+        return defaultValue;
+    }
+
     @Override
     public void clear() {
         data.clear();
@@ -7,6 +7,7 @@
 package net.sf.javaml.core.kdtree;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Vector;
 
 // K-D Tree node class
@@ -51,6 +52,17 @@ class KDNode implements Serializable {
         return t;
     }
 
+    // Collects the keys and values of all nodes in pre-order, null for deleted nodes
+    protected static void preorder(KDNode t, List<double[]> keys, List<Object> values) {
+
+        if (t == null)
+            return;
+        keys.add(t.k.coord.clone());
+        values.add(t.deleted ? null : t.v);
+        preorder(t.left, keys, values);
+        preorder(t.right, keys, values);
+    }
+
     // Method srch translated from 352.srch.c of Gonnet & Baeza-Yates
     protected static KDNode srch(HPoint key, KDNode t, int K) {
 
@@ -7,6 +7,7 @@
 package net.sf.javaml.core.kdtree;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Vector;
 
 /**
@@ -52,6 +53,27 @@ public class KDTree implements Serializable{
 		m_root = null;
 	}
 
+	/**
+	 * Returns the number of dimensions of the keys.
+	 */
+	public int dimensions() {
+		return m_K;
+	}
+
+	/**
+	 * Adds the keys and values of all nodes to the given lists, in pre-order.
+	 * Inserting them in this order in an empty KD-tree, and deleting the
+	 * nodes that were deleted, gives a tree with the same structure.
+	 * 
+	 * @param keys
+	 *            list to which copies of the keys are added
+	 * @param values
+	 *            list to which the values are added, null for deleted nodes
+	 */
+	public void preorder(List<double[]> keys, List<Object> values) {
+		KDNode.preorder(m_root, keys, values);
+	}
+
 	/**
 	 * Insert a node in a KD-tree. Uses algorithm translated from 352.ins.c of
 	 * 
@@ -68,22 +90,24 @@ public class KDTree implements Serializable{
 	 *            key for KD-tree node
 	 * @param value
 	 *            value at that key
+	 * @return false if the key is already in the tree, in which case the tree
+	 *         is not changed
 	 * 
 	 * @throws KeySizeException
 	 *             if key.length mismatches K
-	 * @throws KeyDuplicateException
-	 *             if key already in tree
 	 */
-	public void insert(double[] key, Object value) {
+	public boolean insert(double[] key, Object value) {
 
 		if (key.length != m_K) {
 			throw new RuntimeException("KDTree: wrong key size!");
 		}
 
-		else
-			m_root = KDNode.ins(new HPoint(key), value, m_root, 0, m_K);
-
+		HPoint point = new HPoint(key);
+		if (KDNode.srch(point, m_root, m_K) != null)
+			return false;
+		m_root = KDNode.ins(point, value, m_root, 0, m_K);
 		m_count++;
+		return true;
 	}
 
 	/**
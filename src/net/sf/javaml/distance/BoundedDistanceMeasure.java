@@ -0,0 +1,39 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.distance;
+
+import net.sf.javaml.core.Instance;
+
+/**
+ * A distance measure that can stop calculating as soon as it is clear that
+ * the result will not be better than a given bound. Nearest neighbor searches
+ * use this to skip most of the work for candidates that cannot make it into
+ * the result, for example by using cheap lower bounds or by abandoning the
+ * calculation half way.
+ *
+ * @see net.sf.javaml.core.Dataset#kNearest(int, Instance, DistanceMeasure)
+ *
+ */
+public interface BoundedDistanceMeasure extends DistanceMeasure {
+
+    /**
+     * Calculates the distance between two instances, given that the caller is
+     * only interested in the result when it is better than the bound.
+     *
+     * If the distance is better than the bound, according to
+     * {@link #compare(double, double)}, the exact distance is returned. In all
+     * other cases the returned value is not better than the bound, but it is
+     * not necessarily the exact distance.
+     *
+     * @param x
+     *            the first instance
+     * @param y
+     *            the second instance
+     * @param bound
+     *            the value the distance should improve on
+     * @return the distance between the two instances if it is better than the
+     *         bound, otherwise any value that is not better than the bound
+     */
+    public double measure(Instance x, Instance y, double bound);
+}
@@ -3,59 +3,345 @@
  */
 package net.sf.javaml.distance;
 
-import java.util.HashMap;
-
 import net.sf.javaml.core.Instance;
-import be.abeel.util.Pair;
+import net.sf.javaml.metrics.Metrics;
 
 /**
  * This class implements a wrapper around other distance measure to cache
  * previously calculated distances.
- * 
+ *
  * This should only be used with time consuming distance measures. For Euclidean
  * distance for example it is faster to recalculate it each time.
- * 
+ *
+ * Distances are cached by the IDs of the two instances, so the cache does not
+ * depend on the values of the instances and instances should not be modified
+ * while the cache is in use. The wrapped distance measure is assumed to be
+ * symmetric, the distance from x to y and from y to x share the same entry.
+ *
+ * The cache holds a bounded number of distances and evicts entries that have
+ * not been used recently with the CLOCK algorithm. It is split in segments
+ * that are locked independently, so it can be shared by several threads. The
+ * segments start small and grow with the number of cached distances, so a
+ * large capacity only costs memory when it is used.
+ *
  * @author Thomas Abeel
- * 
+ *
  */
 public class CachedDistance implements DistanceMeasure {
 
-	/**
-     * 
-     */
-	private static final long serialVersionUID = 8794275694780229816L;
-	private DistanceMeasure dm = null;
-
-	public CachedDistance(DistanceMeasure dm) {
-		this.dm = dm;
-	}
-
-	// row map
-	HashMap<Pair<Instance, Instance>, Double> cache = new HashMap<Pair<Instance, Instance>, Double>();
-
-	public double measure(Instance i, Instance j) {
-		Pair<Instance, Instance> pair = new Pair<Instance, Instance>(i, j);
-		if (cache.containsKey(pair)) {
-			return cache.get(pair);
-		} else {
-			double dist = dm.measure(i, j);
-			cache.put(pair, dist);
-			return dist;
-		}
-	}
-
-	public boolean compare(double x, double y) {
-		return dm.compare(x, y);
-	}
-
-	@Override
-	public double getMinValue() {
-		return dm.getMinValue();
-	}
-
-	@Override
-	public double getMaxValue() {
-		return dm.getMaxValue();
-	}
+    /**
+     *
+     */
+    private static final long serialVersionUID = 8794275694780229816L;
+
+    /**
+     * Default maximum number of cached distances.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private static final int SEGMENT_BITS = 4;
+
+    private DistanceMeasure dm = null;
+
+    private int capacity;
+
+    private transient volatile Segment[] segments;
+
+    public CachedDistance(DistanceMeasure dm) {
+        this(dm, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a cache around the given distance measure.
+     *
+     * @param dm
+     *            the distance measure to cache
+     * @param capacity
+     *            the maximum number of distances to keep
+     */
+    public CachedDistance(DistanceMeasure dm, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The capacity of the cache should be positive");
+        this.dm = dm;
+        this.capacity = capacity;
+    }
+
+    private Segment[] segments() {
+        Segment[] s = segments;
+        if (s == null) {
+            synchronized (this) {
+                s = segments;
+                if (s == null) {
+                    s = new Segment[1 << SEGMENT_BITS];
+                    int perSegment = (capacity + s.length - 1) / s.length;
+                    for (int i = 0; i < s.length; i++)
+                        s[i] = new Segment(perSegment);
+                    segments = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /* Finalizer of MurmurHash3, spreads the IDs over all bits */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    public double measure(Instance i, Instance j) {
+        int a = i.getID(), b = j.getID();
+        long key = a < b ? ((long) a << 32) | (b & 0xffffffffL) : ((long) b << 32) | (a & 0xffffffffL);
+        long hash = mix(key);
+        Segment s = segments()[(int) (hash >>> (64 - SEGMENT_BITS))];
+        int slot = (int) hash;
+        synchronized (s) {
+            int index = s.find(key, slot);
+            if (index >= 0) {
+                s.hits++;
+                Metrics.count("distance.cache.hits", 1);
+                s.state[index] = REFERENCED;
+                return s.values[index];
+            }
+            s.misses++;
+            Metrics.count("distance.cache.misses", 1);
+        }
+        /* Calculate outside the lock, so other threads are not blocked */
+        double dist = dm.measure(i, j);
+        synchronized (s) {
+            s.put(key, slot, dist);
+        }
+        return dist;
+    }
+
+    /**
+     * Returns the number of distances that were found in the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long hits() {
+        long out = 0;
+        for (Segment s : segments()) {
+            synchronized (s) {
+                out += s.hits;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the number of distances that had to be calculated.
+     *
+     * @return the number of cache misses
+     */
+    public long misses() {
+        long out = 0;
+        for (Segment s : segments()) {
+            synchronized (s) {
+                out += s.misses;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the number of distances that were removed from the cache to
+     * make room for new ones.
+     *
+     * @return the number of evictions
+     */
+    public long evictions() {
+        long out = 0;
+        for (Segment s : segments()) {
+            synchronized (s) {
+                out += s.evictions;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the number of distances currently in the cache.
+     *
+     * @return the number of cached distances
+     */
+    public int size() {
+        int out = 0;
+        for (Segment s : segments()) {
+            synchronized (s) {
+                out += s.size;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Removes all distances from the cache and resets the counters.
+     */
+    public void clear() {
+        for (Segment s : segments()) {
+            synchronized (s) {
+                s.clear();
+            }
+        }
+    }
+
+    public boolean compare(double x, double y) {
+        return dm.compare(x, y);
+    }
+
+    @Override
+    public double getMinValue() {
+        return dm.getMinValue();
+    }
+
+    @Override
+    public double getMaxValue() {
+        return dm.getMaxValue();
+    }
+
+    private static final byte EMPTY = 0;
+
+    private static final byte UNREFERENCED = 1;
+
+    private static final byte REFERENCED = 2;
+
+    /**
+     * Open addressing hash table with linear probing that doubles until it can
+     * hold its maximum number of distances. All access should be synchronized
+     * on the segment.
+     */
+    private static final class Segment {
+
+        private long[] keys;
+
+        private double[] values;
+
+        private byte[] state;
+
+        private int mask;
+
+        private final int max;
+
+        /* The length of the table at the maximum number of distances */
+        private final int maxLength;
+
+        private int size;
+
+        /* Position of the clock hand */
+        private int hand;
+
+        private long hits, misses, evictions;
+
+        Segment(int max) {
+            this.max = max;
+            int length = 4;
+            /* Keep the load factor below one half */
+            while (length < 2 * max)
+                length <<= 1;
+            maxLength = length;
+            allocate(Math.min(length, 64));
+        }
+
+        private void allocate(int length) {
+            keys = new long[length];
+            values = new double[length];
+            state = new byte[length];
+            mask = length - 1;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            byte[] oldState = state;
+            allocate(keys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldState[i] != EMPTY) {
+                    int index = (int) mix(oldKeys[i]) & mask;
+                    while (state[index] != EMPTY)
+                        index = (index + 1) & mask;
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                    state[index] = oldState[i];
+                }
+            }
+        }
+
+        int find(long key, int hash) {
+            int index = hash & mask;
+            while (state[index] != EMPTY) {
+                if (keys[index] == key)
+                    return index;
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(long key, int hash, double value) {
+            int index = find(key, hash);
+            if (index >= 0) {
+                /* Another thread calculated the same distance */
+                values[index] = value;
+                return;
+            }
+            if (size >= max)
+                evict();
+            else if (2 * (size + 1) > keys.length && keys.length < maxLength)
+                grow();
+            index = hash & mask;
+            while (state[index] != EMPTY)
+                index = (index + 1) & mask;
+            keys[index] = key;
+            values[index] = value;
+            state[index] = REFERENCED;
+            size++;
+        }
+
+        private void evict() {
+            while (true) {
+                if (state[hand] == REFERENCED) {
+                    state[hand] = UNREFERENCED;
+                } else if (state[hand] == UNREFERENCED) {
+                    remove(hand);
+                    evictions++;
+                    return;
+                }
+                hand = (hand + 1) & mask;
+            }
+        }
+
+        /* Backward shift deletion, keeps the probe sequences intact */
+        private void remove(int index) {
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                if (state[next] == EMPTY)
+                    break;
+                int home = (int) mix(keys[next]) & mask;
+                boolean stays = index <= next ? index < home && home <= next : index < home || home <= next;
+                if (!stays) {
+                    keys[index] = keys[next];
+                    values[index] = values[next];
+                    state[index] = state[next];
+                    index = next;
+                }
+            }
+            state[index] = EMPTY;
+            size--;
+        }
+
+        void clear() {
+            allocate(Math.min(maxLength, 64));
+            size = 0;
+            hand = 0;
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+        }
+    }
 
 }
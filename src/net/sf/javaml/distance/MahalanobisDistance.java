@@ -3,44 +3,282 @@
  */
 package net.sf.javaml.distance;
 
-
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.core.Instance;
-import Jama.Matrix;
+import net.sf.javaml.utils.Parallel;
 
+/**
+ * The Mahalanobis distance takes into account the covariance between the
+ * attributes of a data set. The distance between x and y is defined as
+ * sqrt((x-y)^T S^-1 (x-y)) with S the covariance matrix of the data set.
+ *
+ * The covariance matrix is estimated once from the data set and factorized as
+ * S = LL^T. Calculating a distance then comes down to solving one triangular
+ * system. When many distances are needed, the data set can be transformed with
+ * {@link #whiten(Dataset)}, after which the Mahalanobis distance is the
+ * Euclidean distance between the transformed instances.
+ *
+ * When there are few instances compared to the number of attributes, the
+ * covariance matrix is singular. It can then be shrunk towards a multiple of
+ * the identity matrix to make it invertible.
+ *
+ * Missing values are ignored.
+ *
+ * @linkplain http://en.wikipedia.org/wiki/Mahalanobis_distance
+ *
+ * @author Thomas Abeel
+ *
+ */
 public class MahalanobisDistance extends AbstractDistance {
 
     /**
-     * 
+     *
      */
     private static final long serialVersionUID = -5844297515283628612L;
 
-    public double measure(Instance i, Instance j) {
-        //XXX optimize
-        double[][] del = new double[3][1];
-        for (int m = 0; m < 3; m++) {
-            for (int n = 0; n < 1; n++) {
-                del[m][n] = i.value(m) - j.value(m);
+    /* Minimum number of rows before a loop is split over threads */
+    private static final int MIN_CHUNK = 16;
+
+    private double[] mean;
+
+    /* Cholesky factor of the covariance matrix, row i has length i+1 */
+    private double[][] cholesky;
+
+    private transient volatile ThreadLocal<double[]> workspace;
+
+    /**
+     * Creates a Mahalanobis distance with the identity matrix as covariance,
+     * which is the same as the Euclidean distance.
+     */
+    public MahalanobisDistance() {
+    }
+
+    /**
+     * Creates a Mahalanobis distance with the covariance matrix of the data
+     * set.
+     *
+     * @param data
+     *            the data set to estimate the covariance matrix from
+     */
+    public MahalanobisDistance(Dataset data) {
+        this(data, 0);
+    }
+
+    /**
+     * Creates a Mahalanobis distance with a shrunk covariance matrix of the
+     * data set. The covariance matrix S is replaced by (1-shrinkage)S +
+     * shrinkage*mu*I, where mu is the average variance of the attributes.
+     *
+     * @param data
+     *            the data set to estimate the covariance matrix from
+     * @param shrinkage
+     *            the shrinkage intensity, between 0 and 1
+     */
+    public MahalanobisDistance(Dataset data, double shrinkage) {
+        if (shrinkage < 0 || shrinkage > 1)
+            throw new IllegalArgumentException("The shrinkage should be between 0 and 1");
+        if (data.size() < 2)
+            throw new IllegalArgumentException("At least two instances are needed to estimate the covariance");
+        double[][] cov = covariance(data);
+        if (shrinkage > 0) {
+            double mu = 0;
+            for (int i = 0; i < cov.length; i++)
+                mu += cov[i][i];
+            mu /= cov.length;
+            for (int i = 0; i < cov.length; i++) {
+                for (int j = 0; j < i; j++)
+                    cov[i][j] *= 1 - shrinkage;
+                cov[i][i] = (1 - shrinkage) * cov[i][i] + shrinkage * mu;
             }
         }
-        Matrix M1 = new Matrix(del);
-        Matrix M2 = M1.transpose();
+        factorize(cov);
+        this.cholesky = cov;
+    }
 
-        double[][] covar = new double[3][3];
-        for (int m = 0; m < 3; m++) {
-            for (int n = 0; n < 3; n++) {
-                covar[m][n] += (i.value(m) - j.value(m)) * (i.value(n) - j.value(n));
+    /**
+     * Calculates the mean and the lower triangle of the sample covariance
+     * matrix. Missing values are replaced by the mean of the attribute.
+     */
+    private double[][] covariance(final Dataset data) {
+        final int n = data.size();
+        final int d = data.noAttributes();
+        mean = new double[d];
+        int[] count = new int[d];
+        for (Instance inst : data) {
+            for (int i = 0; i < d; i++) {
+                double val = inst.value(i);
+                if (!Double.isNaN(val)) {
+                    mean[i] += val;
+                    count[i]++;
+                }
             }
         }
-        Matrix cov = new Matrix(covar);
-        Matrix covInv = cov.inverse();
-        Matrix temp1 = M2.times(covInv);
-        Matrix temp2 = temp1.times(M1);
-        double dist = temp2.trace();
-        if (dist > 0.)
-            dist = Math.sqrt(dist);
-        return dist;
+        for (int i = 0; i < d; i++)
+            mean[i] = count[i] == 0 ? 0 : mean[i] / count[i];
+        /* Centered attribute values, one row per attribute */
+        final double[][] centered = new double[d][n];
+        for (int j = 0; j < n; j++) {
+            Instance inst = data.instance(j);
+            for (int i = 0; i < d; i++) {
+                double val = inst.value(i);
+                if (!Double.isNaN(val))
+                    centered[i][j] = val - mean[i];
+            }
+        }
+        final double[][] cov = new double[d][];
+        Parallel.forRange(d, MIN_CHUNK, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    double[] row = new double[i + 1];
+                    double[] x = centered[i];
+                    for (int j = 0; j <= i; j++) {
+                        double[] y = centered[j];
+                        double sum = 0;
+                        for (int k = 0; k < n; k++)
+                            sum += x[k] * y[k];
+                        row[j] = sum / (n - 1);
+                    }
+                    cov[i] = row;
+                }
+            }
+        });
+        return cov;
     }
 
-   
+    /**
+     * Replaces the lower triangle of a symmetric positive definite matrix by
+     * its Cholesky factor. The rows below each diagonal element are
+     * calculated in parallel.
+     */
+    private static void factorize(final double[][] a) {
+        final int d = a.length;
+        for (int j = 0; j < d; j++) {
+            final double[] rowJ = a[j];
+            double sum = rowJ[j];
+            for (int k = 0; k < j; k++)
+                sum -= rowJ[k] * rowJ[k];
+            if (!(sum > 0))
+                throw new IllegalArgumentException(
+                        "The covariance matrix is not positive definite, use a larger shrinkage");
+            final double pivot = Math.sqrt(sum);
+            rowJ[j] = pivot;
+            final int col = j;
+            Parallel.forRange(d - j - 1, MIN_CHUNK, new Parallel.RangeTask() {
+                @Override
+                public void run(int from, int to) {
+                    for (int i = col + 1 + from; i < col + 1 + to; i++) {
+                        double[] rowI = a[i];
+                        double s = rowI[col];
+                        for (int k = 0; k < col; k++)
+                            s -= rowI[k] * rowJ[k];
+                        rowI[col] = s / pivot;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Solves Lz=v in place.
+     */
+    private void solve(double[] v) {
+        for (int i = 0; i < v.length; i++) {
+            double[] row = cholesky[i];
+            double sum = v[i];
+            for (int k = 0; k < i; k++)
+                sum -= row[k] * v[k];
+            v[i] = sum / row[i];
+        }
+    }
+
+    private double[] workspace() {
+        ThreadLocal<double[]> local = workspace;
+        if (local == null) {
+            synchronized (this) {
+                if (workspace == null) {
+                    workspace = new ThreadLocal<double[]>() {
+                        @Override
+                        protected double[] initialValue() {
+                            return new double[cholesky.length];
+                        }
+                    };
+                }
+                local = workspace;
+            }
+        }
+        return local.get();
+    }
+
+    private void check(Instance x) {
+        if (x.noAttributes() != cholesky.length)
+            throw new IllegalArgumentException("The instance should have " + cholesky.length + " attributes");
+    }
+
+    public double measure(Instance x, Instance y) {
+        if (cholesky == null)
+            return new EuclideanDistance().measure(x, y);
+        check(x);
+        check(y);
+        double[] diff = workspace();
+        for (int i = 0; i < diff.length; i++) {
+            double val = x.value(i) - y.value(i);
+            diff[i] = Double.isNaN(val) ? 0 : val;
+        }
+        solve(diff);
+        double sum = 0;
+        for (int i = 0; i < diff.length; i++)
+            sum += diff[i] * diff[i];
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Transforms an instance so that the Euclidean distance between
+     * transformed instances equals the Mahalanobis distance between the
+     * original instances. The transformed data set has mean zero and the
+     * identity matrix as covariance.
+     *
+     * @param x
+     *            the instance to transform
+     * @return a new instance with the same class value
+     */
+    public Instance whiten(Instance x) {
+        if (cholesky == null)
+            throw new IllegalStateException("The distance measure was not created from a data set");
+        check(x);
+        double[] out = new double[cholesky.length];
+        for (int i = 0; i < out.length; i++) {
+            double val = x.value(i);
+            out[i] = Double.isNaN(val) ? 0 : val - mean[i];
+        }
+        solve(out);
+        return new DenseInstance(out, x.classValue());
+    }
+
+    /**
+     * Transforms all instances of a data set in parallel, see
+     * {@link #whiten(Instance)}. Distances between the transformed instances
+     * can be calculated with the {@link EuclideanDistance}.
+     *
+     * @param data
+     *            the data set to transform
+     * @return a new data set with the transformed instances
+     */
+    public Dataset whiten(final Dataset data) {
+        final Instance[] out = new Instance[data.size()];
+        Parallel.forRange(out.length, MIN_CHUNK, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++)
+                    out[i] = whiten(data.instance(i));
+            }
+        });
+        Dataset whitened = new DefaultDataset();
+        for (Instance inst : out)
+            whitened.add(inst);
+        return whitened;
+    }
 
 }
@@ -4,53 +4,113 @@
 package net.sf.javaml.distance;
 
 import net.sf.javaml.core.Dataset;
-import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.core.Instance;
-import net.sf.javaml.tools.DatasetTools;
+import net.sf.javaml.tools.AttributeStatistics;
 
 /**
  * A normalized version of the Euclidean distance. This distance measure is
  * normalized in the interval [0,1].
- * 
+ *
  * High values denote low similar items (high distance) and low values denote
  * highly similar items (low distance).
- * 
+ *
+ * The range of each attribute is calculated once from the data set. When
+ * instances are added to the data set, the ranges are updated with the new
+ * instances only. When the values of instances in the data set are changed,
+ * {@link #refresh()} should be called.
+ *
  * @author Thomas Abeel
- * 
+ *
  */
 public class NormalizedEuclideanDistance extends EuclideanDistance {
 
     /**
-     * 
+     *
      */
     private static final long serialVersionUID = -6489071802740149683L;
 
     private Dataset data;
 
+    private AttributeStatistics stats;
+
+    /* One over the range of each attribute */
+    private volatile double[] scale = null;
+
+    private volatile int scaleSize = -1;
+
     public NormalizedEuclideanDistance(Dataset data) {
         super();
         this.data = data;
+        this.stats = new AttributeStatistics();
     }
 
-    @Override
-    public double measure(Instance i, Instance j) {
-        Instance min = DatasetTools.minAttributes(data);
-        Instance max = DatasetTools.maxAttributes(data);
+    /**
+     * Creates a distance measure that uses the ranges of previously calculated
+     * attribute statistics. The statistics are not updated afterwards.
+     *
+     * @param stats
+     *            the attribute statistics
+     */
+    public NormalizedEuclideanDistance(AttributeStatistics stats) {
+        super();
+        this.stats = stats;
+    }
+
+    /**
+     * Returns the attribute statistics that are used to normalize the
+     * instances, so they can be shared with other normalizations of the same
+     * data set.
+     *
+     * @return the attribute statistics
+     */
+    public synchronized AttributeStatistics statistics() {
+        scale();
+        return stats;
+    }
 
-        Instance normI = normalizeMidrange(0.5, 1, min, max, i);
-        Instance normJ = normalizeMidrange(0.5, 1, min, max, j);
-        return super.measure(normI, normJ) / Math.sqrt(i.noAttributes());
+    /**
+     * Recalculates the ranges of the attributes from the complete data set.
+     */
+    public synchronized void refresh() {
+        if (data != null)
+            stats.reset();
+        scale = null;
+    }
 
+    private double[] scale() {
+        double[] s = scale;
+        if (s == null || (data != null && scaleSize != data.size())) {
+            synchronized (this) {
+                s = scale;
+                if (s == null || (data != null && scaleSize != data.size())) {
+                    if (data != null)
+                        stats.update(data);
+                    s = new double[stats.noAttributes()];
+                    for (int i = 0; i < s.length; i++)
+                        s[i] = 1 / stats.range(i);
+                    scaleSize = stats.size();
+                    scale = s;
+                }
+            }
+        }
+        return s;
     }
 
-    private Instance normalizeMidrange(double normalMiddle, double normalRange, Instance min, Instance max,
-            Instance instance) {
-        double[] out = new double[instance.noAttributes()];
-        for (int i = 0; i < out.length; i++) {
-            double range = Math.abs(max.value(i) - min.value(i));
-            double middle = Math.abs(max.value(i) + min.value(i)) / 2;
-            out[i] = ((instance.value(i) - middle) / range) * normalRange + normalMiddle;
+    @Override
+    public double measure(Instance i, Instance j) {
+        if (i.noAttributes() != j.noAttributes())
+            throw new RuntimeException("Both instances should contain the same number of values.");
+        double[] s = scale();
+        int n = i.noAttributes();
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            /* Attributes without range can only be equal */
+            double d = (i.value(k) - j.value(k)) * (k < s.length ? s[k] : Double.POSITIVE_INFINITY);
+            // ignore missing values
+            if (!Double.isNaN(d))
+                sum += d * d;
         }
-        return new DenseInstance(out, instance);
+        return Math.sqrt(sum) / Math.sqrt(n);
     }
+
 }
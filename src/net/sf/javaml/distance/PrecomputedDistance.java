@@ -0,0 +1,148 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.distance;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.matrix.Matrix;
+
+/**
+ * A distance measure that looks up the distances between the instances of a
+ * data set in a precomputed matrix. Instances that are not in the data set,
+ * like cluster centroids, are measured with the wrapped distance measure.
+ *
+ * Instances are identified by their ID, so this works for any algorithm that
+ * receives the original instances of the data set.
+ *
+ * When it is serialized, the distances are written along, whatever the storage
+ * of the matrix. A deserialized instance keeps them in a new matrix that
+ * follows {@link Matrix#create(int, int)}.
+ *
+ * @see Matrix#distances(Dataset, DistanceMeasure)
+ *
+ */
+public class PrecomputedDistance implements DistanceMeasure {
+
+    private static final long serialVersionUID = -4219528338719567123L;
+
+    private DistanceMeasure dm;
+
+    /* written by writeObject, swap files and direct buffers are not serializable */
+    private transient Matrix matrix;
+
+    private int minID;
+
+    /* Index of each instance in the data set by ID, or -1 */
+    private int[] indices;
+
+    /* Used instead of the array when the IDs are too scattered */
+    private HashMap<Integer, Integer> map;
+
+    /**
+     * Calculates all pairwise distances of the data set in parallel.
+     *
+     * @param data
+     *            the data set
+     * @param dm
+     *            the distance measure to precompute
+     */
+    public PrecomputedDistance(Dataset data, DistanceMeasure dm) {
+        this(data, dm, Matrix.distances(data, dm));
+    }
+
+    /**
+     * Uses a matrix that has already been filled with the distances between
+     * all instances of the data set.
+     *
+     * @param data
+     *            the data set
+     * @param dm
+     *            the distance measure that was used to fill the matrix
+     * @param matrix
+     *            the matrix with the pairwise distances
+     */
+    public PrecomputedDistance(Dataset data, DistanceMeasure dm, Matrix matrix) {
+        this.dm = dm;
+        this.matrix = matrix;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (Instance i : data) {
+            min = Math.min(min, i.getID());
+            max = Math.max(max, i.getID());
+        }
+        if (data.size() > 0 && (long) max - min < 4L * data.size() + 1024) {
+            minID = min;
+            indices = new int[max - min + 1];
+            Arrays.fill(indices, -1);
+            for (int i = 0; i < data.size(); i++)
+                indices[data.instance(i).getID() - min] = i;
+        } else {
+            map = new HashMap<Integer, Integer>();
+            for (int i = 0; i < data.size(); i++)
+                map.put(data.instance(i).getID(), i);
+        }
+    }
+
+    private int index(Instance inst) {
+        int id = inst.getID();
+        if (indices != null) {
+            int pos = id - minID;
+            return pos >= 0 && pos < indices.length ? indices[pos] : -1;
+        }
+        Integer index = map.get(id);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public double measure(Instance x, Instance y) {
+        int i = index(x);
+        int j = index(y);
+        if (i >= 0 && j >= 0)
+            return matrix.get(i, j);
+        return dm.measure(x, y);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        boolean symmetric = matrix.isSymmetric();
+        out.writeInt(matrix.columns());
+        out.writeInt(matrix.rows());
+        out.writeBoolean(symmetric);
+        for (int col = 0; col < matrix.columns(); col++)
+            for (int row = symmetric ? col : 0; row < matrix.rows(); row++)
+                out.writeDouble(matrix.get(col, row));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int cols = in.readInt();
+        int rows = in.readInt();
+        boolean symmetric = in.readBoolean();
+        matrix = symmetric ? Matrix.createSymmetric(cols) : Matrix.create(cols, rows);
+        for (int col = 0; col < cols; col++)
+            for (int row = symmetric ? col : 0; row < rows; row++)
+                matrix.put(col, row, in.readDouble());
+    }
+
+    @Override
+    public boolean compare(double x, double y) {
+        return dm.compare(x, y);
+    }
+
+    @Override
+    public double getMinValue() {
+        return dm.getMinValue();
+    }
+
+    @Override
+    public double getMaxValue() {
+        return dm.getMaxValue();
+    }
+
+}
@@ -0,0 +1,329 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.distance.dtw;
+
+import java.util.Arrays;
+
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.distance.AbstractDistance;
+import net.sf.javaml.distance.BoundedDistanceMeasure;
+
+/**
+ * Dynamic Time Warping distance with an optional Sakoe-Chiba band.
+ *
+ * The distance is the square root of the sum of squared point differences
+ * along the optimal warping path. Only two rows of the cost matrix are kept in
+ * memory and missing values (NaN) are skipped, as in {@link DTWSimilarity}.
+ *
+ * When used as a {@link BoundedDistanceMeasure}, for instance from
+ * {@link net.sf.javaml.core.Dataset#kNearest(int, Instance, net.sf.javaml.distance.DistanceMeasure)}
+ * , a candidate is first checked against the LB_Kim and LB_Keogh lower bounds
+ * and the full calculation is abandoned as soon as every cell of a row exceeds
+ * the bound. The envelope of the first instance, the query, is kept per
+ * thread so it is only calculated once when the same query is compared
+ * against many candidates.
+ *
+ * <bibtex> T. Rakthanmanon et al. (2012): "Searching and Mining Trillions of
+ * Time Series Subsequences under Dynamic Time Warping", Proceedings of the
+ * 18th ACM SIGKDD, 262-270 </bibtex>
+ *
+ */
+public class DTWDistance extends AbstractDistance implements BoundedDistanceMeasure {
+
+    private static final long serialVersionUID = 2856234871268137590L;
+
+    /* Half-width of the Sakoe-Chiba band, negative for no band */
+    private int window;
+
+    /* Per thread buffers and the envelope of the last query */
+    private transient volatile ThreadLocal<Workspace> workspace;
+
+    private static class Workspace {
+        double[] query = new double[0];
+
+        int queryLength = -1;
+
+        double[] upper = new double[0], lower = new double[0];
+
+        double[] candidate = new double[0];
+
+        double[] previous = new double[0], current = new double[0];
+
+        int[] deque = new int[0];
+    }
+
+    /**
+     * Creates a DTW distance without a warping window.
+     */
+    public DTWDistance() {
+        this(-1);
+    }
+
+    /**
+     * Creates a DTW distance where the warping path is not allowed to stray
+     * further than the given number of positions from the diagonal. If the two
+     * time series have a different length, the window is widened to the
+     * length difference.
+     *
+     * @param window
+     *            half-width of the Sakoe-Chiba band, a negative value means
+     *            that the path is not constrained
+     */
+    public DTWDistance(int window) {
+        this.window = window;
+    }
+
+    @Override
+    public double measure(Instance x, Instance y) {
+        return measure(x, y, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public double measure(Instance x, Instance y, double bound) {
+        Workspace ws = workspace();
+        double[] q = query(ws, x);
+        int n = ws.queryLength;
+        int m = load(ws, y);
+        double[] c = ws.candidate;
+        if (n == 0 || m == 0)
+            return Double.NaN;
+        double bound2 = bound * bound;
+
+        if (lbKim(q, n, c, m) >= bound2)
+            return Double.POSITIVE_INFINITY;
+        if (n == m && lbKeogh(ws, c, m, bound2) >= bound2)
+            return Double.POSITIVE_INFINITY;
+        double d = dtw(ws, q, n, c, m, bound2);
+        if (d >= bound2)
+            return Double.POSITIVE_INFINITY;
+        return Math.sqrt(d);
+    }
+
+    /**
+     * Returns the LB_Kim lower bound for the DTW distance between the two
+     * instances, based on the first and last points only.
+     *
+     * @param x
+     *            the first instance
+     * @param y
+     *            the second instance
+     * @return lower bound on the distance
+     */
+    public double lowerBoundKim(Instance x, Instance y) {
+        Workspace ws = workspace();
+        double[] q = query(ws, x);
+        int m = load(ws, y);
+        if (ws.queryLength == 0 || m == 0)
+            return Double.NaN;
+        return Math.sqrt(lbKim(q, ws.queryLength, ws.candidate, m));
+    }
+
+    /**
+     * Returns the LB_Keogh lower bound for the DTW distance between the two
+     * instances. This lower bound is only defined for time series of equal
+     * length, for other time series the LB_Kim bound is returned.
+     *
+     * @param x
+     *            the first instance, for which the envelope is calculated
+     * @param y
+     *            the second instance
+     * @return lower bound on the distance
+     */
+    public double lowerBoundKeogh(Instance x, Instance y) {
+        Workspace ws = workspace();
+        double[] q = query(ws, x);
+        int m = load(ws, y);
+        if (ws.queryLength == 0 || m == 0)
+            return Double.NaN;
+        if (ws.queryLength != m)
+            return Math.sqrt(lbKim(q, ws.queryLength, ws.candidate, m));
+        return Math.sqrt(lbKeogh(ws, ws.candidate, m, Double.POSITIVE_INFINITY));
+    }
+
+    private Workspace workspace() {
+        ThreadLocal<Workspace> local = workspace;
+        if (local == null) {
+            synchronized (this) {
+                if (workspace == null) {
+                    workspace = new ThreadLocal<Workspace>() {
+                        @Override
+                        protected Workspace initialValue() {
+                            return new Workspace();
+                        }
+                    };
+                }
+                local = workspace;
+            }
+        }
+        return local.get();
+    }
+
+    /*
+     * Copies the values of the candidate into the workspace, skipping missing
+     * values. Returns the number of values.
+     */
+    private int load(Workspace ws, Instance y) {
+        if (ws.candidate.length < y.noAttributes())
+            ws.candidate = new double[y.noAttributes()];
+        return copy(y, ws.candidate);
+    }
+
+    private static int copy(Instance inst, double[] out) {
+        int len = 0;
+        for (int i = 0; i < inst.noAttributes(); i++) {
+            double value = inst.value(i);
+            if (!Double.isNaN(value))
+                out[len++] = value;
+        }
+        return len;
+    }
+
+    /*
+     * Loads the query in the workspace. The envelope is only recalculated when
+     * the query differs from the previous one.
+     */
+    private double[] query(Workspace ws, Instance x) {
+        int size = x.noAttributes();
+        boolean same = ws.queryLength >= 0;
+        int len = 0;
+        for (int i = 0; i < size && same; i++) {
+            double value = x.value(i);
+            if (!Double.isNaN(value)) {
+                same = len < ws.queryLength && ws.query[len] == value;
+                len++;
+            }
+        }
+        if (same && len == ws.queryLength)
+            return ws.query;
+
+        if (ws.query.length < size) {
+            ws.query = new double[size];
+            ws.upper = new double[size];
+            ws.lower = new double[size];
+            ws.deque = new int[size];
+        }
+        ws.queryLength = copy(x, ws.query);
+        envelope(ws, ws.query, ws.queryLength);
+        return ws.query;
+    }
+
+    /*
+     * Calculates the upper and lower envelope of the query using a monotonic
+     * deque of indices (Lemire's streaming min-max), in linear time.
+     */
+    private void envelope(Workspace ws, double[] q, int n) {
+        int w = window < 0 ? n : window;
+        int[] dq = ws.deque;
+        /* Upper envelope */
+        int head = 0, tail = 0;
+        for (int i = 0, next = 0; i < n; i++) {
+            while (next < n && next <= i + w) {
+                while (tail > head && q[dq[tail - 1]] <= q[next])
+                    tail--;
+                dq[tail++] = next++;
+            }
+            while (dq[head] < i - w)
+                head++;
+            ws.upper[i] = q[dq[head]];
+        }
+        /* Lower envelope */
+        head = 0;
+        tail = 0;
+        for (int i = 0, next = 0; i < n; i++) {
+            while (next < n && next <= i + w) {
+                while (tail > head && q[dq[tail - 1]] >= q[next])
+                    tail--;
+                dq[tail++] = next++;
+            }
+            while (dq[head] < i - w)
+                head++;
+            ws.lower[i] = q[dq[head]];
+        }
+    }
+
+    /*
+     * LB_Kim using the first and last points, which are on every warping
+     * path.
+     */
+    private static double lbKim(double[] q, int n, double[] c, int m) {
+        double d = q[0] - c[0];
+        double lb = d * d;
+        if (n > 1 || m > 1) {
+            d = q[n - 1] - c[m - 1];
+            lb += d * d;
+        }
+        return lb;
+    }
+
+    /*
+     * LB_Keogh of the candidate against the envelope of the query, abandoned
+     * as soon as it exceeds the bound.
+     */
+    private static double lbKeogh(Workspace ws, double[] c, int m, double bound2) {
+        double lb = 0;
+        for (int i = 0; i < m && lb < bound2; i++) {
+            double v = c[i];
+            if (v > ws.upper[i]) {
+                double d = v - ws.upper[i];
+                lb += d * d;
+            } else if (v < ws.lower[i]) {
+                double d = ws.lower[i] - v;
+                lb += d * d;
+            }
+        }
+        return lb;
+    }
+
+    /*
+     * Banded DTW using two rolling rows. Returns the squared distance, or a
+     * value of at least bound2 when the calculation was abandoned.
+     */
+    private double dtw(Workspace ws, double[] q, int n, double[] c, int m, double bound2) {
+        int w = window < 0 ? Math.max(n, m) : Math.max(window, Math.abs(n - m));
+        if (ws.previous.length < m) {
+            ws.previous = new double[m];
+            ws.current = new double[m];
+        }
+        double[] prev = ws.previous;
+        double[] cur = ws.current;
+        Arrays.fill(prev, 0, m, Double.POSITIVE_INFINITY);
+        Arrays.fill(cur, 0, m, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < n; i++) {
+            int from = Math.max(0, i - w);
+            int to = Math.min(m - 1, i + w);
+            /* Cells just outside the band are unreachable */
+            if (from > 0)
+                cur[from - 1] = Double.POSITIVE_INFINITY;
+            if (to + 1 < m)
+                cur[to + 1] = Double.POSITIVE_INFINITY;
+            double rowMin = Double.POSITIVE_INFINITY;
+            for (int j = from; j <= to; j++) {
+                double diff = q[i] - c[j];
+                double cost = diff * diff;
+                double best;
+                if (i == 0 && j == 0)
+                    best = 0;
+                else {
+                    best = prev[j];
+                    if (j > 0) {
+                        if (prev[j - 1] < best)
+                            best = prev[j - 1];
+                        if (cur[j - 1] < best)
+                            best = cur[j - 1];
+                    }
+                }
+                cur[j] = cost + best;
+                if (cur[j] < rowMin)
+                    rowMin = cur[j];
+            }
+            /* Every path goes through this row, so we can stop here */
+            if (rowMin >= bound2)
+                return rowMin;
+            double[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return prev[m - 1];
+    }
+}
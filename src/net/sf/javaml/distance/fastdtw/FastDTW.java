@@ -5,8 +5,8 @@ package net.sf.javaml.distance.fastdtw;
 
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.AbstractDistance;
-import net.sf.javaml.distance.fastdtw.dtw.TimeWarpInfo;
-import net.sf.javaml.distance.fastdtw.timeseries.TimeSeries;
+import net.sf.javaml.distance.fastdtw.dtw.PooledFastDTW;
+import net.sf.javaml.distance.fastdtw.timeseries.ArrayTimeSeries;
 
 /**
  * 
@@ -21,6 +21,10 @@ import net.sf.javaml.distance.fastdtw.timeseries.TimeSeries;
  * Time and Space, Intelligent Data Analysis, 11(5):561-580, 2007.
  * http://www.cs.fit.edu/~pkc/papers/ida07.pdf
  * 
+ * Each thread gets its own {@link PooledFastDTW}, so repeated measurements
+ * reuse the same buffers instead of building new time series, windows and
+ * cost matrices.
+ * 
  * @author Thomas Abeel
  * @author Stan Salvador, stansalvador@hotmail.com
  * @author Philip Chan, pkc@cs.fit.edu
@@ -37,12 +41,43 @@ public class FastDTW extends AbstractDistance {
 
     private int radius;
 
+    /* Per thread calculator and time series buffers */
+    private transient volatile ThreadLocal<Workspace> workspace;
+
+    private static class Workspace {
+        final PooledFastDTW dtw;
+
+        final ArrayTimeSeries tsI = new ArrayTimeSeries(1), tsJ = new ArrayTimeSeries(1);
+
+        Workspace(int radius) {
+            dtw = new PooledFastDTW(radius);
+        }
+    }
+
     @Override
     public double measure(Instance x, Instance y) {
-        final TimeSeries tsI = new TimeSeries(x);
-        final TimeSeries tsJ = new TimeSeries(y);
-        final TimeWarpInfo info = net.sf.javaml.distance.fastdtw.dtw.FastDTW.getWarpInfoBetween(tsI, tsJ, radius);
-        return info.getDistance();
+        Workspace ws = workspace();
+        ws.tsI.load(x);
+        ws.tsJ.load(y);
+        return ws.dtw.distance(ws.tsI, ws.tsJ);
+    }
+
+    private Workspace workspace() {
+        ThreadLocal<Workspace> local = workspace;
+        if (local == null) {
+            synchronized (this) {
+                if (workspace == null) {
+                    workspace = new ThreadLocal<Workspace>() {
+                        @Override
+                        protected Workspace initialValue() {
+                            return new Workspace(radius);
+                        }
+                    };
+                }
+                local = workspace;
+            }
+        }
+        return local.get();
     }
 
     public FastDTW(int radius) {
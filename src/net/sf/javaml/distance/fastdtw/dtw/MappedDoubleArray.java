@@ -0,0 +1,81 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.distance.fastdtw.dtw;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A large array of doubles that lives in a memory-mapped temporary file. The
+ * file is mapped in segments, so the array can be larger than what fits in a
+ * single buffer and larger than the heap.
+ *
+ */
+final class MappedDoubleArray {
+
+    /* 2^27 doubles, or 1 GB per segment */
+    private static final int SEGMENT_BITS = 27;
+
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final File file;
+
+    private final RandomAccessFile raf;
+
+    private final DoubleBuffer[] segments;
+
+    private final long length;
+
+    MappedDoubleArray(long length) throws IOException {
+        this.length = length;
+        file = File.createTempFile("swap", "dat");
+        file.deleteOnExit();
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length * 8);
+            FileChannel channel = raf.getChannel();
+            int count = (int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS);
+            segments = new DoubleBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = ((long) i) << SEGMENT_BITS;
+                long size = Math.min(1L << SEGMENT_BITS, length - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start * 8, size * 8).order(
+                        ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        } catch (IOException e) {
+            free();
+            throw e;
+        }
+    }
+
+    double get(long index) {
+        return segments[(int) (index >>> SEGMENT_BITS)].get((int) (index & SEGMENT_MASK));
+    }
+
+    void put(long index, double value) {
+        segments[(int) (index >>> SEGMENT_BITS)].put((int) (index & SEGMENT_MASK), value);
+    }
+
+    long length() {
+        return length;
+    }
+
+    /**
+     * Closes and deletes the backing file. The mapping itself is released when
+     * the buffers are garbage collected.
+     */
+    void free() {
+        try {
+            raf.close();
+        } catch (IOException e) {
+            System.err.println("unable to close swap file '" + file.getPath() + "'");
+        }
+        if (!file.delete())
+            file.deleteOnExit();
+    }
+}
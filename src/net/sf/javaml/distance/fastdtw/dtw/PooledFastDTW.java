@@ -0,0 +1,441 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.distance.fastdtw.dtw;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.sf.javaml.distance.fastdtw.timeseries.ArrayTimeSeries;
+
+/**
+ * FastDTW on primitive time series that reuses all of its buffers between
+ * calls.
+ *
+ * This computes the same warp distance as
+ * {@link FastDTW#getWarpDistBetween(net.sf.javaml.distance.fastdtw.timeseries.TimeSeries, net.sf.javaml.distance.fastdtw.timeseries.TimeSeries, int)}
+ * , but the reduced resolutions, search windows, cost matrices and warp paths
+ * of every level are kept in primitive arrays that are only reallocated when a
+ * longer time series comes along. The full resolution level only needs the
+ * distance, so its cost matrix is never stored: two columns are enough. Cost
+ * matrices that do not fit in memory are stored in a memory-mapped swap file.
+ *
+ * An instance of this class is not thread-safe, use one instance per thread.
+ *
+ */
+public class PooledFastDTW {
+
+    private final int radius;
+
+    private final ArrayList<Level> levels = new ArrayList<Level>();
+
+    /* Rolling columns for the full resolution level */
+    private double[] lastCol = new double[0], currCol = new double[0];
+
+    /**
+     * All data for a single resolution. Window columns correspond to points of
+     * the first time series, window rows to points of the second one.
+     */
+    private static final class Level {
+        double[] valuesI = new double[0], valuesJ = new double[0];
+
+        int sizeI, sizeJ;
+
+        /* Number of points of the finer level aggregated in each point */
+        int[] aggI = new int[0], aggJ = new int[0];
+
+        int[] minJ = new int[0], maxJ = new int[0];
+
+        int[] snapMin = new int[0], snapMax = new int[0];
+
+        long[] colOffsets = new long[0];
+
+        double[] cost = new double[0];
+
+        MappedDoubleArray swap;
+
+        int[] pathI = new int[0], pathJ = new int[0];
+
+        int pathLength;
+    }
+
+    /**
+     * Creates a new FastDTW calculator.
+     *
+     * @param radius
+     *            the search radius around the projected warp path, negative
+     *            values are treated as 0.
+     */
+    public PooledFastDTW(int radius) {
+        this.radius = radius < 0 ? 0 : radius;
+    }
+
+    /**
+     * Returns the FastDTW warp distance between two time series. Returns NaN
+     * when one of the time series is empty.
+     *
+     * @param tsI
+     *            the first time series
+     * @param tsJ
+     *            the second time series
+     * @return the warp distance
+     */
+    public double distance(ArrayTimeSeries tsI, ArrayTimeSeries tsJ) {
+        if (tsI.numOfDimensions() != tsJ.numOfDimensions())
+            throw new IllegalArgumentException("Both time series should have the same number of dimensions");
+        if (tsI.size() == 0 || tsJ.size() == 0)
+            return Double.NaN;
+        int dims = tsI.numOfDimensions();
+        Level top = level(0);
+        top.valuesI = tsI.values();
+        top.valuesJ = tsJ.values();
+        top.sizeI = tsI.size();
+        top.sizeJ = tsJ.size();
+        try {
+            int depth = 0;
+            int minSize = radius + 2;
+            while (level(depth).sizeI > minSize && level(depth).sizeJ > minSize) {
+                shrink(level(depth), level(depth + 1), dims);
+                depth++;
+            }
+            Level coarsest = level(depth);
+            fullWindow(coarsest);
+            if (depth == 0)
+                return rollingDistance(coarsest, dims);
+            warpPath(coarsest, dims);
+            for (int k = depth - 1; k > 0; k--) {
+                projectWindow(level(k), level(k + 1));
+                warpPath(level(k), dims);
+            }
+            projectWindow(top, level(1));
+            return rollingDistance(top, dims);
+        } finally {
+            /* Do not hold on to the caller's data */
+            top.valuesI = new double[0];
+            top.valuesJ = new double[0];
+        }
+    }
+
+    private Level level(int index) {
+        while (levels.size() <= index)
+            levels.add(new Level());
+        return levels.get(index);
+    }
+
+    /*
+     * Piecewise aggregate approximation to half the resolution, for both time
+     * series.
+     */
+    private static void shrink(Level fine, Level coarse, int dims) {
+        int shrunkI = fine.sizeI / 2;
+        int shrunkJ = fine.sizeJ / 2;
+        if (coarse.valuesI.length < shrunkI * dims) {
+            coarse.valuesI = new double[shrunkI * dims];
+            coarse.aggI = new int[shrunkI];
+        }
+        if (coarse.valuesJ.length < shrunkJ * dims) {
+            coarse.valuesJ = new double[shrunkJ * dims];
+            coarse.aggJ = new int[shrunkJ];
+        }
+        coarse.sizeI = paa(fine.valuesI, fine.sizeI, shrunkI, dims, coarse.valuesI, coarse.aggI);
+        coarse.sizeJ = paa(fine.valuesJ, fine.sizeJ, shrunkJ, dims, coarse.valuesJ, coarse.aggJ);
+    }
+
+    private static int paa(double[] values, int size, int shrunkSize, int dims, double[] out, int[] agg) {
+        double reducedPtSize = (double) size / (double) shrunkSize;
+        int count = 0;
+        int ptToReadTo;
+        for (int ptToReadFrom = 0; ptToReadFrom < size; ptToReadFrom = ptToReadTo + 1) {
+            ptToReadTo = (int) Math.round(reducedPtSize * (double) (count + 1)) - 1;
+            int ptsToRead = (ptToReadTo - ptToReadFrom) + 1;
+            for (int d = 0; d < dims; d++) {
+                double sum = 0;
+                for (int pt = ptToReadFrom; pt <= ptToReadTo; pt++)
+                    sum += values[pt * dims + d];
+                out[count * dims + d] = sum / (double) ptsToRead;
+            }
+            agg[count] = ptsToRead;
+            count++;
+        }
+        return count;
+    }
+
+    /*
+     * Window operations, equivalent to those of SearchWindow.
+     */
+    private static void resetWindow(Level l) {
+        if (l.minJ.length < l.sizeI) {
+            l.minJ = new int[l.sizeI];
+            l.maxJ = new int[l.sizeI];
+            l.snapMin = new int[l.sizeI];
+            l.snapMax = new int[l.sizeI];
+            l.colOffsets = new long[l.sizeI];
+        }
+        Arrays.fill(l.minJ, 0, l.sizeI, -1);
+    }
+
+    private static void markVisited(Level l, int col, int row) {
+        if (l.minJ[col] == -1) {
+            l.minJ[col] = row;
+            l.maxJ[col] = row;
+        } else if (l.minJ[col] > row) {
+            l.minJ[col] = row;
+        } else if (l.maxJ[col] < row) {
+            l.maxJ[col] = row;
+        }
+    }
+
+    private static void fullWindow(Level l) {
+        resetWindow(l);
+        for (int i = 0; i < l.sizeI; i++) {
+            markVisited(l, i, 0);
+            markVisited(l, i, l.sizeJ - 1);
+        }
+    }
+
+    /*
+     * Projects the warp path of the coarse level onto the fine level and
+     * expands it with the search radius, as in ExpandedResWindow.
+     */
+    private void projectWindow(Level fine, Level coarse) {
+        resetWindow(fine);
+        int currentI = coarse.pathI[0];
+        int currentJ = coarse.pathJ[0];
+        int lastWarpedI = Integer.MAX_VALUE;
+        int lastWarpedJ = Integer.MAX_VALUE;
+        for (int w = 0; w < coarse.pathLength; w++) {
+            int warpedI = coarse.pathI[w];
+            int warpedJ = coarse.pathJ[w];
+            int blockISize = coarse.aggI[warpedI];
+            int blockJSize = coarse.aggJ[warpedJ];
+            if (warpedJ > lastWarpedJ)
+                currentJ += coarse.aggJ[lastWarpedJ];
+            if (warpedI > lastWarpedI)
+                currentI += coarse.aggI[lastWarpedI];
+            if (warpedJ > lastWarpedJ && warpedI > lastWarpedI) {
+                markVisited(fine, currentI - 1, currentJ);
+                markVisited(fine, currentI, currentJ - 1);
+            }
+            for (int x = 0; x < blockISize; x++) {
+                markVisited(fine, currentI + x, currentJ);
+                markVisited(fine, currentI + x, (currentJ + blockJSize) - 1);
+            }
+            lastWarpedI = warpedI;
+            lastWarpedJ = warpedJ;
+        }
+        if (radius > 0) {
+            expandWindow(fine, 1);
+            expandWindow(fine, radius - 1);
+        }
+    }
+
+    private static void expandWindow(Level l, int radius) {
+        if (radius <= 0)
+            return;
+        int maxI = l.sizeI - 1;
+        int maxJ = l.sizeJ - 1;
+        System.arraycopy(l.minJ, 0, l.snapMin, 0, l.sizeI);
+        System.arraycopy(l.maxJ, 0, l.snapMax, 0, l.sizeI);
+        for (int col = 0; col <= maxI; col++) {
+            for (int row = l.snapMin[col]; row <= l.snapMax[col]; row++) {
+                int targetCol, targetRow, past;
+                if (col != 0 && row != maxJ) {
+                    targetCol = col - radius;
+                    targetRow = row + radius;
+                    past = Math.max(Math.max(-targetCol, targetRow - maxJ), 0);
+                    markVisited(l, targetCol + past, targetRow - past);
+                }
+                if (row != maxJ)
+                    markVisited(l, col, Math.min(row + radius, maxJ));
+                if (col != maxI && row != maxJ) {
+                    targetCol = col + radius;
+                    targetRow = row + radius;
+                    past = Math.max(Math.max(targetCol - maxI, targetRow - maxJ), 0);
+                    markVisited(l, targetCol - past, targetRow - past);
+                }
+                if (col != 0)
+                    markVisited(l, Math.max(col - radius, 0), row);
+                if (col != maxI)
+                    markVisited(l, Math.min(col + radius, maxI), row);
+                if (col != 0 && row != 0) {
+                    targetCol = col - radius;
+                    targetRow = row - radius;
+                    past = Math.max(Math.max(-targetCol, -targetRow), 0);
+                    markVisited(l, targetCol + past, targetRow + past);
+                }
+                if (row != 0)
+                    markVisited(l, col, Math.max(row - radius, 0));
+                if (col != maxI && row != 0) {
+                    targetCol = col + radius;
+                    targetRow = row - radius;
+                    past = Math.max(Math.max(targetCol - maxI, -targetRow), 0);
+                    markVisited(l, targetCol - past, targetRow + past);
+                }
+            }
+        }
+    }
+
+    private static double pointDistance(Level l, int i, int j, int dims) {
+        if (dims == 1)
+            return Math.abs(l.valuesI[i] - l.valuesJ[j]);
+        double sqSum = 0;
+        for (int d = 0; d < dims; d++) {
+            double diff = l.valuesI[i * dims + d] - l.valuesJ[j * dims + d];
+            sqSum += diff * diff;
+        }
+        return Math.sqrt(sqSum);
+    }
+
+    private static double get(Level l, int col, int row) {
+        if (row < l.minJ[col] || row > l.maxJ[col])
+            return Double.POSITIVE_INFINITY;
+        long index = l.colOffsets[col] + row - l.minJ[col];
+        return l.swap == null ? l.cost[(int) index] : l.swap.get(index);
+    }
+
+    private static void put(Level l, int col, int row, double value) {
+        long index = l.colOffsets[col] + row - l.minJ[col];
+        if (l.swap == null)
+            l.cost[(int) index] = value;
+        else
+            l.swap.put(index, value);
+    }
+
+    /*
+     * Fills the cost matrix of the window and traces back the warp path.
+     */
+    private static void warpPath(Level l, int dims) {
+        long size = 0;
+        for (int i = 0; i < l.sizeI; i++) {
+            l.colOffsets[i] = size;
+            size += (l.maxJ[i] - l.minJ[i]) + 1;
+        }
+        l.swap = null;
+        if (l.cost.length < size) {
+            l.cost = new double[0];
+            try {
+                if (size > Integer.MAX_VALUE - 8)
+                    throw new OutOfMemoryError();
+                l.cost = new double[(int) size];
+            } catch (OutOfMemoryError e) {
+                try {
+                    l.swap = new MappedDoubleArray(size);
+                } catch (IOException io) {
+                    throw new InternalError("Unable to create the swap file for the CostMatrix (IOException: "
+                            + io.getMessage() + ")");
+                }
+            }
+        }
+        try {
+            for (int i = 0; i < l.sizeI; i++) {
+                for (int j = l.minJ[i]; j <= l.maxJ[i]; j++) {
+                    double d = pointDistance(l, i, j, dims);
+                    if (i == 0 && j == 0)
+                        put(l, i, j, d);
+                    else if (i == 0)
+                        put(l, i, j, d + get(l, i, j - 1));
+                    else if (j == 0)
+                        put(l, i, j, d + get(l, i - 1, j));
+                    else
+                        put(l, i, j, Math.min(get(l, i - 1, j), Math.min(get(l, i - 1, j - 1), get(l, i, j - 1)))
+                                + d);
+                }
+            }
+            tracePath(l);
+        } finally {
+            if (l.swap != null) {
+                l.swap.free();
+                l.swap = null;
+            }
+        }
+    }
+
+    private static void tracePath(Level l) {
+        int capacity = l.sizeI + l.sizeJ;
+        if (l.pathI.length < capacity) {
+            l.pathI = new int[capacity];
+            l.pathJ = new int[capacity];
+        }
+        int i = l.sizeI - 1;
+        int j = l.sizeJ - 1;
+        int n = 0;
+        l.pathI[n] = i;
+        l.pathJ[n++] = j;
+        while (i > 0 || j > 0) {
+            double diagCost = i > 0 && j > 0 ? get(l, i - 1, j - 1) : Double.POSITIVE_INFINITY;
+            double leftCost = i > 0 ? get(l, i - 1, j) : Double.POSITIVE_INFINITY;
+            double downCost = j > 0 ? get(l, i, j - 1) : Double.POSITIVE_INFINITY;
+            if (diagCost <= leftCost && diagCost <= downCost) {
+                i--;
+                j--;
+            } else if (leftCost < diagCost && leftCost < downCost) {
+                i--;
+            } else if (downCost < diagCost && downCost < leftCost) {
+                j--;
+            } else if (i <= j) {
+                j--;
+            } else {
+                i--;
+            }
+            l.pathI[n] = i;
+            l.pathJ[n++] = j;
+        }
+        /* The path was traced backwards */
+        for (int a = 0, b = n - 1; a < b; a++, b--) {
+            int tmp = l.pathI[a];
+            l.pathI[a] = l.pathI[b];
+            l.pathI[b] = tmp;
+            tmp = l.pathJ[a];
+            l.pathJ[a] = l.pathJ[b];
+            l.pathJ[b] = tmp;
+        }
+        l.pathLength = n;
+    }
+
+    /*
+     * Computes the warp distance over the window keeping only two columns of
+     * the cost matrix.
+     */
+    private double rollingDistance(Level l, int dims) {
+        int height = 0;
+        for (int i = 0; i < l.sizeI; i++)
+            height = Math.max(height, l.maxJ[i] - l.minJ[i] + 1);
+        if (lastCol.length < height) {
+            lastCol = new double[height];
+            currCol = new double[height];
+        }
+        double[] last = lastCol, curr = currCol;
+        int lastMin = 0, lastMax = -1;
+        for (int i = 0; i < l.sizeI; i++) {
+            int min = l.minJ[i], max = l.maxJ[i];
+            for (int j = min; j <= max; j++) {
+                double d = pointDistance(l, i, j, dims);
+                double left = j >= lastMin && j <= lastMax ? last[j - lastMin] : Double.POSITIVE_INFINITY;
+                double down = j > min ? curr[j - 1 - min] : Double.POSITIVE_INFINITY;
+                double v;
+                if (i == 0 && j == 0)
+                    v = d;
+                else if (i == 0)
+                    v = d + down;
+                else if (j == 0)
+                    v = d + left;
+                else {
+                    double diag = j - 1 >= lastMin && j - 1 <= lastMax ? last[j - 1 - lastMin]
+                            : Double.POSITIVE_INFINITY;
+                    v = Math.min(left, Math.min(diag, down)) + d;
+                }
+                curr[j - min] = v;
+            }
+            double[] tmp = last;
+            last = curr;
+            curr = tmp;
+            lastMin = min;
+            lastMax = max;
+        }
+        int maxJ = l.sizeJ - 1;
+        if (maxJ < lastMin || maxJ > lastMax)
+            return Double.POSITIVE_INFINITY;
+        return last[maxJ - lastMin];
+    }
+}
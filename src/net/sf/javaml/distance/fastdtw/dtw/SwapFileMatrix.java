@@ -3,41 +3,32 @@
  */
 package net.sf.javaml.distance.fastdtw.dtw;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.Random;
-
-import net.sf.javaml.distance.fastdtw.lang.TypeConversions;
 
 /**
- * 
+ * Cost matrix for a search window that does not fit in memory. The cells are
+ * stored column by column in a memory-mapped swap file, so reading and writing
+ * a cell is a plain memory access that the operating system pages in and out.
+ *
  * @author Thomas Abeel
  * @author Stan Salvador, stansalvador@hotmail.com
- * 
+ *
  */
 class SwapFileMatrix implements CostMatrix {
 
     SwapFileMatrix(SearchWindow searchWindow) {
         window = searchWindow;
-        if (window.maxI() > 0) {
-            currCol = new double[(window.maxJforI(1) - window.minJforI(1)) + 1];
-            currColIndex = 1;
-            minLastRow = window.minJforI(currColIndex - 1);
-        } else {
-            currColIndex = 0;
+        colOffsets = new long[window.maxI() + 1];
+        long currentOffset = 0;
+        for (int i = window.minI(); i <= window.maxI(); i++) {
+            colOffsets[i] = currentOffset;
+            currentOffset += (window.maxJforI(i) - window.minJforI(i)) + 1;
         }
-        minCurrRow = window.minJforI(currColIndex);
-        lastCol = new double[(window.maxJforI(0) - window.minJforI(0)) + 1];
         try {
-            swapFile = File.createTempFile("swap", "dat");
-            swapFile.deleteOnExit();
-            isSwapFileFreed = false;
-            colOffsets = new long[window.maxI() + 1];
-
-            cellValuesFile = new RandomAccessFile(swapFile, "rw");
+            cellValues = new MappedDoubleArray(currentOffset);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new InternalError("Unable to create the swap file for the CostMatrix (IOException: "
+                    + e.getMessage() + ")");
         }
     }
 
@@ -45,115 +36,38 @@ class SwapFileMatrix implements CostMatrix {
         if (row < window.minJforI(col) || row > window.maxJforI(col))
             throw new InternalError("CostMatrix is filled in a cell (col=" + col + ", row=" + row
                     + ") that is not in the " + "search window");
-        if (col == currColIndex)
-            currCol[row - minCurrRow] = value;
-        else if (col == currColIndex - 1)
-            lastCol[row - minLastRow] = value;
-        else if (col == currColIndex + 1) {
-            try {
-                if (isSwapFileFreed)
-                    throw new InternalError("The SwapFileMatrix has been freeded by the freeMem() method");
-                cellValuesFile.seek(cellValuesFile.length());
-                colOffsets[currColIndex - 1] = cellValuesFile.getFilePointer();
-                cellValuesFile.write(TypeConversions.doubleArrayToByteArray(lastCol));
-            } catch (IOException e) {
-                throw new InternalError("Unable to fill the CostMatrix in the Swap file (IOException)");
-            }
-            lastCol = currCol;
-            minLastRow = minCurrRow;
-            minCurrRow = window.minJforI(col);
-            currColIndex++;
-            currCol = new double[(window.maxJforI(col) - window.minJforI(col)) + 1];
-            currCol[row - minCurrRow] = value;
-        } else {
-            throw new InternalError("A SwapFileMatrix can only fill in 2 adjacentcolumns at a time");
-        }
+        if (isSwapFileFreed)
+            throw new InternalError("The SwapFileMatrix has been freeded by the freeMem() method");
+        cellValues.put((colOffsets[col] + row) - window.minJforI(col), value);
     }
 
     public double get(int col, int row) {
-        try {
-            if (row < window.minJforI(col) || row > window.maxJforI(col))
-                return (1.0D / 0.0D);
-            if (col == currColIndex)
-                return currCol[row - minCurrRow];
-            if (col == currColIndex - 1)
-                return lastCol[row - minLastRow];
-            if (isSwapFileFreed)
-                throw new InternalError("The SwapFileMatrix has been freeded by the freeMem() method");
-            cellValuesFile.seek(colOffsets[col] + (long) (8 * (row - window.minJforI(col))));
-            return cellValuesFile.readDouble();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        if (col > currColIndex)
-            throw new InternalError(
-                    "The requested value is in the search window but has not been entered into the matrix: (col=" + col
-                            + "row=" + row + ").");
-        else
-            throw new InternalError("Unable to read CostMatrix in the Swap file (IOException)");
+        if (row < window.minJforI(col) || row > window.maxJforI(col))
+            return OUT_OF_WINDOW_VALUE;
+        if (isSwapFileFreed)
+            throw new InternalError("The SwapFileMatrix has been freeded by the freeMem() method");
+        return cellValues.get((colOffsets[col] + row) - window.minJforI(col));
     }
 
-    // protected void finalize()
-    // throws Throwable
-    // {
-    // try{
-    // if(!isSwapFileFreed)
-    // cellValuesFile.close();
-    // swapFile.delete();
-    // super.finalize();
-    // break MISSING_BLOCK_LABEL_96;
-    // }catch(Exception e){
-    // e.printStackTrace();
-    // }
-    // System.err.println("unable to close swap file '" + swapFile.getPath() +
-    // "' during finialization");
-    // swapFile.delete();
-    // super.finalize();
-    // break MISSING_BLOCK_LABEL_96;
-    // Exception exception;
-    // exception;
-    // swapFile.delete();
-    // super.finalize();
-    // throw exception;
-    // }
-
     public int size() {
         return window.size();
     }
 
     public void freeMem() {
-        try {
-            cellValuesFile.close();
-        } catch (IOException e) {
-            System.err.println("unable to close swap file '" + swapFile.getPath() + "'");
-        } finally {
-            if (!swapFile.delete())
-                System.err.println("unable to delete swap file '" + swapFile.getPath() + "'");
+        if (!isSwapFileFreed) {
+            isSwapFileFreed = true;
+            cellValues.free();
         }
     }
 
     private static final double OUT_OF_WINDOW_VALUE = (1.0D / 0.0D);
 
-    private static final Random RAND_GEN = new Random();
-
     private final SearchWindow window;
 
-    private double lastCol[];
-
-    private double currCol[];
-
-    private int currColIndex;
-
-    private int minLastRow;
-
-    private int minCurrRow;
-
-    private File swapFile;
-
-    private RandomAccessFile cellValuesFile;
+    private final MappedDoubleArray cellValues;
 
     private boolean isSwapFileFreed;
 
-    private long colOffsets[];
+    private final long colOffsets[];
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.distance.fastdtw.timeseries;
+
+import net.sf.javaml.core.Instance;
+
+/**
+ * Time series that stores its measurements in a single primitive array. The
+ * measurements of point p are found at positions
+ * <code>[p * numOfDimensions(), (p + 1) * numOfDimensions())</code>.
+ *
+ * Unlike {@link TimeSeries}, there are no labels, no time readings and no
+ * objects per point, and the storage can be reused for other series of the
+ * same or smaller size through the load methods.
+ *
+ * @see net.sf.javaml.distance.fastdtw.dtw.PooledFastDTW
+ *
+ */
+public class ArrayTimeSeries {
+
+    private double[] values;
+
+    private int size;
+
+    private final int dimensions;
+
+    /**
+     * Creates an empty time series with the given number of dimensions per
+     * point.
+     *
+     * @param dimensions
+     *            number of measurements per point
+     */
+    public ArrayTimeSeries(int dimensions) {
+        if (dimensions < 1)
+            throw new IllegalArgumentException("A time series needs at least one dimension");
+        this.dimensions = dimensions;
+        this.values = new double[0];
+        this.size = 0;
+    }
+
+    /**
+     * Creates a one dimensional time series with a copy of the given values.
+     *
+     * @param values
+     *            the measurements
+     */
+    public ArrayTimeSeries(double[] values) {
+        this(1);
+        load(values, values.length);
+    }
+
+    /**
+     * Creates a one dimensional time series that has one point per attribute
+     * of the instance.
+     *
+     * @param inst
+     *            the instance to convert
+     */
+    public ArrayTimeSeries(Instance inst) {
+        this(1);
+        load(inst);
+    }
+
+    /**
+     * Converts a time series to the primitive representation.
+     *
+     * @param ts
+     *            the time series to convert
+     */
+    public ArrayTimeSeries(TimeSeries ts) {
+        this(ts.numOfDimensions());
+        ensureCapacity(ts.size());
+        for (int p = 0; p < ts.size(); p++)
+            for (int d = 0; d < dimensions; d++)
+                values[p * dimensions + d] = ts.getMeasurement(p, d);
+        size = ts.size();
+    }
+
+    /**
+     * Replaces the contents of this one dimensional time series with the
+     * attribute values of the instance, reusing the storage if possible.
+     *
+     * @param inst
+     *            the instance to load
+     */
+    public void load(Instance inst) {
+        checkUnivariate();
+        int n = inst.noAttributes();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++)
+            values[i] = inst.value(i);
+        size = n;
+    }
+
+    /**
+     * Replaces the contents of this one dimensional time series with the first
+     * <code>length</code> values of the array, reusing the storage if
+     * possible.
+     *
+     * @param source
+     *            the measurements
+     * @param length
+     *            the number of points
+     */
+    public void load(double[] source, int length) {
+        checkUnivariate();
+        ensureCapacity(length);
+        System.arraycopy(source, 0, values, 0, length);
+        size = length;
+    }
+
+    private void checkUnivariate() {
+        if (dimensions != 1)
+            throw new IllegalStateException("Only one dimensional time series can be loaded from flat values");
+    }
+
+    private void ensureCapacity(int points) {
+        if (values.length < points * dimensions)
+            values = new double[points * dimensions];
+    }
+
+    /**
+     * Returns the number of points in this time series.
+     *
+     * @return the number of points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of measurements per point.
+     *
+     * @return the number of dimensions
+     */
+    public int numOfDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Returns a single measurement.
+     *
+     * @param point
+     *            index of the point
+     * @param dimension
+     *            index of the dimension
+     * @return the measurement
+     */
+    public double get(int point, int dimension) {
+        return values[point * dimensions + dimension];
+    }
+
+    /**
+     * Returns the backing array. Only the first
+     * <code>size() * numOfDimensions()</code> values are meaningful.
+     *
+     * @return the backing array
+     */
+    public double[] values() {
+        return values;
+    }
+}
@@ -14,6 +14,7 @@ import net.sf.javaml.core.Instance;
 import net.sf.javaml.featureselection.FeatureRanking;
 import net.sf.javaml.filter.RemoveAttributes;
 import net.sf.javaml.utils.ArrayUtils;
+import net.sf.javaml.utils.ExecutionContext;
 
 
 /**
@@ -56,6 +57,8 @@ public class RecursiveFeatureEliminationSVM implements FeatureRanking {
      */
     private boolean optimize;
 
+    private ExecutionContext context = new ExecutionContext();
+
     /**
      * 
      * @param folds
@@ -80,6 +83,19 @@ public class RecursiveFeatureEliminationSVM implements FeatureRanking {
 
     }
 
+    /**
+     * Sets the context that reports the progress and can stop the
+     * elimination. Each SVM that is trained is an iteration. When the context
+     * stops the elimination, the attributes that were not eliminated yet get
+     * the best ranks, in the order of their index.
+     * 
+     * @param context
+     *            the execution context
+     */
+    public void setExecutionContext(ExecutionContext context) {
+        this.context = context;
+    }
+
     public void build(Dataset data) {
         /* The order of the importance of the features */
         int[] ordering = new int[data.noAttributes()];
@@ -91,8 +107,9 @@ public class RecursiveFeatureEliminationSVM implements FeatureRanking {
          * values in the above bitmap
          */
         int removed = 0;
+        int iteration = 0;
 
-        while (data.noAttributes() > 1) {
+        while (data.noAttributes() > 1 && context.proceed("rfe", iteration++, -1)) {
             Dataset training = data;
             LibSVM svm;
             if (optimize)
@@ -137,13 +154,11 @@ public class RecursiveFeatureEliminationSVM implements FeatureRanking {
             }
             data=filtered;
         }
+        /* The attributes that are left get the best ranks */
         int index = 0;
-        if (data.noAttributes() == 1) {
-            for (int i = 0; i < removedAttributes.length; i++) {
-                if (!removedAttributes[i])
-                    index = i;
-            }
-            ordering[0] = index;
+        for (int i = 0; i < removedAttributes.length; i++) {
+            if (!removedAttributes[i])
+                ordering[index++] = i;
         }
         ranking = new int[ordering.length];
         for (int i = 0; i < ranking.length; i++)
@@ -3,12 +3,17 @@
  */
 package net.sf.javaml.featureselection.scoring;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import be.abeel.util.HashMap2D;
 
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.featureselection.FeatureScoring;
 import net.sf.javaml.filter.normalize.NormalizeMidrange;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
 
 /**
  * Feature scoring algorithm based on Kullback-Leibler divergence of the value
@@ -17,6 +22,8 @@ import net.sf.javaml.filter.normalize.NormalizeMidrange;
  * 
  * Note: Calling the build method will normalize the data.
  * 
+ * The divergences of the pairs of classes are calculated in parallel.
+ * 
  * @author Thomas Abeel
  * 
  */
@@ -28,6 +35,9 @@ public class KullbackLeiblerDivergence implements FeatureScoring {
 
     private int bins;
 
+    /* the context for the parallel pairs, null for the library wide one */
+    private ParallelContext parallel = null;
+
     public KullbackLeiblerDivergence() {
         this(100);
     }
@@ -36,22 +46,42 @@ public class KullbackLeiblerDivergence implements FeatureScoring {
         this.bins = i;
     }
 
+    /**
+     * Sets the context that calculates the pairwise divergences in parallel.
+     * 
+     * @param context
+     *            the parallel context, null for the library wide context
+     */
+    public void setParallelContext(ParallelContext context) {
+        this.parallel = context;
+    }
+
     @Override
-    public void build(Dataset data) {
+    public void build(final Dataset data) {
         maxDivergence = new double[data.noAttributes()];
         /* Normalize to [0,100[ */
         NormalizeMidrange nm = new NormalizeMidrange(bins / 2, bins - 0.000001);
         nm.build(data);
         nm.filter(data);
         /* Calculate all pairwise divergencies */
+        final List<Object[]> pairs = new ArrayList<Object[]>();
         for (Object p : data.classes()) {
             for (Object q : data.classes()) {
-                if (!p.equals(q)) {
-                    double[] d = pairWise(p, q, data);
-                    pairWiseDivergence.put(p, q, d);
-                }
+                if (!p.equals(q))
+                    pairs.add(new Object[] { p, q });
             }
         }
+        final double[][] divergences = new double[pairs.size()][];
+        ParallelContext pc = parallel == null ? Parallel.context() : parallel;
+        pc.forEach(pairs.size(), new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++)
+                    divergences[i] = pairWise(pairs.get(i)[0], pairs.get(i)[1], data);
+            }
+        });
+        for (int i = 0; i < pairs.size(); i++)
+            pairWiseDivergence.put(pairs.get(i)[0], pairs.get(i)[1], divergences[i]);
         /* Search for maximum pairwise divergencies */
         for (Object p : data.classes()) {
             for (Object q : data.classes()) {
@@ -11,6 +11,8 @@ import net.sf.javaml.core.Instance;
 import net.sf.javaml.distance.ManhattanDistance;
 import net.sf.javaml.featureselection.FeatureScoring;
 import net.sf.javaml.filter.normalize.NormalizeMidrange;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
 
 /**
  * Implementation of the RELIEF attribute evaluation algorithm.
@@ -18,6 +20,10 @@ import net.sf.javaml.filter.normalize.NormalizeMidrange;
  * This implementation is extended to include more neighbors in calculating the
  * weights of the features.
  * 
+ * The neighbors of the sampled instances are searched in parallel. The
+ * weights are summed in blocks of a fixed size, so the result does not depend
+ * on the number of threads.
+ * 
  * 
  * 
  * @version %SVN.VERSION%
@@ -33,6 +39,12 @@ public class RELIEF implements FeatureScoring {
 
     private Random rg;
 
+    /* Number of sampled instances whose contributions are summed together */
+    private static final int BLOCK = 64;
+
+    /* the context for the parallel search, null for the library wide one */
+    private ParallelContext parallel = null;
+
     public RELIEF() {
         this(2, new Random(System.currentTimeMillis()));
     }
@@ -46,8 +58,18 @@ public class RELIEF implements FeatureScoring {
         numNeighbors = num;
     }
 
+    /**
+     * Sets the context that searches the neighbors in parallel.
+     * 
+     * @param context
+     *            the parallel context, null for the library wide context
+     */
+    public void setParallelContext(ParallelContext context) {
+        this.parallel = context;
+    }
+
     @Override
-    public void build(Dataset data) {
+    public void build(final Dataset data) {
         weights = new double[data.noAttributes()];
 
         /* Normalize the data to [0,1] */
@@ -56,21 +78,35 @@ public class RELIEF implements FeatureScoring {
         dnm.filter(data);
 
         /* Number of iterations */
-        int m = data.size();
-
-        for (int i = 0; i < m; i++) {
-            Instance random = data.instance(rg.nextInt(data.size()));
-            findNearest(data, random);
+        final int m = data.size();
+        final Instance[] samples = new Instance[m];
+        for (int i = 0; i < m; i++)
+            samples[i] = data.instance(rg.nextInt(data.size()));
+
+        final int blocks = (m + BLOCK - 1) / BLOCK;
+        final double[][] partial = new double[blocks][weights.length];
+        ParallelContext pc = parallel == null ? Parallel.context() : parallel;
+        pc.forEach(blocks, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                Vector<Instance> nearestHit = new Vector<Instance>();
+                Vector<Instance> nearestMiss = new Vector<Instance>();
+                for (int b = from; b < to; b++) {
+                    double[] sum = partial[b];
+                    for (int i = b * BLOCK; i < Math.min(m, (b + 1) * BLOCK); i++) {
+                        Instance random = samples[i];
+                        findNearest(data, random, nearestHit, nearestMiss);
+                        for (int j = 0; j < sum.length; j++)
+                            sum[j] = sum[j] - diff(j, random, nearestHit) / m + diff(j, random, nearestMiss) / m;
+                    }
+                }
+            }
+        });
+        for (int b = 0; b < blocks; b++)
             for (int j = 0; j < weights.length; j++)
-                weights[j] = weights[j] - diff(j, random, nearestHit) / m + diff(j, random, nearestMiss) / m;
-
-        }
+                weights[j] += partial[b][j];
     }
 
-    private Vector<Instance> nearestHit;
-
-    private Vector<Instance> nearestMiss;
-
     private double diff(int index, Instance a, Vector<Instance> vector) {
         double sum = 0;
         for (Instance b : vector) {
@@ -89,10 +125,10 @@ public class RELIEF implements FeatureScoring {
      * class value. The results are stored in the vectors nearestHit and
      * nearestMiss.
      */
-    private void findNearest(Dataset data, Instance random) {
+    private void findNearest(Dataset data, Instance random, Vector<Instance> nearestHit, Vector<Instance> nearestMiss) {
 
-        nearestMiss = new Vector<Instance>();
-        nearestHit = new Vector<Instance>();
+        nearestMiss.clear();
+        nearestHit.clear();
         for (Instance i : data) {
             if (!i.equals(random)) {
                 if (i.classValue().equals(random.classValue())) {
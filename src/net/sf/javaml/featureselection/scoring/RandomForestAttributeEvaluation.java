@@ -14,6 +14,8 @@ import net.sf.javaml.featureselection.FeatureScoring;
 import net.sf.javaml.tools.DatasetTools;
 import net.sf.javaml.utils.ArrayUtils;
 import net.sf.javaml.utils.MathUtils;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
 import be.abeel.io.Copier;
 
 /**
@@ -29,6 +31,10 @@ import be.abeel.io.Copier;
  * We can use the differences in importance to rank the features or use the
  * differences to give an importance measure to all attributes
  * 
+ * The trees are built and evaluated in parallel. Each tree has its own random
+ * generator, derived from the random generator of this evaluation, so the
+ * result does not depend on the number of threads.
+ * 
  * @version %SVN.VERSION%
  * 
  * @author Thomas Abeel
@@ -44,6 +50,19 @@ public class RandomForestAttributeEvaluation implements FeatureScoring {
 
     private Random rg;
 
+    /* the context for the parallel trees, null for the library wide one */
+    private ParallelContext parallel = null;
+
+    /**
+     * Sets the context that builds the trees in parallel.
+     * 
+     * @param context
+     *            the parallel context, null for the library wide context
+     */
+    public void setParallelContext(ParallelContext context) {
+        this.parallel = context;
+    }
+
     public void setK(int k) {
         this.k = k;
     }
@@ -65,90 +84,37 @@ public class RandomForestAttributeEvaluation implements FeatureScoring {
      */
     private int numPerturbations;
 
-    public void build(Dataset data) {
-        Copier<Instance> instCopier = new Copier<Instance>();
-        int tp = 0, fp = 0, fn = 0, tn = 0;
-        int[][] tpR = new int[data.noAttributes()][numPerturbations];
-        int[][] fpR = new int[data.noAttributes()][numPerturbations];
-        int[][] tnR = new int[data.noAttributes()][numPerturbations];
-        int[][] fnR = new int[data.noAttributes()][numPerturbations];
-
-        for (int k = 0; k < data.noAttributes(); k++) {
-            tpR[k] = new int[numPerturbations];
-            fpR[k] = new int[numPerturbations];
-            tnR[k] = new int[numPerturbations];
-            fnR[k] = new int[numPerturbations];
-        }
-
-        for (int i = 0; i < numTrees; i++) {
-
-            /*
-             * Train a tree and calculate the oob error for the unperturbed oob
-             * samples.
-             */
-            RandomTree tree = new RandomTree(k, rg);
-
-            Dataset sample = DatasetTools.bootstrap(data, data.size(), rg);
-            tree.buildClassifier(sample);
-
-            Dataset outOfBag = new DefaultDataset();
-            outOfBag.addAll(data);
-            outOfBag.removeAll(sample);
-
-            for (Instance inst : outOfBag) {
-                Object predClass = tree.classify(inst);
-                if (predClass.equals(positiveClass)) {
-                    if (inst.classValue().equals(positiveClass))
-                        tp++;
-                    else
-                        fp++;
-                } else {
-                    if (inst.classValue().equals(positiveClass))
-                        fn++;
-                    else
-                        tn++;
-                }
-
-            }
-            /*
-             * For each attribute we run the perturbation process.
-             */
-            for (int k = 0; k < data.noAttributes(); k++) {
+    public void build(final Dataset data) {
+        final int noAttributes = data.noAttributes();
+        /* The counts of all trees, in the order tp, fp, fn, tn */
+        final int[] counts = new int[4];
+        final int[][][] perturbedCounts = new int[4][noAttributes][numPerturbations];
+        final long seed = rg.nextLong();
+        ParallelContext pc = parallel == null ? Parallel.context() : parallel;
+        pc.forEach(numTrees, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
                 /*
-                 * While one perturbation of the attribute would give a first
-                 * idea of the importance, more runs for the same attribute
-                 * would give a more accurate image of the importance.
+                 * The trees of a chunk add to their own counts, which are added
+                 * to the totals at the end. Sums of counts do not depend on the
+                 * order.
                  */
-                for (int j = 0; j < numPerturbations; j++) {
-
-                    Dataset perturbed = new DefaultDataset();
-                    for (Instance inst : outOfBag) {
-                        Instance per = instCopier.copy(inst);
-                        per.put(k, Math.random());
-                        perturbed.add(per);
-
+                int[] chunkCounts = new int[4];
+                int[][][] chunkPerturbed = new int[4][noAttributes][numPerturbations];
+                for (int i = from; i < to; i++)
+                    evaluateTree(data, ParallelContext.random(seed, i), chunkCounts, chunkPerturbed);
+                synchronized (counts) {
+                    for (int c = 0; c < 4; c++) {
+                        counts[c] += chunkCounts[c];
+                        for (int k = 0; k < noAttributes; k++)
+                            for (int j = 0; j < numPerturbations; j++)
+                                perturbedCounts[c][k][j] += chunkPerturbed[c][k][j];
                     }
-                    for (Instance inst : perturbed) {
-                        Object predClass = tree.classify(inst);
-                        if (predClass.equals(positiveClass)) {
-                            if (inst.classValue().equals(positiveClass))
-                                tpR[k][j]++;
-                            else
-                                fpR[k][j]++;
-                        } else {
-                            if (inst.classValue().equals(positiveClass))
-                                fnR[k][j]++;
-                            else
-                                tnR[k][j]++;
-                        }
-
-                    }
-
                 }
-
             }
-
-        }
+        });
+        int tp = counts[0], fp = counts[1], fn = counts[2], tn = counts[3];
+        int[][] tpR = perturbedCounts[0], fpR = perturbedCounts[1], fnR = perturbedCounts[2], tnR = perturbedCounts[3];
         double originalF = new PerformanceMeasure(tp, tn, fp, fn).getFMeasure();
         importance = new double[data.noAttributes()];
         for (int k = 0; k < data.noAttributes(); k++) {
@@ -170,6 +136,80 @@ public class RandomForestAttributeEvaluation implements FeatureScoring {
         ArrayUtils.normalize(importance, ArrayUtils.max(importance));
     }
 
+    /*
+     * Trains a tree on a bootstrap sample and counts the predictions for the
+     * out-of-bag instances, unperturbed and with each attribute perturbed.
+     */
+    private void evaluateTree(Dataset data, Random rg, int[] counts, int[][][] perturbedCounts) {
+        Copier<Instance> instCopier = new Copier<Instance>();
+        int[][] tpR = perturbedCounts[0], fpR = perturbedCounts[1], fnR = perturbedCounts[2], tnR = perturbedCounts[3];
+        /*
+         * Train a tree and calculate the oob error for the unperturbed oob
+         * samples.
+         */
+        RandomTree tree = new RandomTree(k, rg);
+
+        Dataset sample = DatasetTools.bootstrap(data, data.size(), rg);
+        tree.buildClassifier(sample);
+
+        Dataset outOfBag = new DefaultDataset();
+        outOfBag.addAll(data);
+        outOfBag.removeAll(sample);
+
+        for (Instance inst : outOfBag) {
+            Object predClass = tree.classify(inst);
+            if (predClass.equals(positiveClass)) {
+                if (inst.classValue().equals(positiveClass))
+                    counts[0]++;
+                else
+                    counts[1]++;
+            } else {
+                if (inst.classValue().equals(positiveClass))
+                    counts[2]++;
+                else
+                    counts[3]++;
+            }
+
+        }
+        /*
+         * For each attribute we run the perturbation process.
+         */
+        for (int k = 0; k < data.noAttributes(); k++) {
+            /*
+             * While one perturbation of the attribute would give a first idea
+             * of the importance, more runs for the same attribute would give a
+             * more accurate image of the importance.
+             */
+            for (int j = 0; j < numPerturbations; j++) {
+
+                Dataset perturbed = new DefaultDataset();
+                for (Instance inst : outOfBag) {
+                    Instance per = instCopier.copy(inst);
+                    per.put(k, rg.nextDouble());
+                    perturbed.add(per);
+
+                }
+                for (Instance inst : perturbed) {
+                    Object predClass = tree.classify(inst);
+                    if (predClass.equals(positiveClass)) {
+                        if (inst.classValue().equals(positiveClass))
+                            tpR[k][j]++;
+                        else
+                            fpR[k][j]++;
+                    } else {
+                        if (inst.classValue().equals(positiveClass))
+                            fnR[k][j]++;
+                        else
+                            tnR[k][j]++;
+                    }
+
+                }
+
+            }
+
+        }
+    }
+
     private double[] importance;
 
     public double score(int attribute) {
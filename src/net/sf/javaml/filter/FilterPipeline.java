@@ -0,0 +1,212 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.exception.TrainingRequiredException;
+import net.sf.javaml.tools.AttributeStatistics;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Applies a sequence of filters to a data set.
+ *
+ * Consecutive {@link FusableFilter}s are trained from a single pass over the
+ * data when the statistics after one filter can be derived from the
+ * statistics before it, as is the case for linear normalizations. They are
+ * then applied together, in one loop over the values of each instance, and
+ * the instances are processed in parallel. Other filters are applied one
+ * after the other on the complete data set.
+ *
+ * Sparse instances are filtered as dense instances, so attributes that are
+ * not set may get a value.
+ *
+ * @see FusableFilter
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class FilterPipeline implements DatasetFilter, InstanceFilter {
+
+    /* Minimum number of instances before the work is split over threads */
+    private static final int MIN_CHUNK = 64;
+
+    private List<DatasetFilter> filters = new ArrayList<DatasetFilter>();
+
+    private boolean built = false;
+
+    public FilterPipeline(DatasetFilter... filters) {
+        this.filters.addAll(Arrays.asList(filters));
+    }
+
+    /**
+     * Adds a filter at the end of the pipeline.
+     *
+     * @param filter
+     *            the filter to add
+     */
+    public void add(DatasetFilter filter) {
+        filters.add(filter);
+        built = false;
+    }
+
+    /**
+     * Trains all filters. The data set is not modified, but when the pipeline
+     * contains filters that are not fusable, the filters before them are
+     * applied to a copy of the data set.
+     */
+    @Override
+    public void build(Dataset data) {
+        fit(data, false);
+    }
+
+    /**
+     * Applies all filters to the data set. When the pipeline has not been
+     * built yet, the filters are trained while they are applied.
+     */
+    @Override
+    public void filter(Dataset data) {
+        if (!built) {
+            fit(data, true);
+            return;
+        }
+        List<FusableFilter> fused = new ArrayList<FusableFilter>();
+        for (DatasetFilter f : filters) {
+            if (f instanceof FusableFilter) {
+                fused.add((FusableFilter) f);
+            } else {
+                apply(data, fused);
+                fused.clear();
+                f.filter(data);
+            }
+        }
+        apply(data, fused);
+    }
+
+    @Override
+    public void filter(Instance inst) {
+        if (!built)
+            throw new TrainingRequiredException();
+        double[] values = null;
+        for (DatasetFilter f : filters) {
+            if (f instanceof FusableFilter) {
+                if (values == null)
+                    values = load(inst, null);
+                ((FusableFilter) f).transform(values);
+            } else if (f instanceof InstanceFilter) {
+                if (values != null)
+                    store(inst, values);
+                values = null;
+                ((InstanceFilter) f).filter(inst);
+            } else
+                throw new UnsupportedOperationException(f.getClass().getSimpleName()
+                        + " cannot be applied to a single instance");
+        }
+        if (values != null)
+            store(inst, values);
+    }
+
+    private void fit(Dataset data, boolean applied) {
+        List<FusableFilter> fused = new ArrayList<FusableFilter>();
+        AttributeStatistics stats = null;
+        for (DatasetFilter f : filters) {
+            if (f instanceof FusableFilter) {
+                FusableFilter ff = (FusableFilter) f;
+                if (stats == null)
+                    stats = statistics(data, fused);
+                ff.build(stats);
+                stats = ff.statistics(stats);
+                fused.add(ff);
+            } else {
+                if (!applied) {
+                    data = data.copy();
+                    applied = true;
+                }
+                apply(data, fused);
+                fused.clear();
+                f.build(data);
+                f.filter(data);
+                stats = null;
+            }
+        }
+        if (applied)
+            apply(data, fused);
+        built = true;
+    }
+
+    /**
+     * Calculates in parallel the statistics of the data set as if the filters
+     * had been applied to it.
+     */
+    private static AttributeStatistics statistics(final Dataset data, final List<FusableFilter> fused) {
+        final AttributeStatistics out = new AttributeStatistics();
+        Parallel.forRange(data.size(), MIN_CHUNK, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                AttributeStatistics part = new AttributeStatistics();
+                double[] values = null;
+                for (int i = from; i < to; i++) {
+                    values = load(data.instance(i), values);
+                    for (FusableFilter f : fused)
+                        f.transform(values);
+                    part.add(values);
+                }
+                synchronized (out) {
+                    out.merge(part);
+                }
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Applies the filters to all instances in parallel.
+     */
+    private static void apply(final Dataset data, final List<FusableFilter> fused) {
+        if (fused.size() == 0)
+            return;
+        Parallel.forRange(data.size(), MIN_CHUNK, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                double[] values = null;
+                for (int i = from; i < to; i++) {
+                    Instance inst = data.instance(i);
+                    values = load(inst, values);
+                    for (FusableFilter f : fused)
+                        f.transform(values);
+                    store(inst, values);
+                }
+            }
+        });
+    }
+
+    /* Reuses the array when it has the right length */
+    private static double[] load(Instance inst, double[] values) {
+        int n = inst.noAttributes();
+        if (values == null || values.length != n)
+            values = new double[n];
+        for (int i = 0; i < n; i++)
+            values[i] = inst.value(i);
+        return values;
+    }
+
+    private static void store(Instance inst, double[] values) {
+        if (inst instanceof DenseInstance) {
+            DenseInstance dense = (DenseInstance) inst;
+            for (int i = 0; i < values.length; i++)
+                dense.setValue(i, values[i]);
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != 0 || inst.containsKey(i))
+                    inst.put(i, values[i]);
+            }
+        }
+    }
+
+}
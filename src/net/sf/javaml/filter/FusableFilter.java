@@ -0,0 +1,52 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.filter;
+
+import net.sf.javaml.tools.AttributeStatistics;
+
+/**
+ * A filter that only needs the attribute statistics of a data set to be
+ * trained and that transforms the values of each instance independently.
+ * Several of these filters can be combined in a {@link FilterPipeline} that
+ * trains them all from a single pass over the data and applies them in one
+ * loop per instance.
+ *
+ * @see FilterPipeline
+ *
+ * @author Thomas Abeel
+ *
+ */
+public interface FusableFilter extends DatasetFilter {
+
+    /**
+     * Trains the filter with the statistics of the data set it will be
+     * applied to.
+     *
+     * @param stats
+     *            the attribute statistics of the data set
+     */
+    public void build(AttributeStatistics stats);
+
+    /**
+     * Transforms the values of a single instance in place. This method may be
+     * called from several threads at once.
+     *
+     * @param values
+     *            the values of the instance
+     */
+    public void transform(double[] values);
+
+    /**
+     * Returns the statistics of the data set after this filter has been
+     * applied, if they can be derived from the statistics before the filter
+     * was applied. When this is not possible, null is returned and the
+     * statistics are calculated from the filtered data.
+     *
+     * @param input
+     *            the statistics of the data set this filter was built with
+     * @return the statistics of the filtered data set or null
+     */
+    public AttributeStatistics statistics(AttributeStatistics input);
+
+}
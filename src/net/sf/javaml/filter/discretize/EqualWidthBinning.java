@@ -7,8 +7,8 @@ import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.core.exception.TrainingRequiredException;
 import net.sf.javaml.filter.AbstractFilter;
-import net.sf.javaml.filter.instance.FloorValueFilter;
-import net.sf.javaml.tools.DatasetTools;
+import net.sf.javaml.filter.FusableFilter;
+import net.sf.javaml.tools.AttributeStatistics;
 
 /**
  * A filter that discretizes a range of numeric attributes in the data set into
@@ -16,17 +16,15 @@ import net.sf.javaml.tools.DatasetTools;
  * 
  * @author Thomas Abeel
  */
-public class EqualWidthBinning extends AbstractFilter {
+public class EqualWidthBinning extends AbstractFilter implements FusableFilter {
     /**
      * The number of bins
      */
     private int numBins = 10;
 
-//    private Instance currentMiddle;
+    private double[] range;
 
-    private Instance range;
-
-    private Instance min;
+    private double[] min;
 
     public EqualWidthBinning() {
         this(10);
@@ -37,27 +35,47 @@ public class EqualWidthBinning extends AbstractFilter {
     }
 
     public void build(Dataset data) {
-        min = DatasetTools.minAttributes(data);
-        Instance max = DatasetTools.maxAttributes(data);
-//        currentMiddle = min;
-        range = max.minus(min);
-//        System.out.println("range: "+range);
+        build(new AttributeStatistics(data));
+    }
+
+    @Override
+    public void build(AttributeStatistics stats) {
+        min = new double[stats.noAttributes()];
+        range = new double[stats.noAttributes()];
+        for (int i = 0; i < min.length; i++) {
+            min[i] = stats.min(i);
+            range[i] = stats.range(i);
+        }
     }
 
-    private FloorValueFilter rvf = new FloorValueFilter();
+    /* Values that cannot be binned end up in the first bin */
+    private double bin(int index, double value) {
+        if (index >= min.length)
+            return 0;
+        return (double) (int) ((value - min[index]) / range[index] * (numBins - 1));
+    }
 
     @Override
     public void filter(Instance instance) {
-        if (range == null )
+        if (range == null)
             throw new TrainingRequiredException();
+        for (int index : instance.keySet())
+            instance.put(index, bin(index, instance.value(index)));
+    }
 
-        Instance tmp = instance.minus(min).divide(range).multiply(numBins - 1);// .plus((numBins-1)
-                                                                                                // /
-                                                                                                // 2);
-        instance.clear();
-        instance.putAll(tmp);
-        rvf.filter(instance);
+    @Override
+    public void transform(double[] values) {
+        for (int i = 0; i < values.length; i++)
+            values[i] = bin(i, values[i]);
+    }
 
+    /**
+     * The statistics of the bins cannot be derived, so this method always
+     * returns null.
+     */
+    @Override
+    public AttributeStatistics statistics(AttributeStatistics input) {
+        return null;
     }
 
     public void filter(Dataset data) {
@@ -0,0 +1,409 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.filter.discretize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+import net.sf.javaml.core.exception.TrainingRequiredException;
+import net.sf.javaml.filter.AbstractFilter;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Common implementation of the entropy based discretization filters.
+ *
+ * The distinct values of each attribute are sorted once and the class
+ * frequencies are accumulated in a table of prefix sums, so the class
+ * frequencies of any range of values are found in constant time. The borders
+ * of the attributes are determined in parallel.
+ *
+ * @author Lieven Baeyens
+ * @author Thomas Abeel
+ */
+abstract class MinimalEntropyPartitioning extends AbstractFilter {
+
+    /*
+     * Value that represents an absent attribute in a sparse data set, the same
+     * value as used by the Bayesian classifiers.
+     */
+    private static final double ABSENT = 012345.6789;
+
+    private static final double LOG2 = Math.log(2);
+
+    private boolean sparse;
+
+    private boolean memoryMode;
+
+    private HashMap<Integer, double[]> borders;
+
+    MinimalEntropyPartitioning(boolean sparse) {
+        this.sparse = sparse;
+        // standard time mode (memory vs time cost mode)
+        this.memoryMode = false;
+    }
+
+    /**
+     * In memory mode, filtering a data set also replaces the zero values of
+     * sparse instances.
+     */
+    public void setMemoryMode(boolean m) {
+        memoryMode = m;
+    }
+
+    /**
+     * Determines the borders for one attribute.
+     *
+     * @param column
+     *            the sorted values of the attribute
+     * @return the sorted borders
+     */
+    abstract double[] borders(Column column);
+
+    // building process
+    public void build(Dataset data) {
+        final Column[] columns = columns(data);
+        final double[][] out = new double[columns.length][];
+        Parallel.forRange(columns.length, 1, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    if (columns[i] != null)
+                        out[i] = borders(columns[i]);
+                }
+            }
+        });
+        borders = new HashMap<Integer, double[]>();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != null)
+                borders.put(i, out[i]);
+        }
+    }
+
+    /**
+     * Creates a column for each attribute that occurs in the data set.
+     */
+    private Column[] columns(final Dataset data) {
+        final int n = data.size();
+        final int k = data.classes().size();
+        final int[] classes = new int[n];
+        final double[] classFreq = new double[k];
+        int noAttributes = 0;
+        for (int i = 0; i < n; i++) {
+            Instance inst = data.instance(i);
+            classes[i] = data.classIndex(inst.classValue());
+            if (classes[i] >= 0)
+                classFreq[classes[i]]++;
+            if (inst instanceof SparseInstance) {
+                if (!inst.isEmpty())
+                    noAttributes = Math.max(noAttributes, inst.keySet().last() + 1);
+            } else
+                noAttributes = Math.max(noAttributes, inst.noAttributes());
+        }
+        final Column[] columns = new Column[noAttributes];
+        Parallel.forRange(noAttributes, 1, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                double[] values = new double[n];
+                int[] valueClasses = new int[n];
+                for (int a = from; a < to; a++) {
+                    int size = 0;
+                    for (int i = 0; i < n; i++) {
+                        Instance inst = data.instance(i);
+                        boolean present = inst instanceof SparseInstance ? inst.containsKey(a) : a < inst
+                                .noAttributes();
+                        if (present && classes[i] >= 0) {
+                            values[size] = inst.value(a);
+                            valueClasses[size++] = classes[i];
+                        }
+                    }
+                    if (size > 0)
+                        columns[a] = new Column(values, valueClasses, size, k, sparse ? classFreq : null);
+                }
+            }
+        });
+        return columns;
+    }
+
+    // filter
+    @Override
+    public void filter(Instance instance) {
+        filter(instance, true);
+    }
+
+    private void filter(Instance instance, boolean zeros) {
+        if (borders == null)
+            throw new TrainingRequiredException();
+        if (instance instanceof SparseInstance) {
+            for (int key : instance.keySet()) {
+                double value = instance.value(key);
+                if (zeros || value != 0.0)
+                    instance.put(key, replacement(key, value));
+            }
+        } else {
+            for (int i = 0; i < instance.noAttributes(); i++)
+                instance.put(i, replacement(i, instance.value(i)));
+        }
+    }
+
+    /**
+     * Filters all instances in parallel. Unless memory mode is set, the zero
+     * values of sparse instances are kept and attributes that are absent from
+     * a sparse instance, but occur in the data set, are set to the bin of
+     * absent values.
+     */
+    @Override
+    public void filter(final Dataset data) {
+        if (memoryMode || !sparse) {
+            Parallel.forRange(data.size(), 64, new Parallel.RangeTask() {
+                @Override
+                public void run(int from, int to) {
+                    for (int i = from; i < to; i++)
+                        filter(data.instance(i), true);
+                }
+            });
+            return;
+        }
+        final TreeSet<Integer> attributes = new TreeSet<Integer>();
+        for (Instance inst : data)
+            attributes.addAll(inst.keySet());
+        Parallel.forRange(data.size(), 64, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    Instance inst = data.instance(i);
+                    filter(inst, false);
+                    for (int a : attributes) {
+                        if (!inst.containsKey(a))
+                            inst.put(a, replacement(a, ABSENT));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Determine discrete bin to map on continuous value, this is the number of
+     * borders that are smaller or equal to the value.
+     *
+     * @param attribute
+     *            feature name
+     * @param value
+     *            feature value
+     */
+    private double replacement(int attribute, double value) {
+        double[] b = borders.get(attribute);
+        // with folds it could be not all features are yet discovered (with
+        // sparse dataset)
+        if (b == null)
+            return value;
+        int low = 0, high = b.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (value >= b[mid])
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * The sorted distinct values of an attribute with the cumulative class
+     * frequencies.
+     */
+    static final class Column {
+
+        /* Sorted distinct values */
+        final double[] values;
+
+        /* Class frequencies of the values before each index, k per index */
+        private final double[] prefix;
+
+        private final int k;
+
+        Column(double[] raw, int[] classes, int size, int k, double[] absent) {
+            this.k = k;
+            double[] sorted = Arrays.copyOf(raw, size);
+            Arrays.sort(sorted);
+            int m = 0;
+            for (int i = 0; i < size; i++) {
+                if (m == 0 || Double.doubleToLongBits(sorted[i]) != Double.doubleToLongBits(sorted[m - 1]))
+                    sorted[m++] = sorted[i];
+            }
+            double[] counts = new double[m * k];
+            for (int i = 0; i < size; i++)
+                counts[Arrays.binarySearch(sorted, 0, m, raw[i]) * k + classes[i]]++;
+
+            if (absent != null && Arrays.binarySearch(sorted, 0, m, ABSENT) < 0) {
+                /* Instances without the attribute get their own value */
+                int pos = -Arrays.binarySearch(sorted, 0, m, ABSENT) - 1;
+                double[] withAbsent = new double[m + 1];
+                System.arraycopy(sorted, 0, withAbsent, 0, pos);
+                withAbsent[pos] = ABSENT;
+                System.arraycopy(sorted, pos, withAbsent, pos + 1, m - pos);
+                double[] absentCounts = new double[(m + 1) * k];
+                System.arraycopy(counts, 0, absentCounts, 0, pos * k);
+                System.arraycopy(counts, pos * k, absentCounts, (pos + 1) * k, (m - pos) * k);
+                for (int c = 0; c < k; c++) {
+                    double present = 0;
+                    for (int i = 0; i < m; i++)
+                        present += counts[i * k + c];
+                    absentCounts[pos * k + c] = absent[c] - present;
+                }
+                sorted = withAbsent;
+                counts = absentCounts;
+                m++;
+            }
+            values = Arrays.copyOf(sorted, m);
+            prefix = new double[(m + 1) * k];
+            for (int i = 0; i < m; i++)
+                for (int c = 0; c < k; c++)
+                    prefix[(i + 1) * k + c] = prefix[i * k + c] + counts[i * k + c];
+        }
+
+        /**
+         * Entropy of the class frequencies of the values from index first up
+         * to and including index last.
+         */
+        double entropy(int first, int last) {
+            int total = 0;
+            for (int c = 0; c < k; c++)
+                total += prefix[(last + 1) * k + c] - prefix[first * k + c];
+            double entropy = 0.0;
+            for (int c = 0; c < k; c++) {
+                double count = prefix[(last + 1) * k + c] - prefix[first * k + c];
+                if (count > 0) {
+                    double pClass = count / total;
+                    entropy += pClass * (Math.log(pClass) / LOG2);
+                }
+            }
+            if (entropy == 0.0)
+                return entropy;
+            return -1.0 * entropy;
+        }
+
+        /**
+         * Number of classes that occur in the values from index first up to
+         * and including index last.
+         */
+        int classes(int first, int last) {
+            int out = 0;
+            for (int c = 0; c < k; c++) {
+                if (prefix[(last + 1) * k + c] - prefix[first * k + c] > 0)
+                    out++;
+            }
+            return out;
+        }
+
+        /**
+         * Splits the values in the given number of bins so the weighted
+         * entropy of the bins is minimal. Each bin is weighted by its number
+         * of distinct values. Returns the index of the first value of each bin
+         * except the first one, or null if there are not enough values.
+         *
+         * The bins are found by dynamic programming over the start of the
+         * bins. The bins of the whole range all start at the first value, so
+         * the last step only looks at that start: two bins take a single
+         * sweep over the values.
+         */
+        int[] split(int first, int last, int bins) {
+            int m = last - first + 1;
+            if (m < bins)
+                return null;
+            double total = m;
+            /*
+             * cost[r][s-first] is the minimal weighted entropy of the values
+             * from s to last in r+1 bins, next[r][s-first] the start of the
+             * second of those bins
+             */
+            double[][] cost = new double[bins][m];
+            int[][] next = new int[bins][m];
+            for (int s = first; s <= last; s++)
+                cost[0][s - first] = ((double) (last - s + 1)) / total * entropy(s, last);
+            for (int r = 1; r < bins; r++) {
+                /* At least r values should remain after the first bin */
+                int end = r == bins - 1 ? first : last - r;
+                for (int s = first; s <= end; s++) {
+                    double lowest = Double.MAX_VALUE;
+                    for (int b = s + 1; b <= last - r + 1; b++) {
+                        double lef = ((double) (b - s)) / total * entropy(s, b - 1) + cost[r - 1][b - first];
+                        if (lef < lowest) {
+                            lowest = lef;
+                            next[r][s - first] = b;
+                        }
+                    }
+                    cost[r][s - first] = lowest;
+                }
+            }
+            int[] out = new int[bins - 1];
+            int s = first;
+            for (int r = bins - 1; r > 0; r--) {
+                s = next[r][s - first];
+                out[bins - 1 - r] = s;
+            }
+            return out;
+        }
+
+        /**
+         * The borders of the given number of bins with minimal entropy.
+         */
+        double[] borders(int bins) {
+            int[] split = split(0, values.length - 1, bins);
+            if (split == null)
+                return new double[0];
+            double[] out = new double[split.length];
+            for (int i = 0; i < split.length; i++)
+                out[i] = values[split[i]];
+            return out;
+        }
+
+        /**
+         * Splits the values recursively in two bins, as long as the gain in
+         * entropy satisfies the minimum description length criterion.
+         */
+        double[] recursiveBorders() {
+            List<Double> out = new ArrayList<Double>();
+            recursive(0, values.length - 1, out);
+            double[] sorted = new double[out.size()];
+            for (int i = 0; i < sorted.length; i++)
+                sorted[i] = out.get(i);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private void recursive(int first, int last, List<Double> out) {
+            // border check (at least 2 elements)
+            if (last - first < 1)
+                return;
+            int border = split(first, last, 2)[0];
+            int sizeLeft = border - first, sizeRight = last - border + 1;
+            double entS1 = entropy(first, border - 1);
+            double entS2 = entropy(border, last);
+            double lef = ((double) sizeLeft) / (sizeLeft + sizeRight) * entS1;
+            lef += ((double) sizeRight) / (sizeLeft + sizeRight) * entS2;
+            int n = last - first + 1;
+            double entS = entropy(first, last);
+            double gain = entS - lef;
+            int k0 = classes(first, last);
+            int k1 = classes(first, border - 1);
+            int k2 = classes(border, last);
+            double deltaLEF = ((Math.log(Math.pow(3, k0) - 2)) / LOG2) - (k0 * entS - k1 * entS1 - k2 * entS2);
+            double rightMember = ((Math.log(n - 1) / LOG2) / n);
+            rightMember += (deltaLEF / n);
+            if (gain >= rightMember) {
+                // left and right from border
+                out.add(values[border]);
+                recursive(first, border - 1, out);
+                recursive(border, last, out);
+            }
+        }
+    }
+
+}
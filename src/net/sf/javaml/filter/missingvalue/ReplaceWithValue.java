@@ -5,6 +5,8 @@ package net.sf.javaml.filter.missingvalue;
 
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.filter.AbstractFilter;
+import net.sf.javaml.filter.FusableFilter;
+import net.sf.javaml.tools.AttributeStatistics;
 
 /**
  * Replaces all Double.NaN and Double.Infinity values with a fixed value.
@@ -13,7 +15,7 @@ import net.sf.javaml.filter.AbstractFilter;
  * @author Thomas Abeel
  * 
  */
-public class ReplaceWithValue extends AbstractFilter {
+public class ReplaceWithValue extends AbstractFilter implements FusableFilter {
 
     private double d;
 
@@ -30,4 +32,26 @@ public class ReplaceWithValue extends AbstractFilter {
 
     }
 
+    @Override
+    public void build(AttributeStatistics stats) {
+        // nothing to train
+    }
+
+    @Override
+    public void transform(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i]) || Double.isInfinite(values[i]))
+                values[i] = d;
+        }
+    }
+
+    /**
+     * The number of replaced values is not known, so this method always
+     * returns null.
+     */
+    @Override
+    public AttributeStatistics statistics(AttributeStatistics input) {
+        return null;
+    }
+
 }
@@ -7,7 +7,9 @@ import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.filter.AbstractFilter;
 import net.sf.javaml.filter.DatasetFilter;
+import net.sf.javaml.filter.FusableFilter;
 import net.sf.javaml.filter.InstanceFilter;
+import net.sf.javaml.tools.AttributeStatistics;
 
 /**
  * This filter will normalize all the attributes in an instance to a certain
@@ -35,7 +37,7 @@ import net.sf.javaml.filter.InstanceFilter;
  * @author Thomas Abeel
  * 
  */
-public class InstanceNormalizeMidrange extends AbstractFilter {
+public class InstanceNormalizeMidrange extends AbstractFilter implements FusableFilter {
 
     private static final double EPSILON = 1.0e-6;
 
@@ -65,10 +67,22 @@ public class InstanceNormalizeMidrange extends AbstractFilter {
 
     @Override
     public void filter(Instance instance) {
+        double[] values = new double[instance.noAttributes()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = instance.value(i);
+        transform(values);
+        for (int i = 0; i < values.length; i++)
+            instance.put(i, values[i]);
+    }
+
+    @Override
+    public void transform(double[] values) {
+        if (values.length == 0)
+            return;
         // Find min and max values
-        double min = instance.value(0);
+        double min = values[0];
         double max = min;
-        for (Double d:instance) {
+        for (double d : values) {
             if (d > max)
                 max = d;
             if (d < min)
@@ -79,18 +93,31 @@ public class InstanceNormalizeMidrange extends AbstractFilter {
         double midrange = (max + min) / 2;
         double range = max - min;
 
-       for(int i=0;i<instance.noAttributes();i++){
+        for (int i = 0; i < values.length; i++) {
             if (range < EPSILON) {
-                instance.put(i, normalMiddle);
+                values[i] = normalMiddle;
             } else {
-                instance.put(i, ((instance.value(i) - midrange) / (range / normalRange)) + normalMiddle);
+                values[i] = ((values[i] - midrange) / (range / normalRange)) + normalMiddle;
             }
         }
-        
     }
 
     public void build(Dataset data) {
         // do nothing, not required for this filter
 
     }
+
+    @Override
+    public void build(AttributeStatistics stats) {
+        // do nothing, not required for this filter
+    }
+
+    /**
+     * Each instance is normalized with its own range, so the statistics of the
+     * attributes cannot be derived and this method always returns null.
+     */
+    @Override
+    public AttributeStatistics statistics(AttributeStatistics input) {
+        return null;
+    }
 }
@@ -6,7 +6,8 @@ package net.sf.javaml.filter.normalize;
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.filter.AbstractFilter;
-import net.sf.javaml.tools.DatasetTools;
+import net.sf.javaml.filter.FusableFilter;
+import net.sf.javaml.tools.AttributeStatistics;
 
 /**
  * This filter will normalize the data set with mean 0 and standard deviation 1
@@ -19,31 +20,79 @@ import net.sf.javaml.tools.DatasetTools;
  * @author Thomas Abeel
  * 
  */
-public class NormalizeMean extends AbstractFilter {
+public class NormalizeMean extends AbstractFilter implements FusableFilter {
 
-    private Instance mean = null;
+    private double[] mean = null;
 
-    private Instance std = null;
+    private double[] std = null;
 
     @Override
     public void filter(Dataset data) {
         if (data.size() == 0)
             return;
-        mean = DatasetTools.average(data);// new double[instanceLength];
-        std = DatasetTools.standardDeviation(data, mean);
+        build(new AttributeStatistics(data));
         for (Instance i : data)
             filter(i);
 
     }
 
+    @Override
+    public void build(Dataset data) {
+        build(new AttributeStatistics(data));
+    }
+
+    /**
+     * Uses previously calculated statistics of a data set to determine the
+     * mean and standard deviation of each attribute.
+     *
+     * @param stats
+     *            the attribute statistics of the data set
+     */
+    public void build(AttributeStatistics stats) {
+        mean = new double[stats.noAttributes()];
+        std = new double[stats.noAttributes()];
+        for (int i = 0; i < mean.length; i++) {
+            mean[i] = stats.mean(i);
+            std[i] = stats.standardDeviation(i);
+        }
+    }
+
     @Override
     public void filter(Instance instance) {
         if (mean == null || std == null)
             throw new RuntimeException(
                     "You should first call filterDataset for this filter, some parameters are not yet set.");
-        Instance tmp = instance.minus(mean).divide(std);
-        for (int i = 0; i < instance.noAttributes(); i++)
-            instance.put(i, tmp.value(i));
+        int n = Math.min(instance.noAttributes(), mean.length);
+        for (int i = 0; i < n; i++)
+            instance.put(i, (instance.value(i) - mean[i]) / std[i]);
+    }
+
+    @Override
+    public void transform(double[] values) {
+        int n = Math.min(values.length, mean.length);
+        for (int i = 0; i < n; i++)
+            values[i] = (values[i] - mean[i]) / std[i];
+    }
+
+    @Override
+    public AttributeStatistics statistics(AttributeStatistics input) {
+        if (!input.isFinite())
+            return null;
+        double[] scale = new double[input.noAttributes()];
+        double[] shift = new double[input.noAttributes()];
+        double[] low = new double[input.noAttributes()];
+        double[] high = new double[input.noAttributes()];
+        for (int i = 0; i < scale.length; i++) {
+            low[i] = input.min(i);
+            high[i] = input.max(i);
+            if (std[i] == 0)
+                return null;
+            scale[i] = 1 / std[i];
+            shift[i] = -mean[i] / std[i];
+        }
+        transform(low);
+        transform(high);
+        return input.linear(scale, shift, low, high);
     }
 
 }
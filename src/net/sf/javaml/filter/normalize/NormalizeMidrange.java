@@ -4,15 +4,14 @@
 package net.sf.javaml.filter.normalize;
 
 import net.sf.javaml.core.Dataset;
-import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.core.SparseInstance;
 import net.sf.javaml.core.exception.TrainingRequiredException;
 import net.sf.javaml.filter.AbstractFilter;
 import net.sf.javaml.filter.DatasetFilter;
+import net.sf.javaml.filter.FusableFilter;
 import net.sf.javaml.filter.InstanceFilter;
-import net.sf.javaml.filter.instance.ReplaceValueFilter;
-import net.sf.javaml.tools.DatasetTools;
+import net.sf.javaml.tools.AttributeStatistics;
 
 /**
  * This filter will normalize the data set with a certain mid-range and a
@@ -41,7 +40,7 @@ import net.sf.javaml.tools.DatasetTools;
  * @author Thomas Abeel
  * 
  */
-public class NormalizeMidrange extends AbstractFilter {
+public class NormalizeMidrange extends AbstractFilter implements FusableFilter {
 
     /**
      * A normalization filter to the interval [-1,1]
@@ -61,39 +60,78 @@ public class NormalizeMidrange extends AbstractFilter {
 
     }
 
-    private Instance currentRange = null;
+    private double[] currentRange = null;
 
-    private Instance currentMiddle = null;
+    private double[] currentMiddle = null;
 
     public void build(Dataset data) {
         // Calculate the proper range and midrange
-        Instance max = DatasetTools.maxAttributes(data);
-        Instance min = DatasetTools.minAttributes(data);
-        currentRange = max.minus(min);
-        currentMiddle = min.add(max).divide(2);
+        build(new AttributeStatistics(data));
+    }
 
+    /**
+     * Uses previously calculated statistics of a data set to determine the
+     * range and mid-range of each attribute.
+     *
+     * @param stats
+     *            the attribute statistics of the data set
+     */
+    public void build(AttributeStatistics stats) {
+        currentRange = new double[stats.noAttributes()];
+        currentMiddle = new double[stats.noAttributes()];
+        for (int i = 0; i < currentRange.length; i++) {
+            currentRange[i] = stats.range(i);
+            currentMiddle[i] = stats.midrange(i);
+        }
+    }
+
+    /* Values that cannot be normalized are set to the mid-range */
+    private double normalize(int index, double value) {
+        if (index >= currentRange.length)
+            return normalMiddle;
+        double out = ((value - currentMiddle[index]) / currentRange[index]) * normalRange + normalMiddle;
+        if (Double.isNaN(out) || Double.isInfinite(out))
+            return normalMiddle;
+        return out;
     }
 
     @Override
     public void filter(Instance instance) {
         if (currentRange == null || currentMiddle == null)
             throw new TrainingRequiredException();
+        if (instance instanceof SparseInstance) {
+            for (int index : instance.keySet())
+                instance.put(index, normalize(index, instance.value(index)));
+        } else {
+            for (int i = 0; i < instance.noAttributes(); i++)
+                instance.put(i, normalize(i, instance.value(i)));
+        }
+    }
 
-        if (instance instanceof DenseInstance) {
-            Instance tmp = instance.minus(currentMiddle).divide(currentRange).multiply(normalRange).add(normalMiddle);
-            instance.clear();
-            instance.putAll(tmp);
+    @Override
+    public void transform(double[] values) {
+        for (int i = 0; i < values.length; i++)
+            values[i] = normalize(i, values[i]);
+    }
 
+    @Override
+    public AttributeStatistics statistics(AttributeStatistics input) {
+        if (!input.isFinite())
+            return null;
+        double[] scale = new double[input.noAttributes()];
+        double[] shift = new double[input.noAttributes()];
+        double[] low = new double[input.noAttributes()];
+        double[] high = new double[input.noAttributes()];
+        for (int i = 0; i < scale.length; i++) {
+            low[i] = input.min(i);
+            high[i] = input.max(i);
+            /* Attributes without range are set to the mid-range */
+            scale[i] = currentRange[i] == 0 ? 0 : normalRange / currentRange[i];
+            shift[i] = normalMiddle - currentMiddle[i] * scale[i];
         }
-        if (instance instanceof SparseInstance) {
-            for (int index : instance.keySet()) {
-                instance.put(index, ((instance.value(index) - currentMiddle.value(index)) / currentRange.value(index))
-                        * normalRange + normalMiddle);
-            }
-        }
-        new ReplaceValueFilter(Double.NEGATIVE_INFINITY, normalMiddle).filter(instance);
-        new ReplaceValueFilter(Double.POSITIVE_INFINITY, normalMiddle).filter(instance);
-        new ReplaceValueFilter(Double.NaN, normalMiddle).filter(instance);
+        transform(low);
+        transform(high);
+        return input.linear(scale, shift, low, high);
     }
 
     public void filter(Dataset data) {
@@ -5,20 +5,125 @@ package net.sf.javaml.matrix;
 
 import java.io.IOException;
 
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
+
+/**
+ * A two dimensional matrix of doubles that is either stored in memory or, when
+ * it is too large, in a memory-mapped file on disk. Large matrices can also be
+ * kept in direct memory, outside of the Java heap.
+ *
+ * Symmetric matrices only store one triangle: putting a value in cell
+ * (col,row) also sets the value of cell (row,col).
+ *
+ * The matrix can be filled in parallel with all pairwise distances of a data
+ * set, or between the instances of two data sets, so algorithms can calculate
+ * these once and reuse them:
+ *
+ * <pre>
+ * Matrix d = Matrix.pairwise(a, b, new EuclideanDistance());
+ * double distance = d.get(i, j); // between a.instance(i) and b.instance(j)
+ * </pre>
+ *
+ * The distances are calculated in blocks of instances that stay in the
+ * processor cache, the blocks are spread over the threads of the library.
+ * The Euclidean distance and the cosine similarity and distance have a faster
+ * path for dense data that uses precomputed norms, other distance measures are
+ * called for each pair.
+ *
+ */
 public abstract class Matrix {
 
+    /**
+     * Creates a matrix in memory. If there is not enough memory, the matrix is
+     * stored in a memory-mapped swap file instead.
+     *
+     * @param cols
+     *            number of columns
+     * @param rows
+     *            number of rows
+     * @return a new matrix filled with zeros
+     */
     public static Matrix create(int cols, int rows) {
         try {
             return new MemoryMatrix(cols, rows);
         } catch (OutOfMemoryError e) {
             System.gc();
+            return createSwapped(cols, rows, false, false);
+        }
+    }
+
+    /**
+     * Creates a symmetric square matrix in memory. If there is not enough
+     * memory, the matrix is stored in a memory-mapped swap file instead.
+     *
+     * @param size
+     *            number of rows and columns
+     * @return a new matrix filled with zeros
+     */
+    public static Matrix createSymmetric(int size) {
+        try {
+            return new SymmetricMemoryMatrix(size);
+        } catch (OutOfMemoryError e) {
+            System.gc();
+            return createSwapped(size, size, true, false);
+        }
+    }
 
-            try {
-                return new SwapFileMatrix(cols, rows);
-            } catch (IOException e1) {
-                return null;
-            }
+    /**
+     * Creates a matrix that is stored in a memory-mapped swap file, which is
+     * deleted when the matrix is closed or when the virtual machine exits.
+     *
+     * @param cols
+     *            number of columns
+     * @param rows
+     *            number of rows
+     * @param symmetric
+     *            whether the matrix is symmetric, in which case only one
+     *            triangle is stored and cols should equal rows
+     * @param singlePrecision
+     *            store values as floats instead of doubles
+     * @return a new matrix filled with zeros
+     * @throws IOException
+     *             when the swap file cannot be created
+     */
+    public static Matrix createMapped(int cols, int rows, boolean symmetric, boolean singlePrecision)
+            throws IOException {
+        return new SwapFileMatrix(cols, rows, symmetric, singlePrecision);
+    }
 
+    /**
+     * Creates a matrix that is stored in direct memory, outside of the Java
+     * heap. This avoids the limits and the garbage collection of the heap for
+     * large matrices that still fit in the physical memory.
+     *
+     * @param cols
+     *            number of columns
+     * @param rows
+     *            number of rows
+     * @param symmetric
+     *            whether the matrix is symmetric, in which case only one
+     *            triangle is stored and cols should equal rows
+     * @param singlePrecision
+     *            store values as floats instead of doubles
+     * @return a new matrix filled with zeros
+     */
+    public static Matrix createDirect(int cols, int rows, boolean symmetric, boolean singlePrecision) {
+        try {
+            return new SwapFileMatrix(cols, rows, symmetric, singlePrecision, false);
+        } catch (IOException e) {
+            /* direct buffers do not use files */
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Matrix createSwapped(int cols, int rows, boolean symmetric, boolean singlePrecision) {
+        try {
+            return new SwapFileMatrix(cols, rows, symmetric, singlePrecision);
+        } catch (IOException e) {
+            throw new RuntimeException("Not enough memory for the matrix and unable to create a swap file", e);
         }
     }
 
@@ -29,4 +134,110 @@ public abstract class Matrix {
     public abstract int rows();
 
     public abstract int columns();
+
+    /**
+     * Returns whether this matrix only stores one triangle.
+     *
+     * @return true if the matrix is symmetric
+     */
+    public boolean isSymmetric() {
+        return false;
+    }
+
+    /**
+     * Releases the resources held by this matrix, like the swap file. The
+     * matrix should not be used afterwards.
+     */
+    public void close() {
+        // nothing to release for memory resident matrices
+    }
+
+    /**
+     * Fills this matrix with the distances between all pairs of instances of
+     * the data set, so that cell (i,j) contains the distance between instance
+     * i and instance j. The work is spread over all processors. Distance
+     * measures are assumed to be symmetric, so only one triangle is
+     * calculated.
+     *
+     * @param data
+     *            the data set, its size should match the size of the matrix
+     * @param dm
+     *            the distance measure
+     */
+    public void fill(Dataset data, DistanceMeasure dm) {
+        fill(data, data, dm);
+    }
+
+    /**
+     * Fills this matrix with the distances between the instances of two data
+     * sets, so that cell (i,j) contains the distance between instance i of
+     * <code>a</code> and instance j of <code>b</code>. The work is spread over
+     * all processors. When both data sets are the same, only one triangle is
+     * calculated.
+     *
+     * @param a
+     *            the data set of the columns
+     * @param b
+     *            the data set of the rows
+     * @param dm
+     *            the distance measure
+     */
+    public void fill(Dataset a, Dataset b, DistanceMeasure dm) {
+        fill(a, b, dm, Parallel.context());
+    }
+
+    /**
+     * Fills this matrix with the distances between the instances of two data
+     * sets, using the threads of the given context.
+     *
+     * @see #fill(Dataset, Dataset, DistanceMeasure)
+     *
+     * @param a
+     *            the data set of the columns
+     * @param b
+     *            the data set of the rows
+     * @param dm
+     *            the distance measure
+     * @param context
+     *            the context that runs the calculation
+     */
+    public void fill(Dataset a, Dataset b, DistanceMeasure dm, ParallelContext context) {
+        Pairwise.fill(this, a, b, dm, context);
+    }
+
+    /**
+     * Creates a matrix with the distances between all pairs of instances of
+     * the data set. Distance measures are assumed to be symmetric, so only
+     * one triangle is calculated and stored.
+     *
+     * @param data
+     *            the data set
+     * @param dm
+     *            the distance measure
+     * @return a symmetric matrix with all pairwise distances
+     */
+    public static Matrix distances(Dataset data, DistanceMeasure dm) {
+        return pairwise(data, data, dm);
+    }
+
+    /**
+     * Creates a matrix with the distances between the instances of two data
+     * sets: cell (i,j) contains the distance between instance i of
+     * <code>a</code> and instance j of <code>b</code>. When both are the same
+     * data set, the matrix is symmetric and only one triangle is calculated
+     * and stored.
+     *
+     * @param a
+     *            the data set of the columns
+     * @param b
+     *            the data set of the rows
+     * @param dm
+     *            the distance measure
+     * @return a matrix with all pairwise distances
+     */
+    public static Matrix pairwise(Dataset a, Dataset b, DistanceMeasure dm) {
+        Matrix out = a == b ? createSymmetric(a.size()) : create(a.size(), b.size());
+        out.fill(a, b, dm);
+        return out;
+    }
 }
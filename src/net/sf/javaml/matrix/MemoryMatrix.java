@@ -13,8 +13,12 @@ final class MemoryMatrix extends Matrix {
 
     double[][] matrix;
 
+    /* kept apart, a matrix without columns still has rows */
+    private final int rows;
+
     public MemoryMatrix(int cols, int rows) {
         matrix = new double[cols][rows];
+        this.rows = rows;
     }
 
     @Override
@@ -35,7 +39,7 @@ final class MemoryMatrix extends Matrix {
 
     @Override
     public int rows() {
-        return matrix[0].length;
+        return rows;
     }
 
 }
@@ -0,0 +1,192 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.matrix;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+import net.sf.javaml.distance.CosineDistance;
+import net.sf.javaml.distance.CosineSimilarity;
+import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.distance.EuclideanDistance;
+import net.sf.javaml.metrics.Metrics;
+import net.sf.javaml.utils.Parallel;
+import net.sf.javaml.utils.ParallelContext;
+
+/**
+ * Calculates the distances between all pairs of instances of two data sets in
+ * square blocks of {@value #BLOCK} by {@value #BLOCK} instances.
+ *
+ * A block only touches a few dozen instances of each data set, which stay in
+ * the processor cache while all their pairs are measured. The blocks are
+ * independent and are spread over the threads of a {@link ParallelContext}.
+ * When both data sets are the same only the blocks on and below the diagonal
+ * are calculated, distance measures are assumed to be symmetric.
+ *
+ * For the Euclidean distance and the cosine similarity and distance the values
+ * of dense data sets are first copied to arrays together with their squared
+ * norms, so that a pair only needs a dot product: the squared Euclidean
+ * distance is ||x||^2+||y||^2-2x.y. Pairs that are so close that this
+ * difference loses its precision are measured directly. Other distance
+ * measures, sparse instances and missing values use
+ * {@link DistanceMeasure#measure(Instance, Instance)}.
+ *
+ * @author Thomas Abeel
+ *
+ */
+final class Pairwise {
+
+    static final int BLOCK = 64;
+
+    /*
+     * Below this fraction of the squared norms the squared Euclidean distance
+     * is calculated from the differences instead of the dot product.
+     */
+    private static final double CANCELLATION = 1e-4;
+
+    private static final int GENERIC = 0, EUCLIDEAN = 1, COSINE_SIMILARITY = 2, COSINE_DISTANCE = 3;
+
+    private Pairwise() {
+        // utility class
+    }
+
+    /**
+     * Puts the distance between instance i of <code>a</code> and instance j
+     * of <code>b</code> in cell (i,j) of the matrix.
+     */
+    static void fill(final Matrix out, Dataset a, Dataset b, final DistanceMeasure dm, ParallelContext pc) {
+        if (out.columns() != a.size() || out.rows() != b.size())
+            throw new IllegalArgumentException("The matrix should have a column for each instance of the first data set and a row for each instance of the second");
+        if (out.isSymmetric() && a != b)
+            throw new IllegalArgumentException("A symmetric matrix can only be filled with the distances within one data set");
+        long start = Metrics.start();
+        final boolean triangle = a == b;
+        final boolean mirror = triangle && !out.isSymmetric();
+        final int blockCols = (a.size() + BLOCK - 1) / BLOCK;
+        final int blockRows = (b.size() + BLOCK - 1) / BLOCK;
+        long blocks = triangle ? (long) blockCols * (blockCols + 1) / 2 : (long) blockCols * blockRows;
+
+        final Vectors va = Vectors.of(a, dm);
+        final Vectors vb = va == null ? null : triangle ? va : Vectors.of(b, dm);
+        final int kind = vb == null ? GENERIC : kind(dm);
+        final Dataset da = a, db = b;
+        pc.forRange((int) blocks, 1, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int block = from; block < to; block++) {
+                    int bc, br;
+                    if (triangle) {
+                        /* the blocks on and below the diagonal, column by column */
+                        bc = (int) ((Math.sqrt(8.0 * block + 1) - 1) / 2);
+                        while ((long) bc * (bc + 1) / 2 > block)
+                            bc--;
+                        while ((long) (bc + 1) * (bc + 2) / 2 <= block)
+                            bc++;
+                        br = block - bc * (bc + 1) / 2;
+                    } else {
+                        bc = block / blockRows;
+                        br = block % blockRows;
+                    }
+                    int colEnd = Math.min(da.size(), (bc + 1) * BLOCK);
+                    int rowEnd = Math.min(db.size(), (br + 1) * BLOCK);
+                    for (int col = bc * BLOCK; col < colEnd; col++) {
+                        int end = triangle && bc == br ? col + 1 : rowEnd;
+                        Instance x = kind == GENERIC ? da.instance(col) : null;
+                        for (int row = br * BLOCK; row < end; row++) {
+                            double d;
+                            if (kind == GENERIC)
+                                d = dm.measure(x, db.instance(row));
+                            else
+                                d = measure(kind, va, col, vb, row);
+                            out.put(col, row, d);
+                            if (mirror && col != row)
+                                out.put(row, col, d);
+                        }
+                    }
+                }
+            }
+        });
+        Metrics.stop("matrix.pairwise", start);
+        Metrics.count("matrix.pairwise.distances", triangle ? (long) a.size() * (a.size() + 1) / 2 : (long) a.size()
+                * b.size());
+    }
+
+    private static int kind(DistanceMeasure dm) {
+        /* subclasses may measure something else, so only the classes themselves */
+        if (dm.getClass() == EuclideanDistance.class)
+            return EUCLIDEAN;
+        if (dm.getClass() == CosineSimilarity.class)
+            return COSINE_SIMILARITY;
+        if (dm.getClass() == CosineDistance.class)
+            return COSINE_DISTANCE;
+        return GENERIC;
+    }
+
+    private static double measure(int kind, Vectors va, int i, Vectors vb, int j) {
+        double[] x = va.values[i], y = vb.values[j];
+        if (x.length != y.length)
+            throw new RuntimeException("Both instances should contain the same number of values.");
+        double dot = 0;
+        for (int k = 0; k < x.length; k++)
+            dot += x[k] * y[k];
+        double nx = va.norms[i], ny = vb.norms[j];
+        if (kind == EUCLIDEAN) {
+            double sum = nx + ny - 2 * dot;
+            if (sum < CANCELLATION * (nx + ny)) {
+                sum = 0;
+                for (int k = 0; k < x.length; k++)
+                    sum += (y[k] - x[k]) * (y[k] - x[k]);
+            }
+            return Math.sqrt(sum);
+        }
+        /* the same operations as CosineSimilarity */
+        double cosSim = dot / (Math.sqrt(nx) * Math.sqrt(ny));
+        if (cosSim < 0)
+            cosSim = 0;
+        return kind == COSINE_SIMILARITY ? cosSim : 1 - cosSim;
+    }
+
+    /**
+     * The values and squared norms of a dense data set without missing
+     * values.
+     */
+    private static final class Vectors {
+
+        final double[][] values;
+
+        final double[] norms;
+
+        private Vectors(double[][] values, double[] norms) {
+            this.values = values;
+            this.norms = norms;
+        }
+
+        /**
+         * Returns the vectors of the data set, or null when the distance
+         * measure has no fast path or the data set does not qualify.
+         */
+        static Vectors of(Dataset data, DistanceMeasure dm) {
+            if (kind(dm) == GENERIC)
+                return null;
+            double[][] values = new double[data.size()][];
+            double[] norms = new double[data.size()];
+            for (int i = 0; i < data.size(); i++) {
+                Instance inst = data.instance(i);
+                if (inst instanceof SparseInstance)
+                    return null;
+                double[] v = new double[inst.noAttributes()];
+                double norm = 0;
+                for (int k = 0; k < v.length; k++) {
+                    v[k] = inst.value(k);
+                    if (Double.isNaN(v[k]) || Double.isInfinite(v[k]))
+                        return null;
+                    norm += v[k] * v[k];
+                }
+                values[i] = v;
+                norms[i] = norm;
+            }
+            return new Vectors(values, norms);
+        }
+    }
+}
@@ -6,27 +6,142 @@ package net.sf.javaml.matrix;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
- * A matrix that is stored in a file on disk.
- * 
+ * A matrix that is stored outside of the Java heap, in a memory-mapped file on
+ * disk or in direct buffers.
+ *
+ * The matrix is cut in square tiles of {@value #TILE} by {@value #TILE} cells
+ * and each tile is stored contiguously, so cells that are close in either
+ * direction are usually on the same pages. Symmetric matrices only store the
+ * tiles on and below the diagonal. Values can be stored in single precision to
+ * halve the size of the file.
+ *
+ * Direct buffers are not limited by the maximum heap size and are not moved by
+ * the garbage collector, but unlike a swap file they have to fit in the
+ * physical memory.
+ *
  * @author Thomas Abeel
- * 
+ *
  */
 final class SwapFileMatrix extends Matrix {
 
-    private RandomAccessFile matrix;
+    static final int TILE = 128;
 
-    private int rows;
+    private static final int TILE_BITS = 7;
 
-    private int cols;
+    private static final int TILE_CELLS = TILE * TILE;
+
+    /* 2^27 cells per mapped segment, a whole number of tiles */
+    private static final int SEGMENT_BITS = 27;
+
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final int rows;
+
+    private final int cols;
+
+    private final int tileRows;
+
+    private final boolean symmetric;
+
+    /* the swap file, null for direct buffers */
+    private final File swapFile;
+
+    private final RandomAccessFile file;
+
+    private DoubleBuffer[] doubles;
+
+    private FloatBuffer[] floats;
 
     public SwapFileMatrix(int cols, int rows) throws IOException {
+        this(cols, rows, false, false);
+    }
+
+    public SwapFileMatrix(int cols, int rows, boolean symmetric, boolean singlePrecision) throws IOException {
+        this(cols, rows, symmetric, singlePrecision, true);
+    }
+
+    /**
+     * Creates a matrix filled with zeros.
+     *
+     * @param mapped
+     *            store the matrix in a memory-mapped swap file, or else in
+     *            direct buffers
+     */
+    SwapFileMatrix(int cols, int rows, boolean symmetric, boolean singlePrecision, boolean mapped)
+            throws IOException {
+        if (symmetric && cols != rows)
+            throw new IllegalArgumentException("A symmetric matrix should be square");
         this.cols = cols;
         this.rows = rows;
-        File swapFile = File.createTempFile("swap", "matrix");
+        this.symmetric = symmetric;
+        int tileCols = (cols + TILE - 1) / TILE;
+        tileRows = (rows + TILE - 1) / TILE;
+        long tiles = symmetric ? ((long) tileCols * (tileCols + 1)) / 2 : (long) tileCols * tileRows;
+        long cells = tiles * TILE_CELLS;
+        int cellSize = singlePrecision ? 4 : 8;
+        int segments = (int) ((cells + SEGMENT_MASK) >>> SEGMENT_BITS);
+        if (singlePrecision)
+            floats = new FloatBuffer[segments];
+        else
+            doubles = new DoubleBuffer[segments];
+
+        if (!mapped) {
+            swapFile = null;
+            file = null;
+            for (int i = 0; i < segments; i++) {
+                long size = Math.min(1L << SEGMENT_BITS, cells - (((long) i) << SEGMENT_BITS));
+                store(i, ByteBuffer.allocateDirect((int) (size * cellSize)));
+            }
+            return;
+        }
+        swapFile = File.createTempFile("swap", "matrix");
         swapFile.deleteOnExit();
-        matrix = new RandomAccessFile(swapFile, "rw");
+        file = new RandomAccessFile(swapFile, "rw");
+        try {
+            file.setLength(cells * cellSize);
+            FileChannel channel = file.getChannel();
+            for (int i = 0; i < segments; i++) {
+                long start = ((long) i) << SEGMENT_BITS;
+                long size = Math.min(1L << SEGMENT_BITS, cells - start);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, start * cellSize, size
+                        * cellSize);
+                store(i, buffer);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void store(int segment, ByteBuffer buffer) {
+        buffer.order(ByteOrder.nativeOrder());
+        if (floats != null)
+            floats[segment] = buffer.asFloatBuffer();
+        else
+            doubles[segment] = buffer.asDoubleBuffer();
+    }
+
+    private long index(int col, int row) {
+        if (col < 0 || col >= cols || row < 0 || row >= rows)
+            throw new IndexOutOfBoundsException("Cell (" + col + "," + row + ") is outside a " + cols + "x" + rows
+                    + " matrix");
+        if (symmetric && col < row) {
+            int tmp = col;
+            col = row;
+            row = tmp;
+        }
+        int tileCol = col >>> TILE_BITS;
+        int tileRow = row >>> TILE_BITS;
+        long tile = symmetric ? ((long) tileCol * (tileCol + 1)) / 2 + tileRow : (long) tileCol * tileRows + tileRow;
+        return tile * TILE_CELLS + ((col & (TILE - 1)) << TILE_BITS) + (row & (TILE - 1));
     }
 
     @Override
@@ -34,32 +149,55 @@ final class SwapFileMatrix extends Matrix {
         return cols;
     }
 
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
     @Override
     public double get(int col, int row) {
-        try {
-            matrix.seek((col * row + row) * 8);
-            return matrix.readDouble();
-        } catch (IOException e) {
-            System.err.println("Something went wrong, but we return 0 anyway.");
-            return 0;
-        }
+        long index = index(col, row);
+        int segment = (int) (index >>> SEGMENT_BITS);
+        int offset = (int) (index & SEGMENT_MASK);
+        if (doubles != null)
+            return doubles[segment].get(offset);
+        else
+            return floats[segment].get(offset);
     }
 
     @Override
     public void put(int col, int row, double value) {
-        try {
-            matrix.seek((col * row + row) * 8);
-            matrix.writeDouble(value);
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-        
+        long index = index(col, row);
+        int segment = (int) (index >>> SEGMENT_BITS);
+        int offset = (int) (index & SEGMENT_MASK);
+        if (doubles != null)
+            doubles[segment].put(offset, value);
+        else
+            floats[segment].put(offset, (float) value);
     }
 
+    /**
+     * Closes and deletes the swap file, or releases the direct buffers. The
+     * matrix can no longer be used afterwards.
+     */
     @Override
-    public int rows() {
-        return rows;
+    public void close() {
+        doubles = null;
+        floats = null;
+        if (file == null)
+            return;
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("unable to close swap file '" + swapFile.getPath() + "'");
+        }
+        if (!swapFile.delete())
+            swapFile.deleteOnExit();
     }
 
 }
@@ -0,0 +1,53 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.matrix;
+
+/**
+ * A memory resident symmetric matrix. Only the lower triangle, including the
+ * diagonal, is stored, which takes about half the memory of a full matrix.
+ *
+ */
+final class SymmetricMemoryMatrix extends Matrix {
+
+    /* Row i holds the cells (0,i) to (i,i) */
+    private double[][] matrix;
+
+    public SymmetricMemoryMatrix(int size) {
+        matrix = new double[size][];
+        for (int i = 0; i < size; i++)
+            matrix[i] = new double[i + 1];
+    }
+
+    @Override
+    public int columns() {
+        return matrix.length;
+    }
+
+    @Override
+    public int rows() {
+        return matrix.length;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    @Override
+    public double get(int col, int row) {
+        if (col > row)
+            return matrix[col][row];
+        else
+            return matrix[row][col];
+    }
+
+    @Override
+    public void put(int col, int row, double value) {
+        if (col > row)
+            matrix[col][row] = value;
+        else
+            matrix[row][col] = value;
+    }
+
+}
@@ -0,0 +1,24 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.metrics;
+
+/**
+ * Counts events, such as distance evaluations or cache hits.
+ * 
+ * @see MetricsRegistry#counter(String)
+ * 
+ * @author Thomas Abeel
+ * 
+ */
+public interface Counter {
+
+    /**
+     * Adds to the count.
+     * 
+     * @param n
+     *            the number of events
+     */
+    public void add(long n);
+
+}
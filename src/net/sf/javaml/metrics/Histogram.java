@@ -0,0 +1,22 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.metrics;
+
+/**
+ * Records the distribution of a value, such as the number of iterations until
+ * an algorithm converged.
+ * 
+ * @see MetricsRegistry#histogram(String)
+ * 
+ * @author Thomas Abeel
+ * 
+ */
+public interface Histogram {
+
+    /**
+     * Records a value.
+     */
+    public void record(double value);
+
+}
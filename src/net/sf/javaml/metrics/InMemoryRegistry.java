@@ -0,0 +1,174 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the metrics in memory. The values can be read by name or handed to a
+ * {@link MetricsExporter}, for example periodically.
+ * 
+ * @author Thomas Abeel
+ * 
+ */
+public class InMemoryRegistry implements MetricsRegistry {
+
+    private final ConcurrentHashMap<String, Count> counters = new ConcurrentHashMap<String, Count>();
+
+    private final ConcurrentHashMap<String, Time> timers = new ConcurrentHashMap<String, Time>();
+
+    private final ConcurrentHashMap<String, Values> histograms = new ConcurrentHashMap<String, Values>();
+
+    private static class Count implements Counter {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void add(long n) {
+            count.addAndGet(n);
+        }
+    }
+
+    private static class Time implements Timer {
+        private final AtomicLong count = new AtomicLong(), total = new AtomicLong(), max = new AtomicLong();
+
+        @Override
+        public void record(long nanos) {
+            count.incrementAndGet();
+            total.addAndGet(nanos);
+            long m;
+            while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos))
+                ;
+        }
+    }
+
+    private static class Values implements Histogram {
+        private long count;
+
+        private double sum, min = Double.NaN, max = Double.NaN;
+
+        @Override
+        public synchronized void record(double value) {
+            if (count == 0 || value < min)
+                min = value;
+            if (count == 0 || value > max)
+                max = value;
+            count++;
+            sum += value;
+        }
+
+        synchronized void export(String name, MetricsExporter out) {
+            out.histogram(name, count, sum, min, max);
+        }
+    }
+
+    @Override
+    public Counter counter(String name) {
+        Count c = counters.get(name);
+        if (c == null) {
+            counters.putIfAbsent(name, new Count());
+            c = counters.get(name);
+        }
+        return c;
+    }
+
+    @Override
+    public Timer timer(String name) {
+        Time t = timers.get(name);
+        if (t == null) {
+            timers.putIfAbsent(name, new Time());
+            t = timers.get(name);
+        }
+        return t;
+    }
+
+    @Override
+    public Histogram histogram(String name) {
+        Values h = histograms.get(name);
+        if (h == null) {
+            histograms.putIfAbsent(name, new Values());
+            h = histograms.get(name);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the value of a counter, 0 when it does not exist.
+     */
+    public long count(String counter) {
+        Count c = counters.get(counter);
+        return c == null ? 0 : c.count.get();
+    }
+
+    /**
+     * Returns the number of calls recorded by a timer or the number of values
+     * of a histogram, 0 when it does not exist.
+     */
+    public long calls(String name) {
+        Time t = timers.get(name);
+        if (t != null)
+            return t.count.get();
+        Values h = histograms.get(name);
+        if (h == null)
+            return 0;
+        synchronized (h) {
+            return h.count;
+        }
+    }
+
+    /**
+     * Hands the values of all metrics to an exporter, sorted by name.
+     */
+    public void export(MetricsExporter out) {
+        for (Map.Entry<String, Count> e : new TreeMap<String, Count>(counters).entrySet())
+            out.counter(e.getKey(), e.getValue().count.get());
+        for (Map.Entry<String, Time> e : new TreeMap<String, Time>(timers).entrySet()) {
+            Time t = e.getValue();
+            out.timer(e.getKey(), t.count.get(), t.total.get(), t.max.get());
+        }
+        for (Map.Entry<String, Values> e : new TreeMap<String, Values>(histograms).entrySet())
+            e.getValue().export(e.getKey(), out);
+    }
+
+    /**
+     * Removes all metrics.
+     */
+    public void clear() {
+        counters.clear();
+        timers.clear();
+        histograms.clear();
+    }
+
+    /**
+     * Returns the values of all metrics, one per line.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        export(new MetricsExporter() {
+            @Override
+            public void counter(String name, long count) {
+                sb.append(name).append(": count=").append(count).append('\n');
+            }
+
+            @Override
+            public void timer(String name, long count, long totalNanos, long maxNanos) {
+                sb.append(name).append(": calls=").append(count).append(", mean=").append(
+                        count == 0 ? 0 : totalNanos / count / 1e6).append(" ms, max=").append(maxNanos / 1e6).append(
+                        " ms\n");
+            }
+
+            @Override
+            public void histogram(String name, long count, double sum, double min, double max) {
+                sb.append(name).append(": count=").append(count).append(", mean=").append(
+                        count == 0 ? Double.NaN : sum / count).append(", min=").append(min).append(", max=")
+                        .append(max).append('\n');
+            }
+        });
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,226 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.metrics;
+
+import java.util.Map;
+
+import net.sf.javaml.classification.Classifier;
+import net.sf.javaml.clustering.Clusterer;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.distance.DistanceMeasure;
+import net.sf.javaml.featureselection.FeatureScoring;
+import net.sf.javaml.filter.DatasetFilter;
+
+/**
+ * Wraps algorithms so that each call is timed or counted in the registry set
+ * in {@link Metrics}. The metrics are named after the wrapper, for example
+ * <code>name.classify</code> for the calls to
+ * {@link Classifier#classify(Instance)}. Like the rest of the
+ * instrumentation, the wrappers do not measure anything when no registry is
+ * set.
+ *
+ * <pre>
+ * Classifier knn = Instrumented.classifier(new KNearestNeighbors(5), &quot;knn&quot;);
+ * </pre>
+ *
+ * @author Thomas Abeel
+ *
+ */
+public final class Instrumented {
+
+    private Instrumented() {
+        // utility class
+    }
+
+    /**
+     * Times the training, <code>name.build</code>, and the predictions,
+     * <code>name.classify</code> and <code>name.classDistribution</code>, of
+     * a classifier.
+     */
+    public static Classifier classifier(Classifier classifier, String name) {
+        return new InstrumentedClassifier(classifier, name);
+    }
+
+    /**
+     * Times the calls to a clusterer, <code>name.cluster</code>.
+     */
+    public static Clusterer clusterer(Clusterer clusterer, String name) {
+        return new InstrumentedClusterer(clusterer, name);
+    }
+
+    /**
+     * Times the training, <code>name.build</code>, and the application,
+     * <code>name.filter</code>, of a filter.
+     */
+    public static DatasetFilter filter(DatasetFilter filter, String name) {
+        return new InstrumentedFilter(filter, name);
+    }
+
+    /**
+     * Times the training of a feature scoring, <code>name.build</code>.
+     */
+    public static FeatureScoring scoring(FeatureScoring scoring, String name) {
+        return new InstrumentedScoring(scoring, name);
+    }
+
+    /**
+     * Counts the evaluations of a distance measure,
+     * <code>name.evaluations</code>.
+     */
+    public static DistanceMeasure distance(DistanceMeasure dm, String name) {
+        return new InstrumentedDistance(dm, name);
+    }
+
+    private static class InstrumentedClassifier implements Classifier {
+
+        private static final long serialVersionUID = 2918461395724815206L;
+
+        private final Classifier classifier;
+
+        private final String build, classify, classDistribution;
+
+        InstrumentedClassifier(Classifier classifier, String name) {
+            this.classifier = classifier;
+            this.build = name + ".build";
+            this.classify = name + ".classify";
+            this.classDistribution = name + ".classDistribution";
+        }
+
+        @Override
+        public void buildClassifier(Dataset data) {
+            long start = Metrics.start();
+            classifier.buildClassifier(data);
+            Metrics.stop(build, start);
+        }
+
+        @Override
+        public Object classify(Instance instance) {
+            long start = Metrics.start();
+            Object out = classifier.classify(instance);
+            Metrics.stop(classify, start);
+            return out;
+        }
+
+        @Override
+        public Map<Object, Double> classDistribution(Instance instance) {
+            long start = Metrics.start();
+            Map<Object, Double> out = classifier.classDistribution(instance);
+            Metrics.stop(classDistribution, start);
+            return out;
+        }
+    }
+
+    private static class InstrumentedClusterer implements Clusterer {
+
+        private final Clusterer clusterer;
+
+        private final String cluster;
+
+        InstrumentedClusterer(Clusterer clusterer, String name) {
+            this.clusterer = clusterer;
+            this.cluster = name + ".cluster";
+        }
+
+        @Override
+        public Dataset[] cluster(Dataset data) {
+            long start = Metrics.start();
+            Dataset[] out = clusterer.cluster(data);
+            Metrics.stop(cluster, start);
+            return out;
+        }
+    }
+
+    private static class InstrumentedFilter implements DatasetFilter {
+
+        private final DatasetFilter filter;
+
+        private final String build, apply;
+
+        InstrumentedFilter(DatasetFilter filter, String name) {
+            this.filter = filter;
+            this.build = name + ".build";
+            this.apply = name + ".filter";
+        }
+
+        @Override
+        public void build(Dataset data) {
+            long start = Metrics.start();
+            filter.build(data);
+            Metrics.stop(build, start);
+        }
+
+        @Override
+        public void filter(Dataset data) {
+            long start = Metrics.start();
+            filter.filter(data);
+            Metrics.stop(apply, start);
+        }
+    }
+
+    private static class InstrumentedScoring implements FeatureScoring {
+
+        private final FeatureScoring scoring;
+
+        private final String build;
+
+        InstrumentedScoring(FeatureScoring scoring, String name) {
+            this.scoring = scoring;
+            this.build = name + ".build";
+        }
+
+        @Override
+        public void build(Dataset data) {
+            long start = Metrics.start();
+            scoring.build(data);
+            Metrics.stop(build, start);
+        }
+
+        @Override
+        public double score(int attribute) {
+            return scoring.score(attribute);
+        }
+
+        @Override
+        public int noAttributes() {
+            return scoring.noAttributes();
+        }
+    }
+
+    private static class InstrumentedDistance implements DistanceMeasure {
+
+        private static final long serialVersionUID = -6032714587298436714L;
+
+        private final DistanceMeasure dm;
+
+        private final String evaluations;
+
+        InstrumentedDistance(DistanceMeasure dm, String name) {
+            this.dm = dm;
+            this.evaluations = name + ".evaluations";
+        }
+
+        @Override
+        public double measure(Instance x, Instance y) {
+            Metrics.count(evaluations, 1);
+            return dm.measure(x, y);
+        }
+
+        @Override
+        public boolean compare(double x, double y) {
+            return dm.compare(x, y);
+        }
+
+        @Override
+        public double getMinValue() {
+            return dm.getMinValue();
+        }
+
+        @Override
+        public double getMaxValue() {
+            return dm.getMaxValue();
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.metrics;
+
+/**
+ * The entry point of the instrumentation of the library. Algorithms report
+ * what they did to the registry that is set here. No registry is set by
+ * default, then instrumentation is disabled and each instrumented call only
+ * checks a field.
+ * 
+ * <pre>
+ * InMemoryRegistry registry = new InMemoryRegistry();
+ * Metrics.setRegistry(registry);
+ * new KMeans(4).cluster(data);
+ * System.out.println(registry);
+ * </pre>
+ * 
+ * Timing a call:
+ * 
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.stop(&quot;kmeans.cluster&quot;, start);
+ * </pre>
+ * 
+ * @see Instrumented
+ * 
+ * @author Thomas Abeel
+ * 
+ */
+public final class Metrics {
+
+    private static volatile MetricsRegistry registry = null;
+
+    private Metrics() {
+        // utility class
+    }
+
+    /**
+     * Sets the registry that the library reports to.
+     * 
+     * @param registry
+     *            the registry, null to disable instrumentation
+     */
+    public static void setRegistry(MetricsRegistry registry) {
+        Metrics.registry = registry;
+    }
+
+    /**
+     * Returns the registry that the library reports to, or null.
+     */
+    public static MetricsRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * Returns whether a registry is set.
+     */
+    public static boolean enabled() {
+        return registry != null;
+    }
+
+    /**
+     * Returns the start time of a call to time, or 0 when instrumentation is
+     * disabled.
+     */
+    public static long start() {
+        return registry == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a call.
+     * 
+     * @param timer
+     *            the name of the timer
+     * @param start
+     *            the value returned by {@link #start()} at the start of the
+     *            call
+     */
+    public static void stop(String timer, long start) {
+        MetricsRegistry r = registry;
+        if (r != null && start != 0)
+            r.timer(timer).record(System.nanoTime() - start);
+    }
+
+    /**
+     * Adds to a counter.
+     * 
+     * @param counter
+     *            the name of the counter
+     * @param n
+     *            the number of events
+     */
+    public static void count(String counter, long n) {
+        MetricsRegistry r = registry;
+        if (r != null)
+            r.counter(counter).add(n);
+    }
+
+    /**
+     * Records a value in a histogram.
+     * 
+     * @param histogram
+     *            the name of the histogram
+     * @param value
+     *            the value
+     */
+    public static void record(String histogram, double value) {
+        MetricsRegistry r = registry;
+        if (r != null)
+            r.histogram(histogram).record(value);
+    }
+
+}
@@ -0,0 +1,48 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.metrics;
+
+/**
+ * Receives the values of the metrics of an {@link InMemoryRegistry}, to pass
+ * them on to a monitoring system.
+ * 
+ * @see InMemoryRegistry#export(MetricsExporter)
+ * 
+ * @author Thomas Abeel
+ * 
+ */
+public interface MetricsExporter {
+
+    /**
+     * Receives the value of a counter.
+     */
+    public void counter(String name, long count);
+
+    /**
+     * Receives the values of a timer.
+     * 
+     * @param count
+     *            the number of calls
+     * @param totalNanos
+     *            the total duration of the calls, in nanoseconds
+     * @param maxNanos
+     *            the longest call, in nanoseconds
+     */
+    public void timer(String name, long count, long totalNanos, long maxNanos);
+
+    /**
+     * Receives the values of a histogram.
+     * 
+     * @param count
+     *            the number of values
+     * @param sum
+     *            the sum of the values
+     * @param min
+     *            the smallest value, NaN when there are none
+     * @param max
+     *            the largest value, NaN when there are none
+     */
+    public void histogram(String name, long count, double sum, double min, double max);
+
+}
@@ -0,0 +1,28 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.metrics;
+
+/**
+ * Provides the metrics that the library reports to. Implement this interface
+ * to send the metrics to a monitoring system directly, or use an
+ * {@link InMemoryRegistry} and export its values.
+ * 
+ * The same name should always give the same metric. The methods are called
+ * from several threads at once, on every instrumented call, so they should be
+ * fast and thread-safe.
+ * 
+ * @see Metrics#setRegistry(MetricsRegistry)
+ * 
+ * @author Thomas Abeel
+ * 
+ */
+public interface MetricsRegistry {
+
+    public Counter counter(String name);
+
+    public Timer timer(String name);
+
+    public Histogram histogram(String name);
+
+}
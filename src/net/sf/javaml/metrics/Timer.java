@@ -0,0 +1,25 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.metrics;
+
+/**
+ * Records the duration of calls.
+ * 
+ * @see MetricsRegistry#timer(String)
+ * @see Metrics#start()
+ * 
+ * @author Thomas Abeel
+ * 
+ */
+public interface Timer {
+
+    /**
+     * Records the duration of a call.
+     * 
+     * @param nanos
+     *            the duration in nanoseconds
+     */
+    public void record(long nanos);
+
+}
@@ -0,0 +1,369 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+
+/**
+ * Keeps the minimum, maximum, mean and standard deviation of each attribute of
+ * a data set. The statistics are calculated in a single pass and can be
+ * updated incrementally when instances are added to the data set.
+ *
+ * Missing values are ignored. The standard deviation is the population
+ * standard deviation, as in
+ * {@link DatasetTools#standardDeviation(Dataset, Instance)}.
+ *
+ * Sparse instances only cost time for the values they store. The attributes
+ * that are not set are counted per attribute and added in one batch with the
+ * default value before the statistics are used.
+ *
+ * @see DatasetTools
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class AttributeStatistics implements Serializable {
+
+    private static final long serialVersionUID = 2466017226823427542L;
+
+    private int size = 0;
+
+    private double[] min = new double[0];
+
+    private double[] max = new double[0];
+
+    private double[] mean = new double[0];
+
+    /* Sum of squared differences from the mean */
+    private double[] m2 = new double[0];
+
+    private int[] count = new int[0];
+
+    /*
+     * Sparse instances whose default values have not been added yet. They all
+     * have the same default value and number of attributes, stored counts the
+     * values they do set for each attribute.
+     */
+    private int pending = 0;
+
+    private double pendingValue;
+
+    private int pendingAttributes;
+
+    private int[] stored = new int[0];
+
+    /**
+     * Creates empty statistics.
+     */
+    public AttributeStatistics() {
+    }
+
+    /**
+     * Calculates the statistics of all instances in the data set.
+     *
+     * @param data
+     *            the data set
+     */
+    public AttributeStatistics(Dataset data) {
+        for (Instance i : data)
+            add(i);
+    }
+
+    private void ensureCapacity(int noAttributes) {
+        int old = min.length;
+        if (noAttributes <= old)
+            return;
+        flush();
+        stored = new int[noAttributes];
+        min = Arrays.copyOf(min, noAttributes);
+        max = Arrays.copyOf(max, noAttributes);
+        mean = Arrays.copyOf(mean, noAttributes);
+        m2 = Arrays.copyOf(m2, noAttributes);
+        count = Arrays.copyOf(count, noAttributes);
+        Arrays.fill(min, old, noAttributes, Double.NaN);
+        Arrays.fill(max, old, noAttributes, Double.NaN);
+    }
+
+    /**
+     * Adds the values of an instance to the statistics.
+     *
+     * @param inst
+     *            the instance to add
+     */
+    public void add(Instance inst) {
+        int n = inst.noAttributes();
+        ensureCapacity(n);
+        if (inst instanceof SparseInstance) {
+            addSparse((SparseInstance) inst, n);
+            return;
+        }
+        for (int i = 0; i < n; i++)
+            add(i, inst.value(i));
+        size++;
+    }
+
+    private void addSparse(SparseInstance inst, int n) {
+        double value = inst.getDefaultValue();
+        if (pending > 0 && (Double.compare(value, pendingValue) != 0 || n != pendingAttributes))
+            flush();
+        pendingValue = value;
+        pendingAttributes = n;
+        pending++;
+        for (Map.Entry<Integer, Double> e : inst.entrySet()) {
+            int i = e.getKey();
+            if (i < n) {
+                stored[i]++;
+                add(i, e.getValue());
+            }
+        }
+        size++;
+    }
+
+    /* Adds the default values of the pending sparse instances */
+    private void flush() {
+        if (pending == 0)
+            return;
+        int p = pending;
+        pending = 0;
+        for (int i = 0; i < pendingAttributes; i++) {
+            int c = p - stored[i];
+            stored[i] = 0;
+            if (c == 0 || Double.isNaN(pendingValue))
+                continue;
+            double val = pendingValue;
+            int total = count[i] + c;
+            if (count[i] == 0) {
+                min[i] = val;
+                max[i] = val;
+            } else {
+                min[i] = Math.min(min[i], val);
+                max[i] = Math.max(max[i], val);
+            }
+            /* merge with a batch of c equal values */
+            double delta = val - mean[i];
+            m2[i] += delta * delta * count[i] * c / total;
+            mean[i] += delta * c / total;
+            count[i] = total;
+        }
+    }
+
+    /**
+     * Adds the values of an array to the statistics, as if it were an
+     * instance.
+     *
+     * @param values
+     *            the values to add
+     */
+    public void add(double[] values) {
+        ensureCapacity(values.length);
+        for (int i = 0; i < values.length; i++)
+            add(i, values[i]);
+        size++;
+    }
+
+    private void add(int i, double val) {
+        if (Double.isNaN(val))
+            return;
+        int c = ++count[i];
+        if (c == 1) {
+            min[i] = val;
+            max[i] = val;
+        } else if (val < min[i])
+            min[i] = val;
+        else if (val > max[i])
+            max[i] = val;
+        /* Welford's update */
+        double delta = val - mean[i];
+        mean[i] += delta / c;
+        m2[i] += delta * (val - mean[i]);
+    }
+
+    /**
+     * Adds the statistics of another part of the data set to these
+     * statistics. This allows to calculate the statistics of parts of a data
+     * set in parallel.
+     *
+     * @param other
+     *            the statistics to add
+     */
+    public void merge(AttributeStatistics other) {
+        ensureCapacity(other.noAttributes());
+        flush();
+        other.flush();
+        for (int i = 0; i < other.noAttributes(); i++) {
+            int c = other.count[i];
+            if (c == 0)
+                continue;
+            int total = count[i] + c;
+            if (count[i] == 0) {
+                min[i] = other.min[i];
+                max[i] = other.max[i];
+            } else {
+                min[i] = Math.min(min[i], other.min[i]);
+                max[i] = Math.max(max[i], other.max[i]);
+            }
+            double delta = other.mean[i] - mean[i];
+            m2[i] += other.m2[i] + delta * delta * count[i] * c / total;
+            mean[i] += delta * c / total;
+            count[i] = total;
+        }
+        size += other.size;
+    }
+
+    /**
+     * Returns the statistics of the values after the linear transformation
+     * scale*x+shift of each attribute, without looking at the values again.
+     *
+     * The transformed minimum and maximum are given separately, so they can
+     * be calculated with exactly the same operations as the transformed
+     * values. Otherwise rounding could make them differ slightly from the
+     * actual extremes.
+     *
+     * @param scale
+     *            the scale of each attribute
+     * @param shift
+     *            the value added to each attribute after scaling
+     * @param low
+     *            the transformed minimum of each attribute
+     * @param high
+     *            the transformed maximum of each attribute
+     * @return the statistics of the transformed values
+     */
+    public AttributeStatistics linear(double[] scale, double[] shift, double[] low, double[] high) {
+        flush();
+        AttributeStatistics out = new AttributeStatistics();
+        int n = noAttributes();
+        out.ensureCapacity(n);
+        out.size = size;
+        for (int i = 0; i < n; i++) {
+            double a = scale[i], b = shift[i];
+            out.count[i] = count[i];
+            if (count[i] == 0)
+                continue;
+            out.min[i] = Math.min(low[i], high[i]);
+            out.max[i] = Math.max(low[i], high[i]);
+            out.mean[i] = a * mean[i] + b;
+            out.m2[i] = a * a * m2[i];
+        }
+        return out;
+    }
+
+    /**
+     * Returns whether all values that have been added are finite, so no value
+     * was missing or infinite.
+     *
+     * @return true if all values were finite
+     */
+    public boolean isFinite() {
+        flush();
+        for (int i = 0; i < count.length; i++) {
+            if (count[i] != size || Double.isInfinite(min[i]) || Double.isInfinite(max[i]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Brings the statistics up to date with the data set. If the data set has
+     * grown since the statistics were calculated, only the new instances at
+     * the end of the data set are added. Otherwise the statistics are
+     * recalculated.
+     *
+     * Changes to the values of instances that were already added are not
+     * detected, use {@link #reset()} first in that case.
+     *
+     * @param data
+     *            the data set these statistics were calculated for
+     */
+    public void update(Dataset data) {
+        if (data.size() < size)
+            reset();
+        for (int i = size; i < data.size(); i++)
+            add(data.instance(i));
+    }
+
+    /**
+     * Removes all values from the statistics.
+     */
+    public void reset() {
+        size = 0;
+        pending = 0;
+        Arrays.fill(stored, 0);
+        Arrays.fill(min, Double.NaN);
+        Arrays.fill(max, Double.NaN);
+        Arrays.fill(mean, 0);
+        Arrays.fill(m2, 0);
+        Arrays.fill(count, 0);
+    }
+
+    /**
+     * Returns the number of instances that have been added.
+     *
+     * @return the number of instances
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of attributes of the largest instance that has been
+     * added.
+     *
+     * @return the number of attributes
+     */
+    public int noAttributes() {
+        return min.length;
+    }
+
+    /**
+     * Returns the number of values that are not missing for an attribute.
+     */
+    public int count(int attribute) {
+        flush();
+        return count[attribute];
+    }
+
+    public double min(int attribute) {
+        flush();
+        return min[attribute];
+    }
+
+    public double max(int attribute) {
+        flush();
+        return max[attribute];
+    }
+
+    /**
+     * Returns the difference between the maximum and the minimum.
+     */
+    public double range(int attribute) {
+        flush();
+        return max[attribute] - min[attribute];
+    }
+
+    /**
+     * Returns the value halfway between the minimum and the maximum.
+     */
+    public double midrange(int attribute) {
+        flush();
+        return (max[attribute] + min[attribute]) / 2;
+    }
+
+    public double mean(int attribute) {
+        flush();
+        return count[attribute] == 0 ? Double.NaN : mean[attribute];
+    }
+
+    public double standardDeviation(int attribute) {
+        flush();
+        return count[attribute] == 0 ? Double.NaN : Math.sqrt(m2[attribute] / count[attribute]);
+    }
+
+}
@@ -0,0 +1,33 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools;
+
+import java.io.IOException;
+
+/**
+ * A trained model that can be stored in the binary model format of
+ * {@link Serial}. Each implementation also has a static method
+ * <code>read(ModelInput)</code> that reads back what <code>write</code>
+ * wrote.
+ *
+ * @see ModelOutput
+ * @see ModelInput
+ *
+ * @author Thomas Abeel
+ *
+ */
+public interface BinaryModel {
+
+    /**
+     * Writes the state that is needed to use the model, but not the training
+     * data.
+     *
+     * @param out
+     *            the output to write to
+     * @throws IOException
+     *             when writing fails
+     */
+    public void write(ModelOutput out) throws IOException;
+
+}
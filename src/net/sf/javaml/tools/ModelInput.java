@@ -0,0 +1,255 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a model in the binary model format written by {@link ModelOutput}.
+ *
+ * The file is memory mapped, arrays are copied from the mapping in bulk. As
+ * the mapping is backed by the page cache, processes that load the same model
+ * file do not each read it from disk.
+ *
+ * Reading past the end of a truncated or malformed file fails with an
+ * {@link IOException}.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class ModelInput {
+
+    private final ByteBuffer data;
+
+    private final int version;
+
+    private final String type;
+
+    /**
+     * Opens a model file and reads its header.
+     *
+     * @throws IOException
+     *             when the file is not a model file, or is of a later version
+     *             of the format
+     */
+    public ModelInput(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Model files over 2GB are not supported: " + file);
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            in.close();
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (!hasMagic(data))
+            throw new IOException("Not a model file: " + file);
+        data.position(ModelOutput.MAGIC.length);
+        version = readInt();
+        if (version > ModelOutput.VERSION)
+            throw new IOException("Unsupported model version " + version + ": " + file);
+        readInt();
+        type = readString();
+    }
+
+    private static boolean hasMagic(ByteBuffer b) {
+        if (b.limit() < ModelOutput.MAGIC.length)
+            return false;
+        for (int i = 0; i < ModelOutput.MAGIC.length; i++)
+            if (b.get(i) != ModelOutput.MAGIC[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns whether a file starts with the magic of the model format.
+     */
+    public static boolean isModel(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] head = new byte[ModelOutput.MAGIC.length];
+            int n = 0;
+            while (n < head.length) {
+                int r = in.read(head, n, head.length - n);
+                if (r < 0)
+                    return false;
+                n += r;
+            }
+            return hasMagic(ByteBuffer.wrap(head));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the version of the format the file was written in.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Returns the name of the type of the model.
+     */
+    public String type() {
+        return type;
+    }
+
+    private static IOException truncated(RuntimeException e) {
+        IOException io = new IOException("Truncated or malformed model file");
+        io.initCause(e);
+        return io;
+    }
+
+    /* Fails before a large array is allocated for a length that is not in the file */
+    private void need(long bytes) throws IOException {
+        if (bytes < 0 || bytes > data.remaining())
+            throw new IOException("Truncated or malformed model file: " + bytes + " bytes expected, "
+                    + data.remaining() + " left");
+    }
+
+    private void align() throws IOException {
+        int p = (data.position() + 7) & ~7;
+        need(p - data.position());
+        data.position(p);
+    }
+
+    public int readInt() throws IOException {
+        try {
+            return data.getInt();
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    public long readLong() throws IOException {
+        try {
+            return data.getLong();
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    public double readDouble() throws IOException {
+        try {
+            return data.getDouble();
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    private byte readByte() throws IOException {
+        try {
+            return data.get();
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    public String readString() throws IOException {
+        return new String(readBytes(), ModelOutput.UTF8);
+    }
+
+    private byte[] readBytes() throws IOException {
+        int n = readInt();
+        need(n);
+        byte[] b = new byte[n];
+        data.get(b);
+        return b;
+    }
+
+    public int[] readInts() throws IOException {
+        int n = readInt();
+        if (n < 0)
+            return null;
+        align();
+        need(4L * n);
+        int[] a = new int[n];
+        data.asIntBuffer().get(a);
+        data.position(data.position() + 4 * n);
+        return a;
+    }
+
+    public double[] readDoubles() throws IOException {
+        int n = readInt();
+        if (n < 0)
+            return null;
+        align();
+        need(8L * n);
+        double[] a = new double[n];
+        data.asDoubleBuffer().get(a);
+        data.position(data.position() + 8 * n);
+        return a;
+    }
+
+    public float[] readFloats() throws IOException {
+        int n = readInt();
+        if (n < 0)
+            return null;
+        align();
+        need(4L * n);
+        float[] a = new float[n];
+        data.asFloatBuffer().get(a);
+        data.position(data.position() + 4 * n);
+        return a;
+    }
+
+    /**
+     * Reads an object written by {@link ModelOutput#writeObject(Object)}.
+     */
+    public Object readObject() throws IOException {
+        byte tag = readByte();
+        switch (tag) {
+        case ModelOutput.NULL:
+            return null;
+        case ModelOutput.STRING:
+            return readString();
+        case ModelOutput.INTEGER:
+            return readInt();
+        case ModelOutput.DOUBLE:
+            return readDouble();
+        case ModelOutput.LONG:
+            return readLong();
+        case ModelOutput.FLOAT:
+            return Float.intBitsToFloat(readInt());
+        case ModelOutput.BOOLEAN:
+            return readBoolean();
+        case ModelOutput.SERIALIZED:
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(readBytes()));
+            try {
+                return in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Cannot read object: " + e.getMessage());
+            } finally {
+                in.close();
+            }
+        default:
+            throw new IOException("Unknown object tag " + tag);
+        }
+    }
+
+    public Object[] readObjects() throws IOException {
+        int n = readInt();
+        /* each object takes at least its tag */
+        need(n);
+        Object[] a = new Object[n];
+        for (int i = 0; i < a.length; i++)
+            a[i] = readObject();
+        return a;
+    }
+
+}
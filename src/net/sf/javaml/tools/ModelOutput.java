@@ -0,0 +1,235 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Writes a model in the binary model format. A file starts with the 8 byte
+ * magic <code>JMLMODEL</code>, the version of the format, a flags field that
+ * is zero for now and the name of the type of the model. The rest of the file
+ * is written by the model itself.
+ *
+ * All numbers are little-endian. Arrays are written as their length followed
+ * by the raw values, starting at a multiple of 8 bytes from the start of the
+ * file, so they can be read in bulk from a memory mapped file.
+ *
+ * @see ModelInput
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class ModelOutput implements Closeable {
+
+    static final byte[] MAGIC = { 'J', 'M', 'L', 'M', 'O', 'D', 'E', 'L' };
+
+    static final int VERSION = 1;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /* tags of class labels and other small objects */
+    static final byte NULL = 0, STRING = 1, INTEGER = 2, DOUBLE = 3, LONG = 4, FLOAT = 5, BOOLEAN = 6,
+            SERIALIZED = 7;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+    /* number of bytes already written to the channel */
+    private long written;
+
+    /**
+     * Creates a model file and writes its header.
+     *
+     * @param file
+     *            the file, it is replaced if it exists
+     * @param type
+     *            the name of the type of the model
+     */
+    public ModelOutput(File file, String type) throws IOException {
+        channel = new FileOutputStream(file).getChannel();
+        buffer.put(MAGIC);
+        writeInt(VERSION);
+        writeInt(0);
+        writeString(type);
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            written += channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void align() throws IOException {
+        require(8);
+        while ((written + buffer.position()) % 8 != 0)
+            buffer.put((byte) 0);
+    }
+
+    public void writeInt(int v) throws IOException {
+        require(4);
+        buffer.putInt(v);
+    }
+
+    public void writeLong(long v) throws IOException {
+        require(8);
+        buffer.putLong(v);
+    }
+
+    public void writeDouble(double v) throws IOException {
+        require(8);
+        buffer.putDouble(v);
+    }
+
+    public void writeBoolean(boolean v) throws IOException {
+        require(1);
+        buffer.put((byte) (v ? 1 : 0));
+    }
+
+    /**
+     * Writes a string as its length in bytes followed by its UTF-8 encoding.
+     */
+    public void writeString(String s) throws IOException {
+        writeBytes(s.getBytes(UTF8));
+    }
+
+    private void writeBytes(byte[] b) throws IOException {
+        writeInt(b.length);
+        for (int i = 0; i < b.length;) {
+            require(1);
+            int n = Math.min(buffer.remaining(), b.length - i);
+            buffer.put(b, i, n);
+            i += n;
+        }
+    }
+
+    /**
+     * Writes an array, a null array has length -1.
+     */
+    public void writeInts(int[] a) throws IOException {
+        writeInt(a == null ? -1 : a.length);
+        if (a == null)
+            return;
+        align();
+        for (int i = 0; i < a.length;) {
+            require(4);
+            int n = Math.min(buffer.remaining() / 4, a.length - i);
+            buffer.asIntBuffer().put(a, i, n);
+            buffer.position(buffer.position() + 4 * n);
+            i += n;
+        }
+    }
+
+    /**
+     * Writes an array, a null array has length -1.
+     */
+    public void writeDoubles(double[] a) throws IOException {
+        writeInt(a == null ? -1 : a.length);
+        if (a == null)
+            return;
+        align();
+        for (int i = 0; i < a.length;) {
+            require(8);
+            int n = Math.min(buffer.remaining() / 8, a.length - i);
+            buffer.asDoubleBuffer().put(a, i, n);
+            buffer.position(buffer.position() + 8 * n);
+            i += n;
+        }
+    }
+
+    /**
+     * Writes an array, a null array has length -1.
+     */
+    public void writeFloats(float[] a) throws IOException {
+        writeInt(a == null ? -1 : a.length);
+        if (a == null)
+            return;
+        align();
+        for (int i = 0; i < a.length;) {
+            require(4);
+            int n = Math.min(buffer.remaining() / 4, a.length - i);
+            buffer.asFloatBuffer().put(a, i, n);
+            buffer.position(buffer.position() + 4 * n);
+            i += n;
+        }
+    }
+
+    /**
+     * Writes a class label or another small value. Strings, boxed primitives
+     * and null are written in the binary format, other objects with Java
+     * serialization.
+     */
+    public void writeObject(Object o) throws IOException {
+        require(1);
+        if (o == null) {
+            buffer.put(NULL);
+        } else if (o instanceof String) {
+            buffer.put(STRING);
+            writeString((String) o);
+        } else if (o instanceof Integer) {
+            buffer.put(INTEGER);
+            writeInt((Integer) o);
+        } else if (o instanceof Double) {
+            buffer.put(DOUBLE);
+            writeDouble((Double) o);
+        } else if (o instanceof Long) {
+            buffer.put(LONG);
+            writeLong((Long) o);
+        } else if (o instanceof Float) {
+            buffer.put(FLOAT);
+            writeInt(Float.floatToRawIntBits((Float) o));
+        } else if (o instanceof Boolean) {
+            buffer.put(BOOLEAN);
+            writeBoolean((Boolean) o);
+        } else if (o instanceof Serializable) {
+            buffer.put(SERIALIZED);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(o);
+            out.close();
+            writeBytes(bytes.toByteArray());
+        } else {
+            throw new IOException("Cannot write an object of " + o.getClass());
+        }
+    }
+
+    /**
+     * Writes the length of the array followed by each object with
+     * {@link #writeObject(Object)}.
+     */
+    public void writeObjects(Object[] a) throws IOException {
+        writeInt(a.length);
+        for (Object o : a)
+            writeObject(o);
+    }
+
+    /**
+     * Writes the buffered data and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
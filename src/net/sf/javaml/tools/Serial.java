@@ -9,26 +9,96 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import libsvm.LibSVM;
+import net.sf.javaml.classification.KDtreeKNN;
+import net.sf.javaml.classification.MeanFeatureVotingClassifier;
+import net.sf.javaml.classification.NearestMeanClassifier;
+import net.sf.javaml.classification.bayes.NaiveBayesClassifier;
+import net.sf.javaml.classification.tree.CompiledForest;
+import net.sf.javaml.classification.tree.DecisionTree;
+import net.sf.javaml.classification.tree.RandomForest;
+import net.sf.javaml.classification.tree.RandomTree;
+
 /**
  * Class with utility methods for serialization.
  * 
+ * Trained models that implement {@link BinaryModel} are stored in a compact
+ * binary format, see {@link ModelOutput}, which is read from a memory mapped
+ * file. All other objects are stored with Java serialization in a gzipped
+ * file. Loading recognizes both formats.
+ * 
  * @author Thomas Abeel
  * 
  */
 public class Serial {
 
+    /* Reads a model of one type in the binary format */
+    private interface Reader {
+        Object read(ModelInput in) throws IOException;
+    }
+
+    private static final Map<String, Reader> READERS = new HashMap<String, Reader>();
+
+    static {
+        READERS.put(RandomForest.class.getName(), new Reader() {
+            public Object read(ModelInput in) throws IOException {
+                return RandomForest.read(in);
+            }
+        });
+        READERS.put(RandomTree.class.getName(), new Reader() {
+            public Object read(ModelInput in) throws IOException {
+                return RandomTree.read(in);
+            }
+        });
+        READERS.put(DecisionTree.class.getName(), new Reader() {
+            public Object read(ModelInput in) throws IOException {
+                return DecisionTree.read(in);
+            }
+        });
+        READERS.put(CompiledForest.class.getName(), new Reader() {
+            public Object read(ModelInput in) throws IOException {
+                return CompiledForest.read(in);
+            }
+        });
+        READERS.put(NaiveBayesClassifier.class.getName(), new Reader() {
+            public Object read(ModelInput in) throws IOException {
+                return NaiveBayesClassifier.read(in);
+            }
+        });
+        READERS.put(KDtreeKNN.class.getName(), new Reader() {
+            public Object read(ModelInput in) throws IOException {
+                return KDtreeKNN.read(in);
+            }
+        });
+        READERS.put(NearestMeanClassifier.class.getName(), new Reader() {
+            public Object read(ModelInput in) throws IOException {
+                return NearestMeanClassifier.read(in);
+            }
+        });
+        READERS.put(MeanFeatureVotingClassifier.class.getName(), new Reader() {
+            public Object read(ModelInput in) throws IOException {
+                return MeanFeatureVotingClassifier.read(in);
+            }
+        });
+        READERS.put(LibSVM.class.getName(), new Reader() {
+            public Object read(ModelInput in) throws IOException {
+                return LibSVM.read(in);
+            }
+        });
+    }
+
     public static boolean exists(String fileName) {
         return (new File(fileName)).exists();
     }
 
     public static boolean store(Object p, String fileName) {
         try {
-            ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(fileName)));
-            out.writeObject(p);
-            out.close();
+            storeModel(p, new File(fileName));
             return true;
         } catch (IOException e) {
             e.printStackTrace();
@@ -36,15 +106,72 @@ public class Serial {
         }
     }
 
-    public static Object load(File fileName) {
+    /**
+     * Stores an object in the binary model format when its class has one, or
+     * with Java serialization otherwise. Subclasses of the models are stored
+     * with Java serialization, as they may have additional state.
+     * 
+     * @param p
+     *            the object to store
+     * @param file
+     *            the file to write
+     * @throws IOException
+     *             when the object cannot be written
+     */
+    public static void storeModel(Object p, File file) throws IOException {
+        if (p instanceof BinaryModel && READERS.containsKey(p.getClass().getName())) {
+            ModelOutput out = new ModelOutput(file, p.getClass().getName());
+            try {
+                ((BinaryModel) p).write(out);
+            } finally {
+                out.close();
+            }
+        } else {
+            ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(file)));
+            try {
+                out.writeObject(p);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Loads an object that was stored with {@link #storeModel(Object, File)}.
+     * 
+     * @param file
+     *            the file to read
+     * @return the stored object
+     * @throws IOException
+     *             when the file cannot be read or has an unknown format
+     */
+    public static Object loadModel(File file) throws IOException {
+        if (ModelInput.isModel(file)) {
+            ModelInput in = new ModelInput(file);
+            Reader reader = READERS.get(in.type());
+            if (reader == null)
+                throw new IOException("Unknown model type: " + in.type());
+            return reader.read(in);
+        }
+        ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new FileInputStream(file)));
         try {
-            ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new FileInputStream(fileName)));
             return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class: " + e.getMessage());
+        } finally {
+            in.close();
+        }
+    }
+
+    public static Object load(File fileName) {
+        try {
+            return loadModel(fileName);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
+
     public static Object load(String fileName) {
         return load(new File(fileName));
     }
@@ -5,11 +5,9 @@ package net.sf.javaml.tools.data;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 
 import net.sf.javaml.core.Dataset;
-import net.sf.javaml.core.DefaultDataset;
-import net.sf.javaml.core.DenseInstance;
-import be.abeel.io.LineIterator;
 
 /**
  * Provides method to load data from ARFF formatted files.
@@ -17,14 +15,16 @@ import be.abeel.io.LineIterator;
  * For a detailed description on the ARFF format, please see
  * http://weka.wiki.sourceforge.net/ARFF
  * 
+ * @see ARFFReader
+ * @see ARFFWriter
+ * 
  * @author Thomas Abeel
  * 
  */
 public class ARFFHandler {
     /**
-     * Load a data set from an ARFF formatted file. Due to limitations in the
-     * Java-ML design only numeric attributes can be read. This method does not
-     * read class labels.
+     * Load a data set from an ARFF formatted file. This method does not read
+     * class labels.
      * 
      * @param file
      *            the file to read the data from
@@ -38,8 +38,9 @@ public class ARFFHandler {
     }
 
     /**
-     * Load a data set from an ARFF formatted file. Due to limitations in the
-     * Java-ML design only numeric attributes can be read.
+     * Load a data set from an ARFF formatted file. Nominal and string
+     * attributes are stored as the index of their value in the header, see
+     * {@link ARFFReader}, sparse rows become sparse instances.
      * 
      * @param file
      *            the file to read the data from
@@ -48,49 +49,60 @@ public class ARFFHandler {
      * @return the data set represented in the provided file
      * @throws FileNotFoundException
      *             if the file can not be found.
+     * @throws RuntimeException
+     *             when the file is not a valid ARFF file
      */
     public static Dataset loadARFF(File file, int classIndex) throws FileNotFoundException {
-        LineIterator it = new LineIterator(file);
-        it.setSkipBlanks(true);
-        it.setCommentIdentifier("%");
-        it.setSkipComments(true);
-
-        Dataset out = new DefaultDataset();
-
-        /* Indicates whether we are reading data */
-        boolean dataMode = false;
-        for (String line : it) {
-            /* When we passed the @data tag, we are reading data */
-            if (dataMode) {
-                String[] arr = line.split(",");
-                double[] values;
-                if (classIndex == -1)
-                    values = new double[arr.length];
-                else
-                    values = new double[arr.length - 1];
-                String classValue = null;
-                for (int i = 0; i < arr.length; i++) {
-                    if (i == classIndex) {
-                        classValue = arr[i];
-                    } else {
-                        double val;
-                        try {
-                            val = Double.parseDouble(arr[i]);
-                        } catch (NumberFormatException e) {
-                            val = Double.NaN;
-                        }
-                        if (classIndex!=-1 && i > classIndex)
-                            values[i - 1] = val;
-                        else
-                            values[i] = val;
-                    }
-                }
-                out.add(new DenseInstance(values, classValue));
+        try {
+            ARFFReader in = new ARFFReader(file, classIndex);
+            try {
+                return in.readAll();
+            } finally {
+                in.close();
             }
-            /* Ignore everything in the header, i.e. everything up to @data */
-            if (line.equalsIgnoreCase("@data"))
-                dataMode = true;
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Exports a data set to an ARFF file with numeric attributes, and the
+     * class values in a last nominal column. Files with a name that ends in
+     * gz are compressed.
+     * 
+     * @param data
+     *            data set
+     * @param file
+     *            file to write data to
+     * @throws IOException
+     *             when something went wrong during the export
+     */
+    public static void exportARFF(Dataset data, File file) throws IOException {
+        String name = file.getName();
+        ARFFWriter out = new ARFFWriter(file, ARFFHeader.of(name.substring(0, name.indexOf('.') > 0 ? name
+                .indexOf('.') : name.length()), data));
+        try {
+            out.write(data);
+        } finally {
+            out.close();
         }
-        return out;
+    }
+
+    /**
+     * Streams the instances of an ARFF file, without loading it in memory.
+     * Files with a name that ends in gz or zip are decompressed.
+     * 
+     * @param file
+     *            the file to read the data from
+     * @param classIndex
+     *            the index of the class label, -1 for none
+     * @return a stream of the instances in the file
+     * @throws IOException
+     *             when the file cannot be opened or its header is not valid
+     */
+    public static DataStream streamARFF(File file, int classIndex) throws IOException {
+        return new DataStream(new ARFFReader(file, classIndex));
     }
 }
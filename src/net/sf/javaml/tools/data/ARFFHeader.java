@@ -0,0 +1,264 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.javaml.core.Dataset;
+
+/**
+ * The attribute schema of an ARFF file: the name of the relation and the name
+ * and type of each column.
+ *
+ * Nominal and string columns are dictionary encoded: a value is stored in an
+ * instance as its index in the dictionary of the column. The dictionary of a
+ * nominal column holds the values declared in the header, that of a string
+ * column grows with each new value that is read.
+ *
+ * The dictionaries of nominal columns are fixed when the column is added, so
+ * they are read without locking by parallel parsers. Only the dictionaries of
+ * string columns are guarded by the header.
+ *
+ * One column can be the class column. It is not an attribute of the instances,
+ * its value becomes the class value. The other columns keep their order, so
+ * attribute <code>i</code> is column <code>i</code> before the class column
+ * and column <code>i + 1</code> after it.
+ *
+ * @see ARFFReader
+ * @see ARFFWriter
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class ARFFHeader {
+
+    /**
+     * The types of ARFF columns.
+     */
+    public enum Type {
+        NUMERIC, NOMINAL, STRING, DATE
+    }
+
+    private String relation;
+
+    private final List<String> names = new ArrayList<String>();
+
+    private final List<Type> types = new ArrayList<Type>();
+
+    /* the date format of each column, null for other types */
+    private final List<String> formats = new ArrayList<String>();
+
+    /* the values of each nominal or string column, null for other types */
+    private final List<List<String>> values = new ArrayList<List<String>>();
+
+    /* the codes of the values, unmodifiable for nominal columns */
+    private final List<Map<String, Integer>> index = new ArrayList<Map<String, Integer>>();
+
+    private int classIndex = -1;
+
+    /**
+     * Creates a header without columns.
+     *
+     * @param relation
+     *            the name of the relation
+     */
+    public ARFFHeader(String relation) {
+        this.relation = relation;
+    }
+
+    /**
+     * Creates the header of a data set. All attributes are numeric, when the
+     * instances have a class value it is stored in a last, nominal, column.
+     *
+     * @param relation
+     *            the name of the relation
+     * @param data
+     *            the data set
+     * @return a header for the data set
+     */
+    public static ARFFHeader of(String relation, Dataset data) {
+        ARFFHeader header = new ARFFHeader(relation);
+        int n = data.size() == 0 ? 0 : data.noAttributes();
+        for (int i = 0; i < n; i++)
+            header.addNumeric("att" + i);
+        if (data.classes().size() > 0) {
+            List<String> labels = new ArrayList<String>();
+            for (Object o : data.classes())
+                labels.add(o.toString());
+            header.addNominal("class", labels);
+            header.setClassIndex(n);
+        }
+        return header;
+    }
+
+    private int add(String name, Type type, String format, Collection<String> dictionary) {
+        names.add(name);
+        types.add(type);
+        formats.add(format);
+        if (dictionary == null) {
+            values.add(null);
+            index.add(null);
+        } else {
+            List<String> v = new ArrayList<String>();
+            HashMap<String, Integer> map = new HashMap<String, Integer>();
+            for (String s : dictionary) {
+                if (!map.containsKey(s)) {
+                    map.put(s, v.size());
+                    v.add(s);
+                }
+            }
+            if (type == Type.NOMINAL) {
+                values.add(Collections.unmodifiableList(v));
+                index.add(Collections.unmodifiableMap(map));
+            } else {
+                values.add(v);
+                index.add(map);
+            }
+        }
+        return names.size() - 1;
+    }
+
+    public int addNumeric(String name) {
+        return add(name, Type.NUMERIC, null, null);
+    }
+
+    public int addNominal(String name, Collection<String> labels) {
+        return add(name, Type.NOMINAL, null, labels);
+    }
+
+    public int addString(String name) {
+        return add(name, Type.STRING, null, new ArrayList<String>());
+    }
+
+    /**
+     * Adds a date column.
+     *
+     * @param name
+     *            the name of the column
+     * @param format
+     *            the pattern of the dates, as used by
+     *            {@link java.text.SimpleDateFormat}
+     * @return the index of the column
+     */
+    public int addDate(String name, String format) {
+        return add(name, Type.DATE, format, null);
+    }
+
+    public String relation() {
+        return relation;
+    }
+
+    /**
+     * Returns the number of columns, including the class column.
+     */
+    public int noColumns() {
+        return names.size();
+    }
+
+    /**
+     * Returns the number of attributes of the instances, which is the number
+     * of columns without the class column.
+     */
+    public int noAttributes() {
+        return classIndex < 0 ? names.size() : names.size() - 1;
+    }
+
+    /**
+     * Returns the column of the class value, or -1 when there is none.
+     */
+    public int classIndex() {
+        return classIndex;
+    }
+
+    /**
+     * Sets the column of the class value, or -1 when there is none.
+     */
+    public void setClassIndex(int classIndex) {
+        if (classIndex >= names.size())
+            throw new IllegalArgumentException("There is no column " + classIndex);
+        this.classIndex = classIndex < 0 ? -1 : classIndex;
+    }
+
+    /**
+     * Returns the attribute that stores a column, or -1 for the class column.
+     */
+    public int attribute(int column) {
+        if (classIndex < 0 || column < classIndex)
+            return column;
+        return column == classIndex ? -1 : column - 1;
+    }
+
+    /**
+     * Returns the column that stores an attribute.
+     */
+    public int column(int attribute) {
+        return classIndex < 0 || attribute < classIndex ? attribute : attribute + 1;
+    }
+
+    public String name(int column) {
+        return names.get(column);
+    }
+
+    public Type type(int column) {
+        return types.get(column);
+    }
+
+    /**
+     * Returns the pattern of a date column.
+     */
+    public String format(int column) {
+        return formats.get(column);
+    }
+
+    /**
+     * Returns the number of values in the dictionary of a nominal or string
+     * column.
+     */
+    public int noValues(int column) {
+        if (types.get(column) != Type.STRING)
+            return values.get(column).size();
+        synchronized (this) {
+            return values.get(column).size();
+        }
+    }
+
+    /**
+     * Returns a value from the dictionary of a nominal or string column.
+     */
+    public String value(int column, int code) {
+        if (types.get(column) != Type.STRING)
+            return values.get(column).get(code);
+        synchronized (this) {
+            return values.get(column).get(code);
+        }
+    }
+
+    /**
+     * Returns the index of a value in the dictionary of a nominal or string
+     * column. A new value of a string column is added to its dictionary.
+     *
+     * @return the index of the value, or -1 for an undeclared nominal value
+     */
+    public int code(int column, String value) {
+        Map<String, Integer> map = index.get(column);
+        if (types.get(column) != Type.STRING) {
+            Integer code = map.get(value);
+            return code == null ? -1 : code;
+        }
+        synchronized (this) {
+            Integer code = map.get(value);
+            if (code != null)
+                return code;
+            map.put(value, values.get(column).size());
+            values.get(column).add(value);
+            return map.size() - 1;
+        }
+    }
+
+}
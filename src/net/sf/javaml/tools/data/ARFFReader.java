@@ -0,0 +1,443 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+
+/**
+ * Reads ARFF files, dense and sparse, in blocks of rows.
+ *
+ * The header is parsed into an {@link ARFFHeader} when the reader is created.
+ * The data is then read in blocks of a few megabytes, the rows of a block are
+ * parsed in parallel, directly from the bytes. Dense rows become
+ * {@link DenseInstance}s, sparse rows, written as
+ * <code>{index value, ...}</code>, become {@link SparseInstance}s with only
+ * the values in the row.
+ *
+ * Numeric values are parsed as doubles, nominal and string values are
+ * replaced by their index in the dictionary of their column and dates by
+ * their time in milliseconds. New string values get their index in the order
+ * of the rows, whatever the number of threads: each thread collects them in a
+ * dictionary of its own, which are merged in row order after the block. Missing values, written as <code>?</code>,
+ * become NaN. The class column, if any, gives the class value of the
+ * instances: the value itself for nominal and string columns, the text of the
+ * value for other columns.
+ *
+ * For a detailed description on the ARFF format, please see
+ * http://weka.wiki.sourceforge.net/ARFF
+ *
+ * @see ARFFWriter
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class ARFFReader extends BlockReader {
+
+    private final ARFFHeader header;
+
+    /**
+     * Opens an ARFF file without class column. Files with a name that ends
+     * in gz or zip are decompressed.
+     */
+    public ARFFReader(File file) throws IOException {
+        this(file, -1);
+    }
+
+    /**
+     * Opens an ARFF file. Files with a name that ends in gz or zip are
+     * decompressed.
+     *
+     * @param file
+     *            the file to read
+     * @param classIndex
+     *            the column with the class values, -1 for none
+     */
+    public ARFFReader(File file, int classIndex) throws IOException {
+        this(open(file), classIndex);
+    }
+
+    /**
+     * Reads the header of ARFF data from a stream.
+     *
+     * @param in
+     *            the stream, it is closed by {@link #close()}
+     * @param classIndex
+     *            the column with the class values, -1 for none
+     */
+    public ARFFReader(InputStream in, int classIndex) throws IOException {
+        super(in);
+        this.header = readHeader();
+        if (classIndex >= header.noColumns())
+            throw new IOException("The class column " + classIndex + " does not exist, there are "
+                    + header.noColumns() + " columns");
+        header.setClassIndex(classIndex);
+    }
+
+    /**
+     * Returns the schema of the data. The dictionaries of string columns grow
+     * while the data is read.
+     */
+    public ARFFHeader header() {
+        return header;
+    }
+
+    private ARFFHeader readHeader() throws IOException {
+        ARFFHeader h = null;
+        String s;
+        while ((s = readLine()) != null) {
+            if (s.length() == 0 || s.charAt(0) == '%')
+                continue;
+            String lower = s.toLowerCase();
+            if (lower.startsWith("@relation")) {
+                StringBuilder name = new StringBuilder();
+                token(s, skip(s, 9), name);
+                h = new ARFFHeader(name.toString());
+            } else if (lower.startsWith("@attribute")) {
+                if (h == null)
+                    h = new ARFFHeader("");
+                attribute(h, s);
+            } else if (lower.startsWith("@data")) {
+                if (h == null)
+                    h = new ARFFHeader("");
+                return h;
+            } else {
+                throw new IOException("Line " + line + ": unexpected line in the ARFF header: " + s);
+            }
+        }
+        throw new IOException("The ARFF data has no @data section");
+    }
+
+    private void attribute(ARFFHeader h, String s) throws IOException {
+        StringBuilder name = new StringBuilder();
+        int i = skip(s, token(s, skip(s, 10), name));
+        if (i < s.length() && s.charAt(i) == '{') {
+            List<String> labels = new ArrayList<String>();
+            i = skip(s, i + 1);
+            while (i < s.length() && s.charAt(i) != '}') {
+                StringBuilder label = new StringBuilder();
+                i = skip(s, token(s, i, label));
+                labels.add(label.toString());
+                if (i < s.length() && s.charAt(i) == ',')
+                    i = skip(s, i + 1);
+                else if (i == s.length() || s.charAt(i) != '}')
+                    throw new IOException("Line " + line + ": invalid nominal values: " + s);
+            }
+            h.addNominal(name.toString(), labels);
+            return;
+        }
+        StringBuilder type = new StringBuilder();
+        i = skip(s, token(s, i, type));
+        String t = type.toString().toLowerCase();
+        if (t.equals("numeric") || t.equals("real") || t.equals("integer")) {
+            h.addNumeric(name.toString());
+        } else if (t.equals("string")) {
+            h.addString(name.toString());
+        } else if (t.equals("date")) {
+            StringBuilder format = new StringBuilder();
+            token(s, i, format);
+            h.addDate(name.toString(), format.length() == 0 ? "yyyy-MM-dd'T'HH:mm:ss" : format.toString());
+        } else {
+            throw new IOException("Line " + line + ": unsupported attribute type " + type);
+        }
+    }
+
+    private static int skip(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i)))
+            i++;
+        return i;
+    }
+
+    /*
+     * Reads a token of the header, quoted or ending at whitespace, a comma or
+     * a brace, and returns the position after it.
+     */
+    private static int token(String s, int i, StringBuilder out) {
+        if (i < s.length() && (s.charAt(i) == '\'' || s.charAt(i) == '"')) {
+            char quote = s.charAt(i++);
+            while (i < s.length() && s.charAt(i) != quote) {
+                if (s.charAt(i) == '\\' && i + 1 < s.length())
+                    i++;
+                out.append(s.charAt(i++));
+            }
+            return Math.min(i + 1, s.length());
+        }
+        while (i < s.length() && !Character.isWhitespace(s.charAt(i)) && ",{}".indexOf(s.charAt(i)) < 0)
+            out.append(s.charAt(i++));
+        return i;
+    }
+
+    @Override
+    RowParser parser() {
+        return new Row();
+    }
+
+    /* Parses rows, one instance of this class is used by a single thread */
+    private class Row implements RowParser {
+
+        private final int columns = header.noColumns();
+
+        /* the string values of this parser by column, in order of appearance */
+        @SuppressWarnings("unchecked")
+        private final HashMap<String, Integer>[] strings = new HashMap[columns];
+
+        @SuppressWarnings("unchecked")
+        private final List<String>[] stringValues = new List[columns];
+
+        /* the attributes that hold a code of the local dictionary */
+        private final List<Instance> fixInstances = new ArrayList<Instance>();
+
+        private int[] fixAttributes = new int[16];
+
+        private int fixes;
+
+        /* sparse rows without a string class value */
+        private final List<Instance> defaultClass = new ArrayList<Instance>();
+
+        private final DateFormat[] dates = new DateFormat[columns];
+
+        private final double[] values = new double[header.noAttributes()];
+
+        /* the field that was read last, as raw bytes or unquoted text */
+        private int fieldStart, fieldEnd;
+
+        private String quoted;
+
+        private long lineNumber;
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Line " + lineNumber + ": " + message);
+        }
+
+        private int skip(int i, int to) {
+            while (i < to && (buffer[i] == ' ' || buffer[i] == '\t'))
+                i++;
+            return i;
+        }
+
+        /*
+         * Reads a field that ends at a comma, or at a space or closing brace
+         * in sparse rows, and returns the position after it.
+         */
+        private int field(int i, int to, boolean sparse) {
+            quoted = null;
+            if (i < to && (buffer[i] == '\'' || buffer[i] == '"')) {
+                byte quote = buffer[i++];
+                int start = i;
+                boolean escaped = false;
+                while (i < to && buffer[i] != quote) {
+                    if (buffer[i] == '\\' && i + 1 < to) {
+                        escaped = true;
+                        i++;
+                    }
+                    i++;
+                }
+                if (i == to)
+                    throw error("unterminated quote");
+                quoted = new String(buffer, start, i - start, UTF8);
+                if (escaped)
+                    quoted = quoted.replaceAll("\\\\(.)", "$1");
+                return i + 1;
+            }
+            fieldStart = i;
+            while (i < to && buffer[i] != ',' && !(sparse && (buffer[i] == ' ' || buffer[i] == '}')))
+                i++;
+            fieldEnd = i;
+            while (fieldEnd > fieldStart && (buffer[fieldEnd - 1] == ' ' || buffer[fieldEnd - 1] == '\t'))
+                fieldEnd--;
+            return i;
+        }
+
+        private boolean missing() {
+            return quoted == null && fieldEnd - fieldStart == 1 && buffer[fieldStart] == '?';
+        }
+
+        private String text() {
+            return quoted != null ? quoted : new String(buffer, fieldStart, fieldEnd - fieldStart, UTF8);
+        }
+
+        /* The value of the last field as an attribute of the given column */
+        private double value(int column) {
+            if (missing())
+                return Double.NaN;
+            switch (header.type(column)) {
+            case NUMERIC:
+                if (quoted != null) {
+                    byte[] b = quoted.getBytes(UTF8);
+                    return NumberBytes.parse(b, 0, b.length);
+                }
+                return NumberBytes.parse(buffer, fieldStart, fieldEnd);
+            case DATE:
+                if (dates[column] == null)
+                    dates[column] = new SimpleDateFormat(header.format(column));
+                try {
+                    return dates[column].parse(text()).getTime();
+                } catch (ParseException e) {
+                    return Double.NaN;
+                }
+            default:
+                if (header.type(column) == ARFFHeader.Type.STRING) {
+                    if (fixes == fixAttributes.length)
+                        fixAttributes = Arrays.copyOf(fixAttributes, 2 * fixes);
+                    fixAttributes[fixes++] = header.attribute(column);
+                    return local(column, text());
+                }
+                int code = header.code(column, text());
+                return code < 0 ? Double.NaN : code;
+            }
+        }
+
+        /* The code of a string in the dictionary of this parser */
+        private int local(int column, String s) {
+            if (strings[column] == null) {
+                strings[column] = new HashMap<String, Integer>();
+                stringValues[column] = new ArrayList<String>();
+            }
+            Integer code = strings[column].get(s);
+            if (code == null) {
+                code = stringValues[column].size();
+                strings[column].put(s, code);
+                stringValues[column].add(s);
+            }
+            return code;
+        }
+
+        /* Links the string values of the last row to its instance */
+        private Instance row(Instance inst) {
+            while (fixInstances.size() < fixes)
+                fixInstances.add(inst);
+            return inst;
+        }
+
+        /*
+         * Adds the strings of this parser to the dictionaries of the header
+         * and replaces the local codes in the instances.
+         */
+        @Override
+        public void finish() throws IOException {
+            int[][] global = new int[columns][];
+            for (int c = 0; c < columns; c++) {
+                if (stringValues[c] == null)
+                    continue;
+                global[c] = new int[stringValues[c].size()];
+                for (int v = 0; v < global[c].length; v++)
+                    global[c][v] = header.code(c, stringValues[c].get(v));
+            }
+            for (int k = 0; k < fixes; k++) {
+                Instance inst = fixInstances.get(k);
+                int a = fixAttributes[k];
+                inst.put(a, (double) global[header.column(a)][(int) inst.value(a)]);
+            }
+            if (defaultClass.isEmpty())
+                return;
+            /* the first string value, unless no row declared one so far */
+            if (header.noValues(header.classIndex()) == 0)
+                throw new IOException("Sparse rows omit the string class, but the class has no values yet");
+            for (Instance inst : defaultClass)
+                inst.setClassValue(header.value(header.classIndex(), 0));
+        }
+
+        /* The value of the last field as class value */
+        private Object classValue(int column) {
+            if (missing())
+                return null;
+            String s = text();
+            if (header.type(column) == ARFFHeader.Type.STRING) {
+                local(column, s);
+            } else if (header.type(column) == ARFFHeader.Type.NOMINAL) {
+                int code = header.code(column, s);
+                if (code >= 0)
+                    return header.value(column, code);
+            }
+            return s;
+        }
+
+        /* Parses the row in the bytes from (inclusive) to (exclusive) */
+        @Override
+        public Instance parse(int from, int to, long number) {
+            lineNumber = number;
+            if (to > from && buffer[to - 1] == '\r')
+                to--;
+            int i = skip(from, to);
+            if (i == to || buffer[i] == '%')
+                return null;
+            if (buffer[i] == '{')
+                return sparse(i + 1, to);
+            int classIndex = header.classIndex();
+            Object classValue = null;
+            for (int c = 0; c < columns; c++) {
+                if (c > 0) {
+                    if (i == to || buffer[i] != ',')
+                        throw error("expected " + columns + " values");
+                    i++;
+                }
+                i = field(skip(i, to), to, false);
+                if (c == classIndex)
+                    classValue = classValue(c);
+                else
+                    values[header.attribute(c)] = value(c);
+                i = skip(i, to);
+            }
+            if (i != to)
+                throw error("more than " + columns + " values");
+            return row(new DenseInstance(values.clone(), classValue));
+        }
+
+        private Instance sparse(int i, int to) {
+            int classIndex = header.classIndex();
+            SparseInstance inst = new SparseInstance(values.length);
+            boolean hasClass = false;
+            i = skip(i, to);
+            while (i < to && buffer[i] != '}') {
+                int start = i;
+                while (i < to && buffer[i] >= '0' && buffer[i] <= '9')
+                    i++;
+                if (i == start)
+                    throw error("expected a column index");
+                int c = Integer.parseInt(new String(buffer, start, i - start, UTF8));
+                if (c >= columns)
+                    throw error("there is no column " + c);
+                i = field(skip(i, to), to, true);
+                if (c == classIndex) {
+                    inst.setClassValue(classValue(c));
+                    hasClass = true;
+                } else {
+                    inst.put(header.attribute(c), value(c));
+                }
+                i = skip(i, to);
+                if (i < to && buffer[i] == ',')
+                    i = skip(i + 1, to);
+            }
+            if (i == to)
+                throw error("unterminated sparse row");
+            if (classIndex >= 0 && !hasClass) {
+                /* an omitted value is zero, the first label of a nominal */
+                ARFFHeader.Type type = header.type(classIndex);
+                if (type == ARFFHeader.Type.NOMINAL) {
+                    if (header.noValues(classIndex) == 0)
+                        throw error("sparse row omits the class, but the class has no values");
+                    inst.setClassValue(header.value(classIndex, 0));
+                }
+                else if (type == ARFFHeader.Type.STRING)
+                    defaultClass.add(inst);
+                else
+                    inst.setClassValue("0");
+            }
+            return row(inst);
+        }
+    }
+
+}
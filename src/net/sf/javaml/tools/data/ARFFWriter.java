@@ -0,0 +1,255 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+
+/**
+ * Writes instances to an ARFF file, one at a time, in the schema of an
+ * {@link ARFFHeader}. This is the counterpart of {@link ARFFReader}: the
+ * values of nominal and string attributes are indices in the dictionary of
+ * their column, dates are times in milliseconds and NaN is a missing value.
+ *
+ * Rows are formatted directly into a byte buffer. They are written in the
+ * sparse format, <code>{index value, ...}</code> with only the values that
+ * are not zero, when the writer is sparse or the instance is a
+ * {@link SparseInstance}, and in the dense format otherwise.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class ARFFWriter implements InstanceSink {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final OutputStream out;
+
+    private final ARFFHeader header;
+
+    private final DateFormat[] dates;
+
+    private byte[] buffer = new byte[1 << 16];
+
+    private int pos;
+
+    private boolean sparse = false;
+
+    /**
+     * Creates an ARFF file and writes the header. Files with a name that ends
+     * in gz are compressed.
+     */
+    public ARFFWriter(File file, ARFFHeader header) throws IOException {
+        this(file.getName().endsWith("gz") ? new GZIPOutputStream(new FileOutputStream(file), 1 << 16)
+                : new FileOutputStream(file), header);
+    }
+
+    /**
+     * Writes the header to a stream.
+     *
+     * @param out
+     *            the stream, it is closed by {@link #close()}
+     * @param header
+     *            the schema of the rows
+     */
+    public ARFFWriter(OutputStream out, ARFFHeader header) throws IOException {
+        this.out = out;
+        this.header = header;
+        dates = new DateFormat[header.noColumns()];
+        text("@relation ");
+        quoted(header.relation());
+        text("\n\n");
+        for (int c = 0; c < header.noColumns(); c++) {
+            text("@attribute ");
+            quoted(header.name(c));
+            switch (header.type(c)) {
+            case NUMERIC:
+                text(" numeric\n");
+                break;
+            case STRING:
+                text(" string\n");
+                break;
+            case DATE:
+                text(" date ");
+                quoted(header.format(c));
+                text("\n");
+                dates[c] = new SimpleDateFormat(header.format(c));
+                break;
+            default:
+                text(" {");
+                for (int v = 0; v < header.noValues(c); v++) {
+                    if (v > 0)
+                        text(",");
+                    quoted(header.value(c, v));
+                }
+                text("}\n");
+            }
+        }
+        text("\n@data\n");
+    }
+
+    /**
+     * Sets whether all rows are written in the sparse format.
+     */
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    private void require(int bytes) throws IOException {
+        if (pos + bytes > buffer.length) {
+            flush();
+            if (bytes > buffer.length)
+                buffer = new byte[bytes];
+        }
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer, 0, pos);
+        pos = 0;
+    }
+
+    private void text(String s) throws IOException {
+        byte[] b = s.getBytes(UTF8);
+        require(b.length);
+        System.arraycopy(b, 0, buffer, pos, b.length);
+        pos += b.length;
+    }
+
+    private void number(double v) throws IOException {
+        require(32);
+        pos = NumberBytes.format(v, buffer, pos);
+    }
+
+    /* Writes a string, in quotes if it would not be read back as is */
+    private void quoted(String s) throws IOException {
+        boolean quote = s.length() == 0 || s.equals("?");
+        for (int i = 0; i < s.length() && !quote; i++)
+            quote = " \t,'\"{}%\\".indexOf(s.charAt(i)) >= 0;
+        if (!quote) {
+            text(s);
+            return;
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('\'');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\'' || c == '\\')
+                sb.append('\\');
+            sb.append(c);
+        }
+        text(sb.append('\'').toString());
+    }
+
+    private void value(int column, double v) throws IOException {
+        if (Double.isNaN(v)) {
+            text("?");
+            return;
+        }
+        switch (header.type(column)) {
+        case NUMERIC:
+            number(v);
+            break;
+        case DATE:
+            quoted(dates[column].format(new Date((long) v)));
+            break;
+        default:
+            quoted(header.value(column, (int) v));
+        }
+    }
+
+    private void classValue(Object o) throws IOException {
+        if (o == null)
+            text("?");
+        else
+            quoted(o.toString());
+    }
+
+    /**
+     * Writes an instance as a row.
+     */
+    @Override
+    public void write(Instance inst) throws IOException {
+        int classIndex = header.classIndex();
+        int columns = header.noColumns();
+        if (sparse || inst instanceof SparseInstance) {
+            text("{");
+            boolean first = true, classDone = classIndex < 0;
+            for (Integer a : inst.keySet()) {
+                double v = inst.value(a);
+                if (v == 0)
+                    continue;
+                int c = header.column(a);
+                if (c >= columns)
+                    throw new IllegalArgumentException("The header has no column for attribute " + a);
+                /* the columns are written in order */
+                if (!classDone && c > classIndex) {
+                    first = sparseClass(inst, first);
+                    classDone = true;
+                }
+                if (!first)
+                    text(",");
+                first = false;
+                number(c);
+                text(" ");
+                value(c, v);
+            }
+            if (!classDone)
+                sparseClass(inst, first);
+            text("}\n");
+            return;
+        }
+        if (inst.noAttributes() != header.noAttributes())
+            throw new IllegalArgumentException("The instance has " + inst.noAttributes()
+                    + " attributes, the header " + header.noAttributes());
+        for (int c = 0; c < columns; c++) {
+            if (c > 0)
+                text(",");
+            if (c == classIndex)
+                classValue(inst.classValue());
+            else
+                value(c, inst.value(header.attribute(c)));
+        }
+        text("\n");
+    }
+
+    private boolean sparseClass(Instance inst, boolean first) throws IOException {
+        if (!first)
+            text(",");
+        number(header.classIndex());
+        text(" ");
+        classValue(inst.classValue());
+        return false;
+    }
+
+    /**
+     * Writes all instances of a data set.
+     */
+    public void write(Dataset data) throws IOException {
+        for (Instance inst : data)
+            write(inst);
+    }
+
+    /**
+     * Writes the buffered rows and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+}
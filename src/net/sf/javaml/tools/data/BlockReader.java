@@ -0,0 +1,243 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Reads text data, one instance per line, in blocks of a few megabytes. The
+ * lines of a block are parsed in parallel, straight from the bytes.
+ *
+ * @author Thomas Abeel
+ *
+ */
+abstract class BlockReader implements InstanceSource {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /* Number of bytes of rows that are parsed together */
+    private static final int BLOCK = 1 << 22;
+
+    /* Minimum number of rows that is worth handing to a separate thread */
+    private static final int MIN_ROWS = 256;
+
+    /**
+     * Parses lines into instances, each thread uses its own parser.
+     */
+    interface RowParser {
+        /**
+         * Parses the line in the buffer from (inclusive) to (exclusive),
+         * without the line break.
+         *
+         * @param line
+         *            the number of the line, for error messages
+         * @return the instance, or null for lines without one
+         * @throws IllegalArgumentException
+         *             when the line is not valid
+         */
+        Instance parse(int from, int to, long line);
+
+        /**
+         * Called after all rows of a block are parsed, from the reading
+         * thread, for the parsers of the block in the order of their rows.
+         *
+         * @throws IOException
+         *             when the rows of the block can not be completed
+         */
+        void finish() throws IOException;
+    }
+
+    private final InputStream in;
+
+    byte[] buffer = new byte[BLOCK];
+
+    /* the unread bytes of the buffer are at [pos, limit) */
+    int pos, limit;
+
+    boolean eof;
+
+    /* number of lines read so far */
+    long line;
+
+    BlockReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Opens a file, decompressing it when its name ends in gz or zip.
+     */
+    static InputStream open(File file) throws IOException {
+        if (file.getName().endsWith("gz"))
+            return new GZIPInputStream(new FileInputStream(file), 1 << 16);
+        if (file.getName().endsWith("zip")) {
+            ZipInputStream zip = new ZipInputStream(new FileInputStream(file));
+            if (zip.getNextEntry() == null) {
+                zip.close();
+                throw new IOException("Empty zip file: " + file);
+            }
+            return zip;
+        }
+        return new FileInputStream(file);
+    }
+
+    /* Reads more bytes after the unread ones, growing the buffer if full */
+    void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buffer.length)
+            buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+        while (limit < buffer.length && !eof) {
+            int n = in.read(buffer, limit, buffer.length - limit);
+            if (n < 0)
+                eof = true;
+            else
+                limit += n;
+        }
+    }
+
+    /* Returns the position of the next newline from position from, or -1 */
+    int newline(int from) {
+        for (int i = from; i < limit; i++)
+            if (buffer[i] == '\n')
+                return i;
+        return -1;
+    }
+
+    /* Reads a line of the header, or null at the end of the data */
+    String readLine() throws IOException {
+        int end = newline(pos);
+        while (end < 0 && !eof) {
+            int scanned = limit - pos;
+            fill();
+            end = newline(scanned);
+        }
+        if (end < 0) {
+            if (pos == limit)
+                return null;
+            end = limit;
+        }
+        String s = new String(buffer, pos, end - pos, UTF8);
+        pos = Math.min(end + 1, limit);
+        line++;
+        return s.trim();
+    }
+
+    /**
+     * Creates a parser for the lines of one thread.
+     */
+    abstract RowParser parser();
+
+    /**
+     * Reads and parses the next block of rows. A block can be empty when it
+     * only has comments.
+     *
+     * @return the instances of the rows, or null at the end of the data
+     * @throws IOException
+     *             when reading fails or a row is not valid
+     */
+    @Override
+    public List<Instance> readBlock() throws IOException {
+        if (limit - pos < BLOCK / 2 && !eof)
+            fill();
+        if (pos == limit)
+            return null;
+        int cut = -1;
+        for (int i = limit - 1; i >= pos; i--) {
+            if (buffer[i] == '\n') {
+                cut = i;
+                break;
+            }
+        }
+        while (cut < 0 && !eof) {
+            int scanned = limit - pos;
+            fill();
+            cut = newline(scanned);
+        }
+        if (cut < 0)
+            cut = limit;
+
+        int[] starts = new int[1024];
+        int lines = 0;
+        int start = pos;
+        while (start <= cut && start < limit) {
+            int end = start;
+            while (end < cut && buffer[end] != '\n')
+                end++;
+            if (lines == starts.length)
+                starts = Arrays.copyOf(starts, 2 * lines);
+            starts[lines++] = start;
+            start = end + 1;
+        }
+        final int[] from = starts;
+        final int n = lines;
+        final int last = cut;
+        final long first = line + 1;
+        final Instance[] rows = new Instance[n];
+        /* the parser of each range, at the index of its first row */
+        final RowParser[] parsers = new RowParser[n];
+        try {
+            Parallel.forRange(n, MIN_ROWS, new Parallel.RangeTask() {
+                @Override
+                public void run(int begin, int end) {
+                    RowParser row = parser();
+                    parsers[begin] = row;
+                    for (int i = begin; i < end; i++) {
+                        int to = i + 1 < n ? from[i + 1] - 1 : last;
+                        rows[i] = row.parse(from[i], to, first + i);
+                    }
+                }
+            });
+            for (RowParser row : parsers)
+                if (row != null)
+                    row.finish();
+        } catch (IllegalArgumentException e) {
+            IOException io = new IOException(e.getMessage());
+            io.initCause(e);
+            throw io;
+        }
+        line += n;
+        pos = Math.min(cut + 1, limit);
+        List<Instance> out = new ArrayList<Instance>(n);
+        for (Instance inst : rows)
+            if (inst != null)
+                out.add(inst);
+        return out;
+    }
+
+    /**
+     * Reads all remaining rows.
+     *
+     * @return a data set with the instances of the rows
+     */
+    public Dataset readAll() throws IOException {
+        Dataset out = new DefaultDataset();
+        List<Instance> block;
+        while ((block = readBlock()) != null)
+            out.addAll(block);
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
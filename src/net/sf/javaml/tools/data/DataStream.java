@@ -0,0 +1,304 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import net.sf.javaml.classification.Classifier;
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.filter.InstanceFilter;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * A single pass over the instances of an {@link InstanceSource}, for data
+ * that does not fit in memory. Only a few blocks of instances are held at any
+ * time.
+ *
+ * The blocks are read ahead by a background thread. At most
+ * <code>readAhead</code> blocks wait to be processed; when they are not
+ * consumed fast enough, the background thread waits.
+ *
+ * Filters and classifiers can be chained on the stream, they are applied to
+ * the instances of each block in parallel, so they should be safe to use from
+ * several threads. Filters that need to be trained, such as normalizations,
+ * have to be trained before, for example on a sample of the data.
+ *
+ * <pre>
+ * DataStream stream = FileHandler.streamDataset(new File(&quot;data.csv.gz&quot;), 0, &quot;,&quot;);
+ * stream.filter(normalize).classify(classifier).writeTo(new ARFFWriter(out, header));
+ * </pre>
+ *
+ * A stream can be iterated only once. It is closed at the end of the data,
+ * streams that are not read to the end should be closed.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class DataStream implements Iterable<Instance>, Closeable {
+
+    /* Minimum number of instances before the work is split over threads */
+    private static final int MIN_CHUNK = 64;
+
+    /* Marks the end of the data in the queue */
+    private static final Object END = new Object();
+
+    private final InstanceSource source;
+
+    private final int readAhead;
+
+    private final List<InstanceFilter> stages = new ArrayList<InstanceFilter>();
+
+    private BlockingQueue<Object> queue;
+
+    private Thread reader;
+
+    private boolean started = false, done = false;
+
+    /**
+     * Creates a stream that reads up to four blocks ahead.
+     */
+    public DataStream(InstanceSource source) {
+        this(source, 4);
+    }
+
+    /**
+     * Creates a stream.
+     *
+     * @param source
+     *            the instances, the source is closed with the stream
+     * @param readAhead
+     *            the maximum number of blocks that are read ahead, 0 to read
+     *            blocks only when they are needed
+     */
+    public DataStream(InstanceSource source, int readAhead) {
+        if (readAhead < 0)
+            throw new IllegalArgumentException("The read-ahead cannot be negative: " + readAhead);
+        this.source = source;
+        this.readAhead = readAhead;
+    }
+
+    private void check() {
+        if (started)
+            throw new IllegalStateException("The stream is already being read");
+    }
+
+    /**
+     * Applies a filter to each instance of the stream.
+     *
+     * @return this stream
+     */
+    public DataStream filter(InstanceFilter filter) {
+        check();
+        stages.add(filter);
+        return this;
+    }
+
+    /**
+     * Sets the class value of each instance of the stream to the class
+     * predicted by a classifier.
+     *
+     * @return this stream
+     */
+    public DataStream classify(final Classifier classifier) {
+        return filter(new InstanceFilter() {
+            @Override
+            public void filter(Instance inst) {
+                inst.setClassValue(classifier.classify(inst));
+            }
+        });
+    }
+
+    private void start() {
+        check();
+        started = true;
+        if (readAhead == 0)
+            return;
+        queue = new ArrayBlockingQueue<Object>(readAhead);
+        reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    try {
+                        List<Instance> block;
+                        while ((block = source.readBlock()) != null)
+                            queue.put(block);
+                        queue.put(END);
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Throwable t) {
+                        /*
+                         * also errors like an OutOfMemoryError, the reader
+                         * would otherwise wait for a block forever
+                         */
+                        queue.put(t);
+                    }
+                } catch (InterruptedException e) {
+                    /* the stream was closed */
+                }
+            }
+        }, "javaml-read-ahead");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Reads the next block and applies the stages to it.
+     *
+     * @return the instances of the block, or null at the end of the data
+     */
+    @SuppressWarnings("unchecked")
+    private List<Instance> nextBlock() throws IOException {
+        if (!started)
+            start();
+        if (done)
+            return null;
+        List<Instance> block;
+        if (reader == null) {
+            block = source.readBlock();
+        } else {
+            Object o;
+            try {
+                o = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading the stream");
+            }
+            if (o instanceof IOException)
+                throw (IOException) o;
+            if (o instanceof RuntimeException)
+                throw (RuntimeException) o;
+            if (o instanceof Error)
+                throw (Error) o;
+            block = o == END ? null : (List<Instance>) o;
+        }
+        if (block == null) {
+            close();
+            return null;
+        }
+        apply(block);
+        return block;
+    }
+
+    private void apply(final List<Instance> block) {
+        if (stages.size() == 0)
+            return;
+        Parallel.forRange(block.size(), MIN_CHUNK, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++)
+                    for (InstanceFilter f : stages)
+                        f.filter(block.get(i));
+            }
+        });
+    }
+
+    /**
+     * Returns an iterator over the instances. Errors while reading are thrown
+     * as a RuntimeException.
+     */
+    @Override
+    public Iterator<Instance> iterator() {
+        check();
+        return new Iterator<Instance>() {
+
+            private Iterator<Instance> block = Collections.<Instance> emptyList().iterator();
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (!block.hasNext()) {
+                        List<Instance> next = nextBlock();
+                        if (next == null)
+                            return false;
+                        block = next.iterator();
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public Instance next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return block.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Writes all instances to a sink. The sink is not closed.
+     *
+     * @return the number of instances
+     */
+    public long writeTo(InstanceSink sink) throws IOException {
+        long count = 0;
+        List<Instance> block;
+        while ((block = nextBlock()) != null) {
+            for (Instance inst : block)
+                sink.write(inst);
+            count += block.size();
+        }
+        return count;
+    }
+
+    /**
+     * Reads all instances into a data set.
+     */
+    public Dataset toDataset() throws IOException {
+        Dataset out = new DefaultDataset();
+        List<Instance> block;
+        while ((block = nextBlock()) != null)
+            out.addAll(block);
+        return out;
+    }
+
+    /**
+     * Reads all instances and returns how many there are.
+     */
+    public long count() throws IOException {
+        long count = 0;
+        List<Instance> block;
+        while ((block = nextBlock()) != null)
+            count += block.size();
+        return count;
+    }
+
+    /**
+     * Stops reading ahead and closes the source.
+     */
+    @Override
+    public void close() throws IOException {
+        if (done)
+            return;
+        done = true;
+        started = true;
+        if (reader != null) {
+            reader.interrupt();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        source.close();
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Writes instances to a delimited text file in the format of
+ * {@link FileHandler#exportDataset(Dataset, File, boolean, String)}: one
+ * instance per line, the class value first when there is one, then the
+ * values. Sparse instances are written as <code>index:value</code> fields.
+ *
+ * Rows are collected in blocks, the rows of a block are formatted in
+ * parallel, with the numbers written directly as bytes. Compressed files are
+ * written with a {@link ParallelGZIPOutputStream}.
+ *
+ * @see DelimitedReader
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class DataWriter implements InstanceSink {
+
+    /* Number of rows that are formatted together */
+    private static final int BLOCK = 8192;
+
+    /* Minimum number of rows that is worth handing to a separate thread */
+    private static final int MIN_ROWS = 256;
+
+    private final OutputStream out;
+
+    private final byte[] separator;
+
+    private final List<Instance> rows = new ArrayList<Instance>(BLOCK);
+
+    /**
+     * Creates a file.
+     *
+     * @param file
+     *            the file to write to
+     * @param compress
+     *            whether the file is compressed with gzip
+     * @param separator
+     *            the text between two fields
+     */
+    public DataWriter(File file, boolean compress, String separator) throws IOException {
+        this(compress ? new ParallelGZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file),
+                separator);
+    }
+
+    /**
+     * Writes rows to a stream.
+     *
+     * @param out
+     *            the stream, it is closed by {@link #close()}
+     * @param separator
+     *            the text between two fields
+     */
+    public DataWriter(OutputStream out, String separator) {
+        this.out = out;
+        this.separator = separator.getBytes(BlockReader.UTF8);
+    }
+
+    /**
+     * Writes an instance. The row is formatted when a block of rows is
+     * complete or the writer is closed.
+     */
+    @Override
+    public void write(Instance inst) throws IOException {
+        rows.add(inst);
+        if (rows.size() == BLOCK)
+            flushRows();
+    }
+
+    /**
+     * Writes all instances of a data set.
+     */
+    public void write(Dataset data) throws IOException {
+        flushRows();
+        for (int i = 0; i < data.size(); i += BLOCK)
+            format(data.subList(i, Math.min(data.size(), i + BLOCK)));
+    }
+
+    private void flushRows() throws IOException {
+        format(rows);
+        rows.clear();
+    }
+
+    /* Formats the rows in parallel and writes them in order */
+    private void format(final List<Instance> block) throws IOException {
+        final int n = block.size();
+        final byte[][] parts = new byte[n][];
+        final int[] lengths = new int[n];
+        Parallel.forRange(n, MIN_ROWS, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                Row row = new Row();
+                for (int i = from; i < to; i++)
+                    row.format(block.get(i));
+                parts[from] = row.buffer;
+                lengths[from] = row.pos;
+            }
+        });
+        for (int i = 0; i < n; i++)
+            if (parts[i] != null)
+                out.write(parts[i], 0, lengths[i]);
+    }
+
+    /* Formats rows into a byte buffer, used by a single thread */
+    private class Row {
+
+        private byte[] buffer = new byte[1 << 16];
+
+        private int pos;
+
+        private void require(int bytes) {
+            if (pos + bytes > buffer.length) {
+                byte[] tmp = new byte[Math.max(2 * buffer.length, pos + bytes)];
+                System.arraycopy(buffer, 0, tmp, 0, pos);
+                buffer = tmp;
+            }
+        }
+
+        private void bytes(byte[] b) {
+            require(b.length);
+            System.arraycopy(b, 0, buffer, pos, b.length);
+            pos += b.length;
+        }
+
+        private void number(double v) {
+            require(32);
+            pos = NumberBytes.format(v, buffer, pos);
+        }
+
+        void format(Instance inst) {
+            if (inst.classValue() != null) {
+                bytes(inst.classValue().toString().getBytes(BlockReader.UTF8));
+                bytes(separator);
+            }
+            if (inst instanceof SparseInstance) {
+                boolean first = true;
+                for (Integer index : inst.keySet()) {
+                    if (!first)
+                        bytes(separator);
+                    first = false;
+                    number(index);
+                    require(1);
+                    buffer[pos++] = ':';
+                    number(inst.value(index));
+                }
+            } else {
+                for (int i = 0; i < inst.noAttributes(); i++) {
+                    if (i > 0)
+                        bytes(separator);
+                    number(inst.value(i));
+                }
+            }
+            require(1);
+            buffer[pos++] = '\n';
+        }
+    }
+
+    /**
+     * Writes the remaining rows and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushRows();
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.core.SparseInstance;
+
+/**
+ * Reads delimited text files, one instance per line, in blocks of rows. This
+ * is the block reader for the formats of
+ * {@link FileHandler#loadDataset(File, int, String)} and
+ * {@link FileHandler#loadSparseDataset(File, int, String, String)}.
+ *
+ * In the dense format all fields are numbers, except the class value. In the
+ * sparse format each field is an attribute index and a value, for example
+ * <code>12:0.5</code>, except the class value. Fields that are not numbers
+ * become missing values. Blank lines and lines that start with
+ * <code>#</code> or <code>//</code> are skipped.
+ *
+ * The separators are literal text, not regular expressions. The data should
+ * be ASCII or UTF-8.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class DelimitedReader extends BlockReader {
+
+    private final int classIndex;
+
+    private final byte[] separator;
+
+    /* null for the dense format */
+    private final byte[] indexSeparator;
+
+    private int noAttributes = -1;
+
+    /**
+     * Opens a dense file. Files with a name that ends in gz or zip are
+     * decompressed.
+     *
+     * @param file
+     *            the file to read
+     * @param classIndex
+     *            the column with the class values, -1 for none
+     * @param separator
+     *            the text between two fields
+     */
+    public DelimitedReader(File file, int classIndex, String separator) throws IOException {
+        this(open(file), classIndex, separator, null);
+    }
+
+    /**
+     * Opens a sparse file. Files with a name that ends in gz or zip are
+     * decompressed.
+     *
+     * @param file
+     *            the file to read
+     * @param classIndex
+     *            the column with the class values, -1 for none
+     * @param separator
+     *            the text between two fields
+     * @param indexSeparator
+     *            the text between the index and the value of a field
+     */
+    public DelimitedReader(File file, int classIndex, String separator, String indexSeparator)
+            throws IOException {
+        this(open(file), classIndex, separator, indexSeparator);
+    }
+
+    /**
+     * Reads delimited data from a stream.
+     *
+     * @param in
+     *            the stream, it is closed by {@link #close()}
+     * @param classIndex
+     *            the column with the class values, -1 for none
+     * @param separator
+     *            the text between two fields
+     * @param indexSeparator
+     *            the text between the index and the value of a field of the
+     *            sparse format, null for the dense format
+     */
+    public DelimitedReader(InputStream in, int classIndex, String separator, String indexSeparator) {
+        super(in);
+        if (separator.length() == 0 || (indexSeparator != null && indexSeparator.length() == 0))
+            throw new IllegalArgumentException("The separators cannot be empty");
+        this.classIndex = classIndex;
+        this.separator = separator.getBytes(UTF8);
+        this.indexSeparator = indexSeparator == null ? null : indexSeparator.getBytes(UTF8);
+    }
+
+    /**
+     * Sets the number of attributes of the sparse instances. By default the
+     * number of attributes of a sparse instance is one more than its highest
+     * index, so it can differ between instances.
+     */
+    public void setNoAttributes(int noAttributes) {
+        this.noAttributes = noAttributes;
+    }
+
+    @Override
+    RowParser parser() {
+        return new Row();
+    }
+
+    /* Parses rows, one instance of this class is used by a single thread */
+    private class Row implements RowParser {
+
+        private double[] values = new double[16];
+
+        private long lineNumber;
+
+        @Override
+        public void finish() {
+            // all values are parsed in place
+        }
+
+        private boolean matches(int i, int to, byte[] text) {
+            if (to - i < text.length)
+                return false;
+            for (int j = 0; j < text.length; j++)
+                if (buffer[i + j] != text[j])
+                    return false;
+            return true;
+        }
+
+        /* Returns the position of the text from position i, or to */
+        private int find(int i, int to, byte[] text) {
+            for (; i < to; i++)
+                if (buffer[i] == text[0] && matches(i, to, text))
+                    return i;
+            return to;
+        }
+
+        private double number(int from, int to) {
+            while (from < to && buffer[from] == ' ')
+                from++;
+            while (to > from && buffer[to - 1] == ' ')
+                to--;
+            return NumberBytes.parse(buffer, from, to);
+        }
+
+        @Override
+        public Instance parse(int from, int to, long number) {
+            lineNumber = number;
+            if (to > from && buffer[to - 1] == '\r')
+                to--;
+            /* a byte order mark at the start of the data */
+            if (number == 1 && to - from >= 3 && buffer[from] == (byte) 0xEF && buffer[from + 1] == (byte) 0xBB
+                    && buffer[from + 2] == (byte) 0xBF)
+                from += 3;
+            int i = from;
+            while (i < to && Character.isWhitespace(buffer[i]))
+                i++;
+            if (i == to || buffer[i] == '#' || (buffer[i] == '/' && i + 1 < to && buffer[i + 1] == '/'))
+                return null;
+            return indexSeparator == null ? dense(from, to) : sparse(from, to);
+        }
+
+        private Instance dense(int i, int to) {
+            int n = 0;
+            Object classValue = null;
+            for (int column = 0; i <= to; column++) {
+                int end = find(i, to, separator);
+                /* like String.split, a separator at the end adds no field */
+                if (end == i && end == to && column > 0)
+                    break;
+                if (column == classIndex) {
+                    classValue = new String(buffer, i, end - i, UTF8);
+                } else {
+                    if (n == values.length)
+                        values = Arrays.copyOf(values, 2 * n);
+                    values[n++] = number(i, end);
+                }
+                i = end + separator.length;
+            }
+            double[] out = new double[n];
+            System.arraycopy(values, 0, out, 0, n);
+            return new DenseInstance(out, classValue);
+        }
+
+        private Instance sparse(int i, int to) {
+            SparseInstance inst = noAttributes < 0 ? new SparseInstance() : new SparseInstance(noAttributes);
+            for (int column = 0; i <= to; column++) {
+                int end = find(i, to, separator);
+                if (column == classIndex) {
+                    inst.setClassValue(new String(buffer, i, end - i, UTF8));
+                } else if (end > i) {
+                    int split = find(i, end, indexSeparator);
+                    if (split == end)
+                        throw new IllegalArgumentException("Line " + lineNumber + ": expected an index and a value: "
+                                + new String(buffer, i, end - i, UTF8));
+                    int index;
+                    try {
+                        index = Integer.parseInt(new String(buffer, i, split - i, UTF8).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Line " + lineNumber + ": invalid index: "
+                                + new String(buffer, i, split - i, UTF8));
+                    }
+                    inst.put(index, number(split + indexSeparator.length, end));
+                }
+                i = end + separator.length;
+            }
+            return inst;
+        }
+    }
+
+}
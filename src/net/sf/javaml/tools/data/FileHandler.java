@@ -7,14 +7,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipInputStream;
 
 import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
 import net.sf.javaml.core.Instance;
 import net.sf.javaml.core.SparseInstance;
-import be.abeel.io.GZIPPrintWriter;
+import net.sf.javaml.tools.ModelInput;
+import net.sf.javaml.tools.ModelOutput;
+import be.abeel.io.ExtensionManager;
 import be.abeel.io.UnicodeReader;
 
 /**
@@ -124,6 +127,51 @@ public class FileHandler extends StreamHandler{
         return loadSparse(new InputStreamReader(new FileInputStream(f)), classIndex, attributeSeparator, indexSep);
     }
 
+    /**
+     * Streams the instances of a file in the format of
+     * {@link #loadDataset(File, int, String)}, without loading it in memory.
+     * The separator is literal text, not a regular expression.
+     * 
+     * @param f
+     *            the file to be read, decompressed when its name ends in gz or
+     *            zip
+     * @param classIndex
+     *            the index of the class value, -1 for none
+     * @param separator
+     *            the text between two fields
+     * @return a stream of the instances in the file
+     * @throws IOException
+     *             when the file cannot be opened
+     */
+    public static DataStream streamDataset(File f, int classIndex, String separator) throws IOException {
+        return new DataStream(new DelimitedReader(f, classIndex, separator));
+    }
+
+    /**
+     * Streams the instances of a file in the format of
+     * {@link #loadSparseDataset(File, int, String, String)}, without loading
+     * it in memory. Unlike the loaded data set, the number of attributes of an
+     * instance is one more than its highest index, see
+     * {@link DelimitedReader#setNoAttributes(int)}.
+     * 
+     * @param f
+     *            the file to be read, decompressed when its name ends in gz or
+     *            zip
+     * @param classIndex
+     *            the index of the class value, -1 for none
+     * @param attributeSeparator
+     *            the text between two fields
+     * @param indexSep
+     *            the text between the index and the value of a field
+     * @return a stream of the instances in the file
+     * @throws IOException
+     *             when the file cannot be opened
+     */
+    public static DataStream streamSparseDataset(File f, int classIndex, String attributeSeparator, String indexSep)
+            throws IOException {
+        return new DataStream(new DelimitedReader(f, classIndex, attributeSeparator, indexSep));
+    }
+
     /**
      * Exports a data set to a file. Each instance is output separately with the
      * class label on position 0. The fields are delimited with a tab character.
@@ -131,49 +179,26 @@ public class FileHandler extends StreamHandler{
      * Note: data sets with mixed sparse and dense instances may not be loadable
      * with the load methods.
      * 
+     * The rows are formatted in parallel by a {@link DataWriter}, compressed
+     * files are compressed in parallel blocks.
+     * 
      * @param data
      *            data set
      * @param outFile
-     *            file to write data to
+     *            file to write data to, gz is added to the name of
+     *            compressed files
      * @param compress
      *            flag to indicate whether GZIP compression should be used.
      * @throws IOException
      *             when something went wrong during the export
      */
     public static void exportDataset(Dataset data, File outFile, boolean compress, String sep) throws IOException {
-        PrintWriter out;
-        if (compress)
-            out = new GZIPPrintWriter(outFile);
-        else
-            out = new PrintWriter(outFile);
-        for (Instance inst : data) {
-            if (inst.classValue() != null)
-                out.print(inst.classValue() +sep);
-            out.println(string(inst,sep));
-        }
-
-        out.close();
-
-    }
-
-    private static String string(Instance inst,String sep) {
-        StringBuffer out = new StringBuffer();
-        if (inst instanceof SparseInstance) {
-            for (Integer index : inst.keySet()) {
-                if (out.length() != 0)
-                    out.append(sep+ index + ":" + inst.value(index));
-                else
-                    out.append(index + ":" + inst.value(index));
-
-            }
-        } else {
-            out.append(inst.value(0));
-            for (int i = 1; i < inst.noAttributes(); i++)
-                out.append(sep + inst.value(i));
-
+        DataWriter out = new DataWriter(compress ? ExtensionManager.extension(outFile, "gz") : outFile, compress, sep);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
         }
-
-        return out.toString();
     }
 
     /**
@@ -202,4 +227,83 @@ public class FileHandler extends StreamHandler{
 		
 	}
 
+    /* the type of binary data set files */
+    private static final String BINARY_TYPE = "net.sf.javaml.core.Dataset";
+
+    /**
+     * Exports a data set to a binary file, in the format of
+     * {@link ModelOutput}. The values are stored exactly and the file is read
+     * back without parsing. Class values should be strings, numbers or
+     * serializable.
+     * 
+     * @param data
+     *            data set
+     * @param file
+     *            file to write data to
+     * @throws IOException
+     *             when something went wrong during the export
+     */
+    public static void exportBinaryDataset(Dataset data, File file) throws IOException {
+        ModelOutput out = new ModelOutput(file, BINARY_TYPE);
+        try {
+            out.writeInt(data.size());
+            for (Instance inst : data) {
+                out.writeObject(inst.classValue());
+                if (inst instanceof SparseInstance) {
+                    out.writeBoolean(true);
+                    out.writeInt(inst.noAttributes());
+                    int[] keys = new int[inst.keySet().size()];
+                    double[] values = new double[keys.length];
+                    int i = 0;
+                    for (Integer key : inst.keySet()) {
+                        keys[i] = key;
+                        values[i++] = inst.value(key);
+                    }
+                    out.writeInts(keys);
+                    out.writeDoubles(values);
+                } else {
+                    out.writeBoolean(false);
+                    double[] values = new double[inst.noAttributes()];
+                    for (int i = 0; i < values.length; i++)
+                        values[i] = inst.value(i);
+                    out.writeDoubles(values);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Loads a data set that was exported with
+     * {@link #exportBinaryDataset(Dataset, File)}.
+     * 
+     * @param file
+     *            the file to be loaded
+     * @return the data set in the file
+     * @throws IOException
+     *             when the file is not a binary data set
+     */
+    public static Dataset loadBinaryDataset(File file) throws IOException {
+        ModelInput in = new ModelInput(file);
+        if (!in.type().equals(BINARY_TYPE))
+            throw new IOException(file + " is not a data set but a " + in.type());
+        int n = in.readInt();
+        Dataset out = new DefaultDataset();
+        for (int i = 0; i < n; i++) {
+            Object classValue = in.readObject();
+            if (in.readBoolean()) {
+                SparseInstance inst = new SparseInstance(in.readInt(), classValue);
+                int[] keys = in.readInts();
+                double[] values = in.readDoubles();
+                for (int j = 0; j < keys.length; j++)
+                    inst.put(keys[j], values[j]);
+                out.add(inst);
+            } else {
+                out.add(new DenseInstance(in.readDoubles(), classValue));
+            }
+        }
+        return out;
+    }
+
 }
@@ -0,0 +1,26 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import net.sf.javaml.core.Instance;
+
+/**
+ * A destination for instances that are written one at a time.
+ *
+ * @see DataStream#writeTo(InstanceSink)
+ *
+ * @author Thomas Abeel
+ *
+ */
+public interface InstanceSink extends Closeable {
+
+    /**
+     * Writes an instance.
+     */
+    public void write(Instance inst) throws IOException;
+
+}
@@ -0,0 +1,33 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import net.sf.javaml.core.Instance;
+
+/**
+ * A source of instances that is read in blocks, so data that does not fit in
+ * memory can be processed one block at a time.
+ *
+ * @see DataStream
+ *
+ * @author Thomas Abeel
+ *
+ */
+public interface InstanceSource extends Closeable {
+
+    /**
+     * Reads the next block of instances. A block can be empty, for example
+     * when it only has comments.
+     *
+     * @return the instances of the block, or null at the end of the data
+     * @throws IOException
+     *             when reading fails or the data is not valid
+     */
+    public List<Instance> readBlock() throws IOException;
+
+}
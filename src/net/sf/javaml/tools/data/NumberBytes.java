@@ -0,0 +1,184 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Parses and formats numbers directly in ASCII byte buffers, without creating
+ * a String for each number.
+ *
+ * @author Thomas Abeel
+ *
+ */
+final class NumberBytes {
+
+    /* exact powers of ten, every double up to 10^22 is exact */
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    /* integers up to 2^53 are exact doubles */
+    private static final double EXACT = 9007199254740992.0;
+
+    private NumberBytes() {
+        // utility class
+    }
+
+    /**
+     * Parses the number in the bytes from (inclusive) to (exclusive). Numbers
+     * with at most 15 significant digits and a small exponent are computed
+     * with a single exact multiplication or division, which rounds correctly.
+     * Other numbers are handed to {@link Double#parseDouble(String)}.
+     *
+     * @return the number, or NaN if the bytes are not a number
+     */
+    static double parse(byte[] b, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (b[i] == '-' || b[i] == '+'))
+            negative = b[i++] == '-';
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean any = false;
+        for (; i < to && b[i] >= '0' && b[i] <= '9'; i++) {
+            any = true;
+            if (mantissa == 0 && b[i] == '0')
+                continue;
+            if (digits < 18) {
+                mantissa = 10 * mantissa + (b[i] - '0');
+                digits++;
+            } else {
+                scale++;
+                digits++;
+            }
+        }
+        if (i < to && b[i] == '.') {
+            for (i++; i < to && b[i] >= '0' && b[i] <= '9'; i++) {
+                any = true;
+                if (mantissa == 0 && b[i] == '0') {
+                    scale--;
+                    continue;
+                }
+                if (digits < 18) {
+                    mantissa = 10 * mantissa + (b[i] - '0');
+                    digits++;
+                    scale--;
+                } else {
+                    digits++;
+                }
+            }
+        }
+        if (!any)
+            return slow(b, from, to);
+        if (i < to && (b[i] == 'e' || b[i] == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < to && (b[i] == '-' || b[i] == '+'))
+                negativeExp = b[i++] == '-';
+            if (i == to)
+                return Double.NaN;
+            int exp = 0;
+            for (; i < to && b[i] >= '0' && b[i] <= '9'; i++)
+                exp = Math.min(10 * exp + (b[i] - '0'), 100000);
+            scale += negativeExp ? -exp : exp;
+        }
+        if (i != to)
+            return slow(b, from, to);
+        double value;
+        if (mantissa == 0)
+            value = 0;
+        else if (digits <= 15 && scale >= 0 && scale < POW10.length)
+            value = mantissa * POW10[scale];
+        else if (digits <= 15 && scale < 0 && -scale < POW10.length)
+            value = mantissa / POW10[-scale];
+        else
+            return slow(b, from, to);
+        return negative ? -value : value;
+    }
+
+    /* Parses the few numbers that are not handled exactly by the fast path */
+    private static double slow(byte[] b, int from, int to) {
+        try {
+            return Double.parseDouble(new String(b, from, to - from, "ISO-8859-1"));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes a number at position pos. Integral numbers are written without a
+     * fraction and numbers with a few decimals as plain decimals, both
+     * directly as digits. The decimals are the fewest that parse back to the
+     * same double. Other numbers are written as
+     * {@link Double#toString(double)}. The buffer needs room for 24 bytes.
+     *
+     * @return the position after the number
+     */
+    static int format(double v, byte[] out, int pos) {
+        if (v == (long) v && Math.abs(v) < 1e15) {
+            long l = (long) v;
+            if (l == 0 && 1 / v < 0) {
+                out[pos++] = '-';
+            } else if (l < 0) {
+                out[pos++] = '-';
+                l = -l;
+            }
+            return digits(l, out, pos);
+        }
+        double a = Math.abs(v);
+        if (a >= 1e-3 && a < 1e15) {
+            /*
+             * m / 10^k is correctly rounded when m and 10^k are exact, so it
+             * is the double that the decimal parses to
+             */
+            for (int k = 1; k < POW10.length && a * POW10[k] < EXACT; k++) {
+                long m = Math.round(a * POW10[k]);
+                if (m / POW10[k] == a) {
+                    if (v < 0)
+                        out[pos++] = '-';
+                    long integral = m / (long) POW10[k];
+                    pos = digits(integral, out, pos);
+                    out[pos++] = '.';
+                    long fraction = m - integral * (long) POW10[k];
+                    for (int i = pos + k - 1; i >= pos; i--) {
+                        out[i] = (byte) ('0' + fraction % 10);
+                        fraction /= 10;
+                    }
+                    return pos + k;
+                }
+            }
+        }
+        String s = Double.toString(v);
+        for (int i = 0; i < s.length(); i++)
+            out[pos++] = (byte) s.charAt(i);
+        return pos;
+    }
+
+    /* Writes a positive number and returns the position after it */
+    private static int digits(long l, byte[] out, int pos) {
+        int end = pos + digits(l);
+        for (int i = end - 1; i >= pos; i--) {
+            out[i] = (byte) ('0' + l % 10);
+            l /= 10;
+        }
+        return end;
+    }
+
+    private static int digits(long l) {
+        int n = 1;
+        while (l >= 10) {
+            l /= 10;
+            n++;
+        }
+        return n;
+    }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.sf.javaml.utils.Parallel;
+
+/**
+ * Compresses data with several threads. The data is cut in blocks that are
+ * compressed independently, each into a complete gzip member. A file of
+ * concatenated members is a valid gzip file, it is read back by gunzip and by
+ * {@link java.util.zip.GZIPInputStream} as a whole.
+ *
+ * Independent blocks compress slightly less well than a single stream, the
+ * compression dictionary is not shared between blocks.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+    /* Number of bytes in a block */
+    private static final int BLOCK = 1 << 20;
+
+    private final OutputStream out;
+
+    /* the blocks that are compressed together, one or more per thread */
+    private final byte[][] blocks;
+
+    private final int[] sizes;
+
+    private final ByteArrayOutputStream[] compressed;
+
+    private int block = 0;
+
+    /* number of gzip members written */
+    private long members = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Creates a stream that compresses a block per available thread at once.
+     *
+     * @param out
+     *            the stream for the compressed data, it is closed by
+     *            {@link #close()}
+     */
+    public ParallelGZIPOutputStream(OutputStream out) {
+        this(out, Parallel.threads());
+    }
+
+    /**
+     * Creates a stream.
+     *
+     * @param out
+     *            the stream for the compressed data, it is closed by
+     *            {@link #close()}
+     * @param blocks
+     *            the number of blocks that are compressed at once
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int blocks) {
+        if (blocks < 1)
+            throw new IllegalArgumentException("At least one block is needed: " + blocks);
+        this.out = out;
+        this.blocks = new byte[blocks][BLOCK];
+        this.sizes = new int[blocks];
+        this.compressed = new ByteArrayOutputStream[blocks];
+        for (int i = 0; i < blocks; i++)
+            compressed[i] = new ByteArrayOutputStream(BLOCK / 2);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (sizes[block] == BLOCK)
+            next();
+        blocks[block][sizes[block]++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (sizes[block] == BLOCK)
+                next();
+            int n = Math.min(len, BLOCK - sizes[block]);
+            System.arraycopy(b, off, blocks[block], sizes[block], n);
+            sizes[block] += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /* Moves to the next block, compressing the full blocks when all are used */
+    private void next() throws IOException {
+        if (++block == blocks.length)
+            compress();
+    }
+
+    /* Compresses the blocks in parallel and writes them in order */
+    private void compress() throws IOException {
+        int used = block < blocks.length && sizes[block] > 0 ? block + 1 : block;
+        /* empty data is still a gzip file with one empty member */
+        if (used == 0 && closed && members == 0)
+            used = 1;
+        final int n = used;
+        Parallel.forRange(n, 1, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    compressed[i].reset();
+                    try {
+                        GZIPOutputStream gz = new GZIPOutputStream(compressed[i], 1 << 16);
+                        gz.write(blocks[i], 0, sizes[i]);
+                        gz.close();
+                    } catch (IOException e) {
+                        /* a ByteArrayOutputStream does not throw */
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        });
+        for (int i = 0; i < n; i++) {
+            compressed[i].writeTo(out);
+            sizes[i] = 0;
+        }
+        members += n;
+        block = 0;
+    }
+
+    /**
+     * Compresses and writes the data so far. Each flush ends a gzip member,
+     * so flushing often makes the compression worse.
+     */
+    @Override
+    public void flush() throws IOException {
+        compress();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            compress();
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -3,9 +3,12 @@
  */
 package net.sf.javaml.tools.weka;
 
+import java.util.Arrays;
+
 import net.sf.javaml.core.Dataset;
 import net.sf.javaml.core.DefaultDataset;
 import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.utils.Parallel;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.SparseInstance;
@@ -14,54 +17,59 @@ import weka.core.SparseInstance;
  * Provides utility methods to convert data from the WEKA format to the Java-ML
  * format.
  * 
+ * The instances are converted in parallel, sparse instances stay sparse. The
+ * class attribute becomes the class value and is not an attribute of the
+ * converted instances.
+ * 
  * @version %SVN.REVISION%
  * 
  * @author Thomas Abeel
  * 
  */
 public class FromWekaUtils {
+
+	/* Minimum number of instances before the work is split over threads */
+	private static final int MIN_CHUNK = 256;
+
 	private Dataset data;
 	private Instances wData;
 
-	public FromWekaUtils(Instances wData) {
-		data=new DefaultDataset();
-		this.wData=wData;
-		for (int i = 0; i < wData.numInstances(); i++) {
-			Instance wInst = wData.instance(i);
-			data.add(instanceFromWeka(wInst));
-		}
+	public FromWekaUtils(final Instances wData) {
+		this.wData = wData;
+		final net.sf.javaml.core.Instance[] out = new net.sf.javaml.core.Instance[wData.numInstances()];
+		Parallel.forRange(out.length, MIN_CHUNK, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int i = from; i < to; i++)
+					out[i] = instanceFromWeka(wData.instance(i));
+			}
+		});
+		data = new DefaultDataset(Arrays.asList(out));
 	}
 
 	public net.sf.javaml.core.Instance instanceFromWeka(Instance inst) {
+		int classIndex = inst.classIndex();
+		int noAttributes = classIndex < 0 ? inst.numAttributes() : inst.numAttributes() - 1;
 		net.sf.javaml.core.Instance out;
 		if (inst instanceof SparseInstance) {
-			out = new net.sf.javaml.core.SparseInstance();
-			SparseInstance tmp = (SparseInstance) inst;
-			for (int i = 0; i < tmp.numValues(); i++) {
+			out = new net.sf.javaml.core.SparseInstance(noAttributes);
+			for (int i = 0; i < inst.numValues(); i++) {
 				int index = inst.index(i);
-				double value = inst.value(index);
-				out.put(index, value);
+				if (index == classIndex)
+					continue;
+				out.put(classIndex >= 0 && index > classIndex ? index - 1 : index, inst.valueSparse(i));
 			}
-
-		}
-
-		else {
-			double[] vals;
-			if (inst.classIsMissing())
-				vals = inst.toDoubleArray();
-			else {
-				vals = new double[inst.numAttributes() - 1];
-				double[] tmp = inst.toDoubleArray();
-				System.arraycopy(tmp, 0, vals, 0, inst.classIndex());
-				System.arraycopy(tmp, inst.classIndex() + 1, vals, inst.classIndex(), vals.length - inst.classIndex());
-
+		} else {
+			double[] vals = new double[noAttributes];
+			for (int i = 0, j = 0; i < inst.numAttributes(); i++) {
+				if (i != classIndex)
+					vals[j++] = inst.value(i);
 			}
 			out = new DenseInstance(vals);
-
 		}
-		
-		if (!inst.classIsMissing()) {
-			out.setClassValue(wData.classAttribute().value((int)inst.classValue()));
+
+		if (classIndex >= 0 && !inst.classIsMissing()) {
+			out.setClassValue(wData.classAttribute().value((int) inst.classValue()));
 		}
 		return out;
 	}
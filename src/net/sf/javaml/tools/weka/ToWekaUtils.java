@@ -4,94 +4,177 @@
 package net.sf.javaml.tools.weka;
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
 import java.util.Vector;
 
 import net.sf.javaml.core.Dataset;
+import net.sf.javaml.utils.Parallel;
 import weka.core.Attribute;
 import weka.core.FastVector;
 import weka.core.Instance;
-import weka.core.SparseInstance;
 import weka.core.Instances;
+import weka.core.SparseInstance;
 
 /**
  * Provides utility methods to convert data to the WEKA format.
- * 
- * 
- * 
- * 
+ *
+ * The instances are converted in parallel. Dense instances are converted
+ * into a single array that WEKA uses as is, sparse instances become WEKA
+ * sparse instances with only the values that are set. The converted instances are added to the WEKA data
+ * set without the copy that {@link Instances#add(Instance)} makes.
+ *
+ * The bridges can share conversions through a {@link WekaConversions}, so a
+ * data set that is given to several of them is converted only once.
+ *
  * @version %SVN.REVISION%
- * 
+ *
  * @author Thomas Abeel
- * 
+ *
  */
-public class ToWekaUtils implements Serializable{
+public class ToWekaUtils implements Serializable {
+
+    private static final long serialVersionUID = -4382167470297553045L;
+
+    /* Minimum number of instances before the work is split over threads */
+    private static final int MIN_CHUNK = 256;
+
     private Instances wData;
 
     private boolean classSet;
 
     private Vector<Object> classes;
 
+    /* the index of each class value in the class attribute */
+    private HashMap<Object, Integer> classIndex;
+
+    /* the number of attributes, without the class attribute */
+    private int noAttributes;
+
+    /* Adds instances without the copy that Instances.add makes */
+    private static class Batch extends Instances {
+
+        private static final long serialVersionUID = 5170385466396766214L;
+
+        Batch(String name, FastVector attInfo, int capacity) {
+            super(name, attInfo, capacity);
+        }
+
+        void append(Instance inst) {
+            inst.setDataset(this);
+            m_Instances.addElement(inst);
+        }
+    }
+
     public ToWekaUtils(Dataset data) {
-        classes=new Vector<Object>();
-        classes.addAll(data.classes());
-        FastVector att = new FastVector();
-        for (int i = 0; i < data.noAttributes(); i++) {
+        this(data, true);
+    }
+
+    /**
+     * Converts a data set to the WEKA format.
+     *
+     * @param data
+     *            the data set
+     * @param withClass
+     *            whether the class values are converted, as a last nominal
+     *            attribute
+     */
+    public ToWekaUtils(Dataset data, boolean withClass) {
+        classes = new Vector<Object>();
+        classIndex = new HashMap<Object, Integer>();
+        classSet = withClass && data.classes().size() > 0;
+        noAttributes = data.size() == 0 ? 0 : data.noAttributes();
+        FastVector att = new FastVector(noAttributes + 1);
+        for (int i = 0; i < noAttributes; i++) {
             att.addElement(new Attribute("att" + i));
         }
-        classSet = data.classes().size() > 0;
 
         Attribute ca = null;
         if (classSet) {
-            FastVector fvNominalVal = new FastVector(data.classes().size());
-            for (Object o : data.classes()) {
+            classes.addAll(data.classes());
+            FastVector fvNominalVal = new FastVector(classes.size());
+            for (Object o : classes) {
+                classIndex.put(o, fvNominalVal.size());
                 fvNominalVal.addElement(o.toString());
             }
             ca = new Attribute("classAtt", fvNominalVal);
             att.addElement(ca);
         }
-        wData = new Instances("generated_from_java-ml_dataset", att, data.size());
+        Batch batch = new Batch("generated_from_java-ml_dataset", att, data.size());
+        wData = batch;
         if (classSet) {
             assert (ca != null);
             wData.setClass(ca);
         }
-
-        for (net.sf.javaml.core.Instance i : data) {
-
-            wData.add(instanceToWeka(i));
-        }
-
+        for (Instance wI : instancesToWeka(data))
+            batch.append(wI);
     }
 
     public Instances getDataset() {
         return wData;
     }
 
+    /* The value of the class attribute, missing for unknown classes */
+    private double classCode(net.sf.javaml.core.Instance inst) {
+        Integer code = inst.classValue() == null ? null : classIndex.get(inst.classValue());
+        return code == null ? Instance.missingValue() : code;
+    }
+
     /* Converts this (dense/sparse) JavaML instance to a (dense/sparse) Weka instance */
     public Instance instanceToWeka(net.sf.javaml.core.Instance inst) {
-        double[] values = new double[classSet ? inst.noAttributes() + 1 : inst.noAttributes()];
-        // System.arraycopy(i.values().t.toArray(), 0, values, 0, classSet ?
-        // values.length - 1 : values.length);
-        for (int i = 0; i < (classSet ? values.length - 1 : values.length); i++) {
-            values[i] = inst.get(i);
-        }
-        // if (classSet)
-        // values[values.length - 1] = inst.classValue();
-        
-        Instance wI = null;
-        if (inst instanceof net.sf.javaml.core.SparseInstance)
-            wI = new SparseInstance(1, values);
-        else
+        int n = classSet ? noAttributes + 1 : noAttributes;
+        Instance wI;
+        if (inst instanceof net.sf.javaml.core.SparseInstance) {
+            Set<Integer> keys = inst.keySet();
+            double[] values = new double[keys.size() + 1];
+            int[] indices = new int[values.length];
+            int k = 0;
+            /* the keys are sorted, as WEKA expects */
+            for (Integer key : keys) {
+                if (key < noAttributes) {
+                    indices[k] = key;
+                    values[k++] = inst.value(key);
+                }
+            }
+            if (classSet) {
+                indices[k] = noAttributes;
+                values[k++] = classCode(inst);
+            }
+            wI = new SparseInstance(1, Arrays.copyOf(values, k), Arrays.copyOf(indices, k), n);
+        } else {
+            double[] values = new double[n];
+            for (int i = 0; i < noAttributes; i++)
+                values[i] = inst.value(i);
+            if (classSet)
+                values[noAttributes] = classCode(inst);
             wI = new Instance(1, values);
-        
-        wI.setDataset(wData);
-        if (inst.classValue() != null) {
-            wI.setClassValue(inst.classValue().toString());
-
         }
+        wI.setDataset(wData);
         return wI;
     }
 
+    /**
+     * Converts the instances of a data set in parallel, with the header of
+     * this conversion.
+     *
+     * @param data
+     *            the instances to convert
+     * @return the WEKA instances, in the same order
+     */
+    public Instance[] instancesToWeka(final Dataset data) {
+        final Instance[] out = new Instance[data.size()];
+        Parallel.forRange(out.length, MIN_CHUNK, new Parallel.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++)
+                    out[i] = instanceToWeka(data.instance(i));
+            }
+        });
+        return out;
+    }
+
     public Object convertClass(double index) {
-       return classes.get((int)index);
+        return classes.get((int) index);
     }
 }
@@ -55,6 +55,9 @@ public class WekaAttributeSelection implements FeatureScoring,
 
 	public HashMap<Integer, Integer> numbers = new HashMap<Integer, Integer>();
 
+	/* conversions shared with other bridges, if any */
+	private WekaConversions conversions = null;
+
 	/*
 	 * Build Constructor for attribute selection, AS evaluation, AS searcher and
 	 * attribute evaluator
@@ -67,12 +70,23 @@ public class WekaAttributeSelection implements FeatureScoring,
 		this.attreval = (AttributeEvaluator) evaluator;
 	}
 
+	/**
+	 * Shares the conversion of the data with other WEKA bridges.
+	 * 
+	 * @param conversions
+	 *            the shared conversions, null to convert the data separately
+	 */
+	public void setConversions(WekaConversions conversions) {
+		this.conversions = conversions;
+	}
+
 	public void build(Dataset data) {
 		try {
 			/*
-			 * convertdata to and from the WEKA format.
+			 * convert data to the WEKA format, a shared conversion is copied
 			 */
-			Instances inst = new ToWekaUtils(data).getDataset();
+			Instances inst = WekaConversions.training(conversions,
+					WekaConversions.convert(conversions, data, true));
 			/*
 			 * set the attribute/subset evaluator, search and the format of the
 			 * input instances.
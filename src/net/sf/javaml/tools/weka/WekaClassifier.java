@@ -19,13 +19,29 @@ public class WekaClassifier implements Classifier {
 
     private ToWekaUtils utils;
 
+    private transient WekaConversions conversions = null;
+
     public WekaClassifier(weka.classifiers.Classifier wekaClass) {
         this.wekaClass = wekaClass;
     }
 
+    /**
+     * Shares the conversion of the training data with other WEKA bridges.
+     * 
+     * @param conversions
+     *            the shared conversions, null to convert the data separately
+     */
+    public void setConversions(WekaConversions conversions) {
+        this.conversions = conversions;
+    }
+
+    /**
+     * Trains the WEKA classifier. A shared conversion of the data set is
+     * copied first, as WEKA classifiers may change their training data.
+     */
     public void buildClassifier(Dataset data) {
-        utils = new ToWekaUtils(data);
-        Instances inst = utils.getDataset();
+        utils = WekaConversions.convert(conversions, data, true);
+        Instances inst = WekaConversions.training(conversions, utils);
         try {
             wekaClass.buildClassifier(inst);
         } catch (Exception e) {
@@ -57,4 +73,24 @@ public class WekaClassifier implements Classifier {
         }
     }
 
+    /**
+     * Classifies all instances of a data set. The instances are converted to
+     * the WEKA format together, with the header of the training data.
+     * 
+     * @param data
+     *            the instances to classify
+     * @return the predicted classes, in the order of the instances
+     */
+    public Object[] classify(Dataset data) {
+        weka.core.Instance[] insts = utils.instancesToWeka(data);
+        Object[] out = new Object[insts.length];
+        try {
+            for (int i = 0; i < insts.length; i++)
+                out[i] = utils.convertClass(wekaClass.classifyInstance(insts[i]));
+        } catch (Exception e) {
+            throw new WekaException(e);
+        }
+        return out;
+    }
+
 }
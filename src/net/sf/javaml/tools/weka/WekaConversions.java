@@ -0,0 +1,154 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.tools.weka;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import net.sf.javaml.core.Dataset;
+import weka.core.Instances;
+
+/**
+ * Shares the conversions of data sets to the WEKA format between the WEKA
+ * bridges. Without it every bridge converts its data set itself; with it a data
+ * set that is given to several bridges is converted only once:
+ *
+ * <pre>
+ * WekaConversions conversions = new WekaConversions();
+ * WekaClassifier classifier = new WekaClassifier(new SMO());
+ * classifier.setConversions(conversions);
+ * WekaAttributeSelection selection = new WekaAttributeSelection(evaluator, search);
+ * selection.setConversions(conversions);
+ * </pre>
+ *
+ * A conversion is found again by the identity of the data set and is dropped
+ * when the data set changes size. Values that are changed in place, for
+ * example by a filter, are not detected: call {@link #invalidate(Dataset)} or
+ * {@link #clear()} after changing a data set. Only the last few conversions
+ * are kept and the data sets themselves are only weakly referenced, so the
+ * conversions go when the object is no longer used.
+ *
+ * The WEKA data sets of the conversions are shared, so the bridges hand a
+ * copy of them to WEKA learners that may change their input.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class WekaConversions {
+
+    /* Number of conversions that are kept */
+    private static final int SIZE = 4;
+
+    private final LinkedList<Cached> cache = new LinkedList<Cached>();
+
+    /* A conversion of a data set, valid while the data set keeps its size */
+    private static class Cached {
+        private WeakReference<Dataset> data;
+
+        private boolean withClass;
+
+        private int size;
+
+        private ToWekaUtils utils;
+    }
+
+    /**
+     * Returns the conversion of a data set to the WEKA format, converting it
+     * when there is no conversion of the data set with its current size.
+     *
+     * The WEKA data set of the conversion is shared and should not be
+     * modified, see {@link #copy(Instances)}.
+     *
+     * @param data
+     *            the data set
+     * @param withClass
+     *            whether the class values are converted
+     * @return the conversion of the data set
+     */
+    public ToWekaUtils convert(Dataset data, boolean withClass) {
+        synchronized (cache) {
+            Iterator<Cached> it = cache.iterator();
+            while (it.hasNext()) {
+                Cached c = it.next();
+                Dataset d = c.data.get();
+                if (d == null) {
+                    it.remove();
+                } else if (d == data && c.withClass == withClass) {
+                    it.remove();
+                    if (c.size == data.size()) {
+                        cache.addFirst(c);
+                        return c.utils;
+                    }
+                }
+            }
+        }
+        /* the conversion itself is done outside the lock */
+        Cached c = new Cached();
+        c.data = new WeakReference<Dataset>(data);
+        c.withClass = withClass;
+        c.size = data.size();
+        c.utils = new ToWekaUtils(data, withClass);
+        synchronized (cache) {
+            cache.addFirst(c);
+            while (cache.size() > SIZE)
+                cache.removeLast();
+        }
+        return c.utils;
+    }
+
+    /**
+     * Forgets the conversions of a data set, for example after its values
+     * were changed in place.
+     *
+     * @param data
+     *            the data set
+     */
+    public void invalidate(Dataset data) {
+        synchronized (cache) {
+            Iterator<Cached> it = cache.iterator();
+            while (it.hasNext()) {
+                Dataset d = it.next().data.get();
+                if (d == null || d == data)
+                    it.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets all conversions.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns a copy of a shared WEKA data set that a learner may change.
+     *
+     * @param shared
+     *            the data set of a conversion
+     * @return a copy with copies of the instances
+     */
+    public static Instances copy(Instances shared) {
+        return new Instances(shared);
+    }
+
+    /*
+     * The conversion of a data set for one of the bridges: a shared conversion
+     * when they have a WekaConversions, a new one otherwise.
+     */
+    static ToWekaUtils convert(WekaConversions conversions, Dataset data, boolean withClass) {
+        return conversions == null ? new ToWekaUtils(data, withClass) : conversions.convert(data, withClass);
+    }
+
+    /*
+     * The training data for a WEKA learner, copied when the conversion is
+     * shared with other bridges.
+     */
+    static Instances training(WekaConversions conversions, ToWekaUtils utils) {
+        return conversions == null ? utils.getDataset() : copy(utils.getDataset());
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.javaml.metrics.Metrics;
+
+/**
+ * Controls the execution of long running algorithms: it reports their
+ * progress, lets them be cancelled from another thread and limits their run
+ * time or their number of iterations.
+ *
+ * Algorithms that support a context check it once per iteration with
+ * {@link #proceed(String, long, long)} and stop when it returns false. They do
+ * not throw an exception, they return the best result they have at that
+ * moment. Whether a result is complete can be checked afterwards with
+ * {@link #isStopped()}.
+ *
+ * <pre>
+ * ExecutionContext context = new ExecutionContext(10, TimeUnit.MINUTES);
+ * KMeans km = new KMeans(5, 1000);
+ * km.setExecutionContext(context);
+ * Dataset[] clusters = km.cluster(data);
+ * </pre>
+ *
+ * A context can be shared by several algorithms and they will all stop when
+ * it is cancelled or its time is up. An algorithm that runs other algorithms,
+ * like a grid search that runs cross validations, gives them a
+ * {@link #child()} so that their iterations are not counted against its own
+ * limit.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class ExecutionContext {
+
+    /**
+     * Receives the progress of the algorithms that use a context.
+     */
+    public interface ProgressListener {
+        /**
+         * Reports the progress of a task. This is called once per
+         * iteration, from the thread that runs it. The iterations of
+         * parallel algorithms, like the folds of a cross validation, are
+         * reported from several threads and not necessarily in order.
+         *
+         * @param task
+         *            the name of the task, for example <code>kmeans</code>
+         * @param done
+         *            the number of iterations that are done
+         * @param total
+         *            the maximum number of iterations, -1 when it is not
+         *            known in advance
+         */
+        public void progress(String task, long done, long total);
+    }
+
+    private volatile boolean cancelled = false;
+
+    private volatile boolean stopped = false;
+
+    /* the deadline in terms of System.nanoTime, only valid with timed */
+    private volatile long deadline;
+
+    private volatile boolean timed = false;
+
+    private volatile long maxIterations = Long.MAX_VALUE;
+
+    private volatile ProgressListener listener = null;
+
+    /* the context this is a child of, null for a top level context */
+    private final ExecutionContext parent;
+
+    /**
+     * Creates a context without limits.
+     */
+    public ExecutionContext() {
+        this.parent = null;
+    }
+
+    private ExecutionContext(ExecutionContext parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a context with a time budget that starts now.
+     *
+     * @param budget
+     *            the time the algorithms may run
+     * @param unit
+     *            the unit of the budget
+     */
+    public ExecutionContext(long budget, TimeUnit unit) {
+        this();
+        setTimeBudget(budget, unit);
+    }
+
+    /**
+     * Creates a context for the algorithms that an algorithm using this
+     * context runs as part of one of its iterations. The child stops when this
+     * context is cancelled or its time is up, and then stops this context as
+     * well, and it reports to the same listener. It has no limit on the number
+     * of iterations and its own stopped state.
+     *
+     * @return a new child of this context
+     */
+    public ExecutionContext child() {
+        return new ExecutionContext(this);
+    }
+
+    /**
+     * Sets the time budget, counted from now.
+     *
+     * @param budget
+     *            the time the algorithms may run
+     * @param unit
+     *            the unit of the budget
+     */
+    public void setTimeBudget(long budget, TimeUnit unit) {
+        if (budget < 0)
+            throw new IllegalArgumentException("The time budget should not be negative: " + budget);
+        deadline = System.nanoTime() + unit.toNanos(budget);
+        timed = true;
+    }
+
+    /**
+     * Limits the number of iterations of each loop that checks this context.
+     *
+     * @param maxIterations
+     *            the maximum number of iterations
+     */
+    public void setMaxIterations(long maxIterations) {
+        if (maxIterations < 0)
+            throw new IllegalArgumentException("The number of iterations should not be negative: " + maxIterations);
+        this.maxIterations = maxIterations;
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Asks the algorithms that use this context to stop. They stop at their
+     * next check and return the result they have.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+
+    /**
+     * Returns whether the time budget is spent.
+     */
+    public boolean isExpired() {
+        return timed && System.nanoTime() - deadline >= 0 || parent != null && parent.isExpired();
+    }
+
+    /**
+     * Returns whether an algorithm was stopped by this context before it was
+     * done, because it was cancelled or because its budget ran out.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Clears the stopped state, for an algorithm that starts a new run with
+     * this context. A cancelled or expired context stays so.
+     */
+    public void reset() {
+        stopped = false;
+    }
+
+    /**
+     * Reports the progress of a task and returns whether it may do another
+     * iteration. Algorithms call this before each iteration.
+     *
+     * @param task
+     *            the name of the task
+     * @param done
+     *            the number of iterations done so far
+     * @param total
+     *            the maximum number of iterations, -1 when it is not known
+     * @return false when the task should stop
+     */
+    public boolean proceed(String task, long done, long total) {
+        ProgressListener l = listener();
+        if (l != null)
+            l.progress(task, done, total);
+        boolean inherited = parent != null && (parent.isCancelled() || parent.isExpired());
+        if (cancelled || done >= maxIterations || isExpired() || inherited) {
+            stop(task);
+            if (inherited)
+                parent.stop(task);
+            return false;
+        }
+        return true;
+    }
+
+    private void stop(String task) {
+        if (!stopped)
+            Metrics.count(task + ".stopped", 1);
+        stopped = true;
+    }
+
+    private ProgressListener listener() {
+        ProgressListener l = listener;
+        return l != null || parent == null ? l : parent.listener();
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.utils;
+
+/**
+ * Utility methods to spread a loop over a range of indices across the
+ * available processors.
+ *
+ * The range is cut in chunks that are claimed by the calling thread and by
+ * helper threads of the library wide {@link ParallelContext}. By default this
+ * is a shared pool of daemon threads, one per processor, applications can
+ * replace it with {@link #setContext(ParallelContext)}. The calling thread
+ * always takes part in the work, so nested parallel loops cannot dead-lock
+ * when all pool threads are busy: the caller simply processes the remaining
+ * chunks itself.
+ *
+ */
+public final class Parallel {
+
+    /**
+     * A task that processes a contiguous range of indices.
+     */
+    public interface RangeTask {
+        /**
+         * Process the indices from <code>from</code> (inclusive) to
+         * <code>to</code> (exclusive).
+         *
+         * @param from
+         *            first index to process
+         * @param to
+         *            index after the last index to process
+         */
+        public void run(int from, int to);
+    }
+
+    private static volatile ParallelContext context = new ParallelContext();
+
+    private Parallel() {
+        // utility class
+    }
+
+    /**
+     * Sets the context that runs the parallel loops of the library.
+     *
+     * @param context
+     *            the library wide context
+     */
+    public static void setContext(ParallelContext context) {
+        if (context == null)
+            throw new IllegalArgumentException("The parallel context should not be null");
+        Parallel.context = context;
+    }
+
+    /**
+     * Returns the context that runs the parallel loops of the library.
+     */
+    public static ParallelContext context() {
+        return context;
+    }
+
+    /**
+     * Returns the number of threads that will work on a parallel loop,
+     * including the calling thread.
+     *
+     * @return the number of worker threads
+     */
+    public static int threads() {
+        return context.parallelism();
+    }
+
+    /**
+     * Runs the task over the range [0,n), using chunks of at least
+     * <code>minChunk</code> indices.
+     *
+     * @param n
+     *            the number of indices
+     * @param minChunk
+     *            the minimum number of indices that is worth handing to a
+     *            separate thread
+     * @param task
+     *            the task to run on each chunk
+     */
+    public static void forRange(int n, int minChunk, RangeTask task) {
+        context.forRange(n, minChunk, task);
+    }
+
+    /**
+     * Runs the task over the range [0,n).
+     *
+     * @param n
+     *            the number of indices
+     * @param task
+     *            the task to run on each chunk
+     */
+    public static void forRange(int n, RangeTask task) {
+        forRange(n, 1, task);
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.utils;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decides where and how wide the parallel work of the library runs.
+ *
+ * A context combines an executor with a parallelism, the maximum number of
+ * threads that work on one parallel loop, including the calling thread. The
+ * default context uses a shared pool of daemon threads, one per processor.
+ * An application that has its own pools, for example a ForkJoinPool or an
+ * executor of virtual threads, hands it to the library with
+ * {@link Parallel#setContext(ParallelContext)}, so that the library does not
+ * start threads of its own:
+ *
+ * <pre>
+ * Parallel.setContext(new ParallelContext(applicationPool, 8));
+ * </pre>
+ *
+ * Algorithms that accept a context of their own use it instead of the library
+ * wide one, {@link #withParallelism(int)} limits a single call:
+ *
+ * <pre>
+ * bagging.setParallelContext(Parallel.context().withParallelism(4));
+ * </pre>
+ *
+ * The calling thread always takes part in the work, so nested parallel loops
+ * cannot dead-lock when all threads of the executor are busy: the caller
+ * simply processes the remaining chunks itself.
+ *
+ * Parallel algorithms that need random numbers give each task its own
+ * generator with {@link #random(long, int)}, derived from the seed of the
+ * caller and the index of the task. The results then do not depend on the
+ * number of threads or on the order in which the tasks run.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class ParallelContext {
+
+    private static ExecutorService pool = null;
+
+    /* the executor, null for the shared pool of the library */
+    private final ExecutorService executor;
+
+    private final int parallelism;
+
+    /**
+     * Creates a context that uses the shared pool of the library with one
+     * thread per processor.
+     */
+    public ParallelContext() {
+        this(null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a context that uses the shared pool of the library with at most
+     * the given number of threads per loop.
+     *
+     * @param parallelism
+     *            the number of threads, 1 runs everything in the calling
+     *            thread
+     */
+    public ParallelContext(int parallelism) {
+        this(null, parallelism);
+    }
+
+    /**
+     * Creates a context that runs the parallel work on an executor.
+     *
+     * @param executor
+     *            the executor for the helper threads, null for the shared
+     *            pool of the library
+     * @param parallelism
+     *            the maximum number of threads that work on one loop,
+     *            including the calling thread
+     */
+    public ParallelContext(ExecutorService executor, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("The parallelism should be at least 1: " + parallelism);
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the maximum number of threads that work on a parallel loop,
+     * including the calling thread.
+     */
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns a context on the same executor with at most the given number of
+     * threads per loop.
+     *
+     * @param limit
+     *            the maximum number of threads
+     * @return a context with the lower of the current and the given
+     *         parallelism
+     */
+    public ParallelContext withParallelism(int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("The parallelism should be at least 1: " + limit);
+        return new ParallelContext(executor, Math.min(parallelism, limit));
+    }
+
+    private static synchronized ExecutorService pool() {
+        if (pool == null) {
+            final AtomicInteger count = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "javaml-parallel-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Runs the task over the range [0,n), using chunks of at least
+     * <code>minChunk</code> indices.
+     *
+     * @param n
+     *            the number of indices
+     * @param minChunk
+     *            the minimum number of indices that is worth handing to a
+     *            separate thread
+     * @param task
+     *            the task to run on each chunk
+     */
+    public void forRange(int n, int minChunk, final Parallel.RangeTask task) {
+        int threads = parallelism;
+        if (n <= 0)
+            return;
+        if (threads == 1 || n <= minChunk) {
+            task.run(0, n);
+            return;
+        }
+        /* A few chunks per thread to even out the load */
+        final int chunk = Math.max(Math.max(1, minChunk), (n + 4 * threads - 1) / (4 * threads));
+        final int chunks = (n + chunk - 1) / chunk;
+        final int size = n;
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(chunks);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int c;
+                while ((c = next.getAndIncrement()) < chunks) {
+                    try {
+                        if (error.get() == null)
+                            task.run(c * chunk, Math.min(size, (c + 1) * chunk));
+                    } catch (Throwable t) {
+                        error.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        int helpers = Math.min(threads, chunks) - 1;
+        ExecutorService exec = executor == null ? pool() : executor;
+        for (int i = 0; i < helpers; i++)
+            exec.execute(worker);
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for parallel tasks", e);
+        }
+        Throwable t = error.get();
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        if (t != null)
+            throw new RuntimeException(t);
+    }
+
+    /**
+     * Runs the task for each index in [0,n), each index may run on another
+     * thread. This is meant for a small number of large tasks, like the
+     * members of an ensemble or the folds of a cross validation.
+     *
+     * @param n
+     *            the number of tasks
+     * @param task
+     *            the task to run on each index
+     */
+    public void forEach(int n, Parallel.RangeTask task) {
+        forRange(n, 1, task);
+    }
+
+    /**
+     * Derives the seed of a task from the seed of the caller. Different tasks
+     * get unrelated seeds, also for consecutive seeds of the caller.
+     *
+     * @param seed
+     *            the seed of the caller
+     * @param task
+     *            the index of the task
+     * @return the seed for the task
+     */
+    public static long seed(long seed, int task) {
+        /* SplitMix64 finalizer on the combination */
+        long z = seed + (task + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the random generator of a task, derived from the seed of the
+     * caller.
+     *
+     * @see #seed(long, int)
+     *
+     * @param seed
+     *            the seed of the caller
+     * @param task
+     *            the index of the task
+     * @return a new random generator for the task
+     */
+    public static Random random(long seed, int task) {
+        return new Random(seed(seed, task));
+    }
+
+}
@@ -0,0 +1,27 @@
+/**
+ * %SVN.HEADER%
+ */
+package net.sf.javaml.utils;
+
+/**
+ * An algorithm that uses random numbers and can be given a new seed. This
+ * lets copies of an algorithm that run at the same time, like the copies of a
+ * classifier for the parallel folds of a cross validation, use different
+ * random numbers that do not depend on the number of threads.
+ *
+ * @see ParallelContext#seed(long, int)
+ *
+ * @author Thomas Abeel
+ *
+ */
+public interface Seedable {
+
+    /**
+     * Replaces the random generator of this algorithm by one with the given
+     * seed.
+     *
+     * @param seed
+     *            the new seed
+     */
+    public void setSeed(long seed);
+}
@@ -0,0 +1,88 @@
+/**
+ * %SVN.HEADER%
+ */
+package tutorials.tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import net.sf.javaml.core.Dataset;
+import net.sf.javaml.core.DefaultDataset;
+import net.sf.javaml.core.DenseInstance;
+import net.sf.javaml.core.Instance;
+import net.sf.javaml.tools.data.FileHandler;
+
+/**
+ * Measures how fast a data set is written to a file: with a PrintWriter and
+ * string concatenation, as a line-by-line export does, with the parallel
+ * export of {@link FileHandler}, compressed and not, and in the binary
+ * format.
+ *
+ * @author Thomas Abeel
+ *
+ */
+public class TutorialExportThroughput {
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        /* A data set with scores rounded to a few decimals */
+        Random rg = new Random(1);
+        Dataset data = new DefaultDataset();
+        for (int i = 0; i < rows; i++) {
+            double[] values = new double[25];
+            for (int j = 0; j < values.length; j++)
+                values[j] = Math.round(rg.nextGaussian() * 10000) / 1000.0;
+            data.add(new DenseInstance(values, "class" + rg.nextInt(5)));
+        }
+        File file = File.createTempFile("export", ".tsv");
+        file.deleteOnExit();
+        File gz = new File(file.getPath() + ".gz");
+        gz.deleteOnExit();
+
+        for (int round = 0; round < 3; round++) {
+            long time = System.nanoTime();
+            PrintWriter out = new PrintWriter(file);
+            for (Instance inst : data)
+                out.println(line(inst));
+            out.close();
+            report("PrintWriter", rows, time);
+
+            time = System.nanoTime();
+            out = new PrintWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(gz))));
+            for (Instance inst : data)
+                out.println(line(inst));
+            out.close();
+            report("PrintWriter, gzip", rows, time);
+
+            time = System.nanoTime();
+            FileHandler.exportDataset(data, file, false);
+            report("exportDataset", rows, time);
+
+            time = System.nanoTime();
+            FileHandler.exportDataset(data, file, true);
+            report("exportDataset, gzip", rows, time);
+
+            time = System.nanoTime();
+            FileHandler.exportBinaryDataset(data, file);
+            report("exportBinaryDataset", rows, time);
+            System.out.println();
+        }
+    }
+
+    private static String line(Instance inst) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(inst.classValue());
+        for (int i = 0; i < inst.noAttributes(); i++)
+            sb.append("\t" + inst.value(i));
+        return sb.toString();
+    }
+
+    private static void report(String name, int rows, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-22s %8.1f ms %12.0f rows/s%n", name, seconds * 1000, rows / seconds);
+    }
+}